@@ -0,0 +1,7 @@
+#!/bin/bash -xe
+docker run \
+-w /digdag \
+-v `pwd`/:/digdag \
+-v ~/.gradle:/root/.gradle \
+$BUILD_IMAGE \
+./gradlew :digdag-cli:startupBenchmark -PstartupBenchmarkIterations=5 --info --no-daemon
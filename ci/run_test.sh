@@ -9,6 +9,10 @@ if [[ $(( 1 % ${CI_NODE_TOTAL} )) -eq ${CI_NODE_INDEX} ]]; then
     "${BASEDIR}/validate.sh"
 fi
 
+if [[ $(( 2 % ${CI_NODE_TOTAL} )) -eq ${CI_NODE_INDEX} ]]; then
+    "${BASEDIR}/run_startup_benchmark.sh"
+fi
+
 "${BASEDIR}/run_test_h2.sh"
 "${BASEDIR}/run_test_pg.sh"
 
@@ -0,0 +1,36 @@
+package io.digdag.cli;
+
+import com.beust.jcommander.Parameter;
+
+import static io.digdag.cli.SystemExitException.systemExit;
+
+public class Daemon
+    extends Command
+{
+    @Parameter(names = {"-n", "--port"})
+    int port = 0;
+
+    @Override
+    public void main()
+            throws Exception
+    {
+        JvmUtil.validateJavaRuntime(err);
+
+        if (args.size() != 0) {
+            throw usage(null);
+        }
+
+        LocalDaemon.serve(version, port, err);
+    }
+
+    @Override
+    public SystemExitException usage(String error)
+    {
+        err.println("Usage: " + programName + " daemon [options...]");
+        err.println("  Keeps a JVM running to run \"digdag run\" in the current directory faster.");
+        err.println("  Options:");
+        err.println("    -n, --port PORT                  port number to listen on localhost (default: a random port)");
+        Main.showCommonOptions(env, err);
+        return systemExit(error);
+    }
+}
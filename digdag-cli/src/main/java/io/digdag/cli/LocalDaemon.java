@@ -0,0 +1,568 @@
+package io.digdag.cli;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import com.google.common.base.Optional;
+import com.google.common.collect.ForwardingMap;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.io.BaseEncoding;
+import com.google.common.util.concurrent.Uninterruptibles;
+import com.google.inject.Injector;
+import com.google.inject.Provider;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import io.digdag.core.DigdagEmbed;
+import io.digdag.core.Version;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Runs digdag run in a JVM that is kept running.
+ *
+ * digdag daemon listens on a port of localhost and writes the port and a
+ * random token to .digdag/daemon in the current directory. digdag run in
+ * the same directory sends its arguments and environment variables to the
+ * daemon if the file exists. The daemon runs them as digdag run does and
+ * sends stdout, stderr and the exit code back. Commands started by
+ * operators (sh>, py>, rb>, etc.) get the environment variables of the
+ * client. A run is interrupted if the client disconnects.
+ *
+ * Runs share a DigdagEmbed so that they skip building the injector,
+ * migrating the database and loading plugins. It's rebuilt when the system
+ * configuration changes, or when a run stops without waiting for its
+ * attempt (e.g. the client disconnected) so that leftover tasks don't run
+ * in the next run. Each run deletes its project when it's done so that
+ * sessions of the same time can run again. Runs are executed one at a
+ * time because System.out, logging and system properties are shared by
+ * the JVM.
+ */
+class LocalDaemon
+{
+    private static final Logger logger = LoggerFactory.getLogger(LocalDaemon.class);
+
+    private static final Path STATE_FILE = Paths.get(".digdag", "daemon");
+
+    private static final int CONNECT_TIMEOUT = 1000;  // milliseconds
+    private static final int DISCONNECT_CHECK_INTERVAL = 1000;  // milliseconds
+    private static final int MAX_STRING_LENGTH = 1024 * 1024;
+
+    private static final byte STDOUT = 'O';
+    private static final byte STDERR = 'E';
+    private static final byte EXIT = 'X';
+
+    private static volatile boolean serving = false;
+
+    // DigdagEmbed shared by runs. Accessed only by the thread that serves requests.
+    private static DigdagEmbed embed = null;
+    private static Properties embedSystemProps = null;
+    private static final ClientEnvironment clientEnvironment = new ClientEnvironment();
+    private static volatile Run currentRun = null;
+
+    private LocalDaemon()
+    { }
+
+    /**
+     * Runs the command at the daemon of the current directory if it's
+     * available. Returns the exit code, or absent if the command should run
+     * in this process.
+     */
+    static Optional<Integer> tryForward(Version version, String[] args, Map<String, String> env, PrintStream out, PrintStream err)
+    {
+        if (serving) {
+            return Optional.absent();
+        }
+        return tryForward(currentDirectory(), version, args, env, out, err);
+    }
+
+    static Optional<Integer> tryForward(Path directory, Version version, String[] args, Map<String, String> env, PrintStream out, PrintStream err)
+    {
+        Path stateFile = directory.resolve(STATE_FILE);
+        if (!Files.exists(stateFile)) {
+            return Optional.absent();
+        }
+
+        Properties state = new Properties();
+        try (Reader reader = Files.newBufferedReader(stateFile, UTF_8)) {
+            state.load(reader);
+        }
+        catch (IOException ex) {
+            err.println("warning: Failed to read " + stateFile + ". Running without daemon: " + ex);
+            return Optional.absent();
+        }
+        if (!version.toString().equals(state.getProperty("version"))) {
+            err.println("warning: Version of digdag daemon is different from this command. Running without daemon.");
+            return Optional.absent();
+        }
+
+        Socket socket = new Socket();
+        try {
+            socket.connect(new InetSocketAddress(InetAddress.getLoopbackAddress(), Integer.parseInt(state.getProperty("port"))), CONNECT_TIMEOUT);
+        }
+        catch (IOException | RuntimeException ex) {
+            err.println("warning: digdag daemon is not available. Running without daemon: " + ex);
+            closeQuietly(socket);
+            return Optional.absent();
+        }
+
+        try {
+            DataOutputStream request = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            writeString(request, state.getProperty("token"));
+            writeString(request, directory.toString());
+            request.writeInt(args.length);
+            for (String arg : args) {
+                writeString(request, arg);
+            }
+            request.writeInt(env.size());
+            for (Map.Entry<String, String> pair : env.entrySet()) {
+                writeString(request, pair.getKey());
+                writeString(request, pair.getValue());
+            }
+            request.flush();
+
+            DataInputStream response = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            while (true) {
+                byte type = response.readByte();
+                if (type == EXIT) {
+                    return Optional.of(response.readInt());
+                }
+                byte[] data = new byte[response.readInt()];
+                response.readFully(data);
+                PrintStream stream = (type == STDERR) ? err : out;
+                stream.write(data);
+                stream.flush();
+            }
+        }
+        catch (IOException ex) {
+            // the command may have run partially. Running it again here is not safe.
+            err.println("error: Lost connection to digdag daemon: " + ex);
+            return Optional.of(1);
+        }
+        finally {
+            closeQuietly(socket);
+        }
+    }
+
+    static boolean isServing()
+    {
+        return serving;
+    }
+
+    static void serve(Version version, int port, PrintStream err)
+        throws IOException
+    {
+        Path directory = currentDirectory();
+        try (Server server = new Server(directory, version, port, LocalDaemon::runMain)) {
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> server.deleteStateFile()));
+            serving = true;
+
+            err.println("digdag daemon started at port " + server.getPort() + ". digdag run in " + directory + " uses this daemon.");
+
+            server.serve();
+        }
+        finally {
+            closeEmbed();
+        }
+    }
+
+    interface EmbedBootstrap
+    {
+        DigdagEmbed.Bootstrap create(Provider<Run> currentRun, Map<String, String> environment);
+    }
+
+    interface EmbedAction
+    {
+        void run(Injector injector)
+            throws Exception;
+    }
+
+    /**
+     * Runs the action with the DigdagEmbed shared by runs. The embed is
+     * built using the bootstrap when there is no embed or the system
+     * configuration is different from the one it was built with. Run and
+     * @Environment bound to it return the current run and the environment
+     * variables of its client.
+     */
+    static void runWithEmbed(Run run, Map<String, String> env, Properties systemProps, EmbedBootstrap bootstrap, EmbedAction action)
+        throws Exception
+    {
+        if (embed != null && !systemProps.equals(embedSystemProps)) {
+            logger.info("System configuration changed. Restarting digdag.");
+            closeEmbed();
+        }
+
+        currentRun = run;
+        clientEnvironment.set(env);
+
+        if (embed == null) {
+            embed = bootstrap.create(() -> currentRun, clientEnvironment).initializeWithoutShutdownHook();
+            embedSystemProps = (Properties) systemProps.clone();
+        }
+
+        boolean reusable = false;
+        try {
+            action.run(embed.getInjector());
+            reusable = !run.isAttemptRunning();
+        }
+        catch (Exception ex) {
+            reusable = !run.isAttemptRunning();
+            throw ex;
+        }
+        finally {
+            if (!reusable) {
+                closeEmbed();
+            }
+        }
+    }
+
+    private static void closeEmbed()
+    {
+        if (embed != null) {
+            try {
+                embed.close();
+            }
+            catch (Exception ex) {
+                logger.warn("Failed to shutdown digdag", ex);
+            }
+            embed = null;
+            embedSystemProps = null;
+        }
+    }
+
+    private static int runMain(Version version, String[] args, Map<String, String> env, PrintStream out, PrintStream err)
+    {
+        PrintStream systemOut = System.out;
+        PrintStream systemErr = System.err;
+        // console appenders of logback write to System.out
+        System.setOut(out);
+        System.setErr(err);
+        try {
+            return new Main(version, env, out, err, new ByteArrayInputStream(new byte[0])).cli(args);
+        }
+        finally {
+            System.setOut(systemOut);
+            System.setErr(systemErr);
+        }
+    }
+
+    interface CommandRunner
+    {
+        int run(Version version, String[] args, Map<String, String> env, PrintStream out, PrintStream err);
+    }
+
+    static class Server
+            implements AutoCloseable
+    {
+        private final Path directory;
+        private final Version version;
+        private final CommandRunner runner;
+        private final String token;
+        private final ServerSocket socket;
+
+        Server(Path directory, Version version, int port, CommandRunner runner)
+            throws IOException
+        {
+            this.directory = directory;
+            this.version = version;
+            this.runner = runner;
+            this.token = BaseEncoding.base16().lowerCase().encode(randomBytes(32));
+            this.socket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+            try {
+                writeStateFile(directory.resolve(STATE_FILE), version, socket.getLocalPort(), token);
+            }
+            catch (IOException | RuntimeException ex) {
+                socket.close();
+                throw ex;
+            }
+        }
+
+        int getPort()
+        {
+            return socket.getLocalPort();
+        }
+
+        // processes requests one at a time until this server is closed
+        void serve()
+        {
+            while (!socket.isClosed()) {
+                try (Socket client = socket.accept()) {
+                    handle(client);
+                }
+                catch (IOException ex) {
+                    if (socket.isClosed()) {
+                        break;
+                    }
+                    logger.warn("Failed to process a request", ex);
+                }
+                catch (Throwable ex) {
+                    // keep serving other clients
+                    logger.error("Unexpected error while processing a request", ex);
+                }
+                finally {
+                    // clears interruption by a disconnected client
+                    Thread.interrupted();
+                }
+            }
+        }
+
+        private void handle(Socket client)
+            throws IOException
+        {
+            DataInputStream request = new DataInputStream(new BufferedInputStream(client.getInputStream()));
+            if (!MessageDigest.isEqual(readString(request).getBytes(UTF_8), token.getBytes(UTF_8))) {
+                logger.warn("Rejected a request with an invalid token");
+                return;
+            }
+            String clientDirectory = readString(request);
+            String[] args = new String[request.readInt()];
+            for (int i = 0; i < args.length; i++) {
+                args[i] = readString(request);
+            }
+            Map<String, String> env = new HashMap<>();
+            int envSize = request.readInt();
+            for (int i = 0; i < envSize; i++) {
+                env.put(readString(request), readString(request));
+            }
+
+            DataOutputStream response = new DataOutputStream(new BufferedOutputStream(client.getOutputStream()));
+            PrintStream out = new PrintStream(new FrameOutputStream(response, STDOUT), true, "UTF-8");
+            PrintStream err = new PrintStream(new FrameOutputStream(response, STDERR), true, "UTF-8");
+
+            int code;
+            if (!clientDirectory.equals(directory.toString())) {
+                // relative paths are resolved from the current directory of this process
+                err.println("error: digdag daemon runs in " + directory + " but the current directory is " + clientDirectory);
+                code = 1;
+            }
+            else {
+                Thread watcher = watchDisconnect(client, request, Thread.currentThread(), out, err);
+                try {
+                    code = runner.run(version, args, env, out, err);
+                }
+                catch (Throwable ex) {
+                    ex.printStackTrace(err);
+                    code = 1;
+                }
+                finally {
+                    // wait for the watcher so that it doesn't interrupt the next run
+                    watcher.interrupt();
+                    Uninterruptibles.joinUninterruptibly(watcher);
+                }
+            }
+
+            out.flush();
+            err.flush();
+            synchronized (response) {
+                response.writeByte(EXIT);
+                response.writeInt(code);
+                response.flush();
+            }
+        }
+
+        void deleteStateFile()
+        {
+            // another daemon may have replaced the file
+            Path stateFile = directory.resolve(STATE_FILE);
+            Properties state = new Properties();
+            try (Reader reader = Files.newBufferedReader(stateFile, UTF_8)) {
+                state.load(reader);
+                if (token.equals(state.getProperty("token"))) {
+                    Files.delete(stateFile);
+                }
+            }
+            catch (IOException ex) {
+                // already deleted
+            }
+        }
+
+        @Override
+        public void close()
+            throws IOException
+        {
+            deleteStateFile();
+            socket.close();
+        }
+    }
+
+    // A client sends nothing after the request. The run is interrupted when
+    // the client closes the connection (e.g. Ctrl-C) or writing output to
+    // the client fails so that an abandoned run doesn't block other clients.
+    private static Thread watchDisconnect(Socket client, DataInputStream request, Thread runThread, PrintStream out, PrintStream err)
+        throws IOException
+    {
+        client.setSoTimeout(DISCONNECT_CHECK_INTERVAL);
+        Thread watcher = new Thread(() -> {
+            while (!Thread.currentThread().isInterrupted()) {
+                try {
+                    if (request.read() < 0) {
+                        break;
+                    }
+                }
+                catch (SocketTimeoutException ex) {
+                    if (out.checkError() || err.checkError()) {
+                        break;
+                    }
+                    continue;
+                }
+                catch (IOException ex) {
+                    break;
+                }
+            }
+            if (!Thread.currentThread().isInterrupted()) {
+                logger.warn("Client of digdag daemon disconnected. Interrupting the run.");
+                runThread.interrupt();
+            }
+        }, "daemon-disconnect-watcher");
+        watcher.setDaemon(true);
+        watcher.start();
+        return watcher;
+    }
+
+    private static Path currentDirectory()
+    {
+        return Paths.get("").toAbsolutePath().normalize();
+    }
+
+    private static void writeStateFile(Path stateFile, Version version, int port, String token)
+        throws IOException
+    {
+        Files.createDirectories(stateFile.getParent());
+        Path tmp = Files.createTempFile(stateFile.getParent(), "daemon", ".tmp");
+        try {
+            // the token authenticates clients. Other users must not read it.
+            Files.setPosixFilePermissions(tmp, PosixFilePermissions.fromString("rw-------"));
+        }
+        catch (UnsupportedOperationException ex) {
+            // not a POSIX file system
+        }
+        Properties state = new Properties();
+        state.setProperty("port", Integer.toString(port));
+        state.setProperty("token", token);
+        state.setProperty("version", version.toString());
+        try (Writer writer = Files.newBufferedWriter(tmp, UTF_8)) {
+            state.store(writer, "digdag daemon");
+        }
+        Files.move(tmp, stateFile, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private static byte[] randomBytes(int size)
+    {
+        byte[] bytes = new byte[size];
+        new SecureRandom().nextBytes(bytes);
+        return bytes;
+    }
+
+    private static void writeString(DataOutputStream out, String value)
+        throws IOException
+    {
+        byte[] bytes = value.getBytes(UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in)
+        throws IOException
+    {
+        int length = in.readInt();
+        if (length < 0 || length > MAX_STRING_LENGTH) {
+            throw new IOException("Invalid length: " + length);
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, UTF_8);
+    }
+
+    private static void closeQuietly(Socket socket)
+    {
+        try {
+            socket.close();
+        }
+        catch (IOException ex) {
+            // ignore
+        }
+    }
+
+    // environment variables of the client of the current run
+    private static class ClientEnvironment
+            extends ForwardingMap<String, String>
+    {
+        private volatile Map<String, String> delegate = ImmutableMap.of();
+
+        void set(Map<String, String> environment)
+        {
+            this.delegate = ImmutableMap.copyOf(environment);
+        }
+
+        @Override
+        protected Map<String, String> delegate()
+        {
+            return delegate;
+        }
+    }
+
+    // writes data as frames of the type. The daemon writes stdout and stderr to one connection.
+    private static class FrameOutputStream
+            extends OutputStream
+    {
+        private final DataOutputStream out;
+        private final byte type;
+
+        FrameOutputStream(DataOutputStream out, byte type)
+        {
+            this.out = out;
+            this.type = type;
+        }
+
+        @Override
+        public void write(int b)
+            throws IOException
+        {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len)
+            throws IOException
+        {
+            if (len == 0) {
+                return;
+            }
+            synchronized (out) {
+                out.writeByte(type);
+                out.writeInt(len);
+                out.write(b, off, len);
+            }
+        }
+
+        @Override
+        public void flush()
+            throws IOException
+        {
+            synchronized (out) {
+                out.flush();
+            }
+        }
+    }
+}
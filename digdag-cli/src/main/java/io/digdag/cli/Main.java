@@ -9,6 +9,7 @@ import com.beust.jcommander.JCommander;
 import com.beust.jcommander.MissingCommandException;
 import com.beust.jcommander.Parameter;
 import com.beust.jcommander.ParameterException;
+import com.google.common.base.Optional;
 import com.google.inject.AbstractModule;
 import com.google.inject.Guice;
 import com.google.inject.Injector;
@@ -127,6 +128,7 @@ public class Main
         jc.addCommand("run", injector.getInstance(Run.class), "r");
         jc.addCommand("check", injector.getInstance(Check.class), "c");
         jc.addCommand("scheduler", injector.getInstance(Sched.class), "sched");
+        jc.addCommand("daemon", injector.getInstance(Daemon.class));
 
         jc.addCommand("server", injector.getInstance(Server.class));
 
@@ -186,6 +188,13 @@ public class Main
 
             verbose = processCommonOptions(mainOpts, command);
 
+            if (command instanceof Run && !((Run) command).noDaemon) {
+                Optional<Integer> code = LocalDaemon.tryForward(version, args, env, out, err);
+                if (code.isPresent()) {
+                    return code.get();
+                }
+            }
+
             command.main();
             return 0;
         }
@@ -299,6 +308,7 @@ public class Main
         err.println("    r[un] <workflow.dig>               run a workflow");
         err.println("    c[heck]                            show workflow definitions");
         err.println("    sched[uler]                        run a scheduler server");
+        err.println("    daemon                             keep a JVM running to run workflows faster");
         err.println("    selfupdate                         update cli to the latest version");
         err.println("");
         err.println("  Server-mode commands:");
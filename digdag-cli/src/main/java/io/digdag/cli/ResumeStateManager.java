@@ -12,6 +12,7 @@ import java.util.concurrent.ScheduledExecutorService;
 import java.io.IOException;
 import java.io.FileNotFoundException;
 import java.nio.file.Path;
+import java.time.Instant;
 import javax.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -22,6 +23,7 @@ import com.google.common.base.Throwables;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import io.digdag.core.session.ArchivedTask;
 import io.digdag.core.session.StoredSessionAttemptWithSession;
+import io.digdag.core.session.SessionStore;
 import io.digdag.core.session.SessionStoreManager;
 import io.digdag.core.session.TaskStateCode;
 import io.digdag.core.workflow.Tasks;
@@ -30,10 +32,20 @@ import io.digdag.spi.TaskResult;
 import io.digdag.spi.TaskReport;
 import io.digdag.client.config.ConfigFactory;
 
+/**
+ * Writes state files of successful tasks so that digdag run can skip them
+ * next time.
+ *
+ * The background thread reads only tasks updated since the last update
+ * instead of all tasks of the attempt. sync() and shutdown() read all
+ * tasks once to write files of tasks moved to the archive since then.
+ */
 class ResumeStateManager
 {
     private static Logger logger = LoggerFactory.getLogger(ResumeStateManager.class);
 
+    private static final int UPDATED_TASKS_PAGE_SIZE = 1000;
+
     private final ConfigFactory cf;
     private final SessionStoreManager sessionStoreManager;
     private final YamlMapper mapper;
@@ -74,7 +86,7 @@ class ResumeStateManager
     @PreDestroy
     public synchronized void shutdown()
     {
-        backgroundUpdateAll();
+        updateAll(true);
         if (executor != null) {
             executor.shutdown();
             executor = null;
@@ -83,7 +95,7 @@ class ResumeStateManager
 
     public void sync()
     {
-        backgroundUpdateAll();
+        updateAll(true);
     }
 
     void startUpdate(Path dir, StoredSessionAttemptWithSession attempt)
@@ -92,6 +104,13 @@ class ResumeStateManager
         startScheduleIfNotStarted();
     }
 
+    // digdag daemon keeps this manager across runs. A finished run stops
+    // updating its directory so that files removed later are not written again.
+    void stopUpdate(Path dir)
+    {
+        managedDirs.removeIf(managed -> managed.getPath().equals(dir));
+    }
+
     private synchronized void startScheduleIfNotStarted()
     {
         if (executor == null) {
@@ -101,18 +120,23 @@ class ResumeStateManager
                     .setNameFormat("session-state-update-%d")
                     .build()
                     );
-            executor.scheduleWithFixedDelay(() -> backgroundUpdateAll(), 1, 1, TimeUnit.SECONDS);
+            executor.scheduleWithFixedDelay(() -> updateAll(false), 1, 1, TimeUnit.SECONDS);
             this.executor = executor;
         }
     }
 
-    private void backgroundUpdateAll()
+    private void updateAll(boolean full)
     {
         Iterator<ResumeStateDir> ite = managedDirs.iterator();
         while (ite.hasNext()) {
             ResumeStateDir dir = ite.next();
             try {
-                dir.update();
+                if (full) {
+                    dir.updateAllTasks();
+                }
+                else {
+                    dir.updateChangedTasks();
+                }
             }
             catch (Exception ex) {
                 logger.error("Uncaught exception during updating resume state files at {}. Stopped updating files at this directory.", dir.getPath(), ex);
@@ -126,6 +150,7 @@ class ResumeStateManager
         private final Path dir;
         private final StoredSessionAttemptWithSession attempt;
         private final Set<Long> doneTaskIdList = new HashSet<>();
+        private Instant updatedSince = Instant.EPOCH;
 
         private ResumeStateDir(Path dir, StoredSessionAttemptWithSession attempt)
         {
@@ -143,7 +168,7 @@ class ResumeStateManager
             return attempt;
         }
 
-        private void update()
+        private synchronized void updateAllTasks()
         {
             List<ArchivedTask> tasks = sessionStoreManager
                 .getSessionStore(attempt.getSiteId())
@@ -153,6 +178,30 @@ class ResumeStateManager
             }
         }
 
+        private synchronized void updateChangedTasks()
+        {
+            SessionStore store = sessionStoreManager.getSessionStore(attempt.getSiteId());
+
+            // next update reads tasks updated during this update again.
+            // doneTaskIdList skips tasks already written.
+            Instant nextUpdatedSince = sessionStoreManager.getStoreTime();
+            Instant lastUpdatedAt = updatedSince;
+            long lastUpdatedId = 0;
+
+            while (true) {
+                List<ArchivedTask> tasks = store.getTasksOfAttemptUpdatedSince(attempt.getId(), lastUpdatedAt, lastUpdatedId, UPDATED_TASKS_PAGE_SIZE);
+                for (ArchivedTask task : tasks) {
+                    tryWriteStateFile(task);
+                    lastUpdatedAt = task.getUpdatedAt();
+                    lastUpdatedId = task.getId();
+                }
+                if (tasks.size() < UPDATED_TASKS_PAGE_SIZE) {
+                    break;
+                }
+            }
+            updatedSince = nextUpdatedSince;
+        }
+
         private void tryWriteStateFile(ArchivedTask task)
         {
             if (!Tasks.isDone(task.getState())) {
@@ -9,6 +9,7 @@ import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import com.google.inject.Inject;
 import com.google.inject.Injector;
+import com.google.inject.Provider;
 import com.google.inject.Scopes;
 import com.google.inject.multibindings.Multibinder;
 import io.digdag.client.config.Config;
@@ -31,6 +32,7 @@ import io.digdag.core.archive.ProjectArchive;
 import io.digdag.core.archive.ProjectArchiveLoader;
 import io.digdag.core.config.ConfigLoaderManager;
 import io.digdag.core.config.PropertyUtils;
+import io.digdag.core.repository.ProjectControl;
 import io.digdag.core.repository.ResourceConflictException;
 import io.digdag.core.repository.ResourceLimitExceededException;
 import io.digdag.core.repository.ResourceNotFoundException;
@@ -57,6 +59,7 @@ import io.digdag.spi.SecretStore;
 import io.digdag.spi.SecretStoreManager;
 import io.digdag.spi.TaskRequest;
 import io.digdag.spi.TaskResult;
+import io.digdag.standards.command.CommandEnvironment;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -139,6 +142,9 @@ public class Run
     @Parameter(names = {"-dE"})
     boolean dryRunAndShowParams = false;
 
+    @Parameter(names = {"--no-daemon"})
+    boolean noDaemon = false;
+
     private Path resumeStatePath;
 
     @Override
@@ -196,6 +202,7 @@ public class Run
         err.println("    -E, --show-params                show task parameters before running a task");
         err.println("        --session <daily | hourly | schedule | last | \"yyyy-MM-dd[ HH:mm:ss]\">  set session_time to this time");
         err.println("                                     (default: last, reuses the latest session time stored at .digdag/status)");
+        err.println("        --no-daemon                  doesn't use digdag daemon running in the current directory");
         Main.showCommonOptions(env, err);
         return systemExit(error);
     }
@@ -216,9 +223,28 @@ public class Run
             throws Exception
     {
         Properties systemProps = loadSystemProperties();
+        if (LocalDaemon.isServing()) {
+            // this process is digdag daemon. runs share a DigdagEmbed.
+            // commands started by operators use environment variables of
+            // the client instead of the daemon's.
+            LocalDaemon.runWithEmbed(this, env, systemProps,
+                    (currentRun, environment) -> bootstrap(systemProps, environment, currentRun),
+                    injector -> {
+                        injector.getInstance(CommandEnvironment.class).set(env);
+                        run(systemProps, injector, workflowNameArg, matchPattern);
+                    });
+        }
+        else {
+            try (DigdagEmbed digdag = bootstrap(systemProps, env, () -> this).initializeWithoutShutdownHook()) {
+                run(systemProps, digdag.getInjector(), workflowNameArg, matchPattern);
+            }
+        }
+    }
 
-        try (DigdagEmbed digdag = new DigdagEmbed.Bootstrap()
-                .setEnvironment(env)
+    private DigdagEmbed.Bootstrap bootstrap(Properties systemProps, Map<String, String> environment, Provider<Run> currentRun)
+    {
+        return new DigdagEmbed.Bootstrap()
+                .setEnvironment(environment)
                 .setSystemConfig(PropertyUtils.toConfigElement(systemProps))
                 .setSystemPlugins(loadSystemPlugins(systemProps))
                 .addModules(binder -> {
@@ -227,14 +253,11 @@ public class Run
                     binder.bind(SecretStoreManager.class).to(LocalSecretStoreManager.class).in(Scopes.SINGLETON);
                     binder.bind(ResumeStateManager.class).in(Scopes.SINGLETON);
                     binder.bind(YamlMapper.class).in(Scopes.SINGLETON);  // used by ResumeStateManager
-                    binder.bind(Run.class).toProvider(() -> this);  // used by OperatorManagerWithSkip
+                    binder.bind(Run.class).toProvider(currentRun);  // used by OperatorManagerWithSkip
                 })
                 .overrideModulesWith((binder) -> {
                     binder.bind(OperatorManager.class).to(OperatorManagerWithSkip.class).in(Scopes.SINGLETON);
-                })
-                .initializeWithoutShutdownHook()) {
-            run(systemProps, digdag.getInjector(), workflowNameArg, matchPattern);
-        }
+                });
     }
 
     private void run(Properties systemProps, Injector injector, String workflowNameArg, String matchPattern)
@@ -276,8 +299,17 @@ public class Run
         // TODO catch error when workflowName doesn't exist and suggest to cd to another dir
 
         // wait until it's done
+        attemptRunning = true;
         localSite.runUntilDone(attempt.getId());
+        attemptRunning = false;
         rsm.sync();
+        rsm.stopUpdate(resumeStatePath);
+
+        if (LocalDaemon.isServing()) {
+            // the next run of digdag daemon stores the project again. deleting
+            // this one lets the next run create sessions of the same time.
+            ProjectControl.deleteProject(localSite.getProjectStore(), stored.getRevision().getProjectId(), (control, proj) -> proj);
+        }
 
         // show results
         ArrayList<ArchivedTask> failedTasks = new ArrayList<>();
@@ -621,11 +653,20 @@ public class Run
 
     private Function<String, TaskResult> skipTaskReports = (fullName) -> null;
 
+    private boolean attemptRunning = false;
+
+    // true if this run stopped without waiting for its attempt, for example
+    // when it's interrupted
+    boolean isAttemptRunning()
+    {
+        return attemptRunning;
+    }
+
     private static class OperatorManagerWithSkip
             extends OperatorManager
     {
         private final ConfigFactory cf;
-        private final Run cmd;
+        private final Provider<Run> cmd;
         private final YamlMapper yamlMapper;
 
         @Inject
@@ -634,7 +675,7 @@ public class Run
                 TaskCallbackApi callback, WorkspaceManager workspaceManager,
                 WorkflowCompiler compiler, ConfigFactory cf,
                 ConfigEvalEngine evalEngine, OperatorRegistry registry,
-                Run cmd, YamlMapper yamlMapper,
+                Provider<Run> cmd, YamlMapper yamlMapper,
                 SecretStoreManager secretStoreManager, SecretAccessPolicy secretAccessPolicy)
         {
             super(config, agentId, callback, workspaceManager, compiler, cf, evalEngine, registry, secretStoreManager, secretAccessPolicy);
@@ -647,7 +688,7 @@ public class Run
         public void run(TaskRequest request)
         {
             String fullName = request.getTaskName();
-            TaskResult result = cmd.skipTaskReports.apply(fullName);
+            TaskResult result = cmd.get().skipTaskReports.apply(fullName);
             if (result != null) {
                 try (SetThreadName threadName = new SetThreadName(fullName)) {
                     logger.warn("Skipped");
@@ -664,14 +705,15 @@ public class Run
         @Override
         protected TaskResult callExecutor(Path workspacePath, String type, TaskRequest mergedRequest)
         {
-            if (cmd.showParams) {
+            Run run = cmd.get();
+            if (run.showParams) {
                 StringBuilder sb = new StringBuilder();
                 for (String line : yamlMapper.toYaml(mergedRequest.getConfig()).split("\n")) {
                     sb.append("  ").append(line).append("\n");
                 }
                 logger.warn("\n{}", sb.toString());
             }
-            if (cmd.dryRun) {
+            if (run.dryRun) {
                 return TaskResult.empty(cf);
             }
             else {
@@ -1,11 +1,16 @@
 package io.digdag.cli.client;
 
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableList;
+import com.google.common.hash.Hashing;
 import com.google.common.io.ByteStreams;
 import com.google.inject.Inject;
 import io.digdag.cli.StdOut;
 import io.digdag.cli.YamlMapper;
+import io.digdag.client.api.RestProjectManifest;
 import io.digdag.client.config.Config;
 import io.digdag.core.archive.ArchiveMetadata;
+import io.digdag.core.archive.ParallelGzipOutputStream;
 import io.digdag.core.archive.ProjectArchive;
 import io.digdag.core.archive.ProjectArchiveLoader;
 import io.digdag.core.archive.WorkflowResourceMatcher;
@@ -18,6 +23,7 @@ import org.apache.commons.compress.compressors.gzip.GzipCompressorOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.PrintStream;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
@@ -25,9 +31,13 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.attribute.PosixFilePermission;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
 
 class Archiver
 {
+    private static final int DEFAULT_FILE_MODE = 0644;
+
     private final PrintStream out;
     private final ProjectArchiveLoader projectLoader;
     private final YamlMapper yamlMapper;
@@ -42,13 +52,24 @@ class Archiver
 
     void createArchive(Path projectPath, Path output, Config overrideParams)
             throws IOException
+    {
+        createArchive(projectPath, output, overrideParams, false);
+    }
+
+    void createArchive(Path projectPath, Path output, Config overrideParams, boolean parallelCompression)
+            throws IOException
     {
         out.println("Creating " + output + "...");
 
         ProjectArchive project = projectLoader.load(projectPath, WorkflowResourceMatcher.defaultMatcher(), overrideParams);
         ArchiveMetadata meta = project.getArchiveMetadata();
 
-        try (TarArchiveOutputStream tar = new TarArchiveOutputStream(new GzipCompressorOutputStream(Files.newOutputStream(output)))) {
+        OutputStream file = Files.newOutputStream(output);
+        OutputStream gz = parallelCompression ?
+            new ParallelGzipOutputStream(file, Runtime.getRuntime().availableProcessors()) :
+            new GzipCompressorOutputStream(file);
+
+        try (TarArchiveOutputStream tar = new TarArchiveOutputStream(gz)) {
             // default mode for file names longer than 100 bytes is throwing an exception (LONGFILE_ERROR)
             tar.setLongFileMode(TarArchiveOutputStream.LONGFILE_POSIX);
 
@@ -88,72 +109,167 @@ class Archiver
         out.println("");
     }
 
+    static class Manifest
+    {
+        private final RestProjectManifest manifest;
+        private final Map<String, Path> blobs;
+
+        Manifest(RestProjectManifest manifest, Map<String, Path> blobs)
+        {
+            this.manifest = manifest;
+            this.blobs = blobs;
+        }
+
+        RestProjectManifest getManifest()
+        {
+            return manifest;
+        }
+
+        // local file of each digest
+        Map<String, Path> getBlobs()
+        {
+            return blobs;
+        }
+    }
+
+    // builds a manifest of SHA-256 digests of project files instead of an archive.
+    // metadata (.digdag.dig) is written to metaOutput.
+    Manifest createManifest(Path projectPath, Path metaOutput, Config overrideParams)
+            throws IOException
+    {
+        out.println("Creating manifest of " + projectPath + "...");
+
+        ProjectArchive project = projectLoader.load(projectPath, WorkflowResourceMatcher.defaultMatcher(), overrideParams);
+        ArchiveMetadata meta = project.getArchiveMetadata();
+
+        ImmutableList.Builder<RestProjectManifest.Entry> files = ImmutableList.builder();
+        Map<String, Path> blobs = new HashMap<>();
+
+        project.listFiles((resourceName, absPath) -> {
+            if (!Files.isDirectory(absPath)) {
+                if (Files.isSymbolicLink(absPath)) {
+                    files.add(RestProjectManifest.Entry.builder()
+                            .name(resourceName)
+                            .size(0)
+                            .mode(DEFAULT_FILE_MODE)
+                            .linkName(getRelativeLinkName(project, absPath))
+                            .build());
+                }
+                else {
+                    String digest = com.google.common.io.Files.asByteSource(absPath.toFile()).hash(Hashing.sha256()).toString();
+                    blobs.put(digest, absPath);
+                    files.add(RestProjectManifest.Entry.builder()
+                            .name(resourceName)
+                            .digest(digest)
+                            .size(Files.size(absPath))
+                            .mode(getPosixMode(absPath).or(DEFAULT_FILE_MODE))
+                            .build());
+                }
+            }
+        });
+
+        byte[] metaBody = yamlMapper.toYaml(meta).getBytes(StandardCharsets.UTF_8);
+        Files.write(metaOutput, metaBody);
+        String metaDigest = Hashing.sha256().hashBytes(metaBody).toString();
+        blobs.put(metaDigest, metaOutput);
+        files.add(RestProjectManifest.Entry.builder()
+                .name(ArchiveMetadata.FILE_NAME)
+                .digest(metaDigest)
+                .size(metaBody.length)
+                .mode(DEFAULT_FILE_MODE)
+                .build());
+
+        out.println("Workflows:");
+        for (WorkflowDefinition workflow : meta.getWorkflowList().get()) {
+            out.println("  " + workflow.getName());
+        }
+        out.println("");
+
+        return new Manifest(RestProjectManifest.builder().files(files.build()).build(), blobs);
+    }
+
     private TarArchiveEntry buildTarArchiveEntry(ProjectArchive project, Path absPath, String name)
             throws IOException
     {
         TarArchiveEntry e;
         if (Files.isSymbolicLink(absPath)) {
             e = new TarArchiveEntry(name, TarConstants.LF_SYMLINK);
-            Path rawDest = Files.readSymbolicLink(absPath);
-            Path normalizedAbsDest = absPath.getParent().resolve(rawDest).normalize();
-            try {
-                project.pathToResourceName(normalizedAbsDest);
-            }
-            catch (IllegalArgumentException ex) {
-                throw new IllegalArgumentException("Invalid symbolic link: " + ex.getMessage());
-            }
-            // absolute path will be invalid on a server. convert it to a relative path
-            Path normalizedRelativeDest = absPath.getParent().relativize(normalizedAbsDest);
-
-            String linkName = normalizedRelativeDest.toString();
-
-            // TarArchiveEntry(File) does this normalization but setLinkName doesn't. So do it here:
-            linkName = linkName.replace(File.separatorChar, '/');
-            e.setLinkName(linkName);
+            e.setLinkName(getRelativeLinkName(project, absPath));
         }
         else {
             e = new TarArchiveEntry(absPath.toFile(), name);
-            try {
-                int mode = 0;
-                for (PosixFilePermission perm : Files.getPosixFilePermissions(absPath)) {
-                    switch (perm) {
-                    case OWNER_READ:
-                        mode |= 0400;
-                        break;
-                    case OWNER_WRITE:
-                        mode |= 0200;
-                        break;
-                    case OWNER_EXECUTE:
-                        mode |= 0100;
-                        break;
-                    case GROUP_READ:
-                        mode |= 0040;
-                        break;
-                    case GROUP_WRITE:
-                        mode |= 0020;
-                        break;
-                    case GROUP_EXECUTE:
-                        mode |= 0010;
-                        break;
-                    case OTHERS_READ:
-                        mode |= 0004;
-                        break;
-                    case OTHERS_WRITE:
-                        mode |= 0002;
-                        break;
-                    case OTHERS_EXECUTE:
-                        mode |= 0001;
-                        break;
-                    default:
-                        // ignore
-                    }
-                }
-                e.setMode(mode);
-            }
-            catch (UnsupportedOperationException ex) {
-                // ignore custom mode
+            Optional<Integer> mode = getPosixMode(absPath);
+            if (mode.isPresent()) {
+                e.setMode(mode.get());
             }
         }
         return e;
     }
+
+    private static String getRelativeLinkName(ProjectArchive project, Path absPath)
+            throws IOException
+    {
+        Path rawDest = Files.readSymbolicLink(absPath);
+        Path normalizedAbsDest = absPath.getParent().resolve(rawDest).normalize();
+        try {
+            project.pathToResourceName(normalizedAbsDest);
+        }
+        catch (IllegalArgumentException ex) {
+            throw new IllegalArgumentException("Invalid symbolic link: " + ex.getMessage());
+        }
+        // absolute path will be invalid on a server. convert it to a relative path
+        Path normalizedRelativeDest = absPath.getParent().relativize(normalizedAbsDest);
+
+        String linkName = normalizedRelativeDest.toString();
+
+        // TarArchiveEntry(File) does this normalization but setLinkName doesn't. So do it here:
+        return linkName.replace(File.separatorChar, '/');
+    }
+
+    // returns absent if the file system doesn't support posix permissions
+    private static Optional<Integer> getPosixMode(Path absPath)
+            throws IOException
+    {
+        try {
+            int mode = 0;
+            for (PosixFilePermission perm : Files.getPosixFilePermissions(absPath)) {
+                switch (perm) {
+                case OWNER_READ:
+                    mode |= 0400;
+                    break;
+                case OWNER_WRITE:
+                    mode |= 0200;
+                    break;
+                case OWNER_EXECUTE:
+                    mode |= 0100;
+                    break;
+                case GROUP_READ:
+                    mode |= 0040;
+                    break;
+                case GROUP_WRITE:
+                    mode |= 0020;
+                    break;
+                case GROUP_EXECUTE:
+                    mode |= 0010;
+                    break;
+                case OTHERS_READ:
+                    mode |= 0004;
+                    break;
+                case OTHERS_WRITE:
+                    mode |= 0002;
+                    break;
+                case OTHERS_EXECUTE:
+                    mode |= 0001;
+                    break;
+                default:
+                    // ignore
+                }
+            }
+            return Optional.of(mode);
+        }
+        catch (UnsupportedOperationException ex) {
+            // ignore custom mode
+            return Optional.absent();
+        }
+    }
 }
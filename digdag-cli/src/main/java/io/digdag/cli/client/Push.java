@@ -23,9 +23,13 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
+import javax.ws.rs.NotFoundException;
+
 import static io.digdag.cli.Arguments.loadParams;
 import static io.digdag.cli.SystemExitException.systemExit;
 import static io.digdag.cli.client.ProjectUtil.showUploadedProject;
@@ -48,6 +52,12 @@ public class Push
     @Parameter(names = {"--schedule-from"})
     String scheduleFromString = null;
 
+    @Parameter(names = {"--full-archive"})
+    boolean fullArchive = false;
+
+    @Parameter(names = {"--parallel-compression"})
+    boolean parallelCompression = false;
+
     @Override
     public void mainWithClientException()
         throws Exception
@@ -67,6 +77,8 @@ public class Push
         err.println("    -p, --param KEY=VALUE            overwrites a parameter (use multiple times to set many parameters)");
         err.println("    -P, --params-file PATH.yml       reads parameters from a YAML file");
         err.println("        --schedule-from \"yyyy-MM-dd HH:mm:ss Z\"  start schedules from this time instead of current time");
+        err.println("        --full-archive                   upload whole project archive instead of only changed files");
+        err.println("        --parallel-compression           compress the archive using multiple threads (server must be the same version or newer)");
         showCommonOptions();
         return systemExit(error);
     }
@@ -115,7 +127,7 @@ public class Push
         Path projectPath = (projectDirName == null) ?
             Paths.get("").toAbsolutePath() :
             Paths.get(projectDirName).normalize().toAbsolutePath();
-        injector.getInstance(Archiver.class).createArchive(projectPath, archivePath, overrideParams);
+        Archiver archiver = injector.getInstance(Archiver.class);
 
         DigdagClient client = buildClient();
         if ("".equals(revision)) {
@@ -124,7 +136,37 @@ public class Push
         if (revision == null) {
             revision = Upload.generateDefaultRevisionName();
         }
-        RestProject proj = client.putProjectRevision(projName, revision, archivePath.toFile(), scheduleFrom);
+
+        RestProject proj;
+        if (fullArchive) {
+            archiver.createArchive(projectPath, archivePath, overrideParams, parallelCompression);
+            proj = client.putProjectRevision(projName, revision, archivePath.toFile(), scheduleFrom);
+        }
+        else {
+            Path metaPath = Files.createTempFile(dir, "meta-", ".dig");
+            metaPath.toFile().deleteOnExit();
+            Archiver.Manifest manifest = archiver.createManifest(projectPath, metaPath, overrideParams);
+            try {
+                proj = pushManifest(client, projName, manifest, scheduleFrom);
+            }
+            catch (NotFoundException ex) {
+                // server doesn't store project files as blobs. upload whole archive.
+                // the server may be old and unable to read archives compressed in parallel
+                archiver.createArchive(projectPath, archivePath, overrideParams, false);
+                proj = client.putProjectRevision(projName, revision, archivePath.toFile(), scheduleFrom);
+            }
+        }
         showUploadedProject(out, proj, programName);
     }
+
+    private RestProject pushManifest(DigdagClient client, String projName, Archiver.Manifest manifest, Optional<Instant> scheduleFrom)
+    {
+        Map<String, Path> blobs = manifest.getBlobs();
+        List<String> missing = client.getMissingProjectBlobs(new ArrayList<>(blobs.keySet()));
+        out.println("Uploading " + missing.size() + " of " + blobs.size() + " files...");
+        for (String digest : missing) {
+            client.putProjectBlob(digest, blobs.get(digest).toFile());
+        }
+        return client.putProjectManifest(projName, revision, manifest.getManifest(), scheduleFrom);
+    }
 }
@@ -10,8 +10,14 @@ import io.digdag.client.api.RestSessionAttempt;
 import io.digdag.client.api.RestTask;
 import io.digdag.core.log.LogLevel;
 
+import javax.ws.rs.NotFoundException;
+import javax.ws.rs.ServiceUnavailableException;
+
+import java.io.BufferedInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 import static io.digdag.cli.SystemExitException.systemExit;
 
@@ -21,6 +27,8 @@ public class ShowLog
     @Parameter(names = {"-v", "--verbose"})
     protected boolean verbose = false;
 
+    private static final int LIVE_LOG_TIMEOUT_SECONDS = 60;
+
     @Parameter(names = {"-f", "--follow"})
     protected boolean follow = false;
 
@@ -60,13 +68,19 @@ public class ShowLog
 
         update(client, watcher, attemptId, taskName);
 
-        int interval = 500;
         if (follow) {
-            while (true) {
-                if (isFinished(client, attemptId, taskName)) {
-                    break;
-                }
-                else {
+            // Live logs show lines of tasks running on the server process as
+            // soon as they're written. Log files are still polled because
+            // tasks may run on other processes and live logs don't include
+            // lines written before following started.
+            // A DigdagClient doesn't support concurrent requests. Live logs use another client.
+            DigdagClient liveLogClient = buildClient(false);
+            Thread liveLogs = new Thread(() -> followLiveLogs(liveLogClient, watcher, attemptId, taskName), "live-logs");
+            liveLogs.setDaemon(true);
+            liveLogs.start();
+            try {
+                int interval = 500;
+                while (!isFinished(client, attemptId, taskName)) {
                     Thread.sleep(interval);
                     interval = Math.min(interval * 2, 10000);
                     boolean updated = update(client, watcher, attemptId, taskName);
@@ -74,8 +88,38 @@ public class ShowLog
                         interval = 500;
                     }
                 }
+                // files uploaded when the tasks finished
+                update(client, watcher, attemptId, taskName);
+            }
+            finally {
+                liveLogs.interrupt();
+                liveLogClient.close();
+            }
+        }
+    }
+
+    private void followLiveLogs(DigdagClient client, TaskLogWatcher watcher,
+            Id attemptId, Optional<String> taskName)
+    {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                long start = System.nanoTime();
+                try (InputStream in = new BufferedInputStream(client.followLogs(attemptId, taskName, LIVE_LOG_TIMEOUT_SECONDS))) {
+                    watcher.showLiveLines(in);
+                }
+                if (System.nanoTime() - start < TimeUnit.SECONDS.toNanos(LIVE_LOG_TIMEOUT_SECONDS) / 2) {
+                    // the response ended before timeout because the attempt finished
+                    break;
+                }
             }
         }
+        catch (NotFoundException | ServiceUnavailableException ex) {
+            // the server doesn't support live logs or too many clients are
+            // following them. log files are still shown.
+        }
+        catch (IOException | RuntimeException ex) {
+            // live logs are optional. log files are still shown.
+        }
     }
 
     private boolean update(DigdagClient client, TaskLogWatcher watcher,
@@ -6,15 +6,16 @@ import java.util.ArrayList;
 import java.util.Map;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
+import java.util.TreeMap;
 import java.util.Comparator;
 import java.util.Collections;
 import java.util.zip.GZIPInputStream;
 import java.util.regex.Pattern;
 import java.util.regex.Matcher;
 import java.time.Instant;
-import java.io.BufferedReader;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.io.IOException;
 import java.io.EOFException;
 import com.google.common.base.Optional;
@@ -45,17 +46,13 @@ class TaskLogWatcher
         this.stateMap = new HashMap<>();
     }
 
-    boolean update(List<RestLogFileHandle> handles)
+    synchronized boolean update(List<RestLogFileHandle> handles)
         throws IOException
     {
         boolean updatedAtLeastOne = false;
 
         for (Map.Entry<String, List<RestLogFileHandle>> pair : sortHandles(handles).entrySet()) {
-            TaskLogState state = stateMap.get(pair.getKey());
-            if (state == null) {
-                state = new TaskLogState();
-                stateMap.put(pair.getKey(), state);
-            }
+            TaskLogState state = getState(pair.getKey());
 
             boolean updated = state.update(pair.getValue());
             if (updated) {
@@ -66,12 +63,102 @@ class TaskLogWatcher
         return updatedAtLeastOne;
     }
 
+    private TaskLogState getState(String taskName)
+    {
+        TaskLogState state = stateMap.get(taskName);
+        if (state == null) {
+            state = new TaskLogState();
+            stateMap.put(taskName, state);
+        }
+        return state;
+    }
+
+    // shows lines of live logs formatted as "<task name>\t<offset>\t<line>".
+    // Offset is the byte offset of the line in the output of the task, which
+    // is also the offset in log files of the task. Lines are skipped if
+    // the range is already shown from log files, and vice versa.
+    void showLiveLines(InputStream in)
+        throws IOException
+    {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        byte[] data;
+        while ((data = readLine(in, buffer)) != null) {
+            int taskNameEnd = indexOf(data, (byte) '\t', 0);
+            int offsetEnd = indexOf(data, (byte) '\t', taskNameEnd + 1);
+            if (taskNameEnd < 0 || offsetEnd < 0) {
+                continue;
+            }
+            String taskName = new String(data, 0, taskNameEnd, UTF_8);
+            long offset;
+            try {
+                offset = Long.parseLong(new String(data, taskNameEnd + 1, offsetEnd - taskNameEnd - 1, UTF_8));
+            }
+            catch (NumberFormatException ex) {
+                continue;
+            }
+            showLiveLine(taskName, offset, data, offsetEnd + 1);
+        }
+    }
+
+    private synchronized void showLiveLine(String taskName, long offset, byte[] data, int lineStart)
+    {
+        TaskLogState state = getState(taskName);
+        state.liveLineFiltered = state.showOrSkipLine(offset, data, lineStart, state.liveLineFiltered);
+    }
+
+    // reads bytes of a line including the '\n' at the end. Lines are split
+    // only by '\n' so that positions match bytes of log files.
+    private static byte[] readLine(InputStream in, ByteArrayOutputStream buffer)
+        throws IOException
+    {
+        buffer.reset();
+        int b;
+        while ((b = in.read()) >= 0) {
+            buffer.write(b);
+            if (b == '\n') {
+                break;
+            }
+        }
+        if (buffer.size() == 0) {
+            return null;
+        }
+        return buffer.toByteArray();
+    }
+
+    private static int indexOf(byte[] data, byte b, int from)
+    {
+        for (int i = from; i < data.length; i++) {
+            if (data[i] == b) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static String toLine(byte[] data, int off)
+    {
+        int end = data.length;
+        if (end > off && data[end - 1] == '\n') {
+            end--;
+            if (end > off && data[end - 1] == '\r') {
+                end--;
+            }
+        }
+        return new String(data, off, end - off, UTF_8);
+    }
+
     private class TaskLogState
     {
         private RestLogFileHandle lastFile = null;
-        private int lastLineCount = 0;
+        private long lastFileOffset = 0;
+        private long lastFileSize = 0;
         private boolean lastLineFiltered = false;
 
+        private boolean liveLineFiltered = false;
+
+        // byte ranges of the output of this task that are already shown or filtered
+        private final TreeMap<Long, Long> shownRanges = new TreeMap<>();
+
         boolean update(List<RestLogFileHandle> sortedHandles)
             throws IOException
         {
@@ -88,7 +175,7 @@ class TaskLogWatcher
                     else if (lastFile.getFileName().equals(handle.getFileName())) {
                         // showing the last file if its size is grown
                         if (handle.getFileSize() > lastFile.getFileSize()) {
-                            showFileAndUpdate(handle, lastLineCount, lastLineFiltered);
+                            showFileAndUpdate(handle, lastFileOffset, lastLineFiltered);
                             updated = true;
                         }
                         // following files are all new files
@@ -105,27 +192,26 @@ class TaskLogWatcher
             // show all following files
             for (; i < sortedHandles.size(); i++) {
                 RestLogFileHandle handle = sortedHandles.get(i);
-                showFileAndUpdate(handle, 0, false);
+                showFileAndUpdate(handle, lastFileOffset + lastFileSize, false);
                 updated = true;
             }
 
             return updated;
         }
 
-        private void showFileAndUpdate(RestLogFileHandle handle, int lineOffset, boolean lastLineFiltered)
+        // reads the file from the beginning. Lines already shown are
+        // skipped by their positions.
+        private void showFileAndUpdate(RestLogFileHandle handle, long fileOffset, boolean lastLineFiltered)
             throws IOException
         {
-            int lines = 0;
-
-            try (BufferedReader reader = new BufferedReader(new InputStreamReader(new GZIPInputStream(client.getLogFile(attemptId, handle)), UTF_8))) {
-                String line;
-                while ((line = reader.readLine()) != null) {
-                    lines++;
-                    if (lineOffset > 0) {
-                        lineOffset--;
-                        continue;
-                    }
-                    lastLineFiltered = showOrFilterLine(line, lastLineFiltered);
+            long size = 0;
+
+            try (InputStream in = new BufferedInputStream(new GZIPInputStream(client.getLogFile(attemptId, handle)))) {
+                ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+                byte[] data;
+                while ((data = readLine(in, buffer)) != null) {
+                    lastLineFiltered = showOrSkipLine(fileOffset + size, data, 0, lastLineFiltered);
+                    size += data.length;
                 }
             }
             catch (EOFException ex) {
@@ -133,9 +219,52 @@ class TaskLogWatcher
             }
 
             this.lastFile = handle;
-            this.lastLineCount = lines;
+            this.lastFileOffset = fileOffset;
+            this.lastFileSize = size;
             this.lastLineFiltered = false;
         }
+
+        // shows a line at the offset unless the range is already shown. If
+        // only the beginning of the line is shown (the line was incomplete
+        // when it was read), the rest is shown.
+        private boolean showOrSkipLine(long offset, byte[] data, int lineStart, boolean lastLineFiltered)
+        {
+            long end = offset + data.length - lineStart;
+            long shownEnd = shownEnd(offset);
+            if (shownEnd >= end) {
+                return lastLineFiltered;
+            }
+            addShownRange(offset, end);
+            int start = lineStart + (int) (shownEnd - offset);
+            return showOrFilterLine(toLine(data, start), lastLineFiltered);
+        }
+
+        // returns the end of the shown range including the offset, or the offset itself
+        private long shownEnd(long offset)
+        {
+            Map.Entry<Long, Long> floor = shownRanges.floorEntry(offset);
+            if (floor != null && floor.getValue() > offset) {
+                return floor.getValue();
+            }
+            return offset;
+        }
+
+        private void addShownRange(long start, long end)
+        {
+            // merges overlapping and adjacent ranges so that ranges shown by
+            // both sources don't grow
+            Map.Entry<Long, Long> floor = shownRanges.floorEntry(start);
+            if (floor != null && floor.getValue() >= start) {
+                start = floor.getKey();
+                end = Math.max(end, floor.getValue());
+            }
+            Map.Entry<Long, Long> next;
+            while ((next = shownRanges.ceilingEntry(start)) != null && next.getKey() <= end) {
+                end = Math.max(end, next.getValue());
+                shownRanges.remove(next.getKey());
+            }
+            shownRanges.put(start, end);
+        }
     }
 
     private boolean showOrFilterLine(String line, boolean lastLineFiltered)
@@ -0,0 +1,185 @@
+package io.digdag.cli;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.PrintStream;
+import java.io.Reader;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableMap;
+import io.digdag.core.Version;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class LocalDaemonTest
+{
+    private static final Version VERSION = Version.of("0.0.1");
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path directory;
+    private LocalDaemon.Server server;
+    private Thread serverThread;
+
+    private final ByteArrayOutputStream outBytes = new ByteArrayOutputStream();
+    private final ByteArrayOutputStream errBytes = new ByteArrayOutputStream();
+    private final PrintStream out = new PrintStream(outBytes, true);
+    private final PrintStream err = new PrintStream(errBytes, true);
+
+    @Before
+    public void setUp()
+            throws Exception
+    {
+        directory = folder.getRoot().toPath().toAbsolutePath().normalize();
+    }
+
+    @After
+    public void shutdown()
+            throws Exception
+    {
+        if (server != null) {
+            server.close();
+            serverThread.join();
+        }
+    }
+
+    private void startServer(LocalDaemon.CommandRunner runner)
+            throws Exception
+    {
+        server = new LocalDaemon.Server(directory, VERSION, 0, runner);
+        serverThread = new Thread(() -> server.serve());
+        serverThread.start();
+    }
+
+    private Optional<Integer> forward(String... args)
+    {
+        return LocalDaemon.tryForward(directory, VERSION, args, ImmutableMap.of("KEY", "value"), out, err);
+    }
+
+    @Test
+    public void roundTrip()
+            throws Exception
+    {
+        startServer((version, args, env, out, err) -> {
+            out.print("args=" + String.join(",", args));
+            err.print("env=" + env);
+            return 3;
+        });
+
+        assertThat(forward("run", "test.dig"), is(Optional.of(3)));
+        assertThat(new String(outBytes.toByteArray(), UTF_8), is("args=run,test.dig"));
+        assertThat(new String(errBytes.toByteArray(), UTF_8), is("env={KEY=value}"));
+
+        // the daemon keeps serving
+        assertThat(forward("run"), is(Optional.of(3)));
+    }
+
+    @Test
+    public void exitCodeOfFailedRun()
+            throws Exception
+    {
+        startServer((version, args, env, out, err) -> {
+            throw new NoClassDefFoundError("failed");
+        });
+
+        assertThat(forward("run"), is(Optional.of(1)));
+        assertThat(new String(errBytes.toByteArray(), UTF_8), containsString("failed"));
+
+        // an Error thrown by a run doesn't stop the daemon
+        assertThat(forward("run"), is(Optional.of(1)));
+    }
+
+    @Test
+    public void noDaemon()
+            throws Exception
+    {
+        assertThat(forward("run"), is(Optional.absent()));
+    }
+
+    @Test
+    public void staleStateFile()
+            throws Exception
+    {
+        startServer((version, args, env, out, err) -> 0);
+        Path stateFile = directory.resolve(".digdag").resolve("daemon");
+        byte[] state = Files.readAllBytes(stateFile);
+
+        // the daemon was killed without deleting the state file
+        server.close();
+        serverThread.join();
+        server = null;
+        Files.write(stateFile, state);
+
+        assertThat(forward("run"), is(Optional.absent()));
+        assertThat(new String(errBytes.toByteArray(), UTF_8), containsString("not available"));
+    }
+
+    @Test
+    public void differentVersion()
+            throws Exception
+    {
+        startServer((version, args, env, out, err) -> 0);
+
+        Optional<Integer> code = LocalDaemon.tryForward(directory, Version.of("0.0.2"), new String[] {"run"}, ImmutableMap.of(), out, err);
+        assertThat(code, is(Optional.absent()));
+    }
+
+    @Test
+    public void interruptRunWhenClientDisconnects()
+            throws Exception
+    {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch interrupted = new CountDownLatch(1);
+        startServer((version, args, env, out, err) -> {
+            started.countDown();
+            try {
+                Thread.sleep(TimeUnit.MINUTES.toMillis(1));
+            }
+            catch (InterruptedException ex) {
+                interrupted.countDown();
+            }
+            return 1;
+        });
+
+        Properties state = new Properties();
+        try (Reader reader = Files.newBufferedReader(directory.resolve(".digdag").resolve("daemon"), UTF_8)) {
+            state.load(reader);
+        }
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), Integer.parseInt(state.getProperty("port")))) {
+            DataOutputStream request = new DataOutputStream(socket.getOutputStream());
+            writeString(request, state.getProperty("token"));
+            writeString(request, directory.toString());
+            request.writeInt(1);
+            writeString(request, "run");
+            request.writeInt(0);
+            request.flush();
+            assertTrue(started.await(10, TimeUnit.SECONDS));
+        }
+
+        assertTrue(interrupted.await(10, TimeUnit.SECONDS));
+    }
+
+    private static void writeString(DataOutputStream out, String value)
+            throws Exception
+    {
+        byte[] bytes = value.getBytes(UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+}
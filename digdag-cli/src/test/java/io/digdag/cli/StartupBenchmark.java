@@ -0,0 +1,107 @@
+package io.digdag.cli;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import com.google.common.collect.ImmutableList;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Locale.ENGLISH;
+
+/**
+ * Measures wall time of digdag check and digdag run of a one-task workflow
+ * including startup of the JVM.
+ *
+ * This is not run as a unit test. Run startupBenchmark task:
+ *
+ *   ./gradlew :digdag-cli:startupBenchmark [-PstartupBenchmarkLimit=<milliseconds>]
+ *
+ * The task fails when the mean time of a command exceeds the limit. The
+ * default limit of the task is loose enough for CI machines so that it
+ * catches only large regressions such as eager initialization of server
+ * modules. 0 disables the limit.
+ */
+public class StartupBenchmark
+{
+    public static void main(String[] args)
+        throws Exception
+    {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+        long limitMillis = args.length > 1 ? Long.parseLong(args[1]) : 0;
+
+        Path dir = Files.createTempDirectory("digdag-startup-benchmark");
+        Path project = Files.createDirectories(dir.resolve("project"));
+        Files.write(project.resolve("benchmark.dig"), ImmutableList.of(
+                    "+echo:",
+                    "  echo>: hello"
+                    ), UTF_8);
+        Path config = Files.createFile(dir.resolve("config"));
+        File output = dir.resolve("output.log").toFile();
+
+        List<List<String>> commands = ImmutableList.of(
+                ImmutableList.of("check", "--project", project.toString(), "-c", config.toString()),
+                ImmutableList.of("run", "benchmark", "--project", project.toString(), "-c", config.toString(), "--no-save"));
+
+        boolean exceeded = false;
+        for (List<String> command : commands) {
+            // warm up OS file cache
+            run(command, output);
+
+            long[] times = new long[iterations];
+            for (int i = 0; i < iterations; i++) {
+                long start = System.nanoTime();
+                run(command, output);
+                times[i] = System.nanoTime() - start;
+            }
+            double mean = report(command.get(0), times);
+            if (limitMillis > 0 && mean > limitMillis) {
+                System.err.println(String.format(ENGLISH, "%s: mean %.0fms exceeds %dms", command.get(0), mean, limitMillis));
+                exceeded = true;
+            }
+        }
+        if (exceeded) {
+            System.exit(1);
+        }
+    }
+
+    private static void run(List<String> command, File output)
+        throws Exception
+    {
+        List<String> cmdline = new ArrayList<>();
+        cmdline.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        cmdline.add("-cp");
+        cmdline.add(System.getProperty("java.class.path"));
+        cmdline.add(Main.class.getName());
+        cmdline.addAll(command);
+
+        Process process = new ProcessBuilder(cmdline)
+            .redirectErrorStream(true)
+            .redirectOutput(output)
+            .start();
+        int code = process.waitFor();
+        if (code != 0) {
+            throw new IllegalStateException(String.format(ENGLISH, "%s failed with exit code %d. See %s", command.get(0), code, output));
+        }
+    }
+
+    private static double report(String name, long[] times)
+    {
+        long[] sorted = times.clone();
+        Arrays.sort(sorted);
+        long total = 0;
+        for (long time : sorted) {
+            total += time;
+        }
+        double mean = total / (double) sorted.length / 1e6;
+        System.out.println(String.format(ENGLISH, "%-6s runs=%d mean=%.0fms p50=%.0fms max=%.0fms",
+                    name + ":", sorted.length,
+                    mean,
+                    sorted[sorted.length / 2] / 1e6,
+                    sorted[sorted.length - 1] / 1e6));
+        return mean;
+    }
+}
@@ -0,0 +1,126 @@
+package io.digdag.cli.client;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.time.Instant;
+import java.util.zip.GZIPOutputStream;
+import com.google.common.collect.ImmutableList;
+import io.digdag.client.DigdagClient;
+import io.digdag.client.api.Id;
+import io.digdag.client.api.RestLogFileHandle;
+import org.junit.Before;
+import org.junit.Test;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class TaskLogWatcherTest
+{
+    private static final Id ATTEMPT_ID = Id.of("1");
+    private static final String TASK = "+wf+task";
+
+    private DigdagClient client;
+    private ByteArrayOutputStream output;
+    private TaskLogWatcher watcher;
+
+    @Before
+    public void setUp()
+    {
+        client = mock(DigdagClient.class);
+        output = new ByteArrayOutputStream();
+        watcher = new TaskLogWatcher(client, ATTEMPT_ID, null, new PrintStream(output, true));
+    }
+
+    @Test
+    public void showRepeatedLinesOnceEach()
+        throws Exception
+    {
+        // live logs show the first two lines, then the file has all lines
+        watcher.showLiveLines(live(
+                    TASK + "\t0\tdot\n" +
+                    TASK + "\t4\tdot\n"));
+        watcher.update(ImmutableList.of(file("a", 1, "dot\ndot\ndot\n")));
+
+        assertThat(shown(), is("dot\ndot\ndot\n"));
+    }
+
+    @Test
+    public void skipRepeatedLinesShownByFiles()
+        throws Exception
+    {
+        watcher.update(ImmutableList.of(file("a", 1, "dot\ndot\n")));
+        // live logs of the same lines and a new one
+        watcher.showLiveLines(live(
+                    TASK + "\t0\tdot\n" +
+                    TASK + "\t4\tdot\n" +
+                    TASK + "\t8\tdot\n"));
+
+        assertThat(shown(), is("dot\ndot\ndot\n"));
+    }
+
+    @Test
+    public void showLinesOfLaterFilesAfterLiveLogs()
+        throws Exception
+    {
+        // live logs started in the middle of the output
+        watcher.showLiveLines(live(TASK + "\t8\tdot\n"));
+        watcher.update(ImmutableList.of(
+                    file("a", 1, "dot\n"),
+                    file("b", 2, "dot\ndot\ndot\n")));
+
+        // the line at offset 8 is shown by live logs first
+        assertThat(shown(), is("dot\ndot\ndot\ndot\n"));
+    }
+
+    @Test
+    public void showRestOfIncompleteLine()
+        throws Exception
+    {
+        // the file is read while a line is written
+        watcher.update(ImmutableList.of(file("a", 1, "dot\nli")));
+        watcher.update(ImmutableList.of(file("a", 2, "dot\nline\n")));
+
+        assertThat(shown(), is("dot\nli\nne\n"));
+    }
+
+    private static ByteArrayInputStream live(String lines)
+    {
+        return new ByteArrayInputStream(lines.getBytes(UTF_8));
+    }
+
+    private RestLogFileHandle file(String fileName, long fileSize, String content)
+        throws IOException
+    {
+        RestLogFileHandle handle = RestLogFileHandle.builder()
+            .fileName(fileName)
+            .fileSize(fileSize)
+            .taskName(TASK)
+            .fileTime(Instant.ofEpochSecond(fileName.charAt(0)))
+            .agentId("agent")
+            .build();
+        byte[] gz = gzip(content);
+        when(client.getLogFile(eq(ATTEMPT_ID), eq(handle))).thenAnswer(invocation -> new ByteArrayInputStream(gz));
+        return handle;
+    }
+
+    private static byte[] gzip(String content)
+        throws IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (GZIPOutputStream out = new GZIPOutputStream(bytes)) {
+            out.write(content.getBytes(UTF_8));
+        }
+        return bytes.toByteArray();
+    }
+
+    private String shown()
+    {
+        return new String(output.toByteArray(), UTF_8).replace(System.lineSeparator(), "\n");
+    }
+}
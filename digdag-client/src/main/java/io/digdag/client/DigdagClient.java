@@ -21,7 +21,9 @@ import io.digdag.client.api.LocalTimeOrInstant;
 import io.digdag.client.api.RestLogFileHandle;
 import io.digdag.client.api.RestLogFileHandleCollection;
 import io.digdag.client.api.RestProject;
+import io.digdag.client.api.RestProjectBlobList;
 import io.digdag.client.api.RestProjectCollection;
+import io.digdag.client.api.RestProjectManifest;
 import io.digdag.client.api.RestRevision;
 import io.digdag.client.api.RestRevisionCollection;
 import io.digdag.client.api.RestSchedule;
@@ -421,6 +423,41 @@ public class DigdagClient implements AutoCloseable
         }
     }
 
+    // returns digests of blobs that are not stored on the server yet.
+    // throws NotFoundException if the server doesn't support project blobs.
+    public List<String> getMissingProjectBlobs(List<String> digests)
+    {
+        return doPost(RestProjectBlobList.class,
+                RestProjectBlobList.of(digests),
+                target("/api/projects/blobs/missing"))
+            .getDigests();
+    }
+
+    public void putProjectBlob(String digest, File body)
+    {
+        doPut(void.class,
+                "application/octet-stream",
+                body,
+                target("/api/projects/blobs/{digest}")
+                .resolveTemplate("digest", digest));
+    }
+
+    public RestProject putProjectManifest(String projName, String revision, RestProjectManifest manifest, Optional<Instant> scheduleFrom)
+    {
+        Preconditions.checkArgument(!Strings.isNullOrEmpty(projName), "projName");
+        Preconditions.checkArgument(!Strings.isNullOrEmpty(revision), "revision");
+        WebTarget target = target("/api/projects/manifest")
+            .queryParam("project", projName)
+            .queryParam("revision", revision);
+        if (scheduleFrom.isPresent()) {
+            target = target.queryParam("schedule_from", scheduleFrom.get().toString());
+        }
+        return doPut(RestProject.class,
+                "application/json",
+                manifest,
+                target);
+    }
+
     // TODO getArchive with streaming
     public InputStream getProjectArchive(Id projId, String revision)
     {
@@ -561,6 +598,25 @@ public class DigdagClient implements AutoCloseable
                 .resolveTemplate("id", attemptId));
     }
 
+    // returns attempts of the ids in one request. ids of nonexistent attempts are ignored.
+    public RestSessionAttemptCollection getSessionAttemptStatus(List<Id> attemptIds)
+    {
+        return doGet(RestSessionAttemptCollection.class,
+                target("/api/attempts/status")
+                .queryParam("attempt_id", attemptIds.toArray()));
+    }
+
+    // waits until one of the attempts is done or changes state, or the
+    // timeout expires, and returns the attempts. This returns immediately if
+    // one of the attempts is already done.
+    public RestSessionAttemptCollection waitSessionAttemptStatus(List<Id> attemptIds, int timeoutSeconds)
+    {
+        return doGet(RestSessionAttemptCollection.class,
+                target("/api/attempts/status/wait")
+                .queryParam("attempt_id", attemptIds.toArray())
+                .queryParam("timeout", timeoutSeconds));
+    }
+
     public RestTaskCollection getTasks(Id attemptId)
     {
         return doGet(RestTaskCollection.class,
@@ -609,6 +665,74 @@ public class DigdagClient implements AutoCloseable
                 .readEntity(InputStream.class);
     }
 
+    // returns gzip-compressed bytes of a log file starting from the offset
+    public InputStream getLogFile(Id attemptId, String fileName, long offset)
+    {
+        Invocation request = target("/api/logs/{id}/files/{fileName}")
+                .resolveTemplate("id", attemptId)
+                .resolveTemplate("fileName", fileName)
+                .request()
+                .headers(this.headers.get())
+                .header("Range", "bytes=" + offset + "-")
+                .buildGet();
+
+        return invokeWithRetry(request)
+                .readEntity(InputStream.class);
+    }
+
+    // returns decompressed contents of a log file starting from the offset
+    public InputStream getLogFileContent(Id attemptId, String fileName, long offset)
+    {
+        Invocation request = target("/api/logs/{id}/files/{fileName}/content")
+                .resolveTemplate("id", attemptId)
+                .resolveTemplate("fileName", fileName)
+                .queryParam("offset", offset)
+                .request()
+                .headers(this.headers.get())
+                .buildGet();
+
+        return invokeWithRetry(request)
+                .readEntity(InputStream.class);
+    }
+
+    // returns last bytes of decompressed contents of a log file
+    public InputStream getLogFileTail(Id attemptId, String fileName, long tailBytes)
+    {
+        Invocation request = target("/api/logs/{id}/files/{fileName}/content")
+                .resolveTemplate("id", attemptId)
+                .resolveTemplate("fileName", fileName)
+                .queryParam("tail", tailBytes)
+                .request()
+                .headers(this.headers.get())
+                .buildGet();
+
+        return invokeWithRetry(request)
+                .readEntity(InputStream.class);
+    }
+
+    // returns log lines of tasks running on the server process as they are
+    // written. Each line is prefixed with the task name and a tab. The stream
+    // ends when the attempt finishes or the timeout expires. This doesn't
+    // include lines written before this call or by other processes.
+    //
+    // This is not retried because the server refuses followers with 503 when
+    // too many clients are following. Callers should read log files instead.
+    public InputStream followLogs(Id attemptId, Optional<String> taskName, int timeoutSeconds)
+    {
+        Response res = target("/api/logs/{id}/live")
+                .resolveTemplate("id", attemptId)
+                .queryParam("task", taskName.orNull())
+                .queryParam("timeout", timeoutSeconds)
+                .request()
+                .headers(this.headers.get())
+                .get();
+        if (res.getStatusInfo().getFamily() != SUCCESSFUL) {
+            res.close();
+            return handleErrorStatus(res);
+        }
+        return res.readEntity(InputStream.class);
+    }
+
     private Response invokeWithRetry(Invocation request)
     {
         Retryer<Response> retryer = RetryerBuilder.<Response>newBuilder()
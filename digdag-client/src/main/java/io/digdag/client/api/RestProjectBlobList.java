@@ -0,0 +1,19 @@
+package io.digdag.client.api;
+
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import java.util.List;
+import org.immutables.value.Value;
+
+@Value.Immutable
+@JsonDeserialize(as = ImmutableRestProjectBlobList.class)
+public interface RestProjectBlobList
+{
+    List<String> getDigests();
+
+    static RestProjectBlobList of(List<String> digests)
+    {
+        return ImmutableRestProjectBlobList.builder()
+            .digests(digests)
+            .build();
+    }
+}
@@ -0,0 +1,40 @@
+package io.digdag.client.api;
+
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.google.common.base.Optional;
+import java.util.List;
+import org.immutables.value.Value;
+
+@Value.Immutable
+@Value.Enclosing
+@JsonDeserialize(as = ImmutableRestProjectManifest.class)
+public interface RestProjectManifest
+{
+    List<Entry> getFiles();
+
+    @Value.Immutable
+    @JsonDeserialize(as = ImmutableRestProjectManifest.Entry.class)
+    interface Entry
+    {
+        String getName();
+
+        // lowercase hex of SHA-256 of the contents. absent if this is a symbolic link
+        Optional<String> getDigest();
+
+        long getSize();
+
+        int getMode();
+
+        Optional<String> getLinkName();
+
+        static ImmutableRestProjectManifest.Entry.Builder builder()
+        {
+            return ImmutableRestProjectManifest.Entry.builder();
+        }
+    }
+
+    static ImmutableRestProjectManifest.Builder builder()
+    {
+        return ImmutableRestProjectManifest.builder();
+    }
+}
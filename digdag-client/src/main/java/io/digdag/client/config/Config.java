@@ -13,6 +13,7 @@ import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.POJONode;
 import com.fasterxml.jackson.databind.RuntimeJsonMappingException;
 import com.fasterxml.jackson.databind.JavaType;
 import com.fasterxml.jackson.annotation.JsonCreator;
@@ -40,6 +41,7 @@ public class Config
     protected Config(Config config)
     {
         this.mapper = config.mapper;
+        // values that are not set yet are copied as they are. a subclass copies its state to set them
         this.object = config.object.deepCopy();
     }
 
@@ -55,6 +57,13 @@ public class Config
 
     @JsonValue
     public ObjectNode getInternalObjectNode()
+    {
+        return getCompleteObjectNode();
+    }
+
+    // Returns the object node with all values set. A subclass that sets
+    // values when they're read first overrides this to set all of them.
+    protected ObjectNode getCompleteObjectNode()
     {
         return object;
     }
@@ -89,7 +98,7 @@ public class Config
 
     public Config setNested(String key, Config v)
     {
-        setNode(key, v.object);
+        setNode(key, v.getCompleteObjectNode());
         return this;
     }
 
@@ -114,7 +123,7 @@ public class Config
         return new Iterable<Map.Entry<String, JsonNode>>() {
             public Iterator<Map.Entry<String, JsonNode>> iterator()
             {
-                return object.fields();
+                return getCompleteObjectNode().fields();
             }
         };
     }
@@ -132,13 +141,13 @@ public class Config
 
     public Config merge(Config other)
     {
-        mergeJsonObject(object, other.deepCopy().object);
+        mergeJsonObject(object, other.getCompleteObjectNode());
         return this;
     }
 
     public Config mergeDefault(Config other)
     {
-        mergeDefaultJsonObject(object, other.deepCopy().object);
+        mergeDefaultJsonObject(object, other.getCompleteObjectNode());
         return this;
     }
 
@@ -152,7 +161,8 @@ public class Config
             if (v.isObject() && s != null && s.isObject()) {
                 mergeJsonObject((ObjectNode) s, (ObjectNode) v);
             } else {
-                src.set(pair.getKey(), v);  // keeps order if key exists
+                // copies only the nodes added to src instead of copying entire other
+                src.set(pair.getKey(), v.deepCopy());  // keeps order if key exists
             }
         }
     }
@@ -167,7 +177,7 @@ public class Config
             if (v.isObject() && s != null && s.isObject()) {
                 mergeDefaultJsonObject((ObjectNode) s, (ObjectNode) v);
             } else if (s == null) {
-                src.set(pair.getKey(), v);
+                src.set(pair.getKey(), v.deepCopy());
             }
         }
     }
@@ -192,6 +202,10 @@ public class Config
 
     private JsonNode writeObject(Object obj)
     {
+        if (obj instanceof JsonNode && !(obj instanceof POJONode)) {
+            // copying a tree doesn't need to serialize and parse it
+            return ((JsonNode) obj).deepCopy();
+        }
         try {
             String value = mapper.writeValueAsString(obj);
             return mapper.readTree(value);
@@ -223,7 +237,7 @@ public class Config
 
     public <E> E convert(Class<E> type)
     {
-        return readObject(type, object, null);
+        return readObject(type, getCompleteObjectNode(), null);
     }
 
     public <E> E get(String key, Class<E> type)
@@ -567,7 +581,7 @@ public class Config
     @Override
     public String toString()
     {
-        return object.toString();
+        return getCompleteObjectNode().toString();
     }
 
     @Override
@@ -576,12 +590,12 @@ public class Config
         if (!(other instanceof Config)) {
             return false;
         }
-        return object.equals(((Config) other).object);
+        return getCompleteObjectNode().equals(((Config) other).getCompleteObjectNode());
     }
 
     @Override
     public int hashCode()
     {
-        return object.hashCode();
+        return getCompleteObjectNode().hashCode();
     }
 }
@@ -10,6 +10,7 @@ import okhttp3.internal.tls.SslClient;
 import okhttp3.mockwebserver.MockResponse;
 import okhttp3.mockwebserver.MockWebServer;
 import okhttp3.mockwebserver.QueueDispatcher;
+import okhttp3.mockwebserver.RecordedRequest;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -200,6 +201,41 @@ public class DigdagClientTest
         assertThat(mockWebServer.takeRequest().getPath(), is(logFilePath));
     }
 
+    @Test
+    public void getLogFileWithOffset()
+            throws Exception
+    {
+        String logFileName = "test-task-1.log";
+
+        mockWebServer.enqueue(new MockResponse()
+                .setResponseCode(206)
+                .setBody("bar"));
+
+        InputStream logFileStream = client.getLogFile(Id.of("17"), logFileName, 4);
+
+        assertThat(CharStreams.toString(new InputStreamReader(logFileStream)), is("bar"));
+
+        RecordedRequest request = mockWebServer.takeRequest();
+        assertThat(request.getPath(), is("/api/logs/17/files/" + logFileName));
+        assertThat(request.getHeader("Range"), is("bytes=4-"));
+    }
+
+    @Test
+    public void getLogFileTail()
+            throws Exception
+    {
+        String logFileName = "test-task-1.log";
+
+        mockWebServer.enqueue(new MockResponse()
+                .setBody("bar")
+                .setHeader(CONTENT_TYPE, TEXT_PLAIN));
+
+        InputStream logFileStream = client.getLogFileTail(Id.of("17"), logFileName, 3);
+
+        assertThat(CharStreams.toString(new InputStreamReader(logFileStream)), is("bar"));
+        assertThat(mockWebServer.takeRequest().getPath(), is("/api/logs/17/files/" + logFileName + "/content?tail=3"));
+    }
+
     @Test
     public void getLogFileFailsAfter10Attempts()
             throws Exception
@@ -163,6 +163,39 @@ public class ConfigTest
         assertConfigException(() -> config.parseNested("null_value"), "Parameter 'null_value' must be an object");
     }
 
+    @Test
+    public void mergeDoesntShareNodes()
+    {
+        Config other = newConfig()
+            .set("a", newConfig().set("x", 1))
+            .set("b", newConfig().set("y", 2));
+        config.set("a", newConfig().set("z", 3));
+
+        config.merge(other);
+        assertThat(config, is(newConfig()
+                    .set("a", newConfig().set("z", 3).set("x", 1))
+                    .set("b", newConfig().set("y", 2))));
+
+        // modifying merged config doesn't change the source
+        config.getNested("b").set("y", 10);
+        assertThat(other.getNested("b").get("y", int.class), is(2));
+
+        config.mergeDefault(newConfig().set("c", newConfig().set("w", 4)));
+        Config source = newConfig().set("d", newConfig().set("v", 5));
+        config.mergeDefault(source);
+        config.getNested("d").set("v", 50);
+        assertThat(source.getNested("d").get("v", int.class), is(5));
+    }
+
+    @Test
+    public void setJsonNodeCopiesIt()
+    {
+        Config nested = newConfig().set("k", "v");
+        config.set("nested", nested.getInternalObjectNode());
+        nested.set("k", "changed");
+        assertThat(config.getNested("nested").get("k", String.class), is("v"));
+    }
+
     private void assertConfigException(Runnable func)
     {
         try {
@@ -22,13 +22,16 @@ public interface AgentConfig
 
     int getMaxThreads();
 
+    boolean getLazyEvaluation();
+
     static ImmutableAgentConfig.Builder defaultBuilder()
     {
         return ImmutableAgentConfig.builder()
             .enabled(true)
             .heartbeatInterval(DEFAULT_HEARTBEAT_INTERVAL)
             .lockRetentionTime(DEFAULT_LOCK_RETENTION_TIME)
-            .maxThreads(DEFAULT_MAX_TASK_THREADS);
+            .maxThreads(DEFAULT_MAX_TASK_THREADS)
+            .lazyEvaluation(false);
     }
 
     static AgentConfig convertFrom(Config config)
@@ -38,6 +41,7 @@ public interface AgentConfig
             .heartbeatInterval(config.get("agent.heartbeat-interval", int.class, DEFAULT_HEARTBEAT_INTERVAL))
             .lockRetentionTime(config.get("agent.lock-retention-time", int.class, DEFAULT_LOCK_RETENTION_TIME))
             .maxThreads(config.get("agent.max-task-threads", int.class, DEFAULT_MAX_TASK_THREADS))
+            .lazyEvaluation(config.get("agent.lazy-evaluation", boolean.class, false))
             .build();
     }
 }
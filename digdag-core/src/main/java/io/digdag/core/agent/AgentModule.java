@@ -22,6 +22,8 @@ public class AgentModule
         binder.bind(ConfigEvalEngine.class).in(Scopes.SINGLETON);
         binder.bind(TemplateEngine.class).to(ConfigEvalEngine.class).in(Scopes.SINGLETON);
 
+        binder.bind(ProjectBlobCache.class).in(Scopes.SINGLETON);
+
         // log
         binder.bind(CommandLogger.class).to(TaskContextCommandLogger.class).in(Scopes.SINGLETON);
     }
@@ -8,6 +8,8 @@ import java.util.HashSet;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import io.digdag.client.config.Config;
+import io.digdag.client.config.ConfigException;
+import io.digdag.spi.TemplateException;
 
 class CheckedConfig
     extends Config
@@ -30,10 +32,78 @@ class CheckedConfig
 
     private final UsedKeysSet usedKeys;
 
+    // set if values are evaluated when they're read first
+    private final ConfigEvalEngine.OnDemandEvaluation evaluation;
+    private final Set<String> pendingKeys;
+
     CheckedConfig(Config config, UsedKeysSet usedKeys)
     {
         super(config);
         this.usedKeys = usedKeys;
+        if (config instanceof CheckedConfig && ((CheckedConfig) config).evaluation != null) {
+            this.evaluation = ((CheckedConfig) config).evaluation;
+            this.pendingKeys = new HashSet<>(((CheckedConfig) config).pendingKeys);
+        }
+        else {
+            this.evaluation = null;
+            this.pendingKeys = Collections.emptySet();
+        }
+    }
+
+    CheckedConfig(ConfigEvalEngine.OnDemandEvaluation evaluation, UsedKeysSet usedKeys)
+    {
+        // pending keys are null until they're evaluated. copies of this
+        // config copy only evaluated values.
+        super(evaluation.newPendingConfig());
+        this.usedKeys = usedKeys;
+        this.evaluation = evaluation;
+        this.pendingKeys = new HashSet<>(evaluation.getKeys());
+    }
+
+    private void evaluatePending(String key)
+    {
+        if (pendingKeys.remove(key)) {
+            JsonNode value;
+            try {
+                value = evaluation.evaluate(key);
+            }
+            catch (TemplateException ex) {
+                pendingKeys.add(key);
+                throw new ConfigException(ex.getMessage(), ex);
+            }
+            // evaluated nodes are shared with copies of this config
+            super.setNode(key, value.deepCopy());
+        }
+    }
+
+    @Override
+    protected ObjectNode getCompleteObjectNode()
+    {
+        if (!pendingKeys.isEmpty()) {
+            // evaluates in the order of keys as evaluation with all keys does
+            for (String key : evaluation.getKeys()) {
+                evaluatePending(key);
+            }
+        }
+        return super.getCompleteObjectNode();
+    }
+
+    @Override
+    public Config merge(Config other)
+    {
+        for (String key : other.getKeys()) {
+            evaluatePending(key);
+        }
+        return super.merge(other);
+    }
+
+    @Override
+    public Config mergeDefault(Config other)
+    {
+        for (String key : other.getKeys()) {
+            evaluatePending(key);
+        }
+        return super.mergeDefault(other);
     }
 
     @Override
@@ -53,6 +123,7 @@ class CheckedConfig
     public Config remove(String key)
     {
         this.usedKeys.add(key);
+        pendingKeys.remove(key);
         return super.remove(key);
     }
 
@@ -67,6 +138,7 @@ class CheckedConfig
     protected JsonNode getNode(String key)
     {
         this.usedKeys.add(key);
+        evaluatePending(key);
         return super.getNode(key);
     }
 
@@ -74,6 +146,7 @@ class CheckedConfig
     protected void setNode(String key, JsonNode value)
     {
         this.usedKeys.add(key);
+        pendingKeys.remove(key);
         super.setNode(key, value);
     }
 
@@ -1,7 +1,13 @@
 package io.digdag.core.agent;
 
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.IOException;
@@ -38,7 +44,7 @@ public class ConfigEvalEngine
         "/io/digdag/core/agent/moment.min.js"
     };
 
-    private static final List<String> RUNTIME_JS_CONTENTS;
+    private static final Pattern IDENTIFIER_PATTERN = Pattern.compile("[A-Za-z_$][A-Za-z0-9_$]*");
 
     private static String readResource(String resourceName)
     {
@@ -50,45 +56,237 @@ public class ConfigEvalEngine
         }
     }
 
-    static {
-        ImmutableList.Builder<String> builder = ImmutableList.builder();
+    // loaded when a script engine is created first
+    private static class RuntimeJs
+    {
+        private static final List<String> CONTENTS;
 
-        builder.add(readResource(DIGDAG_JS_RESOURCE_PATH));
-        for (String lib : LIBRARY_JS_RESOURCE_PATHS) {
-            builder.add(readResource(lib));
-        }
+        static {
+            ImmutableList.Builder<String> builder = ImmutableList.builder();
 
-        RUNTIME_JS_CONTENTS = builder.build();
+            builder.add(readResource(DIGDAG_JS_RESOURCE_PATH));
+            for (String lib : LIBRARY_JS_RESOURCE_PATHS) {
+                builder.add(readResource(lib));
+            }
+
+            CONTENTS = builder.build();
+        }
     }
 
     private final ObjectMapper jsonMapper;
-    private final NashornScriptEngineFactory jsEngineFactory;
+    private NashornScriptEngineFactory jsEngineFactory = null;  // created when a template is evaluated first
 
     @Inject
     public ConfigEvalEngine()
     {
         this.jsonMapper = new ObjectMapper();
-        this.jsEngineFactory = new NashornScriptEngineFactory();
+    }
+
+    // a string without $ is same after evaluation. Evaluation of ${...} and $$ needs a script engine.
+    private static boolean isLiteral(String code)
+    {
+        return code.indexOf('$') < 0;
+    }
+
+    private synchronized NashornScriptEngineFactory getJsEngineFactory()
+    {
+        if (jsEngineFactory == null) {
+            jsEngineFactory = new NashornScriptEngineFactory();
+        }
+        return jsEngineFactory;
     }
 
     protected Config eval(Config config, Config params)
         throws TemplateException
     {
-        ObjectNode object = config.convert(ObjectNode.class);
-        ObjectNode built = new Context(params).evalObjectRecursive(object);
+        // evaluation doesn't modify the source object. It doesn't need to copy it.
+        ObjectNode built = new Context(params).evalObjectRecursive(config.getInternalObjectNode());
         return config.getFactory().create(built);
     }
 
+    /**
+     * Evaluates localConfig merged on params using params as the variables.
+     *
+     * This is same with eval(params.deepCopy().merge(localConfig), params)
+     * but the merged config is a layer that shares nodes of params and
+     * localConfig instead of a copy of them.
+     */
+    protected Config evalTaskConfig(Config params, Config localConfig)
+        throws TemplateException
+    {
+        ObjectNode merged = mergedLayer(params.getInternalObjectNode(), localConfig.getInternalObjectNode());
+        ObjectNode built = new Context(params).evalObjectRecursive(merged);
+        return params.getFactory().create(built);
+    }
+
+    /**
+     * Prepares evaluation of localConfig merged on params that evaluates
+     * values of the merged config when they're read first.
+     *
+     * A value is evaluated with the same variables as evalTaskConfig
+     * except that only preceding values that the template refers to by name
+     * are evaluated before it. A template that accesses a preceding value
+     * dynamically (e.g. this[name]) sees the value before evaluation.
+     */
+    OnDemandEvaluation evalTaskConfigOnDemand(Config params, Config localConfig)
+    {
+        ObjectNode merged = mergedLayer(params.getInternalObjectNode(), localConfig.getInternalObjectNode());
+        return new OnDemandEvaluation(params, merged);
+    }
+
+    class OnDemandEvaluation
+    {
+        private final Config params;
+        private final ObjectNode source;
+        private final Map<String, Integer> positions = new HashMap<>();
+        private final Map<String, JsonNode> evaluated = new HashMap<>();
+        private final Context context;
+
+        private OnDemandEvaluation(Config params, ObjectNode source)
+        {
+            this.params = params;
+            this.source = source;
+            this.context = new Context(params);
+            Iterator<String> names = source.fieldNames();
+            while (names.hasNext()) {
+                positions.put(names.next(), positions.size());
+            }
+        }
+
+        // Returns a config that has the keys with null values. Values are set
+        // when they're evaluated so that the source, which shares nodes with
+        // the task request, is not copied.
+        Config newPendingConfig()
+        {
+            ObjectNode pending = source.objectNode();
+            Iterator<String> names = source.fieldNames();
+            while (names.hasNext()) {
+                pending.putNull(names.next());
+            }
+            return params.getFactory().create(pending);
+        }
+
+        List<String> getKeys()
+        {
+            return ImmutableList.copyOf(source.fieldNames());
+        }
+
+        synchronized JsonNode evaluate(String key)
+            throws TemplateException
+        {
+            JsonNode cached = evaluated.get(key);
+            if (cached != null) {
+                return cached;
+            }
+            JsonNode value = source.get(key);
+            if (value == null) {
+                return null;
+            }
+
+            JsonNode result;
+            if (key.equals("_do")) {
+                // don't evaluate _do parameters
+                result = value;
+            }
+            else if (value.isObject()) {
+                // nested objects don't see values of their siblings
+                result = context.evalObjectRecursive((ObjectNode) value);
+            }
+            else if (value.isArray() || value.isTextual()) {
+                ObjectNode scope = source.objectNode();
+                for (String ref : referencedPrecedingKeys(value, positions.get(key))) {
+                    scope.set(ref, evaluate(ref));
+                }
+                if (value.isArray()) {
+                    result = context.evalArrayRecursive(scope, (ArrayNode) value);
+                }
+                else {
+                    result = context.evalValue(scope, value.textValue());
+                }
+            }
+            else {
+                result = value;
+            }
+            evaluated.put(key, result);
+            return result;
+        }
+
+        // names in templates that are keys before the given position, ordered by position
+        private Collection<String> referencedPrecedingKeys(JsonNode value, int position)
+        {
+            TreeMap<Integer, String> refs = new TreeMap<>();
+            collectReferences(value, position, refs);
+            return refs.values();
+        }
+
+        private void collectReferences(JsonNode value, int position, TreeMap<Integer, String> refs)
+        {
+            if (value.isArray()) {
+                for (JsonNode element : value) {
+                    // objects in an array don't see values of their siblings
+                    if (!element.isObject()) {
+                        collectReferences(element, position, refs);
+                    }
+                }
+            }
+            else if (value.isTextual() && value.textValue().contains("${")) {
+                Matcher m = IDENTIFIER_PATTERN.matcher(value.textValue());
+                while (m.find()) {
+                    Integer pos = positions.get(m.group());
+                    if (pos != null && pos < position) {
+                        refs.put(pos, m.group());
+                    }
+                }
+            }
+        }
+    }
+
+    // Same with Config.merge but shares nodes of base and layer. The returned object
+    // must not be modified because modifying it changes base or layer. Evaluation
+    // builds new nodes from it except values that are immutable.
+    private static ObjectNode mergedLayer(ObjectNode base, ObjectNode layer)
+    {
+        ObjectNode merged = base.objectNode();
+        merged.setAll(base);
+        Iterator<Map.Entry<String, JsonNode>> ite = layer.fields();
+        while (ite.hasNext()) {
+            Map.Entry<String, JsonNode> pair = ite.next();
+            JsonNode s = base.get(pair.getKey());
+            JsonNode v = pair.getValue();
+            if (v.isObject() && s != null && s.isObject()) {
+                merged.set(pair.getKey(), mergedLayer((ObjectNode) s, (ObjectNode) v));
+            }
+            else {
+                merged.set(pair.getKey(), v);  // keeps order if key exists
+            }
+        }
+        return merged;
+    }
+
+    // Params with local values set. Same with params.deepCopy() and set(key, value)
+    // for each local value but shares nodes of them. The returned object must not
+    // be modified.
+    private static ObjectNode scopedLayer(ObjectNode params, ObjectNode local)
+    {
+        if (local.size() == 0) {
+            return params;
+        }
+        ObjectNode scoped = params.objectNode();
+        scoped.setAll(params);
+        scoped.setAll(local);
+        return scoped;
+    }
+
     private Invocable newTemplateInvocable(Config params)
     {
-        ScriptEngine jsEngine = jsEngineFactory.getScriptEngine(new String[] {
+        ScriptEngine jsEngine = getJsEngineFactory().getScriptEngine(new String[] {
             //"--language=es6",  // this is not even accepted with jdk1.8.0_20 and has a bug with jdk1.8.0_51
             "--no-java",
             "--no-syntax-extensions",
             "-timezone=" + params.get("timezone", String.class),
         });
         try {
-            for (String runtimeJs : RUNTIME_JS_CONTENTS) {
+            for (String runtimeJs : RuntimeJs.CONTENTS) {
                 jsEngine.eval(runtimeJs);
             }
         }
@@ -98,7 +296,7 @@ public class ConfigEvalEngine
         return (Invocable) jsEngine;
     }
 
-    private String invokeTemplate(Invocable templateInvocable, String code, Config params)
+    private String invokeTemplate(Invocable templateInvocable, String code, JsonNode params)
         throws TemplateException
     {
         String context;
@@ -132,12 +330,19 @@ public class ConfigEvalEngine
     private class Context
     {
         private final Config params;
-        private final Invocable templateInvocable;
+        private Invocable templateInvocable = null;  // created when a template is evaluated first
 
         public Context(Config params)
         {
             this.params = params;
-            this.templateInvocable = newTemplateInvocable(params);
+        }
+
+        private Invocable templateInvocable()
+        {
+            if (templateInvocable == null) {
+                templateInvocable = newTemplateInvocable(params);
+            }
+            return templateInvocable;
         }
 
         private ObjectNode evalObjectRecursive(ObjectNode local)
@@ -148,8 +353,9 @@ public class ConfigEvalEngine
                 JsonNode value = pair.getValue();
                 JsonNode evaluated;
                 if (pair.getKey().equals("_do")) {
-                    // don't evaluate _do parameters
-                    evaluated = value;
+                    // don't evaluate _do parameters. the value is copied because
+                    // it's a node of the source that operators may modify.
+                    evaluated = value.deepCopy();
                 }
                 else if (value.isObject()) {
                     evaluated = evalObjectRecursive((ObjectNode) value);
@@ -198,11 +404,11 @@ public class ConfigEvalEngine
         private JsonNode evalValue(ObjectNode local, String code)
             throws TemplateException
         {
-            Config scopedParams = params.deepCopy();
-            for (Map.Entry<String, JsonNode> pair : ImmutableList.copyOf(local.fields())) {
-                scopedParams.set(pair.getKey(), pair.getValue());
+            if (isLiteral(code)) {
+                return jsonMapper.getNodeFactory().textNode(code);
             }
-            String resultText = invokeTemplate(templateInvocable, code, scopedParams);
+            ObjectNode scopedParams = scopedLayer(params.getInternalObjectNode(), local);
+            String resultText = invokeTemplate(templateInvocable(), code, scopedParams);
             if (resultText == null) {
                 return jsonMapper.getNodeFactory().nullNode();
             }
@@ -216,8 +422,11 @@ public class ConfigEvalEngine
     public String template(String content, Config params)
         throws TemplateException
     {
+        if (isLiteral(content)) {
+            return content;
+        }
         Invocable templateInvocable = newTemplateInvocable(params);
-        String resultText = invokeTemplate(templateInvocable, content, params);
+        String resultText = invokeTemplate(templateInvocable, content, params.getInternalObjectNode());
         if (resultText == null) {
             return "";
         }
@@ -1,13 +1,20 @@
 package io.digdag.core.agent;
 
 import com.google.common.base.Optional;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.inject.Inject;
+import io.digdag.client.config.Config;
 import io.digdag.core.TempFileManager.TempDir;
 import io.digdag.core.TempFileManager;
 import io.digdag.core.archive.ProjectArchives;
+import io.digdag.core.archive.ProjectManifest;
 import io.digdag.spi.StorageObject;
 import io.digdag.spi.TaskRequest;
 import java.io.IOException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import javax.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -17,11 +24,34 @@ public class ExtractArchiveWorkspaceManager
     private final Logger logger = LoggerFactory.getLogger(getClass());
 
     private final TempFileManager tempFiles;
+    private final ProjectBlobCache blobCache;
+    private final Optional<ExecutorService> extractWriter;
 
     @Inject
-    public ExtractArchiveWorkspaceManager(TempFileManager tempFiles)
+    public ExtractArchiveWorkspaceManager(Config systemConfig, TempFileManager tempFiles, ProjectBlobCache blobCache)
     {
         this.tempFiles = tempFiles;
+        this.blobCache = blobCache;
+        int extractThreads = systemConfig.get("agent.workspace.extract-threads", int.class, 4);
+        if (extractThreads > 0) {
+            // shared by all tasks. gzip decompression runs on the task thread
+            this.extractWriter = Optional.of(Executors.newFixedThreadPool(extractThreads,
+                        new ThreadFactoryBuilder()
+                        .setDaemon(true)
+                        .setNameFormat("workspace-extract-%d")
+                        .build()));
+        }
+        else {
+            this.extractWriter = Optional.absent();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown()
+    {
+        if (extractWriter.isPresent()) {
+            extractWriter.get().shutdown();
+        }
     }
 
     @Override
@@ -29,9 +59,18 @@ public class ExtractArchiveWorkspaceManager
             throws IOException
     {
         try (TempDir workspacePath = createNewWorkspace(request)) {
-            Optional<StorageObject> in = archiveProvider.open();
-            if (in.isPresent()) {
-                ProjectArchives.extractTarArchive(workspacePath.get(), in.get().getContentInputStream());
+            Optional<ProjectManifest> manifest = archiveProvider.openManifest();
+            if (manifest.isPresent()) {
+                // files are copied from local blob cache. only new blobs are downloaded
+                ProjectArchives.extractManifest(workspacePath.get(), manifest.get(),
+                        (digest) -> blobCache.get(digest, archiveProvider::openBlob));
+            }
+            else {
+                Optional<StorageObject> in = archiveProvider.open();
+                if (in.isPresent()) {
+                    ProjectArchives.extractTarArchive(workspacePath.get(), in.get().getContentInputStream(),
+                            null, extractWriter.transform(it -> (Executor) it));
+                }
             }
             return func.run(workspacePath.get());
         }
@@ -24,6 +24,7 @@ import io.digdag.core.session.AttemptStateFlags;
 import io.digdag.core.session.StoredSessionAttemptWithSession;
 import io.digdag.core.repository.StoredRevision;
 import io.digdag.core.repository.ArchiveType;
+import io.digdag.core.archive.ProjectManifest;
 import io.digdag.core.storage.ArchiveManager;
 import io.digdag.core.queue.TaskQueueServerManager;
 import io.digdag.core.log.LogServerManager;
@@ -89,7 +90,7 @@ public class InProcessTaskCallbackApi
         catch (ResourceNotFoundException ex) {
             throw new RuntimeException(ex);
         }
-        return lm.newInProcessTaskLogger(agentId, prefix, taskName);
+        return lm.newInProcessTaskLogger(agentId, prefix, attemptId, taskName);
     }
 
     @Override
@@ -130,6 +131,48 @@ public class InProcessTaskCallbackApi
         }
     }
 
+    @Override
+    public Optional<ProjectManifest> getProjectManifest(TaskRequest request)
+        throws IOException
+    {
+        if (!request.getRevision().isPresent()) {
+            return Optional.absent();
+        }
+
+        try {
+            return archiveManager.getManifest(
+                    pm.getProjectStore(request.getSiteId()),
+                    request.getProjectId(),
+                    request.getRevision().get());
+        }
+        catch (ResourceNotFoundException ex) {
+            throw new IllegalStateException(String.format(ENGLISH,
+                        "Manifest for project id=%d revision='%s' is not found in database",
+                        request.getProjectId(),
+                        request.getRevision().or("")
+                        ), ex);
+        }
+    }
+
+    @Override
+    public StorageObject openProjectBlob(TaskRequest request, String digest)
+        throws IOException
+    {
+        try {
+            return archiveManager.openBlob(
+                    pm.getProjectStore(request.getSiteId()),
+                    request.getProjectId(),
+                    digest);
+        }
+        catch (ResourceNotFoundException | StorageFileNotFoundException ex) {
+            throw new IllegalStateException(String.format(ENGLISH,
+                        "Blob %s of project id=%d is not found",
+                        digest,
+                        request.getProjectId()
+                        ), ex);
+        }
+    }
+
     @Override
     public void taskSucceeded(int siteId,
             long taskId, String lockId, AgentId agentId,
@@ -8,6 +8,7 @@ import com.fasterxml.jackson.databind.JsonNode;
 import io.digdag.client.config.Config;
 import io.digdag.client.config.ConfigException;
 import io.digdag.client.config.ConfigFactory;
+import io.digdag.core.archive.ProjectManifest;
 import io.digdag.core.log.LogLevel;
 import io.digdag.core.log.TaskContextLogging;
 import io.digdag.core.log.TaskLogger;
@@ -23,6 +24,7 @@ import io.digdag.spi.SecretAccessPolicy;
 import io.digdag.spi.SecretSelector;
 import io.digdag.spi.SecretStore;
 import io.digdag.spi.SecretStoreManager;
+import io.digdag.spi.StorageObject;
 import io.digdag.spi.TaskExecutionException;
 import io.digdag.spi.TaskRequest;
 import io.digdag.spi.TaskResult;
@@ -137,10 +139,37 @@ public class OperatorManager
         }
     }
 
+    private WorkspaceManager.ArchiveProvider newArchiveProvider(TaskRequest request)
+    {
+        return new WorkspaceManager.ArchiveProvider()
+        {
+            @Override
+            public Optional<StorageObject> open()
+                throws IOException
+            {
+                return callback.openArchive(request);
+            }
+
+            @Override
+            public Optional<ProjectManifest> openManifest()
+                throws IOException
+            {
+                return callback.getProjectManifest(request);
+            }
+
+            @Override
+            public StorageObject openBlob(String digest)
+                throws IOException
+            {
+                return callback.openProjectBlob(request, digest);
+            }
+        };
+    }
+
     private void runWithHeartbeat(TaskRequest request)
     {
         try {
-            workspaceManager.withExtractedArchive(request, () -> callback.openArchive(request), (projectPath) -> {
+            workspaceManager.withExtractedArchive(request, newArchiveProvider(request), (projectPath) -> {
                 try {
                     runWithWorkspace(projectPath, request);
                 }
@@ -195,12 +224,21 @@ public class OperatorManager
         // evaluate config and creates the complete merged config.
         Config config;
         try {
-            Config all = RuntimeParams.buildRuntimeParams(request.getConfig().getFactory(), request).deepCopy();
-            all.merge(request.getConfig());  // export / carry params (TaskRequest.config sent by WorkflowExecutor doesn't include config of this task)
-            Config evalParams = all.deepCopy();
-            all.merge(request.getLocalConfig());
-
-            config = evalEngine.eval(all, evalParams);
+            Config evalParams = RuntimeParams.buildRuntimeParams(request.getConfig().getFactory(), request);
+            evalParams.merge(request.getConfig());  // export / carry params (TaskRequest.config sent by WorkflowExecutor doesn't include config of this task)
+
+            // evaluates params merged with local config
+            if (agentConfig.getLazyEvaluation()) {
+                // values are evaluated when they're read first. keys read by
+                // this method are not counted as keys used by the operator.
+                config = new CheckedConfig(
+                        evalEngine.evalTaskConfigOnDemand(evalParams, request.getLocalConfig()),
+                        new CheckedConfig.UsedKeysSet());
+            }
+            else {
+                config = evalEngine.evalTaskConfig(evalParams, request.getLocalConfig());
+                logger.debug("evaluated config: {}", config);
+            }
         }
         catch (TemplateException ex) {
             throw new ConfigException(ex.getMessage(), ex);
@@ -211,7 +249,6 @@ public class OperatorManager
         catch (RuntimeException ex) {
             throw new RuntimeException("Failed to process variables", ex);
         }
-        logger.debug("evaluated config: {}", config);
 
         Set<String> shouldBeUsedKeys = new HashSet<>(request.getLocalConfig().getKeys());
 
@@ -247,7 +284,7 @@ public class OperatorManager
 
         Config localConfig = config.getFactory().create();
         for (String localKey : request.getLocalConfig().getKeys()) {
-            localConfig.set(localKey, config.getOptional(localKey, JsonNode.class).transform(JsonNode::deepCopy).orNull());
+            localConfig.set(localKey, config.getOptional(localKey, JsonNode.class).orNull());
         }
 
         // Track accessed keys using UsedKeysSet class
@@ -308,8 +345,10 @@ public class OperatorManager
         // Operator can drop access to access to unnecessary secrets
         OperatorSecretFilter operatorSecretFilter = new OperatorSecretFilter(factory);
 
+        // Secrets that the operator declared are fetched at once when it accesses a secret first
         DefaultSecretProvider secretProvider = new DefaultSecretProvider(
-                secretContext, secretAccessPolicy, grants, operatorSecretFilter, secretStore);
+                secretContext, secretAccessPolicy, grants, operatorSecretFilter, secretStore,
+                operatorSecretFilter.getPredeclaredSecretKeys());
 
         PrivilegedVariables privilegedVariables = GrantedPrivilegedVariables.build(
                 mergedRequest.getLocalConfig().getNestedOrGetEmpty("_env"),
@@ -336,6 +375,11 @@ public class OperatorManager
                     factory.getSecretAccessList().getSecretKeys());
         }
 
+        Set<String> getPredeclaredSecretKeys()
+        {
+            return predeclaredSecretKeys;
+        }
+
         void allowUserSecretAccess(Operator operator)
         {
             this.userSecretAccessFilter = (key) -> operator.testUserSecretAccess(key);
@@ -0,0 +1,104 @@
+package io.digdag.core.agent;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import com.google.common.base.Optional;
+import com.google.common.io.BaseEncoding;
+import com.google.common.io.ByteStreams;
+import com.google.inject.Inject;
+import io.digdag.client.config.Config;
+import io.digdag.core.TempFileManager;
+import io.digdag.core.TempFileManager.TempDir;
+import io.digdag.core.storage.ProjectBlobStore;
+import io.digdag.spi.StorageObject;
+
+/**
+ * Local cache of project blobs used to build workspaces of revisions
+ * pushed using a manifest. A blob is downloaded only once per agent and
+ * copied to workspaces from the cache afterwards.
+ *
+ * Blobs are stored at agent.blob-cache.path if it's set. Otherwise, a
+ * temporary directory is used and the cache is discarded when the process
+ * exits.
+ */
+public class ProjectBlobCache
+{
+    public interface BlobOpener
+    {
+        StorageObject open(String digest) throws IOException;
+    }
+
+    private final Optional<Path> configuredPath;
+    private final TempFileManager tempFiles;
+    private TempDir tempDir;
+
+    @Inject
+    public ProjectBlobCache(Config systemConfig, TempFileManager tempFiles)
+    {
+        this.configuredPath = systemConfig.getOptional("agent.blob-cache.path", String.class)
+            .transform(it -> Paths.get(it).toAbsolutePath().normalize());
+        this.tempFiles = tempFiles;
+    }
+
+    public Path get(String digest, BlobOpener opener)
+        throws IOException
+    {
+        ProjectBlobStore.validateDigest(digest);
+
+        Path dir = getCacheDir().resolve(digest.substring(0, 2));
+        Path path = dir.resolve(digest);
+        if (Files.exists(path)) {
+            return path;
+        }
+
+        Files.createDirectories(dir);
+        Path temp = Files.createTempFile(dir, digest, ".tmp");
+        try {
+            MessageDigest md = newSha256();
+            StorageObject blob = opener.open(digest);
+            try (InputStream in = new DigestInputStream(blob.getContentInputStream(), md);
+                    OutputStream out = Files.newOutputStream(temp)) {
+                ByteStreams.copy(in, out);
+            }
+            String actual = BaseEncoding.base16().lowerCase().encode(md.digest());
+            if (!actual.equals(digest)) {
+                throw new IOException("Downloaded blob is broken. Expected SHA-256 " + digest + " but got " + actual);
+            }
+            // other threads may download the same blob concurrently. they have the same contents
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        finally {
+            Files.deleteIfExists(temp);
+        }
+        return path;
+    }
+
+    private synchronized Path getCacheDir()
+    {
+        if (configuredPath.isPresent()) {
+            return configuredPath.get();
+        }
+        if (tempDir == null) {
+            tempDir = tempFiles.createTempDir("blob-cache");
+        }
+        return tempDir.get();
+    }
+
+    private static MessageDigest newSha256()
+    {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        }
+        catch (NoSuchAlgorithmException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+}
@@ -6,6 +6,7 @@ import java.io.IOException;
 import com.google.common.base.Optional;
 import io.digdag.client.config.Config;
 import io.digdag.core.log.TaskLogger;
+import io.digdag.core.archive.ProjectManifest;
 import io.digdag.spi.TaskResult;
 import io.digdag.spi.TaskRequest;
 import io.digdag.spi.StorageObject;
@@ -23,6 +24,13 @@ public interface TaskCallbackApi
     Optional<StorageObject> openArchive(TaskRequest request)
         throws IOException;
 
+    // returns absent if the revision is not pushed using a manifest
+    Optional<ProjectManifest> getProjectManifest(TaskRequest request)
+        throws IOException;
+
+    StorageObject openProjectBlob(TaskRequest request, String digest)
+        throws IOException;
+
     void taskSucceeded(int siteId,
             long taskId, String lockId, AgentId agentId,
             TaskResult result);
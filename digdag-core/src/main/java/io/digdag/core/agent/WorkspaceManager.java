@@ -5,12 +5,19 @@ import java.io.IOException;
 import com.google.common.base.Optional;
 import io.digdag.spi.TaskRequest;
 import io.digdag.spi.StorageObject;
+import io.digdag.core.archive.ProjectManifest;
 
 public interface WorkspaceManager
 {
     public interface ArchiveProvider
     {
         public Optional<StorageObject> open() throws IOException;
+
+        // returns absent if the archive is not pushed using a manifest
+        public Optional<ProjectManifest> openManifest() throws IOException;
+
+        // opens a blob of a file listed in the manifest
+        public StorageObject openBlob(String digest) throws IOException;
     }
 
     public interface WithWorkspaceAction<T>
@@ -0,0 +1,157 @@
+package io.digdag.core.archive;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.GZIPOutputStream;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Gzip output stream that compresses chunks of data on multiple threads.
+ *
+ * Each chunk is written as an independent gzip member. The output is a
+ * valid gzip file but readers must support concatenated members (e.g.
+ * GzipCompressorInputStream with decompressConcatenated = true). Digdag
+ * servers older than the one that added this class read only the first
+ * member. Thus this stream must be used only when the reader is known.
+ */
+public class ParallelGzipOutputStream
+    extends FilterOutputStream
+{
+    private static final int DEFAULT_CHUNK_SIZE = 1024 * 1024;
+
+    private final ExecutorService executor;
+    private final int chunkSize;
+    private final int maxPendingChunks;
+    private final Deque<Future<byte[]>> pending = new ArrayDeque<>();
+    private byte[] buffer;
+    private int position;
+    private boolean closed;
+
+    public ParallelGzipOutputStream(OutputStream out, int threads)
+    {
+        this(out, threads, DEFAULT_CHUNK_SIZE);
+    }
+
+    public ParallelGzipOutputStream(OutputStream out, int threads, int chunkSize)
+    {
+        super(out);
+        this.executor = Executors.newFixedThreadPool(threads,
+                new ThreadFactoryBuilder()
+                .setDaemon(true)
+                .setNameFormat("gzip-compressor-%d")
+                .build());
+        this.chunkSize = chunkSize;
+        this.maxPendingChunks = threads * 2;
+        this.buffer = new byte[chunkSize];
+    }
+
+    @Override
+    public void write(int b)
+        throws IOException
+    {
+        buffer[position++] = (byte) b;
+        if (position == chunkSize) {
+            submitChunk();
+        }
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len)
+        throws IOException
+    {
+        while (len > 0) {
+            int n = Math.min(len, chunkSize - position);
+            System.arraycopy(b, off, buffer, position, n);
+            position += n;
+            off += n;
+            len -= n;
+            if (position == chunkSize) {
+                submitChunk();
+            }
+        }
+    }
+
+    // flush doesn't end the current chunk so that small writes don't make small members
+    @Override
+    public void flush()
+        throws IOException
+    {
+        out.flush();
+    }
+
+    public void finish()
+        throws IOException
+    {
+        if (position > 0 || pending.isEmpty()) {
+            // an empty input still needs one member to be a valid gzip file
+            submitChunk();
+        }
+        while (!pending.isEmpty()) {
+            writeNextChunk();
+        }
+    }
+
+    @Override
+    public void close()
+        throws IOException
+    {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            finish();
+            out.close();
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void submitChunk()
+        throws IOException
+    {
+        byte[] chunk = buffer;
+        int length = position;
+        pending.addLast(executor.submit(() -> compress(chunk, length)));
+        buffer = new byte[chunkSize];
+        position = 0;
+        while (pending.size() >= maxPendingChunks) {
+            writeNextChunk();
+        }
+    }
+
+    private void writeNextChunk()
+        throws IOException
+    {
+        Future<byte[]> future = pending.removeFirst();
+        try {
+            out.write(future.get());
+        }
+        catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while compressing data", ex);
+        }
+        catch (ExecutionException ex) {
+            throw new IOException("Failed to compress data", ex.getCause());
+        }
+    }
+
+    private static byte[] compress(byte[] data, int length)
+        throws IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(length / 2 + 64);
+        try (GZIPOutputStream gz = new GZIPOutputStream(bytes)) {
+            gz.write(data, 0, length);
+        }
+        return bytes.toByteArray();
+    }
+}
@@ -1,5 +1,7 @@
 package io.digdag.core.archive;
 
+import com.google.common.base.Optional;
+import com.google.common.base.Throwables;
 import com.google.common.io.ByteStreams;
 import java.io.BufferedInputStream;
 import java.io.IOException;
@@ -9,14 +11,25 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.attribute.PosixFilePermission;
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
 import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
 import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
 import org.apache.commons.compress.compressors.gzip.GzipCompressorInputStream;
 
 public class ProjectArchives
 {
+    // files larger than this are written by the decompressing thread
+    private static final int PARALLEL_WRITE_MAX_FILE_SIZE = 1024 * 1024;
+    // limits memory used to pass contents to writer threads
+    private static final int PARALLEL_WRITE_MAX_BUFFERED_BYTES = 32 * 1024 * 1024;
+
     private ProjectArchives()
     { }
 
@@ -27,6 +40,12 @@ public class ProjectArchives
         void symlink(Path file, String dest);
     }
 
+    public static interface BlobFileProvider
+    {
+        // returns a local file that has contents of the blob
+        Path get(String digest) throws IOException;
+    }
+
     public static void extractTarArchive(Path destDir, InputStream in)
         throws IOException
     {
@@ -36,12 +55,32 @@ public class ProjectArchives
     public static void extractTarArchive(Path destDir, InputStream in, ExtractListener listener)
         throws IOException
     {
-        try (TarArchiveInputStream archive = new TarArchiveInputStream(new GzipCompressorInputStream(new BufferedInputStream(in, 16*1024)))) {
-            extractArchive(destDir.toAbsolutePath().normalize(), archive, listener);
+        extractTarArchive(destDir, in, listener, Optional.absent());
+    }
+
+    /**
+     * Extracts a tar.gz archive. If writer is set, gzip decompression runs on
+     * the calling thread and contents of small files are written to files on
+     * the writer in parallel. This method returns after all files are written.
+     */
+    public static void extractTarArchive(Path destDir, InputStream in, ExtractListener listener, Optional<Executor> writer)
+        throws IOException
+    {
+        // decompressConcatenated to accept archives compressed by ParallelGzipOutputStream
+        try (TarArchiveInputStream archive = new TarArchiveInputStream(new GzipCompressorInputStream(new BufferedInputStream(in, 64*1024), true))) {
+            ParallelFileWriter parallelWriter = writer.isPresent() ? new ParallelFileWriter(writer.get()) : null;
+            try {
+                extractArchive(destDir.toAbsolutePath().normalize(), archive, listener, parallelWriter);
+            }
+            finally {
+                if (parallelWriter != null) {
+                    parallelWriter.await();
+                }
+            }
         }
     }
 
-    private static void extractArchive(Path destDir, TarArchiveInputStream archive, ExtractListener listener)
+    private static void extractArchive(Path destDir, TarArchiveInputStream archive, ExtractListener listener, ParallelFileWriter parallelWriter)
         throws IOException
     {
         String prefix = destDir.toString();
@@ -68,6 +107,10 @@ public class ProjectArchives
                 if (listener != null) {
                     listener.symlink(destDir.relativize(path), dest);
                 }
+                if (parallelWriter != null) {
+                    // setting permissions follows the link. link destination must be written
+                    parallelWriter.await();
+                }
                 Files.createSymbolicLink(path, Paths.get(dest));
             }
             else {
@@ -75,6 +118,10 @@ public class ProjectArchives
                 if (listener != null) {
                     listener.file(destDir.relativize(path));
                 }
+                if (parallelWriter != null && entry.getSize() <= PARALLEL_WRITE_MAX_FILE_SIZE) {
+                    parallelWriter.write(path, archive, (int) entry.getSize(), getPosixFilePermissions(entry));
+                    continue;
+                }
                 try (OutputStream out = Files.newOutputStream(path)) {
                     ByteStreams.copy(archive, out);
                 }
@@ -83,9 +130,138 @@ public class ProjectArchives
         }
     }
 
+    private static class ParallelFileWriter
+    {
+        private final Executor executor;
+        private final Semaphore bufferedBytes = new Semaphore(PARALLEL_WRITE_MAX_BUFFERED_BYTES);
+        private final List<CompletableFuture<Void>> pending = new ArrayList<>();
+
+        ParallelFileWriter(Executor executor)
+        {
+            this.executor = executor;
+        }
+
+        void write(Path path, InputStream in, int size, Set<PosixFilePermission> perms)
+            throws IOException
+        {
+            acquire(size);
+            byte[] data;
+            try {
+                data = new byte[size];
+                ByteStreams.readFully(in, data);
+            }
+            catch (IOException | RuntimeException ex) {
+                bufferedBytes.release(size);
+                throw ex;
+            }
+            pending.add(CompletableFuture.runAsync(() -> {
+                try {
+                    Files.write(path, data);
+                    Files.setPosixFilePermissions(path, perms);
+                }
+                catch (IOException ex) {
+                    throw Throwables.propagate(ex);
+                }
+                finally {
+                    bufferedBytes.release(size);
+                }
+            }, executor));
+        }
+
+        private void acquire(int size)
+            throws IOException
+        {
+            try {
+                bufferedBytes.acquire(size);
+            }
+            catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while extracting an archive", ex);
+            }
+        }
+
+        void await()
+            throws IOException
+        {
+            try {
+                CompletableFuture.allOf(pending.toArray(new CompletableFuture[pending.size()])).join();
+            }
+            catch (CompletionException ex) {
+                Throwable cause = ex.getCause();
+                if (cause instanceof RuntimeException && cause.getCause() instanceof IOException) {
+                    throw (IOException) cause.getCause();
+                }
+                throw Throwables.propagate(cause);
+            }
+            finally {
+                pending.clear();
+            }
+        }
+    }
+
+    public static void extractManifest(Path destDir, ProjectManifest manifest, BlobFileProvider blobs)
+        throws IOException
+    {
+        destDir = destDir.toAbsolutePath().normalize();
+        Files.createDirectories(destDir);
+        Path realDestDir = destDir.toRealPath();
+        for (ProjectManifest.Entry entry : manifest.getFiles()) {
+            Path path = destDir.resolve(entry.getName()).normalize();
+            // Path.startsWith compares name elements. "/tmp/ws2/a" doesn't start with "/tmp/ws".
+            if (!path.startsWith(destDir) || path.equals(destDir)) {
+                throw new RuntimeException("Manifest includes an invalid entry: " + entry.getName());
+            }
+            // names are checked only as text. a symlink extracted before may point
+            // the parent directory to outside of destDir (e.g. "a -> b/.." where b is
+            // a link to ".."). resolve links before creating anything under it.
+            if (!isInside(realDestDir, path.getParent())) {
+                throw new RuntimeException("Manifest includes an entry under a symlink pointing outside of the project: " + entry.getName());
+            }
+            Files.createDirectories(path.getParent());
+            if (entry.getLinkName().isPresent()) {
+                String dest = entry.getLinkName().get();
+                Path destAbsPath = path.getParent().resolve(dest).normalize();
+                // the target is resolved without normalize so that ".." after a symlink follows the link
+                if (!destAbsPath.startsWith(destDir) || !isInside(realDestDir, path.getParent().resolve(dest))) {
+                    throw new RuntimeException("Manifest includes an invalid symlink: " + entry.getName() + " -> " + dest);
+                }
+                Files.createSymbolicLink(path, Paths.get(dest));
+                // setting permissions follows the link. permissions of a symlink are not used
+            }
+            else {
+                // copy instead of link so that tasks can't modify cached blobs
+                Files.copy(blobs.get(entry.getDigest().get()), path);
+                Files.setPosixFilePermissions(path, getPosixFilePermissions(entry.getMode()));
+            }
+        }
+
+        // a link created later may change the destination of a link created
+        // before it. check destinations after all links exist.
+        for (ProjectManifest.Entry entry : manifest.getFiles()) {
+            if (entry.getLinkName().isPresent() && !isInside(realDestDir, destDir.resolve(entry.getName()))) {
+                throw new RuntimeException("Manifest includes an invalid symlink: " + entry.getName() + " -> " + entry.getLinkName().get());
+            }
+        }
+    }
+
+    // true if the real path of the nearest existing ancestor of the path is in realDir
+    private static boolean isInside(Path realDir, Path path)
+        throws IOException
+    {
+        Path existing = path;
+        while (existing != null && !Files.exists(existing)) {
+            existing = existing.getParent();
+        }
+        return existing != null && existing.toRealPath().startsWith(realDir);
+    }
+
     private static Set<PosixFilePermission> getPosixFilePermissions(TarArchiveEntry entry)
     {
-        int mode = entry.getMode();
+        return getPosixFilePermissions(entry.getMode());
+    }
+
+    private static Set<PosixFilePermission> getPosixFilePermissions(int mode)
+    {
         Set<PosixFilePermission> perms = new HashSet<>();
         if ((mode & 0400) != 0) {
             perms.add(PosixFilePermission.OWNER_READ);
@@ -0,0 +1,98 @@
+package io.digdag.core.archive;
+
+import java.util.Arrays;
+import java.util.List;
+import com.google.common.base.Optional;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import org.immutables.value.Value;
+
+/**
+ * List of files of a project revision pushed using content-addressed blobs.
+ *
+ * Contents of files are stored in the blob store by SHA-256 digest, and a
+ * revision with ArchiveType.MANIFEST stores this manifest as its archive
+ * data instead of a tar.gz archive.
+ */
+@Value.Immutable
+@Value.Enclosing
+@JsonSerialize(as = ImmutableProjectManifest.class)
+@JsonDeserialize(as = ImmutableProjectManifest.class)
+public abstract class ProjectManifest
+{
+    @JsonProperty("files")
+    public abstract List<Entry> getFiles();
+
+    @Value.Immutable
+    @JsonSerialize(as = ImmutableProjectManifest.Entry.class)
+    @JsonDeserialize(as = ImmutableProjectManifest.Entry.class)
+    public static abstract class Entry
+    {
+        @JsonProperty("name")
+        public abstract String getName();
+
+        // absent if this is a symbolic link
+        @JsonProperty("digest")
+        public abstract Optional<String> getDigest();
+
+        @JsonProperty("size")
+        public abstract long getSize();
+
+        @JsonProperty("mode")
+        public abstract int getMode();
+
+        @JsonProperty("link_name")
+        public abstract Optional<String> getLinkName();
+
+        @Value.Check
+        protected void check()
+        {
+            if (getDigest().isPresent() == getLinkName().isPresent()) {
+                throw new IllegalArgumentException("Either digest or link_name must be set: " + getName());
+            }
+            // names come from clients. they must not point outside of a project directory.
+            if (getName().isEmpty() || getName().startsWith("/") || getName().contains("\\") ||
+                    Arrays.asList(getName().split("/")).contains("..")) {
+                throw new IllegalArgumentException("File name must be a relative path without '..': " + getName());
+            }
+            if (getLinkName().isPresent()) {
+                String link = getLinkName().get();
+                int slash = getName().lastIndexOf('/');
+                String target = (slash < 0 ? "" : getName().substring(0, slash + 1)) + link;
+                if (link.startsWith("/") || link.contains("\\") || !isInsideProject(target)) {
+                    throw new IllegalArgumentException("Symbolic link must point to a file in the project: " + getName() + " -> " + link);
+                }
+            }
+        }
+
+        private static boolean isInsideProject(String relativePath)
+        {
+            int depth = 0;
+            for (String segment : relativePath.split("/")) {
+                if (segment.equals("..")) {
+                    depth--;
+                    if (depth < 0) {
+                        return false;
+                    }
+                }
+                else if (!segment.isEmpty() && !segment.equals(".")) {
+                    depth++;
+                }
+            }
+            return true;
+        }
+
+        public static ImmutableProjectManifest.Entry.Builder builder()
+        {
+            return ImmutableProjectManifest.Entry.builder();
+        }
+    }
+
+    public static ProjectManifest of(List<Entry> files)
+    {
+        return ImmutableProjectManifest.builder()
+            .files(files)
+            .build();
+    }
+}
@@ -45,6 +45,15 @@ public class AESGCMSecretCrypto implements SecretCrypto
 {
     private static final SecureRandom SECURE_RANDOM = new SecureRandom();
 
+    private static final ThreadLocal<Cipher> CIPHERS = ThreadLocal.withInitial(() -> {
+        try {
+            return Cipher.getInstance("AES/GCM/NoPadding");
+        }
+        catch (NoSuchAlgorithmException | NoSuchPaddingException e) {
+            throw Throwables.propagate(e);
+        }
+    });
+
     private static final String NAME = "aesgcm";
     private static final byte[] NAME_BYTES = NAME.getBytes(UTF_8);
 
@@ -183,14 +192,9 @@ public class AESGCMSecretCrypto implements SecretCrypto
 
     private Cipher cipher(int encryptMode, SecretKey sharedSecret, byte[] nonce)
     {
-        Cipher result;
-        try {
-            result = Cipher.getInstance("AES/GCM/NoPadding");
-        }
-        catch (NoSuchAlgorithmException | NoSuchPaddingException e1) {
-            throw Throwables.propagate(e1);
-        }
-        Cipher cipher = result;
+        // Cipher.getInstance looks up providers every time. A cipher is reused
+        // by a thread because init resets it.
+        Cipher cipher = CIPHERS.get();
 
         GCMParameterSpec spec = new GCMParameterSpec(GCM_TAG_LENGTH * 8, nonce);
         try {
@@ -15,12 +15,14 @@ class DatabaseSecretControlStore
 {
     private final int siteId;
     private final SecretCrypto crypto;
+    private final SecretCache cache;
 
-    DatabaseSecretControlStore(DatabaseConfig config, DBI dbi, int siteId, SecretCrypto crypto)
+    DatabaseSecretControlStore(DatabaseConfig config, DBI dbi, int siteId, SecretCrypto crypto, SecretCache cache)
     {
         super(config.getType(), dao(config.getType()), dbi);
         this.siteId = siteId;
         this.crypto = crypto;
+        this.cache = cache;
     }
 
     private static Class<? extends Dao> dao(String type)
@@ -45,6 +47,7 @@ class DatabaseSecretControlStore
             dao.upsertProjectSecret(siteId, projectId, scope, key, engine, encrypted);
             return null;
         });
+        cache.invalidate(siteId, projectId, scope, key);
     }
 
     @Override
@@ -54,6 +57,7 @@ class DatabaseSecretControlStore
             dao.deleteProjectSecret(siteId, projectId, scope, key);
             return null;
         });
+        cache.invalidate(siteId, projectId, scope, key);
     }
 
     @Override
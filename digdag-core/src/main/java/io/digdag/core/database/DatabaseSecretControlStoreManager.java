@@ -13,18 +13,25 @@ public class DatabaseSecretControlStoreManager
     private final DatabaseConfig config;
     private final DBI dbi;
     private final SecretCrypto crypto;
+    private final SecretCache cache;
 
-    @Inject
     public DatabaseSecretControlStoreManager(DatabaseConfig config, DBI dbi, SecretCrypto crypto)
+    {
+        this(config, dbi, crypto, SecretCache.disabled());
+    }
+
+    @Inject
+    public DatabaseSecretControlStoreManager(DatabaseConfig config, DBI dbi, SecretCrypto crypto, SecretCache cache)
     {
         this.config = config;
         this.dbi = dbi;
         this.crypto = crypto;
+        this.cache = cache;
     }
 
     @Override
     public SecretControlStore getSecretControlStore(int siteId)
     {
-        return new DatabaseSecretControlStore(config, dbi, siteId, crypto);
+        return new DatabaseSecretControlStore(config, dbi, siteId, crypto, cache);
     }
 }
@@ -1,10 +1,13 @@
 package io.digdag.core.database;
 
 import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
 import io.digdag.core.crypto.SecretCrypto;
 import io.digdag.spi.SecretAccessDeniedException;
 import io.digdag.spi.SecretStore;
 import org.skife.jdbi.v2.DBI;
+import org.skife.jdbi.v2.Query;
 import org.skife.jdbi.v2.StatementContext;
 import org.skife.jdbi.v2.sqlobject.Bind;
 import org.skife.jdbi.v2.sqlobject.SqlQuery;
@@ -12,6 +15,11 @@ import org.skife.jdbi.v2.tweak.ResultSetMapper;
 
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 class DatabaseSecretStore
         extends BasicDatabaseStoreManager<DatabaseSecretStore.Dao>
@@ -21,47 +29,120 @@ class DatabaseSecretStore
 
     private final SecretCrypto crypto;
 
-    DatabaseSecretStore(DatabaseConfig config, DBI dbi, int siteId, SecretCrypto crypto)
+    private final SecretCache cache;
+
+    DatabaseSecretStore(DatabaseConfig config, DBI dbi, int siteId, SecretCrypto crypto, SecretCache cache)
     {
         super(config.getType(), Dao.class, dbi);
         this.siteId = siteId;
         this.crypto = crypto;
+        this.cache = cache;
         dbi.registerMapper(new ScopedSecretMapper());
     }
 
     @Override
     public Optional<String> getSecret(int projectId, String scope, String key)
     {
+        Optional<String> cached = cache.getAll(siteId, projectId, scope, ImmutableList.of(key)).get(key);
+        if (cached != null) {
+            return cached;
+        }
+
         EncryptedSecret secret = autoCommit((handle, dao) -> dao.getProjectSecret(siteId, projectId, scope, key));
 
+        Optional<String> decrypted;
         if (secret == null) {
-            return Optional.absent();
+            decrypted = Optional.absent();
+        }
+        else {
+            decrypted = Optional.of(decrypt(secret));
         }
 
+        cache.put(siteId, projectId, scope, key, decrypted);
+        return decrypted;
+    }
+
+    @Override
+    public Map<String, String> getSecrets(int projectId, String scope, Collection<String> keys)
+    {
+        Map<String, String> secrets = new HashMap<>();
+        List<String> queryKeys = new ArrayList<>();
+        Map<String, Optional<String>> cached = cache.getAll(siteId, projectId, scope, keys);
+        for (String key : ImmutableSet.copyOf(keys)) {
+            Optional<String> value = cached.get(key);
+            if (value == null) {
+                queryKeys.add(key);
+            }
+            else if (value.isPresent()) {
+                secrets.put(key, value.get());
+            }
+        }
+
+        if (!queryKeys.isEmpty()) {
+            List<EncryptedSecret> found = autoCommit((handle, dao) -> {
+                StringBuilder sql = new StringBuilder(
+                        "select key, engine, value from secrets" +
+                        " where site_id = :siteId and project_id = :projectId and scope = :scope" +
+                        " and key in (");
+                for (int i = 0; i < queryKeys.size(); i++) {
+                    if (i > 0) {
+                        sql.append(", ");
+                    }
+                    sql.append(":key").append(i);
+                }
+                sql.append(")");
+                Query<Map<String, Object>> query = handle.createQuery(sql.toString())
+                    .bind("siteId", siteId)
+                    .bind("projectId", projectId)
+                    .bind("scope", scope);
+                for (int i = 0; i < queryKeys.size(); i++) {
+                    query.bind("key" + i, queryKeys.get(i));
+                }
+                return query.map(new ScopedSecretMapper()).list();
+            });
+
+            Map<String, String> decrypted = new HashMap<>();
+            for (EncryptedSecret secret : found) {
+                decrypted.put(secret.key, decrypt(secret));
+            }
+            for (String key : queryKeys) {
+                String value = decrypted.get(key);
+                cache.put(siteId, projectId, scope, key, Optional.fromNullable(value));
+                if (value != null) {
+                    secrets.put(key, value);
+                }
+            }
+        }
+
+        return secrets;
+    }
+
+    private String decrypt(EncryptedSecret secret)
+    {
         // TODO: look up crypto engine using name
         if (!crypto.getName().equals(secret.engine)) {
             throw new AssertionError("Crypto engine mismatch");
         }
 
-        String decrypted = crypto.decryptSecret(secret.value);
-
-        return Optional.of(decrypted);
+        return crypto.decryptSecret(secret.value);
     }
 
     interface Dao
     {
-        @SqlQuery("select engine, value from secrets" +
+        @SqlQuery("select key, engine, value from secrets" +
                 " where site_id = :siteId and project_id = :projectId and key = :key and scope = :scope")
         EncryptedSecret getProjectSecret(@Bind("siteId") int siteId, @Bind("projectId") int projectId, @Bind("scope") String scope, @Bind("key") String key);
     }
 
     private static class EncryptedSecret
     {
+        private final String key;
         private final String engine;
         private final String value;
 
-        private EncryptedSecret(String engine, String value)
+        private EncryptedSecret(String key, String engine, String value)
         {
+            this.key = key;
             this.engine = engine;
             this.value = value;
         }
@@ -74,7 +155,7 @@ class DatabaseSecretStore
         public EncryptedSecret map(int index, ResultSet r, StatementContext ctx)
                 throws SQLException
         {
-            return new EncryptedSecret(r.getString("engine"), r.getString("value"));
+            return new EncryptedSecret(r.getString("key"), r.getString("engine"), r.getString("value"));
         }
     }
 }
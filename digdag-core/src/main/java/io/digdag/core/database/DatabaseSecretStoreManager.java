@@ -12,18 +12,25 @@ public class DatabaseSecretStoreManager
     private final DatabaseConfig config;
     private final DBI dbi;
     private final SecretCrypto crypto;
+    private final SecretCache cache;
 
-    @Inject
     public DatabaseSecretStoreManager(DatabaseConfig config, DBI dbi, SecretCrypto crypto)
+    {
+        this(config, dbi, crypto, SecretCache.disabled());
+    }
+
+    @Inject
+    public DatabaseSecretStoreManager(DatabaseConfig config, DBI dbi, SecretCrypto crypto, SecretCache cache)
     {
         this.config = config;
         this.dbi = dbi;
         this.crypto = crypto;
+        this.cache = cache;
     }
 
     @Override
     public SecretStore getSecretStore(int siteId)
     {
-        return new DatabaseSecretStore(config, dbi, siteId, crypto);
+        return new DatabaseSecretStore(config, dbi, siteId, crypto, cache);
     }
 }
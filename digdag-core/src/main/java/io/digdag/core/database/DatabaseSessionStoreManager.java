@@ -69,6 +69,7 @@ import java.time.ZoneId;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -288,17 +289,46 @@ public class DatabaseSessionStoreManager
     }
 
     @Override
-    public List<StoredSessionAttempt> findActiveAttemptsCreatedBefore(Instant createdBefore, long lastId, int limit)
+    public List<StoredSessionAttemptWithSession> findActiveAttemptsCreatedBefore(Instant createdBefore, long lastId, int limit)
     {
         return autoCommit((handle, dao) -> dao.findActiveAttemptsCreatedBefore(sqlTimestampOf(createdBefore), lastId, limit));
     }
 
+    @Override
+    public List<StoredSessionAttemptWithSession> findActiveAttemptsOfProjectCreatedBefore(int siteId, String projectName, Optional<String> workflowName, Instant createdBefore, long lastId, int limit)
+    {
+        return autoCommit((handle, dao) ->
+                handle.createQuery(
+                    "select sa.*, s.session_uuid, s.workflow_name, s.session_time" +
+                    " from session_attempts sa" +
+                    " join sessions s on s.id = sa.session_id" +
+                    " join projects p on p.id = sa.project_id" +
+                    " where sa.state_flags = 0" +
+                    " and sa.created_at < :createdBefore" +
+                    " and sa.site_id = :siteId" +
+                    " and p.name = :projectName" +
+                    (workflowName.isPresent() ? " and s.workflow_name = :workflowName" : "") +
+                    " and sa.id > :lastId" +
+                    " order by sa.id asc" +
+                    " limit :limit"
+                )
+                    .bind("createdBefore", sqlTimestampOf(createdBefore))
+                    .bind("siteId", siteId)
+                    .bind("projectName", projectName)
+                    .bind("workflowName", workflowName.orNull())
+                    .bind("lastId", lastId)
+                    .bind("limit", limit)
+                    .map(new StoredSessionAttemptWithSessionMapper(cfm))
+                    .list()
+        );
+    }
+
     @Override
     public List<TaskAttemptSummary> findTasksStartedBeforeWithState(TaskStateCode[] states, Instant startedBefore, long lastId, int limit)
     {
         return autoCommit((handle, dao) ->
                 handle.createQuery(
-                    "select id, attempt_id, state" +
+                    "select id, attempt_id, state, started_at" +
                     " from tasks" +
                     " where state in (" +
                     Stream.of(states)
@@ -313,7 +343,41 @@ public class DatabaseSessionStoreManager
                     .bind("startedBefore", sqlTimestampOf(startedBefore))
                     .bind("lastId", lastId)
                     .bind("limit", limit)
-                    .map(tasm)
+                    .map(new StartedTaskAttemptSummaryMapper())
+                    .list()
+        );
+    }
+
+    @Override
+    public List<TaskAttemptSummary> findTasksOfProjectStartedBeforeWithState(int siteId, String projectName, Optional<String> workflowName, TaskStateCode[] states, Instant startedBefore, long lastId, int limit)
+    {
+        return autoCommit((handle, dao) ->
+                handle.createQuery(
+                    "select t.id, t.attempt_id, t.state, t.started_at" +
+                    " from tasks t" +
+                    " join session_attempts sa on sa.id = t.attempt_id" +
+                    " join sessions s on s.id = sa.session_id" +
+                    " join projects p on p.id = sa.project_id" +
+                    " where t.state in (" +
+                    Stream.of(states)
+                            .map(it -> Short.toString(it.get())).collect(Collectors.joining(", ")) + ")" +
+                    // exclude already cancel-requested tasks
+                    " and " + bitAnd("t.state_flags", Integer.toString(TaskStateFlags.CANCEL_REQUESTED)) + " = 0" +
+                    " and t.started_at < :startedBefore" +
+                    " and sa.site_id = :siteId" +
+                    " and p.name = :projectName" +
+                    (workflowName.isPresent() ? " and s.workflow_name = :workflowName" : "") +
+                    " and t.id > :lastId" +
+                    " order by t.id asc" +
+                    " limit :limit"
+                )
+                    .bind("startedBefore", sqlTimestampOf(startedBefore))
+                    .bind("siteId", siteId)
+                    .bind("projectName", projectName)
+                    .bind("workflowName", workflowName.orNull())
+                    .bind("lastId", lastId)
+                    .bind("limit", limit)
+                    .map(new StartedTaskAttemptSummaryMapper())
                     .list()
         );
     }
@@ -410,6 +474,61 @@ public class DatabaseSessionStoreManager
         });
     }
 
+    @Override
+    public List<Long> requestCancelAttempts(List<Long> attemptIds)
+    {
+        if (attemptIds.isEmpty()) {
+            return ImmutableList.of();
+        }
+        String notDoneStates = Stream.of(TaskStateCode.notDoneStates())
+            .map(it -> Short.toString(it.get())).collect(Collectors.joining(", "));
+        return transaction((handle, dao) -> {
+            // same with requestCancelAttempt but for multiple attempts in a single transaction.
+            // attempts that have no not-done tasks are not canceled.
+            List<Long> cancelingIds = handle.createQuery(
+                    "select distinct attempt_id from tasks" +
+                    " where attempt_id " + inLargeIdListExpression(attemptIds) +
+                    " and state in (" + notDoneStates + ")"
+                )
+                .mapTo(Long.class)
+                .list();
+            if (cancelingIds.isEmpty()) {
+                return ImmutableList.<Long>of();
+            }
+            handle.createStatement("update tasks" +
+                    " set state_flags = " + bitOr("state_flags", Integer.toString(TaskStateFlags.CANCEL_REQUESTED)) +
+                    " where attempt_id " + inLargeIdListExpression(cancelingIds) +
+                    " and state in (" + notDoneStates + ")"
+                )
+                .execute();
+            handle.createStatement("update session_attempts" +
+                    " set state_flags = " + bitOr("state_flags", Integer.toString(AttemptStateFlags.CANCEL_REQUESTED_CODE)) +
+                    " where id " + inLargeIdListExpression(cancelingIds)
+                )
+                .execute();
+            return cancelingIds;
+        });
+    }
+
+    @Override
+    public List<StoredSessionAttemptWithSession> getAttemptsWithSessionByIds(List<Long> attemptIds)
+    {
+        if (attemptIds.isEmpty()) {
+            return ImmutableList.of();
+        }
+        return autoCommit((handle, dao) ->
+                handle.createQuery(
+                    "select sa.*, s.session_uuid, s.workflow_name, s.session_time" +
+                    " from session_attempts sa" +
+                    " join sessions s on s.id = sa.session_id" +
+                    " where sa.id " + inLargeIdListExpression(attemptIds) +
+                    " order by sa.id asc"
+                )
+                .map(new StoredSessionAttemptWithSessionMapper(cfm))
+                .list()
+            );
+    }
+
     @Override
     public int trySetRetryWaitingToReady()
     {
@@ -450,10 +569,13 @@ public class DatabaseSessionStoreManager
     }
 
     @Override
-    public void lockReadySessionMonitors(Instant currentTime, SessionMonitorAction func)
+    public int lockReadySessionMonitors(Instant currentTime, int limit, SessionMonitorAction func)
     {
+        AtomicInteger claimedCount = new AtomicInteger();
         List<RuntimeException> exceptions = transaction((handle, dao) -> {
-            return dao.lockReadySessionMonitors(currentTime.getEpochSecond(), 10)  // TODO 10 should be configurable?
+            List<StoredSessionMonitor> monitors = dao.lockReadySessionMonitors(currentTime.getEpochSecond(), limit);
+            claimedCount.set(monitors.size());
+            return monitors
                 .stream()
                 .map(monitor -> {
                     try {
@@ -481,6 +603,22 @@ public class DatabaseSessionStoreManager
             }
             throw first;
         }
+        return claimedCount.get();
+    }
+
+    @Override
+    public List<Instant> getSessionMonitorRunTimes()
+    {
+        return autoCommit((handle, dao) ->
+                handle.createQuery(
+                    "select distinct next_run_time from session_monitors"
+                )
+                .mapTo(Long.class)
+                .list()
+            )
+            .stream()
+            .map(Instant::ofEpochSecond)
+            .collect(Collectors.toList());
     }
 
     @Override
@@ -1171,6 +1309,30 @@ public class DatabaseSessionStoreManager
                     "session attempt id=%d", attemptId);
         }
 
+        @Override
+        public List<StoredSessionAttemptWithSession> getAttemptsByIdList(List<Long> attemptIds)
+        {
+            if (attemptIds.isEmpty()) {
+                return ImmutableList.of();
+            }
+
+            return autoCommit((handle, dao) ->
+                    handle.createQuery(
+                        "select sa.*, s.session_uuid, s.workflow_name, s.session_time" +
+                        " from session_attempts sa" +
+                        " join sessions s on s.id = sa.session_id" +
+                        " where sa.id in (" + attemptIds.stream()
+                            .map(it -> Long.toString(it)).collect(Collectors.joining(", ")) + ")" +
+                        " and sa.site_id = :siteId" +
+                        " and s.last_attempt_id is not null" +
+                        " order by sa.id"
+                        )
+                    .bind("siteId", siteId)
+                    .mapTo(StoredSessionAttemptWithSession.class)
+                    .list()
+                );
+        }
+
         @Override
         public StoredSessionAttemptWithSession getLastAttemptByName(int projectId, String workflowName, Instant sessionTime)
             throws ResourceNotFoundException
@@ -1247,6 +1409,60 @@ public class DatabaseSessionStoreManager
             }
             return tasks;
         }
+
+        @Override
+        public List<ArchivedTask> getTasksOfAttempt(long attemptId, long lastId, int limit)
+        {
+            return autoCommit((handle, dao) ->
+                    handle.createQuery(
+                        "select t.*, td.full_name, td.local_config, td.export_config, td.resuming_task_id, ts.subtask_config, ts.export_params, ts.store_params, ts.error, ts.report, ts.reset_store_params, " +
+                            "(select " + commaGroupConcat("upstream_id") + " from task_dependencies where downstream_id = t.id) as upstream_ids" +
+                        " from tasks t" +
+                        " join session_attempts sa on sa.id = t.attempt_id" +
+                        " join task_details td on t.id = td.id" +
+                        " join task_state_details ts on t.id = ts.id" +
+                        " where sa.site_id = :siteId" +
+                        " and t.attempt_id = :attemptId" +
+                        " and t.id > :lastId" +
+                        " order by t.id" +
+                        " limit :limit"
+                        )
+                    .bind("siteId", siteId)
+                    .bind("attemptId", attemptId)
+                    .bind("lastId", lastId)
+                    .bind("limit", limit)
+                    .map(atm)
+                    .list()
+                );
+        }
+
+        @Override
+        public List<ArchivedTask> getTasksOfAttemptUpdatedSince(long attemptId, Instant updatedSince, long lastId, int limit)
+        {
+            return autoCommit((handle, dao) ->
+                    handle.createQuery(
+                        "select t.*, td.full_name, td.local_config, td.export_config, td.resuming_task_id, ts.subtask_config, ts.export_params, ts.store_params, ts.error, ts.report, ts.reset_store_params, " +
+                            "(select " + commaGroupConcat("upstream_id") + " from task_dependencies where downstream_id = t.id) as upstream_ids" +
+                        " from tasks t" +
+                        " join session_attempts sa on sa.id = t.attempt_id" +
+                        " join task_details td on t.id = td.id" +
+                        " join task_state_details ts on t.id = ts.id" +
+                        " where sa.site_id = :siteId" +
+                        " and t.attempt_id = :attemptId" +
+                        " and (t.updated_at > :updatedSince" +
+                        " or (t.updated_at = :updatedSince and t.id > :lastId))" +
+                        " order by t.updated_at asc, t.id asc" +
+                        " limit :limit"
+                        )
+                    .bind("siteId", siteId)
+                    .bind("attemptId", attemptId)
+                    .bind("updatedSince", sqlTimestampOf(updatedSince))
+                    .bind("lastId", lastId)
+                    .bind("limit", limit)
+                    .map(atm)
+                    .list()
+                );
+        }
     }
 
     private class DatabaseSessionControlStore
@@ -1522,13 +1738,15 @@ public class DatabaseSessionStoreManager
                 " where sa.id = :attemptId limit 1")
         StoredSessionAttemptWithSession getAttemptWithSessionByIdInternal(@Bind("attemptId") long attemptId);
 
-        @SqlQuery("select * from session_attempts" +
-                " where state_flags = 0" +
-                " and created_at < :createdBefore" +
-                " and id > :lastId" +
-                " order by id asc" +
+        @SqlQuery("select sa.*, s.session_uuid, s.workflow_name, s.session_time" +
+                " from session_attempts sa" +
+                " join sessions s on s.id = sa.session_id" +
+                " where sa.state_flags = 0" +
+                " and sa.created_at < :createdBefore" +
+                " and sa.id > :lastId" +
+                " order by sa.id asc" +
                 " limit :limit")
-        List<StoredSessionAttempt> findActiveAttemptsCreatedBefore(@Bind("createdBefore") Timestamp createdBefore, @Bind("lastId") long lastId, @Bind("limit") int limit);
+        List<StoredSessionAttemptWithSession> findActiveAttemptsCreatedBefore(@Bind("createdBefore") Timestamp createdBefore, @Bind("lastId") long lastId, @Bind("limit") int limit);
 
         @SqlQuery("select site_id from tasks" +
                 " join session_attempts sa on sa.id = tasks.attempt_id" +
@@ -2047,6 +2265,22 @@ public class DatabaseSessionStoreManager
         }
     }
 
+    private static class StartedTaskAttemptSummaryMapper
+            implements ResultSetMapper<TaskAttemptSummary>
+    {
+        @Override
+        public TaskAttemptSummary map(int index, ResultSet r, StatementContext ctx)
+                throws SQLException
+        {
+            return ImmutableTaskAttemptSummary.builder()
+                .id(r.getLong("id"))
+                .attemptId(r.getLong("attempt_id"))
+                .state(TaskStateCode.of(r.getInt("state")))
+                .startedAt(getOptionalTimestampInstant(r, "started_at"))
+                .build();
+        }
+    }
+
     private static class TaskRelationMapper
             implements ResultSetMapper<TaskRelation>
     {
@@ -0,0 +1,84 @@
+package io.digdag.core.database;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import com.google.common.base.Optional;
+import org.h2.jdbcx.JdbcDataSource;
+import org.skife.jdbi.v2.DBI;
+import org.skife.jdbi.v2.Handle;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Script that creates a new H2 database with all migrations applied.
+ *
+ * digdag run and check create a new in-memory H2 database every time.
+ * DatabaseMigrator runs this script instead of applying migrations one by
+ * one if the script of the latest migration version is in the classpath.
+ * The script is generated by h2SchemaSnapshot task of digdag-core at build
+ * time and included in the jar.
+ */
+public class H2SchemaSnapshot
+{
+    private static final String RESOURCE_NAME_FORMAT = "io/digdag/core/database/h2-schema-%s.sql";
+
+    public static void main(String[] args)
+        throws IOException
+    {
+        if (args.length != 1) {
+            System.err.println("Usage: H2SchemaSnapshot <output directory>");
+            System.exit(1);
+        }
+        Path path = write(Paths.get(args[0]));
+        System.out.println("Wrote " + path);
+    }
+
+    static String resourceName(String version)
+    {
+        return String.format(RESOURCE_NAME_FORMAT, version);
+    }
+
+    static Optional<String> findResource(String version)
+    {
+        String name = resourceName(version);
+        if (H2SchemaSnapshot.class.getClassLoader().getResource(name) == null) {
+            return Optional.absent();
+        }
+        return Optional.of(name);
+    }
+
+    static Path write(Path outputDir)
+        throws IOException
+    {
+        JdbcDataSource ds = new JdbcDataSource();
+        ds.setURL("jdbc:h2:mem:digdag-schema-" + UUID.randomUUID());
+        DBI dbi = new DBI(ds);
+
+        // the database is kept while this handle is open
+        try (Handle handle = dbi.open()) {
+            DatabaseMigrator migrator = new DatabaseMigrator(dbi, "h2");
+            migrator.migrate(false);
+
+            Path path = outputDir.resolve(resourceName(migrator.getLatestMigrationVersion()));
+            Files.createDirectories(path.getParent());
+            Files.write(path, dump(handle), UTF_8);
+            return path;
+        }
+    }
+
+    static List<String> dump(Handle handle)
+    {
+        return handle.createQuery("SCRIPT")
+            .mapTo(String.class)
+            .list()
+            .stream()
+            // users are not a part of the schema
+            .filter(sql -> !sql.startsWith("CREATE USER"))
+            .map(sql -> sql.endsWith(";") ? sql : sql + ";")
+            .collect(Collectors.toList());
+    }
+}
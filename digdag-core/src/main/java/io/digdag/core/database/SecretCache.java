@@ -0,0 +1,169 @@
+package io.digdag.core.database;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Optional;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalListener;
+import com.google.inject.Inject;
+import io.digdag.client.config.Config;
+
+/**
+ * In-memory cache of decrypted secrets shared by secret stores of all sites.
+ *
+ * Enabled if digdag.secret-cache.ttl is larger than 0. An entry expires
+ * after ttl and the number of entries is bounded by
+ * digdag.secret-cache.max-entries. Absence of a secret is cached too.
+ * Values are kept in char arrays that are filled with zeros when entries
+ * are evicted. Secret control stores of this process invalidate entries
+ * when they set or delete a secret. Changes made by other processes are
+ * visible after ttl.
+ */
+public class SecretCache
+{
+    private final Cache<Key, Entry> cache;
+
+    @Inject
+    public SecretCache(Config systemConfig)
+    {
+        this(systemConfig.get("digdag.secret-cache.ttl", long.class, 0L),
+                systemConfig.get("digdag.secret-cache.max-entries", int.class, 1000));
+    }
+
+    @VisibleForTesting
+    SecretCache(long ttlSeconds, int maxEntries)
+    {
+        if (ttlSeconds > 0 && maxEntries > 0) {
+            this.cache = CacheBuilder.newBuilder()
+                .expireAfterWrite(ttlSeconds, TimeUnit.SECONDS)
+                .maximumSize(maxEntries)
+                .removalListener((RemovalListener<Key, Entry>) (notification) -> notification.getValue().clear())
+                .build();
+        }
+        else {
+            this.cache = null;
+        }
+    }
+
+    public static SecretCache disabled()
+    {
+        return new SecretCache(0, 0);
+    }
+
+    public boolean isEnabled()
+    {
+        return cache != null;
+    }
+
+    /**
+     * Returns cached secrets of the keys. A key of a secret known not to
+     * exist is mapped to absent. Keys not cached are not included.
+     */
+    public Map<String, Optional<String>> getAll(int siteId, int projectId, String scope, Collection<String> keys)
+    {
+        Map<String, Optional<String>> found = new HashMap<>();
+        if (cache == null) {
+            return found;
+        }
+        for (String key : keys) {
+            Entry entry = cache.getIfPresent(new Key(siteId, projectId, scope, key));
+            if (entry != null) {
+                Optional<Optional<String>> value = entry.get();
+                if (value.isPresent()) {
+                    found.put(key, value.get());
+                }
+            }
+        }
+        return found;
+    }
+
+    public void put(int siteId, int projectId, String scope, String key, Optional<String> value)
+    {
+        if (cache != null) {
+            cache.put(new Key(siteId, projectId, scope, key), new Entry(value));
+        }
+    }
+
+    public void invalidate(int siteId, int projectId, String scope, String key)
+    {
+        if (cache != null) {
+            cache.invalidate(new Key(siteId, projectId, scope, key));
+        }
+    }
+
+    private static class Key
+    {
+        private final int siteId;
+        private final int projectId;
+        private final String scope;
+        private final String key;
+
+        Key(int siteId, int projectId, String scope, String key)
+        {
+            this.siteId = siteId;
+            this.projectId = projectId;
+            this.scope = scope;
+            this.key = key;
+        }
+
+        @Override
+        public boolean equals(Object o)
+        {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            Key other = (Key) o;
+            return siteId == other.siteId &&
+                projectId == other.projectId &&
+                scope.equals(other.scope) &&
+                key.equals(other.key);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return Objects.hash(siteId, projectId, scope, key);
+        }
+    }
+
+    private static class Entry
+    {
+        private char[] value;  // null if the secret doesn't exist
+        private boolean cleared = false;
+
+        Entry(Optional<String> value)
+        {
+            this.value = value.isPresent() ? value.get().toCharArray() : null;
+        }
+
+        // absent if this entry is evicted while a caller was reading it
+        synchronized Optional<Optional<String>> get()
+        {
+            if (cleared) {
+                return Optional.absent();
+            }
+            if (value == null) {
+                return Optional.of(Optional.<String>absent());
+            }
+            return Optional.of(Optional.of(new String(value)));
+        }
+
+        synchronized void clear()
+        {
+            if (value != null) {
+                Arrays.fill(value, '\0');
+                value = null;
+            }
+            cleared = true;
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package io.digdag.core.database.migrate;
+
+import org.skife.jdbi.v2.Handle;
+
+public class Migration_20161209001857_AddNotDoneStartedAtIndexToTasks
+        implements Migration
+{
+    @Override
+    public void migrate(Handle handle, MigrationContext context)
+    {
+        // for DatabaseSessionStoreManager.findTasksStartedBeforeWithState. This includes only not-done
+        // tasks (BLOCKED, READY, RETRY_WAITING, GROUP_RETRY_WAITING, RUNNING, PLANNED) so that the
+        // index stays small regardless of the number of finished tasks.
+        if (context.isPostgres()) {
+            handle.update("create index tasks_on_started_at_and_id_not_done on tasks (started_at, id) where started_at is not null and state in (0, 1, 2, 3, 4, 5)");
+        }
+        else {
+            handle.update("create index tasks_on_started_at_and_id_not_done on tasks (started_at, id)");
+        }
+
+        // for DatabaseSessionStoreManager.findActiveAttemptsCreatedBefore with id-based pagination
+        if (context.isPostgres()) {
+            handle.update("create index session_attempts_on_id_active on session_attempts (id) where state_flags = 0");
+        }
+    }
+}
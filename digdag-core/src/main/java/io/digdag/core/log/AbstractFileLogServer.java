@@ -24,6 +24,7 @@ import io.digdag.spi.ImmutableLogFileHandle;
 import io.digdag.spi.DirectDownloadHandle;
 import io.digdag.spi.DirectUploadHandle;
 import io.digdag.spi.StorageFileNotFoundException;
+import io.digdag.spi.StorageObject;
 import io.digdag.client.config.Config;
 import java.time.format.DateTimeFormatter;
 import static java.util.Locale.ENGLISH;
@@ -39,6 +40,9 @@ public abstract class AbstractFileLogServer
     protected abstract byte[] getFile(String dateDir, String attemptDir, String fileName)
             throws StorageFileNotFoundException;
 
+    protected abstract StorageObject openFile(String dateDir, String attemptDir, String fileName)
+            throws StorageFileNotFoundException;
+
     protected abstract void listFiles(String dateDir, String attemptDir, FileMetadataConsumer fileNameConsumer);
 
     public interface FileMetadataConsumer
@@ -76,6 +80,15 @@ public abstract class AbstractFileLogServer
         return getFile(dateDir, attemptDir, fileName);
     }
 
+    @Override
+    public StorageObject openFile(LogFilePrefix prefix, String fileName)
+            throws StorageFileNotFoundException
+    {
+        String dateDir = LogFiles.formatDataDir(prefix);
+        String attemptDir = LogFiles.formatSessionAttemptDir(prefix);
+        return openFile(dateDir, attemptDir, fileName);
+    }
+
     @Override
     public List<LogFileHandle> getFileHandles(LogFilePrefix prefix, Optional<String> taskName)
     {
@@ -0,0 +1,248 @@
+package io.digdag.core.log;
+
+import java.io.ByteArrayOutputStream;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import com.google.common.base.Optional;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Delivers task logs produced in this process to subscribers in real time.
+ *
+ * Task loggers created by LogServerManager publish complete lines here
+ * in addition to writing them to the log server. LogResource subscribes by
+ * attempt id (and optionally task name prefix) to stream the lines to
+ * clients. Publishing without subscribers costs only a map lookup and
+ * counting bytes.
+ *
+ * Each chunk of lines has the byte offset of its first byte in the output of
+ * the task, which is also the offset in the concatenated log files of the
+ * task. Clients use it to skip lines they have already read from log files.
+ * A retried task continues the offset of its previous execution.
+ */
+public class LiveLogBroker
+{
+    private static final int SUBSCRIPTION_QUEUE_SIZE = 1024;
+
+    private static final int MAX_FINISHED_OFFSETS = 10000;
+
+    private final ConcurrentMap<Long, List<Subscription>> subscriptions = new ConcurrentHashMap<>();
+
+    // output size of finished task loggers by attempt id and task name
+    private final Cache<String, Long> finishedOffsets = CacheBuilder.newBuilder()
+        .maximumSize(MAX_FINISHED_OFFSETS)
+        .build();
+
+    public Subscription subscribe(long attemptId, Optional<String> taskNamePrefix)
+    {
+        Subscription subscription = new Subscription(attemptId, taskNamePrefix);
+        subscriptions.compute(attemptId, (key, list) -> {
+            if (list == null) {
+                list = new CopyOnWriteArrayList<>();
+            }
+            list.add(subscription);
+            return list;
+        });
+        return subscription;
+    }
+
+    private void unsubscribe(Subscription subscription)
+    {
+        subscriptions.computeIfPresent(subscription.attemptId, (key, list) -> {
+            list.remove(subscription);
+            return list.isEmpty() ? null : list;
+        });
+    }
+
+    public boolean hasSubscribers(long attemptId)
+    {
+        return subscriptions.containsKey(attemptId);
+    }
+
+    void publish(long attemptId, String taskName, long offset, byte[] lines)
+    {
+        List<Subscription> list = subscriptions.get(attemptId);
+        if (list == null) {
+            return;
+        }
+        Lines chunk = new Lines(taskName, offset, lines);
+        for (Subscription subscription : list) {
+            subscription.offer(chunk);
+        }
+    }
+
+    public TaskLogger newPublishingTaskLogger(long attemptId, String taskName, TaskLogger delegate)
+    {
+        Long offset = finishedOffsets.getIfPresent(offsetKey(attemptId, taskName));
+        return new PublishingTaskLogger(attemptId, taskName, (offset == null) ? 0L : offset, delegate);
+    }
+
+    private static String offsetKey(long attemptId, String taskName)
+    {
+        return attemptId + "\t" + taskName;
+    }
+
+    public static class Lines
+    {
+        private final String taskName;
+        private final long offset;
+        private final byte[] data;
+
+        private Lines(String taskName, long offset, byte[] data)
+        {
+            this.taskName = taskName;
+            this.offset = offset;
+            this.data = data;
+        }
+
+        public String getTaskName()
+        {
+            return taskName;
+        }
+
+        // byte offset of the first line in the output of the task
+        public long getOffset()
+        {
+            return offset;
+        }
+
+        // one or more complete lines. the last byte is always '\n'.
+        public byte[] getData()
+        {
+            return data;
+        }
+    }
+
+    public class Subscription
+        implements AutoCloseable
+    {
+        private final long attemptId;
+        private final Optional<String> taskNamePrefix;
+        private final BlockingQueue<Lines> queue = new LinkedBlockingQueue<>(SUBSCRIPTION_QUEUE_SIZE);
+        private volatile boolean overflowed;
+
+        private Subscription(long attemptId, Optional<String> taskNamePrefix)
+        {
+            this.attemptId = attemptId;
+            this.taskNamePrefix = taskNamePrefix;
+        }
+
+        private void offer(Lines lines)
+        {
+            if (taskNamePrefix.isPresent() && !lines.getTaskName().startsWith(taskNamePrefix.get())) {
+                return;
+            }
+            if (!queue.offer(lines)) {
+                // slow subscriber. dropping logs is better than blocking tasks
+                overflowed = true;
+            }
+        }
+
+        // returns null if no logs arrived within the timeout
+        public Lines poll(long timeout, TimeUnit unit)
+            throws InterruptedException
+        {
+            return queue.poll(timeout, unit);
+        }
+
+        // true if some logs are dropped because this subscriber was slow
+        public boolean isOverflowed()
+        {
+            return overflowed;
+        }
+
+        @Override
+        public void close()
+        {
+            unsubscribe(this);
+        }
+    }
+
+    private class PublishingTaskLogger
+        implements TaskLogger
+    {
+        private final long attemptId;
+        private final String taskName;
+        private final TaskLogger delegate;
+        private final ByteArrayOutputStream partialLine = new ByteArrayOutputStream();
+
+        // offset of the next byte in the output of the task
+        private long offset;
+
+        PublishingTaskLogger(long attemptId, String taskName, long offset, TaskLogger delegate)
+        {
+            this.attemptId = attemptId;
+            this.taskName = taskName;
+            this.offset = offset;
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void log(LogLevel level, long timestamp, String message)
+        {
+            delegate.log(level, timestamp, message);
+            // the delegate writes the message as UTF-8
+            byte[] data = message.getBytes(UTF_8);
+            publishLines(data, 0, data.length);
+        }
+
+        @Override
+        public void log(byte[] data, int off, int len)
+        {
+            delegate.log(data, off, len);
+            publishLines(data, off, len);
+        }
+
+        // publishes only complete lines so that logs of parallel tasks are
+        // not mixed in the middle of a line. Offset is counted even without
+        // subscribers so that it matches log files.
+        private synchronized void publishLines(byte[] data, int off, int len)
+        {
+            offset += len;
+            int lastNewline = -1;
+            for (int i = off + len - 1; i >= off; i--) {
+                if (data[i] == '\n') {
+                    lastNewline = i;
+                    break;
+                }
+            }
+            if (lastNewline < 0) {
+                partialLine.write(data, off, len);
+                return;
+            }
+            if (hasSubscribers(attemptId)) {
+                partialLine.write(data, off, lastNewline - off + 1);
+                long lineOffset = offset - (off + len - lastNewline - 1) - partialLine.size();
+                publish(attemptId, taskName, lineOffset, partialLine.toByteArray());
+            }
+            partialLine.reset();
+            partialLine.write(data, lastNewline + 1, off + len - lastNewline - 1);
+        }
+
+        @Override
+        public void close()
+        {
+            try {
+                delegate.close();
+            }
+            finally {
+                synchronized (this) {
+                    if (partialLine.size() > 0) {
+                        long lineOffset = offset - partialLine.size();
+                        partialLine.write('\n');
+                        publish(attemptId, taskName, lineOffset, partialLine.toByteArray());
+                        partialLine.reset();
+                    }
+                    finishedOffsets.put(offsetKey(attemptId, taskName), offset);
+                }
+            }
+        }
+    }
+}
@@ -13,6 +13,7 @@ import java.nio.file.FileSystems;
 import java.nio.file.Path;
 import java.nio.file.Files;
 import java.nio.file.DirectoryStream;
+import java.nio.file.NoSuchFileException;
 import com.google.inject.Inject;
 import com.google.common.base.Optional;
 import com.google.common.base.Throwables;
@@ -25,6 +26,7 @@ import io.digdag.spi.LogFileHandle;
 import io.digdag.spi.DirectDownloadHandle;
 import io.digdag.spi.DirectUploadHandle;
 import io.digdag.spi.StorageFileNotFoundException;
+import io.digdag.spi.StorageObject;
 import io.digdag.client.config.Config;
 import java.time.format.DateTimeFormatter;
 import static java.util.Locale.ENGLISH;
@@ -136,6 +138,23 @@ public class LocalFileLogServerFactory
             }
         }
 
+        @Override
+        protected StorageObject openFile(String dateDir, String attemptDir, String fileName)
+            throws StorageFileNotFoundException
+        {
+            Path path = getPrefixDir(dateDir, attemptDir).resolve(fileName);
+            try {
+                // InputStream of Files.newInputStream implements skip using seek
+                return new StorageObject(Files.newInputStream(path), Files.size(path));
+            }
+            catch (FileNotFoundException | NoSuchFileException ex) {
+                throw new StorageFileNotFoundException(ex);
+            }
+            catch (IOException ex) {
+                throw Throwables.propagate(ex);
+            }
+        }
+
         private Path getPrefixDir(String dateDir, String attemptDir)
         {
             return logPath.resolve(dateDir).resolve(attemptDir);
@@ -14,9 +14,11 @@ public class LogModule
     public void configure(Binder binder)
     {
         binder.bind(LogServerManager.class).in(Scopes.SINGLETON);
+        binder.bind(LiveLogBroker.class).in(Scopes.SINGLETON);
 
         Multibinder<LogServerFactory> logServerBinder = Multibinder.newSetBinder(binder, LogServerFactory.class);
         logServerBinder.addBinding().to(NullLogServerFactory.class).in(Scopes.SINGLETON);
         logServerBinder.addBinding().to(LocalFileLogServerFactory.class).in(Scopes.SINGLETON);
+        logServerBinder.addBinding().to(SegmentedLogServerFactory.class).in(Scopes.SINGLETON);
     }
 }
@@ -20,10 +20,11 @@ public class LogServerManager
 {
     private final LogServer logServer;
     private final TempFileManager tempFiles;
+    private final LiveLogBroker liveLogBroker;
 
     @Inject
     public LogServerManager(Set<LogServerFactory> factories, Config systemConfig, TempFileManager tempFiles,
-            StorageManager storageManager)
+            StorageManager storageManager, LiveLogBroker liveLogBroker)
     {
         String type = systemConfig.get("log-server.type", String.class, "null");
         LogServerFactory factory = findLogServer(factories, type);
@@ -34,6 +35,7 @@ public class LogServerManager
             this.logServer = factory.getLogServer();
         }
         this.tempFiles = tempFiles;
+        this.liveLogBroker = liveLogBroker;
     }
 
     private static LogServerFactory findLogServer(Set<LogServerFactory> factories, String type)
@@ -67,8 +69,20 @@ public class LogServerManager
         return logServer;
     }
 
+    public LiveLogBroker getLiveLogBroker()
+    {
+        return liveLogBroker;
+    }
+
     // this is called when server == agent (server runs a local agent).
-    public TaskLogger newInProcessTaskLogger(AgentId agentId, LogFilePrefix prefix, String taskName)
+    // logs are also published to LiveLogBroker for clients following logs.
+    public TaskLogger newInProcessTaskLogger(AgentId agentId, LogFilePrefix prefix, long attemptId, String taskName)
+    {
+        return liveLogBroker.newPublishingTaskLogger(attemptId, taskName,
+                newInProcessTaskLogger(agentId, prefix, taskName));
+    }
+
+    private TaskLogger newInProcessTaskLogger(AgentId agentId, LogFilePrefix prefix, String taskName)
     {
         if (logServer instanceof NullLogServer) {
             return new NullTaskLogger();
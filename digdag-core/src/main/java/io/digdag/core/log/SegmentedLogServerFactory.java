@@ -0,0 +1,400 @@
+package io.digdag.core.log;
+
+import java.util.List;
+import java.util.ArrayList;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.locks.Lock;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import com.google.inject.Inject;
+import com.google.common.base.Optional;
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.Striped;
+import io.digdag.spi.LogServer;
+import io.digdag.spi.LogServerFactory;
+import io.digdag.spi.LogFilePrefix;
+import io.digdag.spi.LogFileHandle;
+import io.digdag.spi.DirectUploadHandle;
+import io.digdag.spi.StorageFileNotFoundException;
+import io.digdag.spi.StorageObject;
+import io.digdag.client.config.Config;
+import static java.util.Locale.ENGLISH;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.APPEND;
+import static java.nio.file.StandardOpenOption.READ;
+
+/**
+ * Local log server that appends log files of an attempt to a few large
+ * segment files instead of creating one file per upload.
+ *
+ * Each attempt directory contains segment files (segment-NNNNN.dat) and an
+ * append-only index file that records file name, segment, offset and size
+ * of each log file. The index is loaded on demand and kept in a bounded
+ * cache so that listing logs of an attempt doesn't touch the directory.
+ * Log files are read from segments using memory-mapped buffers.
+ */
+public class SegmentedLogServerFactory
+    implements LogServerFactory
+{
+    private static final String INDEX_FILE_NAME = "index";
+    private static final long DEFAULT_SEGMENT_SIZE = 64L * 1024 * 1024;
+    private static final int DEFAULT_INDEX_CACHE_SIZE = 1000;
+
+    private final Path logPath;
+    private final long segmentSize;
+    private final int indexCacheSize;
+
+    @Inject
+    public SegmentedLogServerFactory(Config systemConfig)
+    {
+        this.logPath = FileSystems.getDefault().getPath(systemConfig.get("log-server.segmented.path", String.class, "digdag.log"))
+            .toAbsolutePath()
+            .normalize();
+        this.segmentSize = systemConfig.get("log-server.segmented.segment_size", long.class, DEFAULT_SEGMENT_SIZE);
+        this.indexCacheSize = systemConfig.get("log-server.segmented.index_cache_size", int.class, DEFAULT_INDEX_CACHE_SIZE);
+    }
+
+    @Override
+    public String getType()
+    {
+        return "segmented";
+    }
+
+    @Override
+    public LogServer getLogServer()
+    {
+        return new SegmentedLogServer(logPath, segmentSize, indexCacheSize);
+    }
+
+    static class SegmentedLogServer
+            extends AbstractFileLogServer
+    {
+        private final Path logPath;
+        private final long segmentSize;
+        private final Cache<Path, AttemptIndex> indexCache;
+        // writes and index loading of an attempt are serialized by this lock
+        // so that a cached index never misses entries written to the disk
+        private final Striped<Lock> attemptLocks = Striped.lock(64);
+
+        SegmentedLogServer(Path logPath, long segmentSize, int indexCacheSize)
+        {
+            this.logPath = logPath;
+            this.segmentSize = segmentSize;
+            this.indexCache = CacheBuilder.newBuilder()
+                .maximumSize(indexCacheSize)
+                .build();
+        }
+
+        @Override
+        public Optional<DirectUploadHandle> getDirectUploadHandle(String dateDir, String attemptDir, String fileName)
+        {
+            return Optional.absent();
+        }
+
+        @Override
+        protected void putFile(String dateDir, String attemptDir, String fileName, byte[] gzData)
+        {
+            Path dir = getPrefixDir(dateDir, attemptDir);
+            Lock lock = attemptLocks.get(dir);
+            lock.lock();
+            try {
+                Files.createDirectories(dir);
+                AttemptIndex index = getIndex(dir);
+
+                int segment = index.getLastSegment();
+                Path segmentPath = dir.resolve(formatSegmentFileName(segment));
+                long segmentFileSize = Files.exists(segmentPath) ? Files.size(segmentPath) : 0L;
+                if (segmentFileSize > 0 && segmentFileSize + gzData.length > segmentSize) {
+                    segment++;
+                    segmentPath = dir.resolve(formatSegmentFileName(segment));
+                }
+
+                long offset;
+                try (FileChannel channel = FileChannel.open(segmentPath, CREATE, APPEND)) {
+                    offset = channel.size();
+                    ByteBuffer buffer = ByteBuffer.wrap(gzData);
+                    while (buffer.hasRemaining()) {
+                        channel.write(buffer);
+                    }
+                }
+
+                // index entry is appended after data so that a crash leaves
+                // only unreferenced bytes in the segment
+                IndexEntry entry = new IndexEntry(fileName, segment, offset, gzData.length);
+                try (OutputStream out = Files.newOutputStream(dir.resolve(INDEX_FILE_NAME), CREATE, APPEND)) {
+                    out.write(entry.serialize());
+                }
+                index.add(entry);
+            }
+            catch (IOException ex) {
+                throw Throwables.propagate(ex);
+            }
+            finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        protected void listFiles(String dateDir, String attemptDir, FileMetadataConsumer consumer)
+        {
+            Path dir = getPrefixDir(dateDir, attemptDir);
+            for (IndexEntry entry : getIndex(dir).list("")) {
+                consumer.accept(entry.fileName, entry.size, null);
+            }
+        }
+
+        @Override
+        public List<LogFileHandle> getFileHandles(LogFilePrefix prefix, Optional<String> taskName)
+        {
+            // entries are sorted by file name in the index. no need to sort again
+            Path dir = getPrefixDir(LogFiles.formatDataDir(prefix), LogFiles.formatSessionAttemptDir(prefix));
+            List<LogFileHandle> handles = new ArrayList<>();
+            for (IndexEntry entry : getIndex(dir).list(taskName.or(""))) {
+                if (entry.handle != null) {
+                    handles.add(entry.handle);
+                }
+            }
+            return handles;
+        }
+
+        @Override
+        protected byte[] getFile(String dateDir, String attemptDir, String fileName)
+            throws StorageFileNotFoundException
+        {
+            ByteBuffer buffer = mapFile(dateDir, attemptDir, fileName);
+            byte[] data = new byte[buffer.remaining()];
+            buffer.get(data);
+            return data;
+        }
+
+        @Override
+        protected StorageObject openFile(String dateDir, String attemptDir, String fileName)
+            throws StorageFileNotFoundException
+        {
+            ByteBuffer buffer = mapFile(dateDir, attemptDir, fileName);
+            return new StorageObject(new ByteBufferInputStream(buffer), buffer.remaining());
+        }
+
+        private ByteBuffer mapFile(String dateDir, String attemptDir, String fileName)
+            throws StorageFileNotFoundException
+        {
+            Path dir = getPrefixDir(dateDir, attemptDir);
+            Optional<IndexEntry> entry = getIndex(dir).get(fileName);
+            if (!entry.isPresent()) {
+                throw new StorageFileNotFoundException("Log file not found: " + fileName);
+            }
+            Path segmentPath = dir.resolve(formatSegmentFileName(entry.get().segment));
+            // mapped buffer stays valid after the channel is closed
+            try (FileChannel channel = FileChannel.open(segmentPath, READ)) {
+                return channel.map(FileChannel.MapMode.READ_ONLY, entry.get().offset, entry.get().size);
+            }
+            catch (NoSuchFileException ex) {
+                throw new StorageFileNotFoundException(ex);
+            }
+            catch (IOException ex) {
+                throw Throwables.propagate(ex);
+            }
+        }
+
+        private AttemptIndex getIndex(Path dir)
+        {
+            AttemptIndex index = indexCache.getIfPresent(dir);
+            if (index != null) {
+                return index;
+            }
+            // not using a cache loader because it would wait for a writer
+            // holding the lock while the writer waits for the loader
+            Lock lock = attemptLocks.get(dir);
+            lock.lock();
+            try {
+                index = indexCache.getIfPresent(dir);
+                if (index == null) {
+                    index = AttemptIndex.load(dir.resolve(INDEX_FILE_NAME));
+                    indexCache.put(dir, index);
+                }
+                return index;
+            }
+            catch (IOException ex) {
+                throw Throwables.propagate(ex);
+            }
+            finally {
+                lock.unlock();
+            }
+        }
+
+        private Path getPrefixDir(String dateDir, String attemptDir)
+        {
+            return logPath.resolve(dateDir).resolve(attemptDir);
+        }
+    }
+
+    private static String formatSegmentFileName(int segment)
+    {
+        return String.format(ENGLISH, "segment-%05d.dat", segment);
+    }
+
+    static class AttemptIndex
+    {
+        private final TreeMap<String, IndexEntry> entries = new TreeMap<>();
+        private int lastSegment = 0;
+
+        static AttemptIndex load(Path indexPath)
+            throws IOException
+        {
+            AttemptIndex index = new AttemptIndex();
+            if (!Files.exists(indexPath)) {
+                return index;
+            }
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(indexPath)))) {
+                while (true) {
+                    IndexEntry entry;
+                    try {
+                        entry = IndexEntry.deserialize(in);
+                    }
+                    catch (EOFException ex) {
+                        // end of the index, or a partially written entry
+                        break;
+                    }
+                    index.add(entry);
+                }
+            }
+            return index;
+        }
+
+        synchronized void add(IndexEntry entry)
+        {
+            entries.put(entry.fileName, entry);
+            lastSegment = Math.max(lastSegment, entry.segment);
+        }
+
+        synchronized int getLastSegment()
+        {
+            return lastSegment;
+        }
+
+        synchronized Optional<IndexEntry> get(String fileName)
+        {
+            return Optional.fromNullable(entries.get(fileName));
+        }
+
+        synchronized List<IndexEntry> list(String fileNamePrefix)
+        {
+            SortedMap<String, IndexEntry> range;
+            if (fileNamePrefix.isEmpty()) {
+                range = entries;
+            }
+            else {
+                range = entries.subMap(fileNamePrefix, fileNamePrefix + Character.MAX_VALUE);
+            }
+            return new ArrayList<>(range.values());
+        }
+    }
+
+    static class IndexEntry
+    {
+        final String fileName;
+        final int segment;
+        final long offset;
+        final int size;
+        final LogFileHandle handle;
+
+        IndexEntry(String fileName, int segment, long offset, int size)
+        {
+            this.fileName = fileName;
+            this.segment = segment;
+            this.offset = offset;
+            this.size = size;
+            // parsed once when the entry is loaded
+            this.handle = LogFiles.buildLogFileHandleFromFileName(fileName, size);
+        }
+
+        byte[] serialize()
+            throws IOException
+        {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (DataOutputStream out = new DataOutputStream(bytes)) {
+                out.writeUTF(fileName);
+                out.writeInt(segment);
+                out.writeLong(offset);
+                out.writeInt(size);
+            }
+            return bytes.toByteArray();
+        }
+
+        static IndexEntry deserialize(DataInputStream in)
+            throws IOException
+        {
+            String fileName = in.readUTF();
+            int segment = in.readInt();
+            long offset = in.readLong();
+            int size = in.readInt();
+            return new IndexEntry(fileName, segment, offset, size);
+        }
+    }
+
+    private static class ByteBufferInputStream
+            extends InputStream
+    {
+        private final ByteBuffer buffer;
+
+        ByteBufferInputStream(ByteBuffer buffer)
+        {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read()
+        {
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            return buffer.get() & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len)
+        {
+            if (len == 0) {
+                return 0;
+            }
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int n = Math.min(len, buffer.remaining());
+            buffer.get(b, off, n);
+            return n;
+        }
+
+        @Override
+        public long skip(long n)
+        {
+            if (n <= 0) {
+                return 0;
+            }
+            int skipped = (int) Math.min(n, buffer.remaining());
+            buffer.position(buffer.position() + skipped);
+            return skipped;
+        }
+
+        @Override
+        public int available()
+        {
+            return buffer.remaining();
+        }
+    }
+}
@@ -53,23 +53,28 @@ public class StorageFileLogServer
     protected byte[] getFile(String dateDir, String attemptDir, String fileName)
         throws StorageFileNotFoundException
     {
-        String path = getPrefixDir(dateDir, attemptDir) + fileName;
-        try {
-            StorageObject obj = storage.open(path);
-            try (InputStream in = obj.getContentInputStream()) {
-                if (obj.getContentLength() > 512*1024*1024) {
-                    throw new RuntimeException("Non-direct downloding log files larger than 512MB is not supported");
-                }
-                byte[] data = new byte[(int) obj.getContentLength()];
-                ByteStreams.readFully(in, data);
-                return data;
+        StorageObject obj = openFile(dateDir, attemptDir, fileName);
+        try (InputStream in = obj.getContentInputStream()) {
+            if (obj.getContentLength() > 512*1024*1024) {
+                throw new RuntimeException("Non-direct downloding log files larger than 512MB is not supported");
             }
+            byte[] data = new byte[(int) obj.getContentLength()];
+            ByteStreams.readFully(in, data);
+            return data;
         }
         catch (IOException ex) {
             throw Throwables.propagate(ex);
         }
     }
 
+    @Override
+    protected StorageObject openFile(String dateDir, String attemptDir, String fileName)
+        throws StorageFileNotFoundException
+    {
+        String path = getPrefixDir(dateDir, attemptDir) + fileName;
+        return storage.open(path);
+    }
+
     @Override
     protected void listFiles(String dateDir, String attemptDir, FileMetadataConsumer consumer)
     {
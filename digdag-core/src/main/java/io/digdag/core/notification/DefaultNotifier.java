@@ -2,6 +2,7 @@ package io.digdag.core.notification;
 
 import com.google.common.base.Optional;
 import com.google.common.base.Throwables;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.inject.Inject;
 import com.google.inject.Injector;
 import com.google.inject.Key;
@@ -14,9 +15,31 @@ import io.digdag.spi.Notifier;
 import io.digdag.util.RetryExecutor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.weakref.jmx.Managed;
+
+import javax.annotation.PreDestroy;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static io.digdag.util.RetryExecutor.retryExecutor;
 
+/**
+ * Notifier that sends notifications using the sender of notification.type.
+ *
+ * sendNotification sends a notification with retries on the caller's
+ * thread and fails if all retries fail, so that notify> tasks fail if the
+ * notification can't be sent.
+ *
+ * sendNotificationAsync puts a notification to a bounded queue that
+ * worker threads send with retries, so that system callers such as
+ * WorkflowExecutionTimeoutEnforcer are not blocked by a slow mail server
+ * or HTTP endpoint. It fails only if the queue is full. Setting
+ * notification.queue_size to 0 sends them on the caller's thread too.
+ */
 public class DefaultNotifier
         implements Notifier
 {
@@ -29,6 +52,13 @@ public class DefaultNotifier
     private static final int NOTIFICATION_MIN_RETRY_WAIT_DEFAULT = 1000;
     private static final int NOTIFICATION_MAX_RETRY_WAIT_DEFAULT = 30000;
 
+    private static final String NOTIFICATION_QUEUE_SIZE = "notification.queue_size";
+    private static final String NOTIFICATION_THREADS = "notification.threads";
+    private static final String NOTIFICATION_SHUTDOWN_WAIT = "notification.shutdown_wait";
+    private static final int NOTIFICATION_QUEUE_SIZE_DEFAULT = 1000;
+    private static final int NOTIFICATION_THREADS_DEFAULT = 2;
+    private static final int NOTIFICATION_SHUTDOWN_WAIT_DEFAULT = 30000;
+
     private static Logger logger = LoggerFactory.getLogger(DefaultNotifier.class);
 
     private Injector injector;
@@ -36,6 +66,15 @@ public class DefaultNotifier
     private final int retries;
     private final int minRetryWait;
     private final int maxRetryWait;
+    private final int shutdownWait;
+
+    // null if asynchronous notifications are sent on the caller's thread
+    private final ThreadPoolExecutor executor;
+
+    private final AtomicLong deliveredCount = new AtomicLong();
+    private final AtomicLong failedCount = new AtomicLong();
+    private final AtomicLong rejectedCount = new AtomicLong();
+    private final AtomicLong deliveryMillis = new AtomicLong();
 
     @Inject
     public DefaultNotifier(Config systemConfig, Injector injector)
@@ -46,6 +85,22 @@ public class DefaultNotifier
         this.retries = systemConfig.get(NOTIFICATION_RETRIES, int.class, NOTIFICATION_RETRIES_DEFAULT);
         this.minRetryWait = systemConfig.get(NOTIFICATION_MIN_RETRY_WAIT, int.class, NOTIFICATION_MIN_RETRY_WAIT_DEFAULT);
         this.maxRetryWait = systemConfig.get(NOTIFICATION_MAX_RETRY_WAIT, int.class, NOTIFICATION_MAX_RETRY_WAIT_DEFAULT);
+        this.shutdownWait = systemConfig.get(NOTIFICATION_SHUTDOWN_WAIT, int.class, NOTIFICATION_SHUTDOWN_WAIT_DEFAULT);
+
+        int queueSize = systemConfig.get(NOTIFICATION_QUEUE_SIZE, int.class, NOTIFICATION_QUEUE_SIZE_DEFAULT);
+        if (sender != null && queueSize > 0) {
+            int threads = systemConfig.get(NOTIFICATION_THREADS, int.class, NOTIFICATION_THREADS_DEFAULT);
+            this.executor = new ThreadPoolExecutor(threads, threads,
+                    0L, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(queueSize),
+                    new ThreadFactoryBuilder()
+                        .setDaemon(true)
+                        .setNameFormat("notification-%d")
+                        .build());
+        }
+        else {
+            this.executor = null;
+        }
     }
 
     private NotificationSender sender(String type)
@@ -63,6 +118,40 @@ public class DefaultNotifier
             return;
         }
 
+        deliver(notification, System.currentTimeMillis());
+    }
+
+    @Override
+    public void sendNotificationAsync(Notification notification)
+            throws NotificationException
+    {
+        if (sender == null || executor == null) {
+            sendNotification(notification);
+            return;
+        }
+
+        logger.debug("Notification: {}", notification);
+
+        long queuedAt = System.currentTimeMillis();
+        try {
+            executor.execute(() -> {
+                try {
+                    deliver(notification, queuedAt);
+                }
+                catch (NotificationException ex) {
+                    logger.error("Failed to send notification: {}", notification, ex);
+                }
+            });
+        }
+        catch (RejectedExecutionException ex) {
+            rejectedCount.incrementAndGet();
+            throw new NotificationException("Notification queue is full", ex);
+        }
+    }
+
+    private void deliver(Notification notification, long queuedAt)
+            throws NotificationException
+    {
         RetryExecutor retryExecutor = retryExecutor()
                 .retryIf(exception -> true)
                 .withInitialRetryWait(minRetryWait)
@@ -81,7 +170,56 @@ public class DefaultNotifier
             });
         }
         catch (RetryExecutor.RetryGiveupException e) {
+            failedCount.incrementAndGet();
             throw new NotificationException("Sending notification failed", e);
         }
+        deliveredCount.incrementAndGet();
+        deliveryMillis.addAndGet(System.currentTimeMillis() - queuedAt);
+    }
+
+    @PreDestroy
+    public void shutdown()
+            throws InterruptedException
+    {
+        if (executor == null) {
+            return;
+        }
+        // send queued notifications before exit
+        executor.shutdown();
+        if (!executor.awaitTermination(shutdownWait, TimeUnit.MILLISECONDS)) {
+            logger.warn("Discarding {} notifications not sent in {} milliseconds", executor.getQueue().size(), shutdownWait);
+            executor.shutdownNow();
+        }
+    }
+
+    @Managed
+    public int getQueueDepth()
+    {
+        return executor == null ? 0 : executor.getQueue().size();
+    }
+
+    @Managed
+    public long getDeliveredCount()
+    {
+        return deliveredCount.get();
+    }
+
+    @Managed
+    public long getFailedCount()
+    {
+        return failedCount.get();
+    }
+
+    @Managed
+    public long getRejectedCount()
+    {
+        return rejectedCount.get();
+    }
+
+    @Managed
+    public double getDeliveryMeanMillis()
+    {
+        long count = deliveredCount.get();
+        return count == 0 ? 0.0 : deliveryMillis.get() / (double) count;
     }
 }
@@ -78,6 +78,10 @@ public class MailNotificationSender
     private final Boolean isHtml;
     private final String from;
     private final Config config;
+    private final Session session;
+
+    // connected transport reused by notifications sent in a row. null if not connected.
+    private Transport transport;
 
     @Inject
     public MailNotificationSender(Config systemConfig, TemplateEngine templateEngine, ObjectMapper mapper)
@@ -95,15 +99,13 @@ public class MailNotificationSender
         this.isHtml = config.get(NOTIFICATION_MAIL_HTML, boolean.class, NOTIFICATION_MAIL_HTML_DEFAULT);
         Optional<String> bodyTemplateFile = config.getOptional(NOTIFICATION_MAIL_BODY_TEMPLATE_FILE, String.class);
         this.bodyTemplate = bodyTemplateFile.transform(this::readFile).or(NOTIFICATION_MAIL_BODY_TEMPLATE_DEFAULT);
+        this.session = createSession();
 
         selfCheck();
     }
 
     private void selfCheck()
     {
-        // Verify that we can create a session
-        createSession();
-
         // Verify that we can create a mail body
         ImmutableNotification notification = Notification.builder(Instant.now(), "message")
                 .siteId(1)
@@ -156,8 +158,6 @@ public class MailNotificationSender
     public void sendNotification(Notification notification)
             throws NotificationException
     {
-        Session session = createSession();
-
         MimeMessage msg = new MimeMessage(session);
 
         try {
@@ -170,13 +170,49 @@ public class MailNotificationSender
 
             msg.setSubject(subject);
             msg.setText(body(notification), "utf-8", isHtml ? "html" : "plain");
-            Transport.send(msg);
+            send(msg);
         }
         catch (MessagingException | IOException | TemplateException ex) {
             throw Throwables.propagate(ex);
         }
     }
 
+    private synchronized void send(MimeMessage msg)
+            throws MessagingException
+    {
+        msg.saveChanges();
+
+        // isConnected checks that the server didn't close the idle connection
+        if (transport == null || !transport.isConnected()) {
+            closeTransport();
+            Transport newTransport = session.getTransport("smtp");
+            newTransport.connect();
+            transport = newTransport;
+        }
+
+        try {
+            transport.sendMessage(msg, msg.getAllRecipients());
+        }
+        catch (MessagingException ex) {
+            // connect again at retry
+            closeTransport();
+            throw ex;
+        }
+    }
+
+    private void closeTransport()
+    {
+        if (transport != null) {
+            try {
+                transport.close();
+            }
+            catch (MessagingException ex) {
+                // ignore
+            }
+            transport = null;
+        }
+    }
+
     private InternetAddress[] addresses(List<String> addresses)
     {
         return addresses.stream()
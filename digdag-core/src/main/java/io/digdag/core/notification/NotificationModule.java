@@ -7,6 +7,8 @@ import com.google.inject.name.Names;
 import io.digdag.spi.NotificationSender;
 import io.digdag.spi.Notifier;
 
+import static org.weakref.jmx.guice.ExportBinder.newExporter;
+
 public class NotificationModule
         implements Module
 {
@@ -17,5 +19,6 @@ public class NotificationModule
         binder.bind(NotificationSender.class).annotatedWith(Names.named("mail")).to(MailNotificationSender.class);
         binder.bind(NotificationSender.class).annotatedWith(Names.named("shell")).to(ShellNotificationSender.class);
         binder.bind(Notifier.class).to(DefaultNotifier.class).in(Scopes.SINGLETON);
+        newExporter(binder).export(Notifier.class).withGeneratedName();
     }
 }
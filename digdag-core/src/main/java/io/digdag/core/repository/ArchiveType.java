@@ -10,6 +10,8 @@ public class ArchiveType
 
     public static final ArchiveType NONE = ArchiveType.of("none");
 
+    public static final ArchiveType MANIFEST = ArchiveType.of("manifest");
+
     @JsonCreator
     public static ArchiveType of(String name)
     {
@@ -1,6 +1,8 @@
 package io.digdag.core.session;
 
+import java.time.Duration;
 import java.time.Instant;
+import java.util.List;
 import javax.annotation.PostConstruct;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
@@ -18,17 +20,26 @@ import io.digdag.core.workflow.TaskControl;
 import io.digdag.core.workflow.Tasks;
 import io.digdag.core.workflow.WorkflowExecutor;
 import io.digdag.core.repository.ResourceNotFoundException;
+import io.digdag.client.config.Config;
 import io.digdag.client.config.ConfigFactory;
+import io.digdag.util.DurationParam;
 
 public class SessionMonitorExecutor
         implements BackgroundExecutor
 {
     private static final Logger logger = LoggerFactory.getLogger(SessionMonitorExecutor.class);
 
+    private static final int DEFAULT_CLAIM_BATCH_SIZE = 100;
+    private static final Duration DEFAULT_RELOAD_INTERVAL = Duration.ofMinutes(1);
+
     private final ConfigFactory cf;
     private final SessionStoreManager sm;
     private final WorkflowExecutor exec;
+    private final SessionMonitorTimerWheel timerWheel;
+    private final int claimBatchSize;
+    private final Duration reloadInterval;
     private ScheduledExecutorService executor;
+    private Instant lastReloadTime = Instant.EPOCH;
 
     @Inject(optional = true)
     private ErrorReporter errorReporter = ErrorReporter.empty();
@@ -36,12 +47,20 @@ public class SessionMonitorExecutor
     @Inject
     public SessionMonitorExecutor(
             ConfigFactory cf,
+            Config systemConfig,
             SessionStoreManager sm,
-            WorkflowExecutor exec)
+            WorkflowExecutor exec,
+            SessionMonitorTimerWheel timerWheel)
     {
         this.cf = cf;
         this.sm = sm;
         this.exec = exec;
+        this.timerWheel = timerWheel;
+        this.claimBatchSize = systemConfig.get("executor.session_monitor.claim_batch_size", int.class, DEFAULT_CLAIM_BATCH_SIZE);
+        // session monitors inserted by other servers are found when the timer wheel is reloaded
+        this.reloadInterval = systemConfig.getOptional("executor.session_monitor.reload_interval", DurationParam.class)
+            .transform(DurationParam::getDuration)
+            .or(DEFAULT_RELOAD_INTERVAL);
     }
 
     @PostConstruct
@@ -55,7 +74,8 @@ public class SessionMonitorExecutor
                     .build()
                     );
         }
-        // TODO make interval configurable?
+        // this runs every second but claims monitors from the database
+        // only when the timer wheel says that one of them is due.
         executor.scheduleWithFixedDelay(() -> run(),
                 1, 1, TimeUnit.SECONDS);
     }
@@ -79,10 +99,21 @@ public class SessionMonitorExecutor
     public void run()
     {
         try {
-            sm.lockReadySessionMonitors(Instant.now(), (storedMonitor) -> {
-                // runMonitor needs to return next runtime if this monitor should run again later
-                return runMonitor(storedMonitor);
-            });
+            Instant now = Instant.now();
+            if (!lastReloadTime.plus(reloadInterval).isAfter(now)) {
+                reloadTimerWheel(now);
+            }
+            if (timerWheel.advance(now)) {
+                try {
+                    claimReadySessionMonitors(now);
+                }
+                catch (RuntimeException ex) {
+                    // advance removed the due run times. make them due again
+                    // so that the next run retries claiming the monitors.
+                    timerWheel.add(now);
+                    throw ex;
+                }
+            }
         }
         catch (Throwable t) {
             logger.error("An uncaught exception is ignored. This session monitor scheduling will be retried.", t);
@@ -90,6 +121,31 @@ public class SessionMonitorExecutor
         }
     }
 
+    private void reloadTimerWheel(Instant now)
+    {
+        List<Instant> runTimes = sm.getSessionMonitorRunTimes();
+        timerWheel.reset(now, runTimes);
+        lastReloadTime = now;
+        logger.debug("Loaded {} session monitor run times", runTimes.size());
+    }
+
+    private void claimReadySessionMonitors(Instant now)
+    {
+        while (true) {
+            int claimed = sm.lockReadySessionMonitors(now, claimBatchSize, (storedMonitor) -> {
+                // runMonitor needs to return next runtime if this monitor should run again later
+                Optional<Instant> nextRunTime = runMonitor(storedMonitor);
+                if (nextRunTime.isPresent()) {
+                    timerWheel.add(nextRunTime.get());
+                }
+                return nextRunTime;
+            });
+            if (claimed < claimBatchSize) {
+                break;
+            }
+        }
+    }
+
     public Optional<Instant> runMonitor(StoredSessionMonitor storedMonitor)
     {
         sm.lockAttemptIfExists(storedMonitor.getAttemptId(), (sessionAttemptControlStore, summary) -> {
@@ -0,0 +1,150 @@
+package io.digdag.core.session;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Hierarchical timer wheel of session monitor run times.
+ *
+ * This keeps only next_run_time of session_monitors, in seconds, so that
+ * SessionMonitorExecutor claims monitors from the database only when one of
+ * them is due. Level 0 has 64 slots of 1 second, level N has 64 slots of
+ * 64^N seconds. Run times beyond the last level are kept in an overflow set
+ * and moved to the wheel when the top level cascades.
+ *
+ * This class is thread-safe.
+ */
+public class SessionMonitorTimerWheel
+{
+    private static final int SLOT_BITS = 6;
+    private static final int SLOT_COUNT = 1 << SLOT_BITS;
+    private static final int SLOT_MASK = SLOT_COUNT - 1;
+    private static final int LEVEL_COUNT = 4;
+
+    private final List<List<Set<Long>>> levels;
+    private final TreeSet<Long> overflow = new TreeSet<>();
+    private long currentTime;
+    private int size;
+    private boolean due;
+
+    public SessionMonitorTimerWheel()
+    {
+        this(Instant.now());
+    }
+
+    public SessionMonitorTimerWheel(Instant currentTime)
+    {
+        this.levels = new ArrayList<>();
+        for (int i = 0; i < LEVEL_COUNT; i++) {
+            List<Set<Long>> slots = new ArrayList<>();
+            for (int j = 0; j < SLOT_COUNT; j++) {
+                slots.add(new HashSet<>());
+            }
+            levels.add(slots);
+        }
+        this.currentTime = currentTime.getEpochSecond();
+    }
+
+    public synchronized void add(Instant runTime)
+    {
+        insert(runTime.getEpochSecond());
+    }
+
+    public synchronized void reset(Instant currentTime, List<Instant> runTimes)
+    {
+        for (List<Set<Long>> slots : levels) {
+            for (Set<Long> slot : slots) {
+                slot.clear();
+            }
+        }
+        overflow.clear();
+        size = 0;
+        due = false;
+        this.currentTime = currentTime.getEpochSecond();
+        for (Instant runTime : runTimes) {
+            insert(runTime.getEpochSecond());
+        }
+    }
+
+    public synchronized int size()
+    {
+        return size;
+    }
+
+    /**
+     * Advances the wheel to the given time and returns true if any of run
+     * times are due at or before the time. Due run times are removed.
+     */
+    public synchronized boolean advance(Instant now)
+    {
+        long time = now.getEpochSecond();
+        if (size == 0 && currentTime < time) {
+            // nothing to cascade. jump directly
+            currentTime = time;
+        }
+        while (currentTime < time) {
+            currentTime++;
+            cascade();
+            Set<Long> slot = levels.get(0).get((int) (currentTime & SLOT_MASK));
+            if (!slot.isEmpty()) {
+                size -= slot.size();
+                slot.clear();
+                due = true;
+            }
+        }
+        boolean result = due;
+        due = false;
+        return result;
+    }
+
+    private void cascade()
+    {
+        for (int level = 1; level < LEVEL_COUNT; level++) {
+            long lowerBits = currentTime & ((1L << (SLOT_BITS * level)) - 1);
+            if (lowerBits != 0) {
+                return;
+            }
+            Set<Long> slot = levels.get(level).get((int) ((currentTime >> (SLOT_BITS * level)) & SLOT_MASK));
+            if (!slot.isEmpty()) {
+                List<Long> entries = new ArrayList<>(slot);
+                size -= slot.size();
+                slot.clear();
+                for (long entry : entries) {
+                    insert(entry);
+                }
+            }
+        }
+        // all levels are wrapped around. overflow entries may fit in the wheel now
+        long limit = currentTime + (1L << (SLOT_BITS * LEVEL_COUNT));
+        while (!overflow.isEmpty() && overflow.first() < limit) {
+            long entry = overflow.pollFirst();
+            size--;
+            insert(entry);
+        }
+    }
+
+    private void insert(long time)
+    {
+        long delta = time - currentTime;
+        if (delta <= 0) {
+            due = true;
+            return;
+        }
+        for (int level = 0; level < LEVEL_COUNT; level++) {
+            if (delta < (1L << (SLOT_BITS * (level + 1)))) {
+                Set<Long> slot = levels.get(level).get((int) ((time >> (SLOT_BITS * level)) & SLOT_MASK));
+                if (slot.add(time)) {
+                    size++;
+                }
+                return;
+            }
+        }
+        if (overflow.add(time)) {
+            size++;
+        }
+    }
+}
@@ -30,6 +30,9 @@ public interface SessionStore
     StoredSessionAttemptWithSession getAttemptById(long attemptId)
         throws ResourceNotFoundException;
 
+    // returns attempts of the ids in order of id. ids that don't exist are ignored.
+    List<StoredSessionAttemptWithSession> getAttemptsByIdList(List<Long> attemptIds);
+
     StoredSessionAttemptWithSession getLastAttemptByName(int projectId, String workflowName, Instant instant)
         throws ResourceNotFoundException;
 
@@ -41,6 +44,15 @@ public interface SessionStore
 
     List<ArchivedTask> getTasksOfAttempt(long attemptId);
 
+    // returns tasks of the attempt whose id is larger than lastId in order of id.
+    // unlike getTasksOfAttempt, this doesn't return tasks moved to the archive.
+    // callers read the archive using getTasksOfAttempt(attemptId) once when this returns nothing.
+    List<ArchivedTask> getTasksOfAttempt(long attemptId, long lastId, int limit);
+
+    // returns tasks of the attempt updated after (updatedSince, lastId) in order of (updated_at, id).
+    // unlike getTasksOfAttempt, this doesn't return tasks moved to the archive.
+    List<ArchivedTask> getTasksOfAttemptUpdatedSince(long attemptId, Instant updatedSince, long lastId, int limit);
+
     long getActiveAttemptCount();
 
     interface SessionLockAction <T>
@@ -30,11 +30,17 @@ public interface SessionStoreManager
     List<Long> findAllReadyTaskIds(int maxEntries);
 
     // for AttemptTimeoutEnforcer.enforceAttemptTTLs
-    List<StoredSessionAttempt> findActiveAttemptsCreatedBefore(Instant createdBefore, long lastId, int limit);
+    List<StoredSessionAttemptWithSession> findActiveAttemptsCreatedBefore(Instant createdBefore, long lastId, int limit);
+
+    // for AttemptTimeoutEnforcer.enforceAttemptTTLs with per-project or per-workflow TTL
+    List<StoredSessionAttemptWithSession> findActiveAttemptsOfProjectCreatedBefore(int siteId, String projectName, Optional<String> workflowName, Instant createdBefore, long lastId, int limit);
 
     // for AttemptTimeoutEnforcer.enforceTaskTTLs
     List<TaskAttemptSummary> findTasksStartedBeforeWithState(TaskStateCode[] states, Instant startedBefore, long lastId, int limit);
 
+    // for AttemptTimeoutEnforcer.enforceTaskTTLs with per-project or per-workflow TTL
+    List<TaskAttemptSummary> findTasksOfProjectStartedBeforeWithState(int siteId, String projectName, Optional<String> workflowName, TaskStateCode[] states, Instant startedBefore, long lastId, int limit);
+
     interface AttemptLockAction <T>
     {
         T call(SessionAttemptControlStore store, SessionAttemptSummary summary);
@@ -57,6 +63,12 @@ public interface SessionStoreManager
 
     boolean requestCancelAttempt(long attemptId);
 
+    // for AttemptTimeoutEnforcer. returns ids of attempts that are actually canceled
+    List<Long> requestCancelAttempts(List<Long> attemptIds);
+
+    // for AttemptTimeoutEnforcer.enforceTaskTTLs
+    List<StoredSessionAttemptWithSession> getAttemptsWithSessionByIds(List<Long> attemptIds);
+
     int trySetRetryWaitingToReady();
 
     interface TaskLockAction <T>
@@ -81,7 +93,11 @@ public interface SessionStoreManager
         Optional<Instant> schedule(StoredSessionMonitor monitor);
     }
 
-    void lockReadySessionMonitors(Instant currentTime, SessionMonitorAction func);
+    // returns number of claimed monitors
+    int lockReadySessionMonitors(Instant currentTime, int limit, SessionMonitorAction func);
+
+    // for SessionMonitorExecutor to load SessionMonitorTimerWheel
+    List<Instant> getSessionMonitorRunTimes();
 
     List<TaskRelation> getTaskRelations(long attemptId);
 
@@ -1,5 +1,6 @@
 package io.digdag.core.session;
 
+import java.time.Instant;
 import com.google.common.base.Optional;
 import org.immutables.value.Value;
 import com.fasterxml.jackson.databind.annotation.JsonSerialize;
@@ -15,4 +16,7 @@ public abstract class TaskAttemptSummary
     public abstract long getAttemptId();
 
     public abstract TaskStateCode getState();
+
+    // set only by SessionStoreManager.findTasksStartedBeforeWithState
+    public abstract Optional<Instant> getStartedAt();
 }
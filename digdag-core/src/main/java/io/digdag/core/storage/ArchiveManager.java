@@ -2,6 +2,9 @@ package io.digdag.core.storage;
 
 import java.io.IOException;
 import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.InputStream;
+import java.nio.file.Files;
 import java.time.Instant;
 import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
@@ -12,6 +15,9 @@ import com.google.inject.Inject;
 import com.google.common.base.Optional;
 import com.google.common.base.Throwables;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.digdag.core.TempFileManager;
+import io.digdag.core.TempFileManager.TempFile;
+import io.digdag.core.archive.ProjectManifest;
 import io.digdag.core.repository.ArchiveType;
 import io.digdag.core.repository.ProjectStore;
 import io.digdag.core.repository.StoredRevision;
@@ -64,13 +70,17 @@ public class ArchiveManager
     }
 
     private final StorageManager storageManager;
+    private final ProjectBlobStore blobStore;
+    private final TempFileManager tempFiles;
     private final ArchiveType uploadArchiveType;
     private final Config systemConfig;
 
     @Inject
-    public ArchiveManager(StorageManager storageManager, Config systemConfig)
+    public ArchiveManager(StorageManager storageManager, ProjectBlobStore blobStore, TempFileManager tempFiles, Config systemConfig)
     {
         this.storageManager = storageManager;
+        this.blobStore = blobStore;
+        this.tempFiles = tempFiles;
         this.systemConfig = systemConfig;
         this.uploadArchiveType = systemConfig.get("archive.type", ArchiveType.class, ArchiveType.DB);
     }
@@ -121,11 +131,68 @@ public class ArchiveManager
                         data.length)
                     );
         }
+        else if (type.equals(ArchiveType.MANIFEST)) {
+            return Optional.of(openArchiveFromManifest(ps, rev));
+        }
         else {
             return Optional.of(getStorage(type).open(rev.getArchivePath().or("")));
         }
     }
 
+    // returns absent if the revision is not pushed using a manifest
+    public Optional<ProjectManifest> getManifest(ProjectStore ps, int projectId, String revisionName)
+        throws ResourceNotFoundException
+    {
+        StoredRevision rev = findRevision(ps, projectId, revisionName);
+        if (!rev.getArchiveType().equals(ArchiveType.MANIFEST)) {
+            return Optional.absent();
+        }
+        return Optional.of(blobStore.parseManifest(ps.getRevisionArchiveData(rev.getId())));
+    }
+
+    public StorageObject openBlob(ProjectStore ps, int projectId, String digest)
+        throws ResourceNotFoundException, StorageFileNotFoundException
+    {
+        int siteId = ps.getProjectById(projectId).getSiteId();
+        return blobStore.openBlob(siteId, digest);
+    }
+
+    // builds a tar.gz archive on a temporary file so that a large project
+    // is not on memory. the file is deleted when the returned stream is closed.
+    private StorageObject openArchiveFromManifest(ProjectStore ps, StoredRevision rev)
+        throws ResourceNotFoundException, StorageFileNotFoundException
+    {
+        int siteId = ps.getProjectById(rev.getProjectId()).getSiteId();
+        ProjectManifest manifest = blobStore.parseManifest(ps.getRevisionArchiveData(rev.getId()));
+        TempFile file = tempFiles.createTempFile("archive", "manifest-", ".tar.gz");
+        try {
+            blobStore.writeArchive(siteId, manifest, Files.newOutputStream(file.get()));
+            long size = Files.size(file.get());
+            InputStream in = new FilterInputStream(Files.newInputStream(file.get())) {
+                @Override
+                public void close()
+                    throws IOException
+                {
+                    try {
+                        super.close();
+                    }
+                    finally {
+                        file.close();
+                    }
+                }
+            };
+            return new StorageObject(in, size);
+        }
+        catch (IOException ex) {
+            file.close();
+            throw Throwables.propagate(ex);
+        }
+        catch (RuntimeException | StorageFileNotFoundException ex) {
+            file.close();
+            throw ex;
+        }
+    }
+
     public Optional<StoredArchive> getArchive(ProjectStore ps, int projectId, String revisionName)
         throws ResourceNotFoundException
     {
@@ -154,6 +221,30 @@ public class ArchiveManager
                 }
             });
         }
+        else if (type.equals(ArchiveType.MANIFEST)) {
+            return Optional.of(new StoredArchive() {
+                public Optional<byte[]> getByteArray()
+                {
+                    return Optional.absent();
+                }
+
+                public Optional<DirectDownloadHandle> getDirectDownloadHandle()
+                {
+                    return Optional.absent();
+                }
+
+                public StorageObject open()
+                    throws StorageFileNotFoundException
+                {
+                    try {
+                        return openArchiveFromManifest(ps, rev);
+                    }
+                    catch (ResourceNotFoundException ex) {
+                        throw new StorageFileNotFoundException(ex);
+                    }
+                }
+            });
+        }
         else {
             Storage storage = getStorage(type);
             return Optional.of(new StoredArchive() {
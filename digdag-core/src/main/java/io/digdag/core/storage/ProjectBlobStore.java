@@ -0,0 +1,258 @@
+package io.digdag.core.storage;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.regex.Pattern;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.IOException;
+import javax.annotation.PreDestroy;
+import com.google.inject.Inject;
+import com.google.common.base.Optional;
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.io.ByteStreams;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.digdag.client.config.Config;
+import io.digdag.core.archive.ProjectManifest;
+import io.digdag.core.repository.ArchiveType;
+import io.digdag.spi.Storage;
+import io.digdag.spi.StorageObject;
+import io.digdag.spi.StorageFileNotFoundException;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.apache.commons.compress.archivers.tar.TarConstants;
+import org.apache.commons.compress.compressors.gzip.GzipCompressorOutputStream;
+import static java.util.Locale.ENGLISH;
+
+/**
+ * Content-addressed store of project files.
+ *
+ * Files pushed using a manifest are stored at {site_id}/blobs/{xx}/{digest}
+ * of the archive storage where digest is the lowercase hex SHA-256 of the
+ * contents and xx is the first 2 characters of the digest. Blobs are never
+ * overwritten or deleted, so size of a blob is cached once confirmed.
+ * This store is available only if archive.type is a storage type.
+ */
+public class ProjectBlobStore
+{
+    private static final Pattern DIGEST_PATTERN = Pattern.compile("[0-9a-f]{64}");
+    private static final int EXISTING_BLOB_CACHE_SIZE = 100000;
+    private static final int LOOKUP_THREADS = 16;
+
+    private final StorageManager storageManager;
+    private final Config systemConfig;
+    private final ArchiveType archiveType;
+    private final ObjectMapper mapper;
+    private final Cache<String, Long> blobSizes;
+    private final ExecutorService lookupExecutor;
+
+    @Inject
+    public ProjectBlobStore(StorageManager storageManager, Config systemConfig, ObjectMapper mapper)
+    {
+        this.storageManager = storageManager;
+        this.systemConfig = systemConfig;
+        this.archiveType = systemConfig.get("archive.type", ArchiveType.class, ArchiveType.DB);
+        this.mapper = mapper;
+        this.blobSizes = CacheBuilder.newBuilder()
+            .maximumSize(EXISTING_BLOB_CACHE_SIZE)
+            .build();
+        this.lookupExecutor = Executors.newFixedThreadPool(LOOKUP_THREADS,
+                new ThreadFactoryBuilder()
+                .setDaemon(true)
+                .setNameFormat("project-blob-lookup-%d")
+                .build()
+                );
+    }
+
+    @PreDestroy
+    public void shutdown()
+    {
+        lookupExecutor.shutdownNow();
+    }
+
+    public boolean isAvailable()
+    {
+        return !archiveType.equals(ArchiveType.DB) && !archiveType.equals(ArchiveType.NONE);
+    }
+
+    public static void validateDigest(String digest)
+    {
+        if (digest == null || !DIGEST_PATTERN.matcher(digest).matches()) {
+            throw new IllegalArgumentException("Invalid blob digest. Expected lowercase hex of SHA-256: " + digest);
+        }
+    }
+
+    public List<String> findMissingBlobs(int siteId, List<String> digests)
+    {
+        Map<String, Long> sizes = getBlobSizes(siteId, digests);
+        Set<String> missing = new LinkedHashSet<>();
+        for (String digest : digests) {
+            if (!sizes.containsKey(digest)) {
+                missing.add(digest);
+            }
+        }
+        return new ArrayList<>(missing);
+    }
+
+    // returns sizes of stored blobs. missing blobs are not included.
+    // blobs not in the cache are looked up by key in parallel so that the cost
+    // doesn't depend on the number of blobs in the store.
+    public Map<String, Long> getBlobSizes(int siteId, List<String> digests)
+    {
+        checkAvailable();
+
+        Map<String, Long> sizes = new HashMap<>();
+
+        Set<String> uncached = new LinkedHashSet<>();
+        for (String digest : digests) {
+            validateDigest(digest);
+            Long cached = blobSizes.getIfPresent(cacheKey(siteId, digest));
+            if (cached != null) {
+                sizes.put(digest, cached);
+            }
+            else {
+                uncached.add(digest);
+            }
+        }
+        if (uncached.isEmpty()) {
+            return sizes;
+        }
+
+        Storage storage = getStorage();
+        Map<String, CompletableFuture<Optional<Long>>> lookups = new HashMap<>();
+        for (String digest : uncached) {
+            lookups.put(digest, CompletableFuture.supplyAsync(
+                        () -> storage.getContentLength(formatBlobPath(siteId, digest)),
+                        lookupExecutor));
+        }
+        for (Map.Entry<String, CompletableFuture<Optional<Long>>> pair : lookups.entrySet()) {
+            Optional<Long> size;
+            try {
+                size = pair.getValue().join();
+            }
+            catch (CompletionException ex) {
+                throw Throwables.propagate(ex.getCause());
+            }
+            if (size.isPresent()) {
+                blobSizes.put(cacheKey(siteId, pair.getKey()), size.get());
+                sizes.put(pair.getKey(), size.get());
+            }
+        }
+        return sizes;
+    }
+
+    // caller must verify that digest matches with the contents
+    public void putBlob(int siteId, String digest, long size, Storage.UploadStreamProvider payload)
+        throws IOException
+    {
+        checkAvailable();
+        validateDigest(digest);
+        getStorage().put(formatBlobPath(siteId, digest), size, payload);
+        blobSizes.put(cacheKey(siteId, digest), size);
+    }
+
+    public StorageObject openBlob(int siteId, String digest)
+        throws StorageFileNotFoundException
+    {
+        checkAvailable();
+        validateDigest(digest);
+        return getStorage().open(formatBlobPath(siteId, digest));
+    }
+
+    public ProjectManifest parseManifest(byte[] data)
+    {
+        try {
+            return mapper.readValue(data, ProjectManifest.class);
+        }
+        catch (IOException ex) {
+            throw Throwables.propagate(ex);
+        }
+    }
+
+    public byte[] formatManifest(ProjectManifest manifest)
+    {
+        try {
+            return mapper.writeValueAsBytes(manifest);
+        }
+        catch (IOException ex) {
+            throw Throwables.propagate(ex);
+        }
+    }
+
+    /**
+     * Writes a tar.gz archive built from blobs to out, and closes out. This
+     * is used to keep GET /api/projects/{id}/archive working for revisions
+     * pushed using a manifest.
+     */
+    public void writeArchive(int siteId, ProjectManifest manifest, OutputStream out)
+        throws StorageFileNotFoundException, IOException
+    {
+        try (TarArchiveOutputStream tar = new TarArchiveOutputStream(new GzipCompressorOutputStream(out))) {
+            tar.setLongFileMode(TarArchiveOutputStream.LONGFILE_POSIX);
+            Date modTime = new Date();
+            for (ProjectManifest.Entry file : manifest.getFiles()) {
+                TarArchiveEntry e;
+                if (file.getLinkName().isPresent()) {
+                    e = new TarArchiveEntry(file.getName(), TarConstants.LF_SYMLINK);
+                    e.setLinkName(file.getLinkName().get());
+                    e.setMode(file.getMode());
+                    tar.putArchiveEntry(e);
+                    tar.closeArchiveEntry();
+                }
+                else {
+                    StorageObject blob = openBlob(siteId, file.getDigest().get());
+                    try (InputStream in = blob.getContentInputStream()) {
+                        // size of the stored blob rather than the size declared in the manifest
+                        e = new TarArchiveEntry(file.getName());
+                        e.setSize(blob.getContentLength());
+                        e.setMode(file.getMode());
+                        e.setModTime(modTime);
+                        tar.putArchiveEntry(e);
+                        ByteStreams.copy(in, tar);
+                    }
+                    tar.closeArchiveEntry();
+                }
+            }
+        }
+    }
+
+    private void checkAvailable()
+    {
+        if (!isAvailable()) {
+            throw new IllegalArgumentException(String.format(ENGLISH,
+                        "Project blobs are not available because archive.type is '%s'", archiveType));
+        }
+    }
+
+    private Storage getStorage()
+    {
+        return storageManager.create(archiveType.getName(), systemConfig, "archive.");
+    }
+
+    private static String cacheKey(int siteId, String digest)
+    {
+        return siteId + "/" + digest;
+    }
+
+    private static String formatBlobDir(int siteId, String digest)
+    {
+        return String.format(ENGLISH, "%d/blobs/%s/", siteId, digest.substring(0, 2));
+    }
+
+    private static String formatBlobPath(int siteId, String digest)
+    {
+        return formatBlobDir(siteId, digest) + digest;
+    }
+}
@@ -15,6 +15,7 @@ public class StorageModule
     {
         binder.bind(StorageManager.class).in(Scopes.SINGLETON);
         binder.bind(ArchiveManager.class).in(Scopes.SINGLETON);
+        binder.bind(ProjectBlobStore.class).in(Scopes.SINGLETON);
         Multibinder.newSetBinder(binder, StorageFactory.class);
     }
 }
@@ -23,6 +23,7 @@ import io.digdag.core.session.ParameterUpdate;
 import io.digdag.core.session.Session;
 import io.digdag.core.session.SessionAttempt;
 import io.digdag.core.session.SessionMonitor;
+import io.digdag.core.session.SessionMonitorTimerWheel;
 import io.digdag.core.session.SessionStore;
 import io.digdag.core.session.SessionStoreManager;
 import io.digdag.core.session.StoredSessionAttempt;
@@ -165,12 +166,18 @@ public class WorkflowExecutor
     private final ConfigFactory cf;
     private final ObjectMapper archiveMapper;
     private final Config systemConfig;
+    private final SessionMonitorTimerWheel monitorTimerWheel;
     private Notifier notifier;
 
     private final Lock propagatorLock = new ReentrantLock();
     private final Condition propagatorCondition = propagatorLock.newCondition();
     private volatile boolean propagatorNotice = false;
 
+    // incremented when this executor finishes or cancels an attempt
+    private final Lock attemptStateLock = new ReentrantLock();
+    private final Condition attemptStateCondition = attemptStateLock.newCondition();
+    private long attemptStateVersion = 0;
+
     @Inject
     public WorkflowExecutor(
             ProjectStoreManager rm,
@@ -180,7 +187,8 @@ public class WorkflowExecutor
             ConfigFactory cf,
             ObjectMapper archiveMapper,
             Config systemConfig,
-            Notifier notifier)
+            Notifier notifier,
+            SessionMonitorTimerWheel monitorTimerWheel)
     {
         this.rm = rm;
         this.sm = sm;
@@ -190,6 +198,7 @@ public class WorkflowExecutor
         this.archiveMapper = archiveMapper;
         this.systemConfig = systemConfig;
         this.notifier = notifier;
+        this.monitorTimerWheel = monitorTimerWheel;
     }
 
     public StoredSessionAttemptWithSession submitWorkflow(int siteId,
@@ -319,6 +328,11 @@ public class WorkflowExecutor
             throw new SessionAttemptConflictException("Session already exists", sessionAlreadyExists, conflicted);
         }
 
+        // session monitors are committed. SessionMonitorExecutor claims them when one is due.
+        for (SessionMonitor monitor : ar.getSessionMonitors()) {
+            monitorTimerWheel.add(monitor.getNextRunTime());
+        }
+
         if (rootTaskState == TaskStateCode.READY) {
             // this is an optimization to dispatch tasks to a queue quickly.
             try {
@@ -361,11 +375,63 @@ public class WorkflowExecutor
 
         if (updated) {
             noticeStatusPropagate();
+            noticeAttemptStateChange();
         }
 
         return updated;
     }
 
+    private void noticeAttemptStateChange()
+    {
+        attemptStateLock.lock();
+        try {
+            attemptStateVersion++;
+            attemptStateCondition.signalAll();
+        }
+        finally {
+            attemptStateLock.unlock();
+        }
+    }
+
+    /**
+     * Returns a number that changes when this executor finishes or cancels an
+     * attempt. Read this before reading state of attempts, and pass it to
+     * waitAttemptStateChange to wait for the next change.
+     *
+     * Attempts finished or canceled by another process don't change this
+     * number. Callers need to read state of attempts periodically if there're
+     * other processes.
+     */
+    public long getAttemptStateVersion()
+    {
+        attemptStateLock.lock();
+        try {
+            return attemptStateVersion;
+        }
+        finally {
+            attemptStateLock.unlock();
+        }
+    }
+
+    /**
+     * Waits until getAttemptStateVersion becomes different from the given
+     * version or the timeout passes.
+     */
+    public void waitAttemptStateChange(long version, long timeout, TimeUnit unit)
+            throws InterruptedException
+    {
+        long nanos = unit.toNanos(timeout);
+        attemptStateLock.lock();
+        try {
+            while (attemptStateVersion == version && nanos > 0) {
+                nanos = attemptStateCondition.awaitNanos(nanos);
+            }
+        }
+        finally {
+            attemptStateLock.unlock();
+        }
+    }
+
     private void noticeStatusPropagate()
     {
         propagatorLock.lock();
@@ -686,6 +752,10 @@ public class WorkflowExecutor
                 .reduce(anyChanged, (a, b) -> a || b);
             lastTaskId = tasks.get(tasks.size() - 1).getId();
         }
+        if (anyChanged) {
+            // after commit so that waiters read the new state
+            noticeAttemptStateChange();
+        }
         return anyChanged;
     }
 
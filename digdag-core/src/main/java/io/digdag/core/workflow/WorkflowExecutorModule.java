@@ -4,6 +4,7 @@ import com.google.inject.Module;
 import com.google.inject.Binder;
 import com.google.inject.Scopes;
 import io.digdag.core.session.SessionMonitorExecutor;
+import io.digdag.core.session.SessionMonitorTimerWheel;
 
 public class WorkflowExecutorModule
         implements Module
@@ -16,6 +17,7 @@ public class WorkflowExecutorModule
         binder.bind(AttemptBuilder.class).in(Scopes.SINGLETON);
 
         // session
+        binder.bind(SessionMonitorTimerWheel.class).in(Scopes.SINGLETON);
         binder.bind(SessionMonitorExecutor.class).asEagerSingleton();
     }
 }
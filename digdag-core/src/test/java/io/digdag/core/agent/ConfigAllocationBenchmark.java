@@ -0,0 +1,98 @@
+package io.digdag.core.agent;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import io.digdag.client.config.Config;
+
+import static io.digdag.client.config.ConfigUtils.newConfig;
+import static java.util.Locale.ENGLISH;
+
+/**
+ * Measures heap allocation of building and evaluating config of a task.
+ *
+ * "dispatch" merges params in the order WorkflowExecutor builds a
+ * TaskRequest: defaults < attempt < export and store params of parent
+ * tasks < export of the task. "evaluation" evaluates local config of a
+ * task merged on the params as OperatorManager does.
+ *
+ * This is not run as a unit test. Run the main method manually with a JDK
+ * that includes Nashorn:
+ *
+ *   ./gradlew :digdag-core:testClasses
+ *   java -cp ... io.digdag.core.agent.ConfigAllocationBenchmark [tasks] [parents] [stored keys per parent]
+ */
+public class ConfigAllocationBenchmark
+{
+    public static void main(String[] args)
+        throws Exception
+    {
+        int tasks = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        int parents = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        int storedKeys = args.length > 2 ? Integer.parseInt(args[2]) : 100;
+
+        com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        if (!threadBean.isThreadAllocatedMemorySupported()) {
+            System.err.println("Thread allocated memory measurement is not supported by this JVM");
+            System.exit(1);
+        }
+        threadBean.setThreadAllocatedMemoryEnabled(true);
+
+        Config defaults = newConfig().set("timezone", "UTC");
+        Config attempt = newConfig()
+            .set("session_time", "2016-01-01T00:00:00+00:00")
+            .set("target", newConfig().set("database", "db").set("table", "tbl"));
+        List<Config> layers = new ArrayList<>();
+        for (int p = 0; p < parents; p++) {
+            Config layer = newConfig();
+            Config nested = layer.getNestedOrSetEmpty("parent_" + p);
+            for (int k = 0; k < storedKeys; k++) {
+                nested.set("key_" + k, "value of " + k + " stored by parent " + p);
+            }
+            layer.getNestedOrSetEmpty("target").set("table", "tbl_" + p);
+            layers.add(layer);
+        }
+        Config taskExport = newConfig().set("export_key", "${target.database}");
+        Config local = newConfig()
+            .set("sh>", "echo ${target.database}.${target.table}")
+            .set("_env", newConfig().set("SESSION", "${session_time}").set("DB", "${target.database}"))
+            .set("target", newConfig().set("table", "${target.table}_tmp"));
+
+        ConfigEvalEngine engine = new ConfigEvalEngine();
+
+        // warm up JIT
+        for (int i = 0; i < Math.max(1, tasks / 10); i++) {
+            engine.evalTaskConfig(dispatch(defaults, attempt, layers, taskExport), local);
+        }
+
+        long dispatchBytes = 0;
+        long evalBytes = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < tasks; i++) {
+            long before = threadBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+            Config params = dispatch(defaults, attempt, layers, taskExport);
+            long dispatched = threadBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+            engine.evalTaskConfig(params, local);
+            long evaluated = threadBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+            dispatchBytes += dispatched - before;
+            evalBytes += evaluated - dispatched;
+        }
+        long elapsed = System.nanoTime() - start;
+
+        System.out.println(String.format(ENGLISH, "tasks=%d parents=%d stored_keys=%d", tasks, parents, storedKeys));
+        System.out.println(String.format(ENGLISH, "dispatch:   %,d bytes/task", dispatchBytes / tasks));
+        System.out.println(String.format(ENGLISH, "evaluation: %,d bytes/task", evalBytes / tasks));
+        System.out.println(String.format(ENGLISH, "mean time:  %.2fms/task", elapsed / (double) tasks / 1e6));
+    }
+
+    private static Config dispatch(Config defaults, Config attempt, List<Config> layers, Config taskExport)
+    {
+        Config params = defaults.deepCopy();
+        params.merge(attempt);
+        for (Config layer : layers) {
+            params.merge(layer);
+        }
+        params.merge(taskExport);
+        return params;
+    }
+}
@@ -1,8 +1,10 @@
 package io.digdag.core.agent;
 
 import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableList;
 
 import io.digdag.client.config.Config;
+import io.digdag.client.config.ConfigException;
 import io.digdag.core.config.YamlConfigLoader;
 import io.digdag.spi.TemplateException;
 import io.digdag.spi.SecretSelector;
@@ -49,6 +51,106 @@ public class ConfigEvalEngineTest
                 is(loadYamlResource("/io/digdag/core/agent/eval/literal_expected.dig")));
     }
 
+    @Test
+    public void evalTaskConfig()
+            throws Exception
+    {
+        Config params = params()
+            .set("name", "foo")
+            .set("nested", newConfig().set("a", "${name}").set("b", "b"));
+        Config local = newConfig()
+            .set("key", "${name}")
+            .set("nested", newConfig().set("b", "${name}").set("c", 1));
+        Config paramsCopy = params.deepCopy();
+        Config localCopy = local.deepCopy();
+
+        Config evaluated = engine.evalTaskConfig(params, local);
+        assertThat(evaluated, is(engine.eval(params.deepCopy().merge(local), params)));
+        assertThat(evaluated.get("key", String.class), is("foo"));
+        assertThat(evaluated.getNested("nested"), is(newConfig().set("a", "foo").set("b", "foo").set("c", 1)));
+
+        // sources are not modified
+        assertThat(params, is(paramsCopy));
+        assertThat(local, is(localCopy));
+    }
+
+    @Test
+    public void modifyingEvaluatedTaskConfigDoesNotModifySources()
+            throws Exception
+    {
+        Config params = params()
+            .set("nested", newConfig().set("a", "a"));
+        Config local = newConfig()
+            .set("_do", newConfig().set("+task", newConfig().set("sh>", "${name}")))
+            .set("nested", newConfig().set("b", "b"));
+        Config paramsCopy = params.deepCopy();
+        Config localCopy = local.deepCopy();
+
+        Config evaluated = engine.evalTaskConfig(params, local);
+        evaluated.getNested("_do").getNested("+task").set("sh>", "modified");
+        evaluated.getNested("nested").set("a", "modified").set("b", "modified");
+
+        assertThat(params, is(paramsCopy));
+        assertThat(local, is(localCopy));
+
+        CheckedConfig checked = new CheckedConfig(
+                engine.evalTaskConfigOnDemand(params, local),
+                new CheckedConfig.UsedKeysSet());
+        checked.getNested("_do").getNested("+task").set("sh>", "modified");
+        checked.getNested("nested").set("a", "modified").set("b", "modified");
+
+        assertThat(params, is(paramsCopy));
+        assertThat(local, is(localCopy));
+    }
+
+    @Test
+    public void evalTaskConfigOnDemand()
+            throws Exception
+    {
+        Config params = params()
+            .set("name", "foo")
+            .set("chained", "${name}_bar")
+            .set("broken", "${no_such_var}");
+        Config local = newConfig()
+            .set("key", "${chained}")
+            .set("nested", newConfig().set("a", "${name}"));
+
+        CheckedConfig config = new CheckedConfig(
+                engine.evalTaskConfigOnDemand(params, local),
+                new CheckedConfig.UsedKeysSet());
+
+        // values that are not read are not evaluated
+        assertThat(config.get("key", String.class), is("foo_bar"));
+        assertThat(config.getNested("nested").get("a", String.class), is("foo"));
+
+        // copies keep evaluating on demand
+        Config copy = config.deepCopy();
+        assertThat(copy.get("chained", String.class), is("foo_bar"));
+
+        exception.expect(ConfigException.class);
+        exception.expectMessage(containsString("no_such_var"));
+        copy.get("broken", String.class);
+    }
+
+    @Test
+    public void evalTaskConfigOnDemandIsSameWithEvalTaskConfig()
+            throws Exception
+    {
+        Config params = params()
+            .set("name", "foo")
+            .set("chained", "${name}_bar")
+            .set("list", ImmutableList.of("${chained}", 1));
+        Config local = newConfig()
+            .set("key", "${chained}-${list}")
+            .set("chained", "${name}_baz")
+            .set("_do", newConfig().set("sh>", "${name}"));
+
+        CheckedConfig config = new CheckedConfig(
+                engine.evalTaskConfigOnDemand(params, local),
+                new CheckedConfig.UsedKeysSet());
+        assertThat(config, is(engine.evalTaskConfig(params, local)));
+    }
+
     @Test
     public void undefinedVariable()
             throws Exception
@@ -1,6 +1,9 @@
 package io.digdag.core.agent;
 
 import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 import io.digdag.client.config.Config;
 import io.digdag.client.config.ConfigFactory;
 import io.digdag.core.config.YamlConfigLoader;
@@ -238,4 +241,31 @@ public class DefaultSecretProviderTest
 
         assertThat(secret, is(projectDefaultSecret));
     }
+
+    @Test
+    public void verifyDeclaredSecretsArePrefetched()
+            throws Exception
+    {
+        Config grants = createConfig().set("bar", "remounted.bar");
+
+        when(secretStore.getSecrets(PROJECT_ID, SecretScopes.PROJECT, ImmutableSet.of("foo", "remounted.bar")))
+            .thenReturn(ImmutableMap.of("foo", "foo-secret"));
+        when(secretStore.getSecrets(PROJECT_ID, SecretScopes.PROJECT_DEFAULT, ImmutableList.of("remounted.bar")))
+            .thenReturn(ImmutableMap.of("remounted.bar", "bar-secret"));
+        when(secretStore.getSecret(PROJECT_ID, SecretScopes.PROJECT, "undeclared")).thenReturn(Optional.of("undeclared-secret"));
+        when(secretAccessPolicy.isSecretAccessible(any(SecretAccessContext.class), anyString())).thenReturn(true);
+        when(operatorSecretFilter.test(anyString())).thenReturn(true);
+
+        DefaultSecretProvider provider = new DefaultSecretProvider(secretAccessContext, secretAccessPolicy, grants, operatorSecretFilter, secretStore,
+                ImmutableList.of("foo", "bar"));
+
+        assertThat(provider.getSecret("foo"), is("foo-secret"));
+        assertThat(provider.getSecret("bar"), is("bar-secret"));
+        assertThat(provider.getSecret("undeclared"), is("undeclared-secret"));
+
+        verify(secretStore).getSecrets(PROJECT_ID, SecretScopes.PROJECT, ImmutableSet.of("foo", "remounted.bar"));
+        verify(secretStore).getSecrets(PROJECT_ID, SecretScopes.PROJECT_DEFAULT, ImmutableList.of("remounted.bar"));
+        verify(secretStore).getSecret(PROJECT_ID, SecretScopes.PROJECT, "undeclared");
+        verifyNoMoreInteractions(secretStore);
+    }
 }
@@ -0,0 +1,76 @@
+package io.digdag.core.agent;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+import com.google.common.hash.Hashing;
+import io.digdag.core.TempFileManager;
+import io.digdag.spi.StorageObject;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static io.digdag.client.config.ConfigUtils.newConfig;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class ProjectBlobCacheTest
+{
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private ProjectBlobCache cache;
+
+    @Before
+    public void setUp()
+        throws Exception
+    {
+        cache = new ProjectBlobCache(
+                newConfig().set("agent.blob-cache.path", folder.newFolder("cache").toString()),
+                new TempFileManager(folder.newFolder("temp").toPath()));
+    }
+
+    @Test
+    public void downloadOnlyOnce()
+        throws Exception
+    {
+        byte[] data = "echo hello".getBytes(UTF_8);
+        String digest = Hashing.sha256().hashBytes(data).toString();
+        AtomicInteger downloads = new AtomicInteger();
+        ProjectBlobCache.BlobOpener opener = (d) -> {
+            downloads.incrementAndGet();
+            return new StorageObject(new ByteArrayInputStream(data), data.length);
+        };
+
+        Path path1 = cache.get(digest, opener);
+        Path path2 = cache.get(digest, opener);
+
+        assertThat(path1, is(path2));
+        assertThat(new String(Files.readAllBytes(path1), UTF_8), is("echo hello"));
+        assertThat(downloads.get(), is(1));
+    }
+
+    @Test
+    public void rejectBrokenBlob()
+        throws Exception
+    {
+        byte[] data = "echo hello".getBytes(UTF_8);
+        String digest = Hashing.sha256().hashBytes("something else".getBytes(UTF_8)).toString();
+        try {
+            cache.get(digest, (d) -> new StorageObject(new ByteArrayInputStream(data), data.length));
+            fail();
+        }
+        catch (IOException ex) {
+            // expected
+        }
+        try (Stream<Path> files = Files.walk(folder.getRoot().toPath().resolve("cache"))) {
+            assertThat(files.anyMatch(Files::isRegularFile), is(false));
+        }
+    }
+}
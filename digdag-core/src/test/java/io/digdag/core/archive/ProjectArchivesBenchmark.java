@@ -0,0 +1,149 @@
+package io.digdag.core.archive;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Stream;
+import com.google.common.base.Optional;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.apache.commons.compress.compressors.gzip.GzipCompressorOutputStream;
+
+import static java.util.Locale.ENGLISH;
+
+/**
+ * Compares serial and parallel compression and extraction of project archives.
+ *
+ * This is not run as a unit test. Run the main method manually:
+ *
+ *   ./gradlew :digdag-core:testClasses
+ *   java -cp ... io.digdag.core.archive.ProjectArchivesBenchmark [threads]
+ */
+public class ProjectArchivesBenchmark
+{
+    private static final int ITERATIONS = 5;
+
+    public static void main(String[] args)
+        throws Exception
+    {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+
+        // typical projects have many small scripts and queries
+        run("10000 small files", 10000, 4 * 1024, threads);
+        // projects that include data files or jar files
+        run("8 large files", 8, 32 * 1024 * 1024, threads);
+    }
+
+    private static void run(String name, int fileCount, int fileSize, int threads)
+        throws Exception
+    {
+        System.out.println(String.format(ENGLISH, "%s (%d threads):", name, threads));
+
+        byte[] serialArchive = null;
+        byte[] parallelArchive = null;
+        long serialCompress = Long.MAX_VALUE;
+        long parallelCompress = Long.MAX_VALUE;
+        for (int i = 0; i < ITERATIONS; i++) {
+            long start = System.nanoTime();
+            serialArchive = createArchive(out -> new GzipCompressorOutputStream(out), fileCount, fileSize);
+            serialCompress = Math.min(serialCompress, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            parallelArchive = createArchive(out -> new ParallelGzipOutputStream(out, threads), fileCount, fileSize);
+            parallelCompress = Math.min(parallelCompress, System.nanoTime() - start);
+        }
+        report("compress", serialCompress, parallelCompress);
+
+        ExecutorService writer = Executors.newFixedThreadPool(threads);
+        try {
+            long serialExtract = Long.MAX_VALUE;
+            long parallelExtract = Long.MAX_VALUE;
+            for (int i = 0; i < ITERATIONS; i++) {
+                serialExtract = Math.min(serialExtract, extract(serialArchive, Optional.absent()));
+                parallelExtract = Math.min(parallelExtract, extract(parallelArchive, Optional.of(writer)));
+            }
+            report("extract", serialExtract, parallelExtract);
+        }
+        finally {
+            writer.shutdown();
+        }
+    }
+
+    private interface CompressorFactory
+    {
+        OutputStream create(OutputStream out) throws IOException;
+    }
+
+    private static byte[] createArchive(CompressorFactory compressor, int fileCount, int fileSize)
+        throws IOException
+    {
+        byte[] data = new byte[fileSize];
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (TarArchiveOutputStream tar = new TarArchiveOutputStream(compressor.create(bytes))) {
+            tar.setLongFileMode(TarArchiveOutputStream.LONGFILE_POSIX);
+            for (int i = 0; i < fileCount; i++) {
+                fillCompressible(data, i);
+                TarArchiveEntry e = new TarArchiveEntry(String.format(ENGLISH, "dir%03d/file%05d.txt", i % 100, i));
+                e.setSize(fileSize);
+                tar.putArchiveEntry(e);
+                tar.write(data);
+                tar.closeArchiveEntry();
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    private static long extract(byte[] archive, Optional<ExecutorService> writer)
+        throws IOException
+    {
+        Path dir = Files.createTempDirectory("digdag-benchmark-");
+        try {
+            long start = System.nanoTime();
+            ProjectArchives.extractTarArchive(dir, new ByteArrayInputStream(archive), null, writer.transform(it -> (Executor) it));
+            return System.nanoTime() - start;
+        }
+        finally {
+            try (Stream<Path> files = Files.walk(dir)) {
+                files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+            }
+        }
+    }
+
+    // text-like data compresses about as well as scripts and queries
+    private static final byte[] TEXT = newText(64 * 1024);
+
+    private static byte[] newText(int size)
+    {
+        Random random = new Random(0);
+        byte[] text = new byte[size];
+        for (int i = 0; i < size; i++) {
+            text[i] = (byte) ('a' + random.nextInt(16));
+        }
+        return text;
+    }
+
+    private static void fillCompressible(byte[] data, int seed)
+    {
+        int offset = (seed * 7919) % TEXT.length;
+        for (int i = 0; i < data.length; ) {
+            int n = Math.min(data.length - i, TEXT.length - offset);
+            System.arraycopy(TEXT, offset, data, i, n);
+            i += n;
+            offset = 0;
+        }
+    }
+
+    private static void report(String phase, long serialNanos, long parallelNanos)
+    {
+        System.out.println(String.format(ENGLISH, "  %-8s serial: %6d ms, parallel: %6d ms (%.2fx)",
+                    phase, serialNanos / 1000000, parallelNanos / 1000000, (double) serialNanos / parallelNanos));
+    }
+}
@@ -0,0 +1,156 @@
+package io.digdag.core.archive;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableList;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class ProjectArchivesTest
+{
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final ExecutorService writer = Executors.newFixedThreadPool(2);
+
+    @After
+    public void shutdown()
+    {
+        writer.shutdown();
+    }
+
+    @Test
+    public void extractParallelCompressedArchive()
+        throws Exception
+    {
+        byte[] large = new byte[3 * 1024 * 1024];
+        for (int i = 0; i < large.length; i++) {
+            large[i] = (byte) (i % 251);
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        // small chunks to write many gzip members
+        try (TarArchiveOutputStream tar = new TarArchiveOutputStream(new ParallelGzipOutputStream(bytes, 2, 1000))) {
+            for (int i = 0; i < 50; i++) {
+                byte[] data = ("file " + i).getBytes(UTF_8);
+                TarArchiveEntry e = new TarArchiveEntry("dir/file" + i + ".txt");
+                e.setSize(data.length);
+                tar.putArchiveEntry(e);
+                tar.write(data);
+                tar.closeArchiveEntry();
+            }
+            TarArchiveEntry e = new TarArchiveEntry("large.bin");
+            e.setSize(large.length);
+            tar.putArchiveEntry(e);
+            tar.write(large);
+            tar.closeArchiveEntry();
+        }
+
+        Path dest = folder.newFolder("dest").toPath();
+        ProjectArchives.extractTarArchive(dest, new ByteArrayInputStream(bytes.toByteArray()), null, Optional.of(writer));
+
+        for (int i = 0; i < 50; i++) {
+            assertThat(new String(Files.readAllBytes(dest.resolve("dir/file" + i + ".txt")), UTF_8), is("file " + i));
+        }
+        assertThat(Files.readAllBytes(dest.resolve("large.bin")), is(large));
+    }
+
+    @Test
+    public void extractManifest()
+        throws Exception
+    {
+        Path dest = folder.getRoot().toPath().resolve("dest");
+        ProjectArchives.extractManifest(dest, ProjectManifest.of(ImmutableList.of(
+                        file("dir/a.txt"),
+                        link("link", "dir/a.txt"),
+                        link("dirlink", "dir"))),
+                blobs());
+
+        assertThat(new String(Files.readAllBytes(dest.resolve("dir/a.txt")), UTF_8), is("blob"));
+        assertThat(Files.readSymbolicLink(dest.resolve("link")).toString(), is("dir/a.txt"));
+        assertThat(new String(Files.readAllBytes(dest.resolve("dirlink/a.txt")), UTF_8), is("blob"));
+    }
+
+    @Test
+    public void rejectChainOfLinksPointingOutside()
+        throws Exception
+    {
+        // each link points inside of the project as text
+        assertEscapeRejected(ImmutableList.of(
+                    link("d/b", ".."),
+                    link("e", "d/b/.."),
+                    file("e/x")));
+    }
+
+    @Test
+    public void rejectLinkRedirectedByLaterLink()
+        throws Exception
+    {
+        // "d/b/.." is inside of the project when e is created
+        assertEscapeRejected(ImmutableList.of(
+                    link("e", "d/b/.."),
+                    link("d/b", ".."),
+                    file("e/x")));
+        assertEscapeRejected(ImmutableList.of(
+                    file("d/a.txt"),
+                    link("e", "d/b/.."),
+                    link("d/b", "..")));
+    }
+
+    private void assertEscapeRejected(List<ProjectManifest.Entry> entries)
+        throws Exception
+    {
+        Path parent = folder.newFolder().toPath();
+        Path dest = parent.resolve("dest");
+        try {
+            ProjectArchives.extractManifest(dest, ProjectManifest.of(entries), blobs());
+            fail();
+        }
+        catch (RuntimeException ex) {
+        }
+        assertThat(Files.exists(parent.resolve("x")), is(false));
+    }
+
+    private ProjectArchives.BlobFileProvider blobs()
+        throws Exception
+    {
+        Path blob = folder.newFile().toPath();
+        Files.write(blob, "blob".getBytes(UTF_8));
+        return (digest) -> blob;
+    }
+
+    private static ProjectManifest.Entry file(String name)
+    {
+        return ProjectManifest.Entry.builder()
+            .name(name)
+            .digest("0123456789abcdef0123456789abcdef0123456789abcdef0123456789abcdef")
+            .size(4)
+            .mode(0644)
+            .build();
+    }
+
+    private static ProjectManifest.Entry link(String name, String linkName)
+    {
+        return ProjectManifest.Entry.builder()
+            .name(name)
+            .size(0)
+            .mode(0777)
+            .linkName(linkName)
+            .build();
+    }
+}
@@ -0,0 +1,82 @@
+package io.digdag.core.archive;
+
+import com.google.common.base.Optional;
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class ProjectManifestTest
+{
+    private static final String DIGEST = "0123456789abcdef0123456789abcdef0123456789abcdef0123456789abcdef";
+
+    private static ProjectManifest.Entry file(String name)
+    {
+        return ProjectManifest.Entry.builder()
+            .name(name)
+            .digest(DIGEST)
+            .size(1)
+            .mode(0644)
+            .build();
+    }
+
+    private static ProjectManifest.Entry link(String name, String linkName)
+    {
+        return ProjectManifest.Entry.builder()
+            .name(name)
+            .size(0)
+            .mode(0644)
+            .linkName(linkName)
+            .build();
+    }
+
+    @Test
+    public void acceptRelativeNames()
+    {
+        assertThat(file("a.dig").getName(), is("a.dig"));
+        assertThat(file("dir/a.dig").getName(), is("dir/a.dig"));
+        assertThat(link("dir/link", "../a.dig").getLinkName(), is(Optional.of("../a.dig")));
+        assertThat(link("dir/link", "./b.dig").getLinkName(), is(Optional.of("./b.dig")));
+    }
+
+    @Test
+    public void rejectNamesOutsideOfProject()
+    {
+        assertInvalidFile("");
+        assertInvalidFile("/etc/passwd");
+        assertInvalidFile("../a.dig");
+        assertInvalidFile("dir/../../a.dig");
+        assertInvalidFile("dir/..");
+        assertInvalidFile("dir\\..\\..\\a.dig");
+    }
+
+    @Test
+    public void rejectLinksOutsideOfProject()
+    {
+        assertInvalidLink("link", "../a.dig");
+        assertInvalidLink("dir/link", "../../a.dig");
+        assertInvalidLink("dir/link", "/etc/passwd");
+        assertInvalidLink("dir/link", "sub/../../../a.dig");
+    }
+
+    private static void assertInvalidFile(String name)
+    {
+        try {
+            file(name);
+            fail("accepted " + name);
+        }
+        catch (IllegalArgumentException ex) {
+        }
+    }
+
+    private static void assertInvalidLink(String name, String linkName)
+    {
+        try {
+            link(name, linkName);
+            fail("accepted " + name + " -> " + linkName);
+        }
+        catch (IllegalArgumentException ex) {
+        }
+    }
+}
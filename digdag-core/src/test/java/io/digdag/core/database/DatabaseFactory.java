@@ -5,6 +5,7 @@ import com.google.common.base.Optional;
 import com.google.inject.Provider;
 import io.digdag.client.config.ConfigFactory;
 import io.digdag.core.agent.AgentId;
+import io.digdag.core.session.SessionMonitorTimerWheel;
 import io.digdag.core.workflow.TaskQueueDispatcher;
 import io.digdag.core.workflow.WorkflowCompiler;
 import io.digdag.core.workflow.WorkflowExecutor;
@@ -68,17 +69,28 @@ public class DatabaseFactory
                 configFactory,
                 objectMapper(),
                 configFactory.create(),
-                mock(Notifier.class));
+                mock(Notifier.class),
+                new SessionMonitorTimerWheel());
     }
 
     public DatabaseSecretControlStoreManager getSecretControlStoreManager(String secret)
     {
-        return new DatabaseSecretControlStoreManager(config, dbi, new AESGCMSecretCrypto(secret));
+        return getSecretControlStoreManager(secret, SecretCache.disabled());
+    }
+
+    public DatabaseSecretControlStoreManager getSecretControlStoreManager(String secret, SecretCache cache)
+    {
+        return new DatabaseSecretControlStoreManager(config, dbi, new AESGCMSecretCrypto(secret), cache);
     }
 
     public DatabaseSecretStoreManager getSecretStoreManager(String secret)
     {
-        return new DatabaseSecretStoreManager(config, dbi, new AESGCMSecretCrypto(secret));
+        return getSecretStoreManager(secret, SecretCache.disabled());
+    }
+
+    public DatabaseSecretStoreManager getSecretStoreManager(String secret, SecretCache cache)
+    {
+        return new DatabaseSecretStoreManager(config, dbi, new AESGCMSecretCrypto(secret), cache);
     }
 
     public static class NullTaskQueueDispatcher
@@ -4,6 +4,7 @@ import com.google.common.base.Optional;
 import com.google.common.base.Strings;
 import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import io.digdag.core.repository.Project;
 import io.digdag.core.repository.ProjectStore;
 import io.digdag.core.repository.StoredProject;
@@ -105,6 +106,48 @@ public class DatabaseSecretStoreTest
         assertThat(secretStore.getSecret(projectId, SecretScopes.PROJECT_DEFAULT, KEY2), is(Optional.of(VALUE3)));
     }
 
+    @Test
+    public void getSecretsAtOnce()
+            throws Exception
+    {
+        secretControlStore.setProjectSecret(projectId, SecretScopes.PROJECT, KEY1, VALUE1);
+        secretControlStore.setProjectSecret(projectId, SecretScopes.PROJECT, KEY2, VALUE2);
+        secretControlStore.setProjectSecret(projectId, SecretScopes.PROJECT_DEFAULT, KEY2, VALUE3);
+
+        assertThat(secretStore.getSecrets(projectId, SecretScopes.PROJECT, ImmutableList.of(KEY1, KEY2, "no_such_key")),
+                is(ImmutableMap.of(KEY1, VALUE1, KEY2, VALUE2)));
+        assertThat(secretStore.getSecrets(projectId, SecretScopes.PROJECT_DEFAULT, ImmutableList.of(KEY1, KEY2)),
+                is(ImmutableMap.of(KEY2, VALUE3)));
+        assertThat(secretStore.getSecrets(projectId, SecretScopes.PROJECT, ImmutableList.of()),
+                is(ImmutableMap.of()));
+    }
+
+    @Test
+    public void cachedSecretsAreUpdatedBySecretControlStore()
+            throws Exception
+    {
+        SecretCache cache = new SecretCache(3600, 100);
+        SecretControlStore cachedControlStore = factory.getSecretControlStoreManager(SECRET, cache).getSecretControlStore(SITE_ID);
+        SecretStore cachedStore = factory.getSecretStoreManager(SECRET, cache).getSecretStore(SITE_ID);
+
+        // absence is cached
+        assertThat(cachedStore.getSecret(projectId, SecretScopes.PROJECT, KEY1), is(Optional.absent()));
+
+        cachedControlStore.setProjectSecret(projectId, SecretScopes.PROJECT, KEY1, VALUE1);
+        assertThat(cachedStore.getSecret(projectId, SecretScopes.PROJECT, KEY1), is(Optional.of(VALUE1)));
+        assertThat(cachedStore.getSecrets(projectId, SecretScopes.PROJECT, ImmutableList.of(KEY1, KEY2)), is(ImmutableMap.of(KEY1, VALUE1)));
+
+        // a change by a store that doesn't share the cache is not visible until the entry expires
+        secretControlStore.setProjectSecret(projectId, SecretScopes.PROJECT, KEY1, VALUE2);
+        assertThat(cachedStore.getSecret(projectId, SecretScopes.PROJECT, KEY1), is(Optional.of(VALUE1)));
+
+        cachedControlStore.setProjectSecret(projectId, SecretScopes.PROJECT, KEY1, VALUE3);
+        assertThat(cachedStore.getSecret(projectId, SecretScopes.PROJECT, KEY1), is(Optional.of(VALUE3)));
+
+        cachedControlStore.deleteProjectSecret(projectId, SecretScopes.PROJECT, KEY1);
+        assertThat(cachedStore.getSecret(projectId, SecretScopes.PROJECT, KEY1), is(Optional.absent()));
+    }
+
     @Test
     public void getSecretWithScope()
             throws Exception
@@ -3,6 +3,7 @@ package io.digdag.core.database;
 import java.util.*;
 import java.time.Instant;
 import java.time.ZoneId;
+import java.util.stream.Collectors;
 
 import org.hamcrest.Matchers;
 import org.junit.*;
@@ -405,6 +406,11 @@ public class DatabaseSessionStoreManagerTest
         assertNotFound(() ->store.getAttemptById(attempt1.getId() + 10));
         assertNotFound(() -> anotherSite.getAttemptById(attempt1.getId()));
 
+        assertThat(ImmutableList.of(attempt1, attempt2),
+                is(store.getAttemptsByIdList(ImmutableList.of(attempt2.getId(), attempt1.getId(), attempt1.getId() + 10))));
+        assertEmpty(store.getAttemptsByIdList(ImmutableList.of()));
+        assertEmpty(anotherSite.getAttemptsByIdList(ImmutableList.of(attempt1.getId())));
+
         assertThat(attempt1, is(store.getAttemptByName(proj.getId(), wf1.getName(), sessionTime1, "")));
         assertThat(attempt2, is(store.getAttemptByName(proj.getId(), wf1.getName(), sessionTime2, "")));
         assertThat(attempt3, is(store.getAttemptByName(proj.getId(), wf1.getName(), sessionTime2, retryAttemptName)));
@@ -422,6 +428,18 @@ public class DatabaseSessionStoreManagerTest
         // task archving
         //
         List<ArchivedTask> activeArchive = store.getTasksOfAttempt(attempt1.getId());
+
+        List<ArchivedTask> updatedTasks = store.getTasksOfAttemptUpdatedSince(attempt1.getId(), Instant.EPOCH, 0, 100);
+        assertThat(ImmutableSet.copyOf(updatedTasks), is(ImmutableSet.copyOf(activeArchive)));
+        ArchivedTask lastUpdated = updatedTasks.get(updatedTasks.size() - 1);
+        assertEmpty(store.getTasksOfAttemptUpdatedSince(attempt1.getId(), lastUpdated.getUpdatedAt(), lastUpdated.getId(), 100));
+        assertEmpty(anotherSite.getTasksOfAttemptUpdatedSince(attempt1.getId(), Instant.EPOCH, 0, 100));
+
+        List<ArchivedTask> firstPage = store.getTasksOfAttempt(attempt1.getId(), 0, 1);
+        assertThat(firstPage, is(activeArchive.subList(0, 1)));
+        assertThat(store.getTasksOfAttempt(attempt1.getId(), firstPage.get(0).getId(), 100), is(activeArchive.subList(1, activeArchive.size())));
+        assertEmpty(anotherSite.getTasksOfAttempt(attempt1.getId(), 0, 100));
+
         SessionAttemptSummary sum = manager.lockAttemptIfExists(
                 attempt1.getId(),
                 (store, summary) -> {
@@ -429,6 +447,64 @@ public class DatabaseSessionStoreManagerTest
                     return summary;
                 }).get();
         assertThat(activeArchive, is(store.getTasksOfAttempt(attempt1.getId())));
+
+        manager.lockAttemptIfExists(
+                attempt1.getId(),
+                (store, summary) -> {
+                    store.deleteAllTasksOfAttempt(attempt1.getId());
+                    return summary;
+                }).get();
+        // tasks are read from the archive
+        assertThat(activeArchive, is(store.getTasksOfAttempt(attempt1.getId())));
+        // paginated reads don't read the archive
+        assertEmpty(store.getTasksOfAttempt(attempt1.getId(), 0, 100));
+    }
+
+    @Test
+    public void testRequestCancelAttempts()
+        throws Exception
+    {
+        Instant sessionTime = Instant.ofEpochSecond(Instant.now().getEpochSecond() / 3600 * 3600);
+
+        AttemptRequest ar = attemptBuilder.buildFromStoredWorkflow(
+                rev,
+                wf1,
+                cf.create(),
+                ScheduleTime.runNow(sessionTime));
+        StoredSessionAttemptWithSession attempt = exec.submitWorkflow(0, ar, wf1);
+
+        Instant future = manager.getStoreTime().plusSeconds(3600);
+
+        assertThat(
+                manager.findActiveAttemptsCreatedBefore(future, 0L, 100).stream().map(a -> a.getId()).collect(Collectors.toList()),
+                contains(otherProjAttempt1.getId(), attempt.getId()));
+        assertThat(
+                manager.findActiveAttemptsCreatedBefore(future, otherProjAttempt1.getId(), 100).stream().map(a -> a.getId()).collect(Collectors.toList()),
+                contains(attempt.getId()));
+
+        // filtered by project and workflow for per-project or per-workflow TTL
+        assertThat(
+                manager.findActiveAttemptsOfProjectCreatedBefore(0, proj.getName(), Optional.absent(), future, 0L, 100).stream().map(a -> a.getId()).collect(Collectors.toList()),
+                contains(attempt.getId()));
+        assertThat(
+                manager.findActiveAttemptsOfProjectCreatedBefore(0, otherProj.getName(), Optional.of(otherProjWf1.getName()), future, 0L, 100).stream().map(a -> a.getId()).collect(Collectors.toList()),
+                contains(otherProjAttempt1.getId()));
+        assertEmpty(manager.findActiveAttemptsOfProjectCreatedBefore(0, otherProj.getName(), Optional.of(otherProjWf2.getName()), future, 0L, 100));
+        assertEmpty(manager.findActiveAttemptsOfProjectCreatedBefore(0, proj.getName(), Optional.absent(), manager.getStoreTime().minusSeconds(3600), 0L, 100));
+        // a project of the same name in another site
+        assertEmpty(manager.findActiveAttemptsOfProjectCreatedBefore(1, proj.getName(), Optional.absent(), future, 0L, 100));
+
+        List<StoredSessionAttemptWithSession> attempts = manager.getAttemptsWithSessionByIds(ImmutableList.of(attempt.getId(), otherProjAttempt1.getId()));
+        assertThat(attempts.stream().map(a -> a.getSession().getProjectId()).collect(Collectors.toList()),
+                contains(otherProj.getId(), proj.getId()));
+
+        assertThat(manager.requestCancelAttempts(ImmutableList.of()), is(ImmutableList.of()));
+        assertThat(manager.requestCancelAttempts(ImmutableList.of(attempt.getId(), otherProjAttempt1.getId(), attempt.getId() + 10)),
+                containsInAnyOrder(attempt.getId(), otherProjAttempt1.getId()));
+
+        assertThat(manager.getAttemptStateFlags(attempt.getId()).isCancelRequested(), is(true));
+        assertThat(manager.getAttemptStateFlags(otherProjAttempt1.getId()).isCancelRequested(), is(true));
+        assertEmpty(manager.findActiveAttemptsCreatedBefore(future, 0L, 100));
     }
 
     private void assertSessionAndLastAttemptEquals(StoredSessionWithLastAttempt session, StoredSessionAttemptWithSession attempt)
@@ -0,0 +1,58 @@
+package io.digdag.core.database;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.skife.jdbi.v2.DBI;
+import org.skife.jdbi.v2.Handle;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class H2SchemaSnapshotTest
+{
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static DBI newDbi()
+    {
+        JdbcDataSource ds = new JdbcDataSource();
+        ds.setURL("jdbc:h2:mem:digdag-test-" + UUID.randomUUID());
+        return new DBI(ds);
+    }
+
+    // created_at of schema_migrations differs
+    private static List<String> schemaOf(Handle handle)
+    {
+        return H2SchemaSnapshot.dump(handle).stream()
+            .filter(sql -> !sql.startsWith("INSERT INTO"))
+            .collect(Collectors.toList());
+    }
+
+    @Test
+    public void snapshotCreatesSameSchemaWithMigrations()
+        throws Exception
+    {
+        Path script = H2SchemaSnapshot.write(folder.getRoot().toPath());
+
+        DBI migratedDbi = newDbi();
+        DBI restoredDbi = newDbi();
+        try (Handle migrated = migratedDbi.open(); Handle restored = restoredDbi.open()) {
+            DatabaseMigrator migrator = new DatabaseMigrator(migratedDbi, "h2");
+            migrator.migrate(false);
+
+            restored.execute("RUNSCRIPT FROM '" + script.toAbsolutePath() + "'");
+            DatabaseMigrator restoredMigrator = new DatabaseMigrator(restoredDbi, "h2");
+            // nothing to apply
+            restoredMigrator.migrate(false);
+
+            assertThat(schemaOf(restored), is(schemaOf(migrated)));
+            assertThat(restoredMigrator.getSchemaVersion(), is(migrator.getLatestMigrationVersion()));
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package io.digdag.core.database;
+
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class SecretCacheTest
+{
+    @Test
+    public void cacheSecretsAndAbsence()
+    {
+        SecretCache cache = new SecretCache(3600, 100);
+        cache.put(1, 2, "project", "k1", Optional.of("v1"));
+        cache.put(1, 2, "project", "k2", Optional.absent());
+
+        assertThat(cache.getAll(1, 2, "project", ImmutableList.of("k1", "k2", "k3")),
+                is(ImmutableMap.of("k1", Optional.of("v1"), "k2", Optional.absent())));
+
+        // site, project and scope are parts of the key
+        assertThat(cache.getAll(3, 2, "project", ImmutableList.of("k1")), is(ImmutableMap.of()));
+        assertThat(cache.getAll(1, 3, "project", ImmutableList.of("k1")), is(ImmutableMap.of()));
+        assertThat(cache.getAll(1, 2, "project-default", ImmutableList.of("k1")), is(ImmutableMap.of()));
+
+        cache.invalidate(1, 2, "project", "k1");
+        assertThat(cache.getAll(1, 2, "project", ImmutableList.of("k1")), is(ImmutableMap.of()));
+    }
+
+    @Test
+    public void numberOfEntriesIsBounded()
+    {
+        SecretCache cache = new SecretCache(3600, 10);
+        for (int i = 0; i < 100; i++) {
+            cache.put(1, 2, "project", "k" + i, Optional.of("v" + i));
+        }
+        int count = 0;
+        for (int i = 0; i < 100; i++) {
+            count += cache.getAll(1, 2, "project", ImmutableList.of("k" + i)).size();
+        }
+        assertThat(count <= 10, is(true));
+        assertThat(cache.getAll(1, 2, "project", ImmutableList.of("k99")), is(ImmutableMap.of("k99", Optional.of("v99"))));
+    }
+
+    @Test
+    public void disabledCacheDoesntCache()
+    {
+        SecretCache cache = SecretCache.disabled();
+        cache.put(1, 2, "project", "k1", Optional.of("v1"));
+        assertThat(cache.isEnabled(), is(false));
+        assertThat(cache.getAll(1, 2, "project", ImmutableList.of("k1")), is(ImmutableMap.of()));
+    }
+}
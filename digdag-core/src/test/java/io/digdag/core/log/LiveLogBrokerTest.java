@@ -0,0 +1,86 @@
+package io.digdag.core.log;
+
+import java.util.concurrent.TimeUnit;
+import com.google.common.base.Optional;
+import org.junit.Test;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class LiveLogBrokerTest
+{
+    private final LiveLogBroker broker = new LiveLogBroker();
+
+    @Test
+    public void publishCompleteLines()
+        throws Exception
+    {
+        TaskLogger logger = broker.newPublishingTaskLogger(1L, "+wf+task", new NullTaskLogger());
+        try (LiveLogBroker.Subscription subscription = broker.subscribe(1L, Optional.absent())) {
+            log(logger, "line1\nli");
+            assertThat(poll(subscription), is("line1\n"));
+
+            log(logger, "ne2");
+            assertThat(subscription.poll(0, TimeUnit.SECONDS), is(nullValue()));
+
+            log(logger, "\nline3\n");
+            assertThat(poll(subscription), is("line2\nline3\n"));
+
+            log(logger, "partial");
+            logger.close();
+            assertThat(poll(subscription), is("partial\n"));
+        }
+        assertThat(broker.hasSubscribers(1L), is(false));
+    }
+
+    @Test
+    public void filterByAttemptAndTaskName()
+        throws Exception
+    {
+        TaskLogger logger1 = broker.newPublishingTaskLogger(1L, "+wf+task1", new NullTaskLogger());
+        TaskLogger logger2 = broker.newPublishingTaskLogger(1L, "+wf+task2", new NullTaskLogger());
+        TaskLogger otherAttempt = broker.newPublishingTaskLogger(2L, "+wf+task1", new NullTaskLogger());
+        try (LiveLogBroker.Subscription subscription = broker.subscribe(1L, Optional.of("+wf+task2"))) {
+            log(logger1, "task1\n");
+            log(otherAttempt, "other\n");
+            log(logger2, "task2\n");
+            LiveLogBroker.Lines lines = subscription.poll(1, TimeUnit.SECONDS);
+            assertThat(lines.getTaskName(), is("+wf+task2"));
+            assertThat(new String(lines.getData(), UTF_8), is("task2\n"));
+            assertThat(subscription.poll(0, TimeUnit.SECONDS), is(nullValue()));
+        }
+    }
+
+    @Test
+    public void offsetsMatchOutputOfTask()
+        throws Exception
+    {
+        TaskLogger logger = broker.newPublishingTaskLogger(1L, "+wf+task", new NullTaskLogger());
+        // lines written before subscribing are counted
+        log(logger, "line1\nli");
+        try (LiveLogBroker.Subscription subscription = broker.subscribe(1L, Optional.absent())) {
+            log(logger, "ne2\nline3\n");
+            assertThat(subscription.poll(1, TimeUnit.SECONDS).getOffset(), is(6L));
+
+            // a retried task continues the offset
+            logger.close();
+            TaskLogger retry = broker.newPublishingTaskLogger(1L, "+wf+task", new NullTaskLogger());
+            log(retry, "line4\n");
+            assertThat(subscription.poll(1, TimeUnit.SECONDS).getOffset(), is(18L));
+        }
+    }
+
+    private static void log(TaskLogger logger, String data)
+    {
+        byte[] bytes = data.getBytes(UTF_8);
+        logger.log(bytes, 0, bytes.length);
+    }
+
+    private static String poll(LiveLogBroker.Subscription subscription)
+        throws InterruptedException
+    {
+        return new String(subscription.poll(1, TimeUnit.SECONDS).getData(), UTF_8);
+    }
+}
@@ -0,0 +1,79 @@
+package io.digdag.core.log;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.List;
+import com.google.common.base.Optional;
+import com.google.common.io.ByteStreams;
+import io.digdag.spi.LogFileHandle;
+import io.digdag.spi.LogFilePrefix;
+import io.digdag.spi.StorageFileNotFoundException;
+import io.digdag.spi.StorageObject;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class SegmentedLogServerFactoryTest
+{
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static final LogFilePrefix PREFIX = LogFilePrefix.builder()
+        .siteId(0)
+        .projectId(1)
+        .workflowName("wf")
+        .sessionTime(Instant.ofEpochSecond(1480000000L))
+        .timeZone(ZoneId.of("UTC"))
+        .retryAttemptName(Optional.absent())
+        .createdAt(Instant.ofEpochSecond(1480000000L))
+        .build();
+
+    @Test
+    public void putAndGetFiles()
+        throws Exception
+    {
+        Path dir = folder.getRoot().toPath();
+        // small segments to write files to multiple segments
+        SegmentedLogServerFactory.SegmentedLogServer server = new SegmentedLogServerFactory.SegmentedLogServer(dir, 10, 100);
+
+        String file1 = server.putFile(PREFIX, "+wf+task1", Instant.ofEpochSecond(1480000001L), "agent", "first".getBytes(UTF_8));
+        String file2 = server.putFile(PREFIX, "+wf+task2", Instant.ofEpochSecond(1480000002L), "agent", "second".getBytes(UTF_8));
+        String file3 = server.putFile(PREFIX, "+wf+task1", Instant.ofEpochSecond(1480000003L), "agent", "third".getBytes(UTF_8));
+
+        assertThat(new String(server.getFile(PREFIX, file2), UTF_8), is("second"));
+        StorageObject object = server.openFile(PREFIX, file3);
+        assertThat(object.getContentLength(), is(5L));
+        assertThat(new String(ByteStreams.toByteArray(object.getContentInputStream()), UTF_8), is("third"));
+
+        // a new server reloads the index from the disk
+        SegmentedLogServerFactory.SegmentedLogServer reloaded = new SegmentedLogServerFactory.SegmentedLogServer(dir, 10, 100);
+        List<LogFileHandle> handles = reloaded.getFileHandles(PREFIX, Optional.absent());
+        assertThat(handles.size(), is(3));
+        assertThat(handles.get(0).getFileName(), is(file1));
+        assertThat(handles.get(1).getFileName(), is(file3));
+        assertThat(handles.get(2).getFileName(), is(file2));
+        assertThat(handles.get(1).getFileSize(), is(5L));
+
+        List<LogFileHandle> task1 = reloaded.getFileHandles(PREFIX, Optional.of("+wf+task1"));
+        assertThat(task1.size(), is(2));
+        assertThat(task1.get(0).getTaskName(), is("+wf+task1"));
+        assertThat(new String(reloaded.getFile(PREFIX, file1), UTF_8), is("first"));
+
+        Path attemptDir = dir.resolve(LogFiles.formatDataDir(PREFIX)).resolve(LogFiles.formatSessionAttemptDir(PREFIX));
+        assertThat(Files.exists(attemptDir.resolve("segment-00002.dat")), is(true));
+    }
+
+    @Test(expected = StorageFileNotFoundException.class)
+    public void missingFile()
+        throws Exception
+    {
+        SegmentedLogServerFactory.SegmentedLogServer server = new SegmentedLogServerFactory.SegmentedLogServer(folder.getRoot().toPath(), 1024, 100);
+        server.getFile(PREFIX, "+wf+task1@0000000000000000.agent.log.gz");
+    }
+}
@@ -0,0 +1,170 @@
+package io.digdag.core.notification;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.google.inject.Module;
+import com.google.inject.name.Names;
+import io.digdag.client.config.Config;
+import io.digdag.spi.Notification;
+import io.digdag.spi.NotificationException;
+import io.digdag.spi.NotificationSender;
+import org.junit.After;
+import org.junit.Test;
+
+import static io.digdag.core.database.DatabaseTestingUtils.createConfigFactory;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class DefaultNotifierTest
+{
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final List<String> sent = new CopyOnWriteArrayList<>();
+    private volatile int failures = 0;
+
+    private DefaultNotifier notifier;
+
+    // blocks until released to simulate a slow server
+    private class BlockingSender
+            implements NotificationSender
+    {
+        @Override
+        public synchronized void sendNotification(Notification notification)
+                throws NotificationException
+        {
+            try {
+                release.await();
+            }
+            catch (InterruptedException ex) {
+                throw new NotificationException("interrupted", ex);
+            }
+            if (failures > 0) {
+                failures--;
+                throw new NotificationException("failed");
+            }
+            sent.add(notification.getMessage());
+        }
+    }
+
+    private DefaultNotifier newNotifier(Config systemConfig)
+    {
+        BlockingSender sender = new BlockingSender();
+        Injector injector = Guice.createInjector((Module) (binder) -> {
+            binder.bind(NotificationSender.class).annotatedWith(Names.named("test")).toInstance(sender);
+        });
+        return new DefaultNotifier(systemConfig.set("notification.type", "test"), injector);
+    }
+
+    private static Notification notification(String message)
+    {
+        return Notification.builder(Instant.now(), message).build();
+    }
+
+    @After
+    public void tearDown()
+            throws Exception
+    {
+        release.countDown();
+        if (notifier != null) {
+            notifier.shutdown();
+        }
+    }
+
+    @Test
+    public void sendWithoutBlockingCaller()
+            throws Exception
+    {
+        failures = 1;
+        notifier = newNotifier(createConfigFactory().create()
+                .set("notification.threads", 1)
+                .set("notification.min_retry_wait", 10));
+
+        // returns while the sender is blocked
+        notifier.sendNotificationAsync(notification("a"));
+        notifier.sendNotificationAsync(notification("b"));
+
+        release.countDown();
+        notifier.shutdown();
+
+        assertThat(sent, contains("a", "b"));
+        assertThat(notifier.getDeliveredCount(), is(2L));
+        assertThat(notifier.getFailedCount(), is(0L));
+        assertThat(notifier.getQueueDepth(), is(0));
+    }
+
+    @Test
+    public void rejectIfQueueIsFull()
+            throws Exception
+    {
+        notifier = newNotifier(createConfigFactory().create()
+                .set("notification.threads", 1)
+                .set("notification.queue_size", 1));
+
+        notifier.sendNotificationAsync(notification("a"));  // taken by the worker thread
+        notifier.sendNotificationAsync(notification("b"));  // queued
+        try {
+            notifier.sendNotificationAsync(notification("c"));
+            fail();
+        }
+        catch (NotificationException ex) {
+        }
+        assertThat(notifier.getRejectedCount(), is(1L));
+
+        release.countDown();
+        notifier.shutdown();
+
+        assertThat(sent, contains("a", "b"));
+    }
+
+    @Test
+    public void sendOnCallerThreadIfQueueIsDisabled()
+            throws Exception
+    {
+        release.countDown();
+        failures = 1;
+        notifier = newNotifier(createConfigFactory().create()
+                .set("notification.queue_size", 0)
+                .set("notification.retries", 0));
+
+        try {
+            notifier.sendNotificationAsync(notification("a"));
+            fail();
+        }
+        catch (NotificationException ex) {
+        }
+        notifier.sendNotificationAsync(notification("b"));
+
+        assertThat(sent, contains("b"));
+        assertThat(notifier.getFailedCount(), is(1L));
+    }
+
+    @Test
+    public void sendNotificationWaitsForDelivery()
+            throws Exception
+    {
+        // notify> operator fails if the notification can't be sent
+        release.countDown();
+        failures = 2;
+        notifier = newNotifier(createConfigFactory().create()
+                .set("notification.retries", 1)
+                .set("notification.min_retry_wait", 10));
+
+        try {
+            notifier.sendNotification(notification("a"));
+            fail();
+        }
+        catch (NotificationException ex) {
+        }
+        notifier.sendNotification(notification("b"));
+
+        assertThat(sent, contains("b"));
+        assertThat(notifier.getFailedCount(), is(1L));
+        assertThat(notifier.getDeliveredCount(), is(1L));
+        assertThat(notifier.getQueueDepth(), is(0));
+    }
+}
@@ -0,0 +1,44 @@
+package io.digdag.core.session;
+
+import java.time.Instant;
+import com.google.common.collect.ImmutableList;
+import io.digdag.client.DigdagClient;
+import io.digdag.client.config.ConfigFactory;
+import io.digdag.core.workflow.WorkflowExecutor;
+import org.junit.Test;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class SessionMonitorExecutorTest
+{
+    private static final ConfigFactory CONFIG_FACTORY = new ConfigFactory(DigdagClient.objectMapper());
+
+    @Test
+    public void retryClaimingAfterFailure()
+    {
+        SessionStoreManager sm = mock(SessionStoreManager.class);
+        when(sm.getSessionMonitorRunTimes()).thenReturn(ImmutableList.of(Instant.now().minusSeconds(10)));
+        when(sm.lockReadySessionMonitors(any(Instant.class), anyInt(), any(SessionStoreManager.SessionMonitorAction.class)))
+            .thenThrow(new RuntimeException("database is not available"))
+            .thenReturn(0);
+
+        SessionMonitorExecutor executor = new SessionMonitorExecutor(
+                CONFIG_FACTORY,
+                CONFIG_FACTORY.create(),
+                sm,
+                mock(WorkflowExecutor.class),
+                new SessionMonitorTimerWheel());
+
+        executor.run();
+        executor.run();
+        // claimed once. run times are not due anymore
+        executor.run();
+
+        verify(sm, times(2)).lockReadySessionMonitors(any(Instant.class), anyInt(), any(SessionStoreManager.SessionMonitorAction.class));
+    }
+}
@@ -0,0 +1,65 @@
+package io.digdag.core.session;
+
+import java.time.Instant;
+import com.google.common.collect.ImmutableList;
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class SessionMonitorTimerWheelTest
+{
+    private static final Instant START = Instant.ofEpochSecond(1480000000L);
+
+    @Test
+    public void dueAtRunTime()
+    {
+        SessionMonitorTimerWheel wheel = new SessionMonitorTimerWheel(START);
+        wheel.add(START.plusSeconds(3));
+
+        assertThat(wheel.advance(START.plusSeconds(1)), is(false));
+        assertThat(wheel.advance(START.plusSeconds(2)), is(false));
+        assertThat(wheel.advance(START.plusSeconds(3)), is(true));
+        assertThat(wheel.advance(START.plusSeconds(4)), is(false));
+        assertThat(wheel.size(), is(0));
+    }
+
+    @Test
+    public void pastRunTimeIsDueImmediately()
+    {
+        SessionMonitorTimerWheel wheel = new SessionMonitorTimerWheel(START);
+        wheel.add(START.minusSeconds(10));
+
+        assertThat(wheel.advance(START), is(true));
+        assertThat(wheel.advance(START), is(false));
+    }
+
+    @Test
+    public void cascadeHigherLevels()
+    {
+        long[] delays = new long[] { 65, 4095, 4097, 300000, 20000000 };
+        for (long delay : delays) {
+            SessionMonitorTimerWheel wheel = new SessionMonitorTimerWheel(START);
+            wheel.add(START.plusSeconds(delay));
+
+            // advancing at once must not skip the run time
+            assertThat(wheel.advance(START.plusSeconds(delay - 1)), is(false));
+            assertThat(wheel.advance(START.plusSeconds(delay)), is(true));
+            assertThat(wheel.size(), is(0));
+        }
+    }
+
+    @Test
+    public void reset()
+    {
+        SessionMonitorTimerWheel wheel = new SessionMonitorTimerWheel(START);
+        wheel.add(START.plusSeconds(10));
+
+        wheel.reset(START, ImmutableList.of(START.plusSeconds(20), START.plusSeconds(20), START.plusSeconds(5000)));
+        assertThat(wheel.size(), is(2));
+
+        assertThat(wheel.advance(START.plusSeconds(10)), is(false));
+        assertThat(wheel.advance(START.plusSeconds(20)), is(true));
+        assertThat(wheel.advance(START.plusSeconds(5000)), is(true));
+    }
+}
@@ -0,0 +1,239 @@
+package io.digdag.core.storage;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.stream.Collectors;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.hash.Hashing;
+import com.google.common.io.ByteStreams;
+import io.digdag.client.DigdagClient;
+import io.digdag.client.config.Config;
+import io.digdag.core.archive.ProjectArchives;
+import io.digdag.core.archive.ProjectManifest;
+import io.digdag.spi.Storage;
+import io.digdag.spi.StorageFactory;
+import io.digdag.spi.StorageFileNotFoundException;
+import io.digdag.spi.StorageObject;
+import io.digdag.spi.StorageObjectSummary;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static io.digdag.client.config.ConfigUtils.newConfig;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class ProjectBlobStoreTest
+{
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final MemoryStorage storage = new MemoryStorage();
+
+    private ProjectBlobStore store;
+
+    @Before
+    public void setUp()
+    {
+        store = newStore();
+    }
+
+    @After
+    public void shutdown()
+    {
+        store.shutdown();
+    }
+
+    private ProjectBlobStore newStore()
+    {
+        StorageFactory factory = new StorageFactory()
+        {
+            @Override
+            public String getType()
+            {
+                return "memory";
+            }
+
+            @Override
+            public Storage newStorage(Config config)
+            {
+                return storage;
+            }
+        };
+        return new ProjectBlobStore(
+                new StorageManager(ImmutableSet.of(factory)),
+                newConfig().set("archive.type", "memory"),
+                DigdagClient.objectMapper());
+    }
+
+    @Test
+    public void findMissingBlobs()
+        throws Exception
+    {
+        String a = put(1, "echo a");
+        String b = digest("echo b");
+
+        assertThat(store.findMissingBlobs(1, ImmutableList.of(a, b, b)), is(ImmutableList.of(b)));
+        assertThat(store.getBlobSizes(1, ImmutableList.of(a, b)), is(ImmutableMap.of(a, 6L)));
+
+        // blobs are stored per site
+        assertThat(store.findMissingBlobs(2, ImmutableList.of(a)), is(ImmutableList.of(a)));
+
+        put(1, "echo b");
+        assertThat(store.findMissingBlobs(1, ImmutableList.of(a, b)), is(ImmutableList.of()));
+    }
+
+    @Test
+    public void lookupBlobsByKey()
+        throws Exception
+    {
+        String a = put(1, "echo a");
+        String b = put(1, "echo b");
+        String c = digest("echo c");
+
+        // a new store doesn't have sizes in the cache
+        ProjectBlobStore cold = newStore();
+        try {
+            assertThat(cold.getBlobSizes(1, ImmutableList.of(a, b, c)), is(ImmutableMap.of(a, 6L, b, 6L)));
+        }
+        finally {
+            cold.shutdown();
+        }
+
+        // blob directories are not listed. only keys of the blobs are looked up
+        assertThat(storage.listedPrefixes.size(), is(3));
+        for (String prefix : storage.listedPrefixes) {
+            assertThat(prefix.substring(prefix.lastIndexOf('/') + 1).length(), is(64));
+        }
+    }
+
+    @Test
+    public void rejectInvalidDigest()
+        throws Exception
+    {
+        try {
+            store.findMissingBlobs(1, ImmutableList.of("../../1/archive"));
+            fail();
+        }
+        catch (IllegalArgumentException ex) {
+        }
+    }
+
+    @Test
+    public void writeArchiveUsingSizeOfStoredBlobs()
+        throws Exception
+    {
+        String digest = put(1, "echo hello");
+        ProjectManifest manifest = ProjectManifest.of(ImmutableList.of(
+                    ProjectManifest.Entry.builder()
+                        .name("dir/hello.sh")
+                        .digest(digest)
+                        .size(1)  // wrong size declared by a client
+                        .mode(0755)
+                        .build(),
+                    ProjectManifest.Entry.builder()
+                        .name("link.sh")
+                        .size(0)
+                        .mode(0644)
+                        .linkName("dir/hello.sh")
+                        .build()));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        store.writeArchive(1, manifest, out);
+
+        Path dest = folder.newFolder("dest").toPath();
+        ProjectArchives.extractTarArchive(dest, new ByteArrayInputStream(out.toByteArray()));
+        assertThat(new String(Files.readAllBytes(dest.resolve("dir/hello.sh")), UTF_8), is("echo hello"));
+        assertThat(new String(Files.readAllBytes(dest.resolve("link.sh")), UTF_8), is("echo hello"));
+    }
+
+    @Test
+    public void writeArchiveFailsIfBlobIsMissing()
+        throws Exception
+    {
+        ProjectManifest manifest = ProjectManifest.of(ImmutableList.of(
+                    ProjectManifest.Entry.builder()
+                        .name("hello.sh")
+                        .digest(digest("echo hello"))
+                        .size(10)
+                        .mode(0644)
+                        .build()));
+        try {
+            store.writeArchive(1, manifest, new ByteArrayOutputStream());
+            fail();
+        }
+        catch (StorageFileNotFoundException ex) {
+        }
+    }
+
+    private String put(int siteId, String contents)
+        throws Exception
+    {
+        byte[] data = contents.getBytes(UTF_8);
+        String digest = digest(contents);
+        store.putBlob(siteId, digest, data.length, () -> new ByteArrayInputStream(data));
+        return digest;
+    }
+
+    private static String digest(String contents)
+    {
+        return Hashing.sha256().hashBytes(contents.getBytes(UTF_8)).toString();
+    }
+
+    private static class MemoryStorage
+            implements Storage
+    {
+        private final Map<String, byte[]> objects = new ConcurrentHashMap<>();
+        private final Queue<String> listedPrefixes = new ConcurrentLinkedQueue<>();
+
+        @Override
+        public StorageObject open(String key)
+            throws StorageFileNotFoundException
+        {
+            byte[] data = objects.get(key);
+            if (data == null) {
+                throw new StorageFileNotFoundException(key);
+            }
+            return new StorageObject(new ByteArrayInputStream(data), data.length);
+        }
+
+        @Override
+        public String put(String key, long contentLength, UploadStreamProvider payload)
+            throws IOException
+        {
+            try (InputStream in = payload.open()) {
+                objects.put(key, ByteStreams.toByteArray(in));
+            }
+            return key;
+        }
+
+        @Override
+        public void list(String keyPrefix, FileListing callback)
+        {
+            listedPrefixes.add(keyPrefix);
+            callback.accept(objects.entrySet().stream()
+                    .filter(entry -> entry.getKey().startsWith(keyPrefix))
+                    .map(entry -> StorageObjectSummary.builder()
+                        .key(entry.getKey())
+                        .contentLength(entry.getValue().length)
+                        .lastModified(Instant.now())
+                        .build())
+                    .collect(Collectors.toList()));
+        }
+    }
+}
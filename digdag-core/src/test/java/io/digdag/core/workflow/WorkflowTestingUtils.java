@@ -19,6 +19,7 @@ import io.digdag.core.archive.ArchiveMetadata;
 import io.digdag.core.archive.WorkflowFile;
 import io.digdag.core.database.DatabaseConfig;
 import io.digdag.core.database.DatabaseSecretStoreManager;
+import io.digdag.core.database.SecretCache;
 import io.digdag.core.repository.ResourceConflictException;
 import io.digdag.core.repository.ResourceLimitExceededException;
 import io.digdag.core.repository.ResourceNotFoundException;
@@ -62,6 +63,7 @@ public class WorkflowTestingUtils
                 binder.bind(CommandExecutor.class).to(SimpleCommandExecutor.class).in(Scopes.SINGLETON);
 
                 binder.bind(SecretCrypto.class).toProvider(SecretCryptoProvider.class).in(Scopes.SINGLETON);
+                binder.bind(SecretCache.class).in(Scopes.SINGLETON);
                 binder.bind(SecretStoreManager.class).to(DatabaseSecretStoreManager.class).in(Scopes.SINGLETON);
                 binder.bind(SecretAccessPolicy.class).to(LocalSecretAccessPolicy.class);
 
@@ -1,7 +1,10 @@
 package io.digdag.server;
 
 import com.google.common.base.Optional;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.hash.Hashing;
 import com.google.inject.Inject;
 import io.digdag.client.api.RestApiKey;
 import io.digdag.client.config.Config;
@@ -13,12 +16,18 @@ import io.jsonwebtoken.SignatureException;
 import io.jsonwebtoken.SigningKeyResolver;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.weakref.jmx.Managed;
 
 import javax.crypto.spec.SecretKeySpec;
 import javax.ws.rs.container.ContainerRequestContext;
 
 import java.security.Key;
+import java.util.Date;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
 
 public class JwtAuthenticator
     implements Authenticator
@@ -28,9 +37,28 @@ public class JwtAuthenticator
     private final Map<String, UserConfig> userMap;
     private final boolean allowPublicAccess;
 
+    // verified tokens keyed by SHA-256 of the token. null if disabled.
+    private final Cache<String, VerifiedToken> verifiedTokens;
+
+    private final AtomicLong authenticationCount = new AtomicLong();
+    private final AtomicLong authenticationNanos = new AtomicLong();
+
     @Inject
     public JwtAuthenticator(Config systemConfig)
     {
+        int cacheSize = systemConfig.get("server.jwt-cache.max-entries", int.class, 1000);
+        long cacheTtl = systemConfig.get("server.jwt-cache.ttl", long.class, 300L);
+        if (cacheSize > 0 && cacheTtl > 0) {
+            this.verifiedTokens = CacheBuilder.newBuilder()
+                .maximumSize(cacheSize)
+                .expireAfterWrite(cacheTtl, TimeUnit.SECONDS)
+                .recordStats()
+                .build();
+        }
+        else {
+            this.verifiedTokens = null;
+        }
+
         Optional<RestApiKey> apiKey = systemConfig.getOptional("server.apikey", RestApiKey.class);
 
         if (apiKey.isPresent()) {
@@ -50,6 +78,18 @@ public class JwtAuthenticator
 
     @Override
     public Result authenticate(ContainerRequestContext requestContext)
+    {
+        long start = System.nanoTime();
+        try {
+            return authenticateRequest(requestContext);
+        }
+        finally {
+            authenticationCount.incrementAndGet();
+            authenticationNanos.addAndGet(System.nanoTime() - start);
+        }
+    }
+
+    private Result authenticateRequest(ContainerRequestContext requestContext)
     {
         int siteId;
         boolean admin;
@@ -75,30 +115,7 @@ public class JwtAuthenticator
             }
             String token = typeData[1];
             try {
-                String subject = Jwts.parser().setSigningKeyResolver(new SigningKeyResolver() {
-                    @Override
-                    public Key resolveSigningKey(JwsHeader header, Claims claims)
-                    {
-                        Object keyType = header.get("knd");
-                        if (keyType == null || !"ps1".equals(keyType)) {
-                            throw new SignatureException("Invalid key type");
-                        }
-                        UserConfig user = userMap.get(claims.getSubject());
-                        if (user == null) {
-                            throw new SignatureException("Invalid subject");
-                        }
-                        return new SecretKeySpec(user.getApiKey().getSecret(), header.getAlgorithm());
-                    }
-
-                    @Override
-                    public Key resolveSigningKey(JwsHeader header, String plaintext)
-                    {
-                        throw new SignatureException("Plain text JWT authorization header is not allowed");
-                    }
-                })
-                .parseClaimsJws(token)
-                .getBody()
-                .getSubject();
+                String subject = verify(token);
 
                 UserConfig user = userMap.get(subject);
                 if (user == null) {
@@ -119,4 +136,103 @@ public class JwtAuthenticator
                 .isAdmin(admin)
                 .build();
     }
+
+    // returns subject of the token
+    private String verify(String token)
+    {
+        if (verifiedTokens == null) {
+            return parse(token).getSubject();
+        }
+
+        String digest = Hashing.sha256().hashString(token, UTF_8).toString();
+        VerifiedToken verified = verifiedTokens.getIfPresent(digest);
+        if (verified != null) {
+            if (!verified.isExpired(new Date())) {
+                return verified.subject;
+            }
+            // parse it again to reject it in the same way as tokens not cached
+            verifiedTokens.invalidate(digest);
+        }
+
+        Claims claims = parse(token);
+        if (claims.getSubject() != null && userMap.containsKey(claims.getSubject())) {
+            verifiedTokens.put(digest, new VerifiedToken(claims.getSubject(), claims.getExpiration()));
+        }
+        return claims.getSubject();
+    }
+
+    private Claims parse(String token)
+    {
+        return Jwts.parser().setSigningKeyResolver(new SigningKeyResolver() {
+            @Override
+            public Key resolveSigningKey(JwsHeader header, Claims claims)
+            {
+                Object keyType = header.get("knd");
+                if (keyType == null || !"ps1".equals(keyType)) {
+                    throw new SignatureException("Invalid key type");
+                }
+                UserConfig user = userMap.get(claims.getSubject());
+                if (user == null) {
+                    throw new SignatureException("Invalid subject");
+                }
+                return new SecretKeySpec(user.getApiKey().getSecret(), header.getAlgorithm());
+            }
+
+            @Override
+            public Key resolveSigningKey(JwsHeader header, String plaintext)
+            {
+                throw new SignatureException("Plain text JWT authorization header is not allowed");
+            }
+        })
+        .parseClaimsJws(token)
+        .getBody();
+    }
+
+    @Managed
+    public long getTokenCacheHitCount()
+    {
+        return verifiedTokens == null ? 0 : verifiedTokens.stats().hitCount();
+    }
+
+    @Managed
+    public long getTokenCacheMissCount()
+    {
+        return verifiedTokens == null ? 0 : verifiedTokens.stats().missCount();
+    }
+
+    @Managed
+    public double getTokenCacheHitRate()
+    {
+        return verifiedTokens == null ? 0.0 : verifiedTokens.stats().hitRate();
+    }
+
+    @Managed
+    public long getAuthenticationCount()
+    {
+        return authenticationCount.get();
+    }
+
+    @Managed
+    public double getAuthenticationMeanMicros()
+    {
+        long count = authenticationCount.get();
+        return count == 0 ? 0.0 : authenticationNanos.get() / 1000.0 / count;
+    }
+
+    private static class VerifiedToken
+    {
+        private final String subject;
+        private final Date expiration;  // null if the token doesn't expire
+
+        VerifiedToken(String subject, Date expiration)
+        {
+            this.subject = subject;
+            this.expiration = expiration;
+        }
+
+        boolean isExpired(Date now)
+        {
+            return expiration != null && !now.before(expiration);
+        }
+    }
 }
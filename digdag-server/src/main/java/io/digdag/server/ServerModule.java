@@ -10,6 +10,7 @@ import io.digdag.core.crypto.SecretCrypto;
 import io.digdag.core.crypto.SecretCryptoProvider;
 import io.digdag.core.database.DatabaseSecretControlStoreManager;
 import io.digdag.core.database.DatabaseSecretStoreManager;
+import io.digdag.core.database.SecretCache;
 import io.digdag.core.repository.ModelValidationException;
 import io.digdag.core.repository.ResourceConflictException;
 import io.digdag.core.repository.ResourceLimitExceededException;
@@ -19,6 +20,9 @@ import io.digdag.guice.rs.server.undertow.UndertowServerInfo;
 import io.digdag.server.rs.AdminResource;
 import io.digdag.server.rs.AdminRestricted;
 import io.digdag.server.rs.AttemptResource;
+import io.digdag.server.rs.AttemptStatusWaiters;
+import io.digdag.server.rs.ImmutableResourceCache;
+import io.digdag.server.rs.LiveLogFollowers;
 import io.digdag.server.rs.LogResource;
 import io.digdag.server.rs.ProjectResource;
 import io.digdag.server.rs.ScheduleResource;
@@ -46,6 +50,8 @@ import javax.ws.rs.ext.Provider;
 import java.io.IOException;
 import java.util.Map;
 
+import static org.weakref.jmx.guice.ExportBinder.newExporter;
+
 public class ServerModule
         extends GuiceRsModule
 {
@@ -69,6 +75,7 @@ public class ServerModule
     protected void bindSecrets()
     {
         binder().bind(SecretCrypto.class).toProvider(SecretCryptoProvider.class).in(Scopes.SINGLETON);
+        binder().bind(SecretCache.class).in(Scopes.SINGLETON);
         binder().bind(SecretStoreManager.class).to(DatabaseSecretStoreManager.class).in(Scopes.SINGLETON);
         binder().bind(SecretControlStoreManager.class).to(DatabaseSecretControlStoreManager.class);
         binder().bind(SecretAccessPolicy.class).to(DefaultSecretAccessPolicy.class);
@@ -86,11 +93,16 @@ public class ServerModule
                 VersionResource.class,
                 AdminResource.class
             );
+        binder().bind(ImmutableResourceCache.class).in(Scopes.SINGLETON);
+        binder().bind(LiveLogFollowers.class).in(Scopes.SINGLETON);
+        binder().bind(AttemptStatusWaiters.class).in(Scopes.SINGLETON);
     }
 
     protected void bindAuthenticator()
     {
+        binder().bind(JwtAuthenticator.class).in(Scopes.SINGLETON);
         binder().bind(Authenticator.class).to(JwtAuthenticator.class);
+        newExporter(binder()).export(JwtAuthenticator.class).withGeneratedName();
     }
 
     protected void bindExceptionhandlers(ApplicationBindingBuilder builder)
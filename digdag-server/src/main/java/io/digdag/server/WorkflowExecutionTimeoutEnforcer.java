@@ -1,18 +1,15 @@
 package io.digdag.server;
 
 import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.inject.Inject;
 import io.digdag.client.config.Config;
 import io.digdag.core.repository.ProjectStoreManager;
 import io.digdag.core.repository.ResourceNotFoundException;
-import io.digdag.core.repository.StoredProject;
-import io.digdag.core.repository.StoredRevision;
 import io.digdag.core.repository.StoredWorkflowDefinitionWithProject;
-import io.digdag.core.repository.WorkflowDefinition;
-import io.digdag.core.session.AttemptStateFlags;
 import io.digdag.core.session.SessionStoreManager;
-import io.digdag.core.session.StoredSessionAttempt;
 import io.digdag.core.session.StoredSessionAttemptWithSession;
 import io.digdag.core.session.TaskAttemptSummary;
 import io.digdag.core.session.TaskStateCode;
@@ -28,6 +25,8 @@ import javax.annotation.PreDestroy;
 
 import java.time.Duration;
 import java.time.Instant;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.Executors;
@@ -36,6 +35,8 @@ import java.util.concurrent.ScheduledExecutorService;
 import static java.util.concurrent.TimeUnit.NANOSECONDS;
 import static java.util.stream.Collectors.groupingBy;
 import static java.util.stream.Collectors.joining;
+import static java.util.stream.Collectors.toList;
+import static java.util.stream.Collectors.toMap;
 
 public class WorkflowExecutionTimeoutEnforcer
 {
@@ -44,31 +45,31 @@ public class WorkflowExecutionTimeoutEnforcer
     private static final Duration DEFAULT_ATTEMPT_TTL = Duration.ofDays(7);
     private static final Duration DEFAULT_TASK_TTL = Duration.ofDays(1);
     private static final Duration DEFAULT_REAPING_INTERVAL = Duration.ofSeconds(5);
+    private static final int DEFAULT_REAPING_BATCH_SIZE = 100;
 
     private final ScheduledExecutorService scheduledExecutorService;
     private final SessionStoreManager ssm;
     private final Notifier notifier;
     private final ProjectStoreManager psm;
 
-    private final Duration attemptTTL;
+    private final TTLPolicy attemptTTL;
     private final Duration reapingInterval;
-    private final Duration taskTTL;
+    private final TTLPolicy taskTTL;
+    private final int reapingBatchSize;
 
     @Inject
     public WorkflowExecutionTimeoutEnforcer(ServerConfig serverConfig, SessionStoreManager ssm, Config systemConfig, Notifier notifier, ProjectStoreManager psm)
     {
-        this.attemptTTL = systemConfig.getOptional("executor.attempt_ttl", DurationParam.class)
-                .transform(DurationParam::getDuration)
-                .or(DEFAULT_ATTEMPT_TTL);
+        this.attemptTTL = TTLPolicy.load(systemConfig, "executor.attempt_ttl", DEFAULT_ATTEMPT_TTL);
 
-        this.taskTTL = systemConfig.getOptional("executor.task_ttl", DurationParam.class)
-                .transform(DurationParam::getDuration)
-                .or(DEFAULT_TASK_TTL);
+        this.taskTTL = TTLPolicy.load(systemConfig, "executor.task_ttl", DEFAULT_TASK_TTL);
 
         this.reapingInterval = systemConfig.getOptional("executor.ttl_reaping_interval", DurationParam.class)
                 .transform(DurationParam::getDuration)
                 .or(DEFAULT_REAPING_INTERVAL);
 
+        this.reapingBatchSize = systemConfig.get("executor.ttl_reaping_batch_size", int.class, DEFAULT_REAPING_BATCH_SIZE);
+
         this.ssm = ssm;
         this.notifier = notifier;
         this.psm = psm;
@@ -84,89 +85,355 @@ public class WorkflowExecutionTimeoutEnforcer
         }
     }
 
+    /**
+     * TTL of attempts or tasks with per-project and per-workflow overrides.
+     *
+     * Overrides are set using system config keys as following:
+     *
+     *   executor.attempt_ttl.project.PROJECT = DURATION
+     *   executor.attempt_ttl.workflow.PROJECT/WORKFLOW = DURATION
+     *   executor.attempt_ttl.site.SITE_ID.project.PROJECT = DURATION
+     *   executor.attempt_ttl.site.SITE_ID.workflow.PROJECT/WORKFLOW = DURATION
+     *
+     * Project names are unique only in a site. Overrides without site id
+     * apply to projects of site 0, which is the only site unless the
+     * server is shared by multiple sites.
+     *
+     * A per-workflow override takes precedence over a per-project override.
+     *
+     * Attempts or tasks are searched in scopes. The default scope finds
+     * everything older than the default TTL. Each override shorter than the
+     * default TTL adds a scope that finds ones of the project or workflow
+     * older than the override, so that a short override doesn't make the
+     * enforcer read all attempts older than it.
+     */
+    static class TTLPolicy
+    {
+        private static final int DEFAULT_SITE_ID = 0;
+
+        static TTLPolicy load(Config systemConfig, String key, Duration defaultTTL)
+        {
+            Duration ttl = systemConfig.getOptional(key, DurationParam.class)
+                .transform(DurationParam::getDuration)
+                .or(defaultTTL);
+
+            Map<String, Duration> projectTTLs = new HashMap<>();
+            Map<String, Duration> workflowTTLs = new HashMap<>();
+            String sitePrefix = key + ".site.";
+            for (String name : systemConfig.getKeys()) {
+                int siteId;
+                String override;
+                if (name.startsWith(sitePrefix)) {
+                    String rest = name.substring(sitePrefix.length());
+                    int dot = rest.indexOf('.');
+                    try {
+                        siteId = Integer.parseInt(dot < 0 ? rest : rest.substring(0, dot));
+                    }
+                    catch (NumberFormatException e) {
+                        logger.warn("Ignoring TTL override with invalid site id: {}", name);
+                        continue;
+                    }
+                    override = dot < 0 ? "" : rest.substring(dot + 1);
+                }
+                else if (name.startsWith(key + ".")) {
+                    siteId = DEFAULT_SITE_ID;
+                    override = name.substring(key.length() + 1);
+                }
+                else {
+                    continue;
+                }
+
+                if (override.startsWith("project.")) {
+                    projectTTLs.put(overrideKey(siteId, override.substring("project.".length())), systemConfig.get(name, DurationParam.class).getDuration());
+                }
+                else if (override.startsWith("workflow.")) {
+                    workflowTTLs.put(overrideKey(siteId, override.substring("workflow.".length())), systemConfig.get(name, DurationParam.class).getDuration());
+                }
+                else if (name.startsWith(sitePrefix)) {
+                    logger.warn("Ignoring TTL override without project or workflow: {}", name);
+                }
+            }
+
+            return new TTLPolicy(ttl, projectTTLs, workflowTTLs);
+        }
+
+        private static String overrideKey(int siteId, String name)
+        {
+            // site id is a number. Thus the first ':' separates it from the name
+            return siteId + ":" + name;
+        }
+
+        private final Duration defaultTTL;
+        private final Map<String, Duration> projectTTLs;
+        private final Map<String, Duration> workflowTTLs;
+        private final List<Scope> scopes;
+
+        TTLPolicy(Duration defaultTTL, Map<String, Duration> projectTTLs, Map<String, Duration> workflowTTLs)
+        {
+            this.defaultTTL = defaultTTL;
+            this.projectTTLs = ImmutableMap.copyOf(projectTTLs);
+            this.workflowTTLs = ImmutableMap.copyOf(workflowTTLs);
+            this.scopes = buildScopes(defaultTTL, projectTTLs, workflowTTLs);
+        }
+
+        boolean hasOverrides()
+        {
+            return !projectTTLs.isEmpty() || !workflowTTLs.isEmpty();
+        }
+
+        List<Scope> getScopes()
+        {
+            return scopes;
+        }
+
+        private static List<Scope> buildScopes(Duration defaultTTL, Map<String, Duration> projectTTLs, Map<String, Duration> workflowTTLs)
+        {
+            ImmutableList.Builder<Scope> builder = ImmutableList.builder();
+            builder.add(new Scope(DEFAULT_SITE_ID, Optional.absent(), Optional.absent(), defaultTTL));
+            for (Map.Entry<String, Duration> pair : projectTTLs.entrySet()) {
+                int colon = pair.getKey().indexOf(':');
+                int siteId = Integer.parseInt(pair.getKey().substring(0, colon));
+                if (pair.getValue().compareTo(defaultTTL) < 0) {
+                    builder.add(new Scope(siteId, Optional.of(pair.getKey().substring(colon + 1)), Optional.absent(), pair.getValue()));
+                }
+            }
+            for (Map.Entry<String, Duration> pair : workflowTTLs.entrySet()) {
+                int colon = pair.getKey().indexOf(':');
+                int siteId = Integer.parseInt(pair.getKey().substring(0, colon));
+                String name = pair.getKey().substring(colon + 1);
+                int slash = name.lastIndexOf('/');
+                if (slash < 0) {
+                    logger.warn("Ignoring TTL override without project name: {}", name);
+                    continue;
+                }
+                if (pair.getValue().compareTo(defaultTTL) < 0) {
+                    builder.add(new Scope(siteId, Optional.of(name.substring(0, slash)), Optional.of(name.substring(slash + 1)), pair.getValue()));
+                }
+            }
+            return builder.build();
+        }
+
+        Duration getTTL(int siteId, Optional<String> projectName, String workflowName)
+        {
+            if (projectName.isPresent()) {
+                Duration workflowTTL = workflowTTLs.get(overrideKey(siteId, projectName.get() + "/" + workflowName));
+                if (workflowTTL != null) {
+                    return workflowTTL;
+                }
+                Duration projectTTL = projectTTLs.get(overrideKey(siteId, projectName.get()));
+                if (projectTTL != null) {
+                    return projectTTL;
+                }
+            }
+            return defaultTTL;
+        }
+
+        static class Scope
+        {
+            private final int siteId;
+            private final Optional<String> projectName;
+            private final Optional<String> workflowName;
+            private final Duration ttl;
+
+            Scope(int siteId, Optional<String> projectName, Optional<String> workflowName, Duration ttl)
+            {
+                this.siteId = siteId;
+                this.projectName = projectName;
+                this.workflowName = workflowName;
+                this.ttl = ttl;
+            }
+
+            int getSiteId()
+            {
+                return siteId;
+            }
+
+            Optional<String> getProjectName()
+            {
+                return projectName;
+            }
+
+            Optional<String> getWorkflowName()
+            {
+                return workflowName;
+            }
+
+            Duration getTTL()
+            {
+                return ttl;
+            }
+
+            @Override
+            public String toString()
+            {
+                if (!projectName.isPresent()) {
+                    return "*/*=" + ttl;
+                }
+                return siteId + ":" + projectName.get() + "/" + workflowName.or("*") + "=" + ttl;
+            }
+        }
+    }
+
     private void run()
     {
+        // project names are cached only during one reaping cycle
+        Map<Integer, Optional<String>> projectNameCache = new HashMap<>();
+
         try {
-            enforceAttemptTTLs();
+            enforceAttemptTTLs(projectNameCache);
         }
         catch (Throwable t) {
             logger.error("Uncaught exception when enforcing attempt TTLs. Ignoring. Loop will be retried.", t);
         }
 
         try {
-            enforceTaskTTLs();
+            enforceTaskTTLs(projectNameCache);
         }
         catch (Throwable t) {
             logger.error("Uncaught exception when enforcing task TTLs. Ignoring. Loop will be retried.", t);
         }
     }
 
-    private void enforceAttemptTTLs()
+    private void enforceAttemptTTLs(Map<Integer, Optional<String>> projectNameCache)
     {
-        Instant creationDeadline = ssm.getStoreTime().minus(attemptTTL);
-
-        List<StoredSessionAttempt> expiredAttempts = ssm.findActiveAttemptsCreatedBefore(creationDeadline, (long) 0, 100);
+        Instant now = ssm.getStoreTime();
+        for (TTLPolicy.Scope scope : attemptTTL.getScopes()) {
+            enforceAttemptTTLs(now, scope, projectNameCache);
+        }
+    }
 
-        for (StoredSessionAttempt attempt : expiredAttempts) {
-            AttemptStateFlags stateFlags;
-            try {
-                stateFlags = ssm.getAttemptStateFlags(attempt.getId());
+    private void enforceAttemptTTLs(Instant now, TTLPolicy.Scope scope, Map<Integer, Optional<String>> projectNameCache)
+    {
+        Instant creationDeadline = now.minus(scope.getTTL());
+
+        long lastId = 0;
+        while (true) {
+            // findActiveAttempts*CreatedBefore excludes attempts that are already cancel-requested
+            List<StoredSessionAttemptWithSession> candidates;
+            if (scope.getProjectName().isPresent()) {
+                candidates = ssm.findActiveAttemptsOfProjectCreatedBefore(scope.getSiteId(), scope.getProjectName().get(), scope.getWorkflowName(), creationDeadline, lastId, reapingBatchSize);
             }
-            catch (ResourceNotFoundException e) {
-                logger.debug("Session Attempt not found, ignoring: {}", attempt, e);
-                continue;
+            else {
+                candidates = ssm.findActiveAttemptsCreatedBefore(creationDeadline, lastId, reapingBatchSize);
+            }
+            if (candidates.isEmpty()) {
+                break;
+            }
+            lastId = candidates.get(candidates.size() - 1).getId();
+
+            Map<Long, StoredSessionAttemptWithSession> expiredAttempts = new LinkedHashMap<>();
+            for (StoredSessionAttemptWithSession attempt : candidates) {
+                Duration ttl = attemptTTL.getTTL(attempt.getSiteId(), getProjectName(attempt, projectNameCache), attempt.getSession().getWorkflowName());
+                if (attempt.getCreatedAt().isBefore(now.minus(ttl))) {
+                    expiredAttempts.put(attempt.getId(), attempt);
+                }
             }
 
-            if (stateFlags.isCancelRequested()) {
-                logger.debug("Session Attempt already canceled, ignoring: {}", attempt);
-                continue;
+            if (!expiredAttempts.isEmpty()) {
+                logger.info("Session Attempt(s) timed out, canceling: {}", expiredAttempts.keySet());
+                List<Long> canceled = ssm.requestCancelAttempts(ImmutableList.copyOf(expiredAttempts.keySet()));
+                for (long attemptId : canceled) {
+                    sendTimeoutNotification("Workflow execution timeout", expiredAttempts.get(attemptId), projectNameCache);
+                }
             }
 
-            logger.info("Session Attempt timed out, canceling: {}", attempt);
-            boolean canceled = ssm.requestCancelAttempt(attempt.getId());
-            if (canceled) {
-                sendTimeoutNotification("Workflow execution timeout", attempt.getId());
+            if (candidates.size() < reapingBatchSize) {
+                break;
             }
         }
     }
 
-    private void enforceTaskTTLs()
+    private void enforceTaskTTLs(Map<Integer, Optional<String>> projectNameCache)
     {
-        Instant startDeadline = ssm.getStoreTime().minus(taskTTL);
+        Instant now = ssm.getStoreTime();
+        for (TTLPolicy.Scope scope : taskTTL.getScopes()) {
+            enforceTaskTTLs(now, scope, projectNameCache);
+        }
+    }
 
-        List<TaskAttemptSummary> expiredTasks = ssm.findTasksStartedBeforeWithState(TaskStateCode.notDoneStates(), startDeadline, (long) 0, 100);
+    private void enforceTaskTTLs(Instant now, TTLPolicy.Scope scope, Map<Integer, Optional<String>> projectNameCache)
+    {
+        Instant startDeadline = now.minus(scope.getTTL());
 
-        Map<Long, List<TaskAttemptSummary>> attempts = expiredTasks.stream()
-                .collect(groupingBy(TaskAttemptSummary::getAttemptId));
+        long lastId = 0;
+        while (true) {
+            List<TaskAttemptSummary> candidates;
+            if (scope.getProjectName().isPresent()) {
+                candidates = ssm.findTasksOfProjectStartedBeforeWithState(scope.getSiteId(), scope.getProjectName().get(), scope.getWorkflowName(), TaskStateCode.notDoneStates(), startDeadline, lastId, reapingBatchSize);
+            }
+            else {
+                candidates = ssm.findTasksStartedBeforeWithState(TaskStateCode.notDoneStates(), startDeadline, lastId, reapingBatchSize);
+            }
+            if (candidates.isEmpty()) {
+                break;
+            }
+            lastId = candidates.get(candidates.size() - 1).getId();
+
+            Map<Long, List<TaskAttemptSummary>> candidatesByAttempt = candidates.stream()
+                    .collect(groupingBy(TaskAttemptSummary::getAttemptId, LinkedHashMap::new, toList()));
+
+            Map<Long, StoredSessionAttemptWithSession> attempts = ssm.getAttemptsWithSessionByIds(ImmutableList.copyOf(candidatesByAttempt.keySet()))
+                    .stream()
+                    .collect(toMap(StoredSessionAttemptWithSession::getId, attempt -> attempt));
+
+            Map<Long, List<TaskAttemptSummary>> expiredTasksByAttempt = new LinkedHashMap<>();
+            for (Map.Entry<Long, List<TaskAttemptSummary>> entry : candidatesByAttempt.entrySet()) {
+                StoredSessionAttemptWithSession attempt = attempts.get(entry.getKey());
+                if (attempt == null) {
+                    logger.debug("Session Attempt not found, ignoring: {}", entry.getKey());
+                    continue;
+                }
+                Instant deadline = now.minus(taskTTL.getTTL(attempt.getSiteId(), getProjectName(attempt, projectNameCache), attempt.getSession().getWorkflowName()));
+                List<TaskAttemptSummary> expiredTasks = entry.getValue().stream()
+                        .filter(task -> task.getStartedAt().transform(startedAt -> startedAt.isBefore(deadline)).or(false))
+                        .collect(toList());
+                if (!expiredTasks.isEmpty()) {
+                    expiredTasksByAttempt.put(entry.getKey(), expiredTasks);
+                }
+            }
+
+            if (!expiredTasksByAttempt.isEmpty()) {
+                logger.info("Task(s) timed out, canceling Session Attempt(s): {}", expiredTasksByAttempt);
+                List<Long> canceled = ssm.requestCancelAttempts(ImmutableList.copyOf(expiredTasksByAttempt.keySet()));
+                for (long attemptId : canceled) {
+                    String taskIds = expiredTasksByAttempt.get(attemptId).stream().mapToLong(TaskAttemptSummary::getId).mapToObj(Long::toString).collect(joining(","));
+                    sendTimeoutNotification("Task execution timeout: " + taskIds, attempts.get(attemptId), projectNameCache);
+                }
+            }
 
-        for (Map.Entry<Long, List<TaskAttemptSummary>> entry : attempts.entrySet()) {
-            logger.info("Task(s) timed out, canceling Session Attempt: {}, tasks={}", entry.getKey(), entry.getValue());
-            boolean canceled = ssm.requestCancelAttempt(entry.getKey());
-            String taskIds = entry.getValue().stream().mapToLong(TaskAttemptSummary::getId).mapToObj(Long::toString).collect(joining(","));
-            if (canceled) {
-                sendTimeoutNotification("Task execution timeout: " + taskIds, entry.getKey());
+            if (candidates.size() < reapingBatchSize) {
+                break;
             }
         }
     }
 
-    private void sendTimeoutNotification(String message, long attemptId)
+    private Optional<String> getProjectName(StoredSessionAttemptWithSession attempt, Map<Integer, Optional<String>> projectNameCache)
     {
-        StoredSessionAttemptWithSession attempt;
-        try {
-            attempt = ssm.getAttemptWithSessionById(attemptId);
-        }
-        catch (ResourceNotFoundException e) {
-            logger.error("Session Attempt not found, ignoring: {}", attemptId);
-            return;
+        if (!attemptTTL.hasOverrides() && !taskTTL.hasOverrides()) {
+            return Optional.absent();
         }
+        return lookupProjectName(attempt.getSession().getProjectId(), projectNameCache);
+    }
 
+    private Optional<String> lookupProjectName(int projectId, Map<Integer, Optional<String>> projectNameCache)
+    {
+        return projectNameCache.computeIfAbsent(projectId, id -> {
+            try {
+                return Optional.of(psm.getProjectByIdInternal(id).getName());
+            }
+            catch (ResourceNotFoundException e) {
+                return Optional.absent();
+            }
+        });
+    }
+
+    private void sendTimeoutNotification(String message, StoredSessionAttemptWithSession attempt, Map<Integer, Optional<String>> projectNameCache)
+    {
+        long attemptId = attempt.getId();
         int projectId = attempt.getSession().getProjectId();
-        StoredProject project;
-        try {
-            project = psm.getProjectByIdInternal(projectId);
-        }
-        catch (ResourceNotFoundException e) {
-            logger.error("Session Attempt not found, ignoring: {}", attemptId);
+        Optional<String> projectName = lookupProjectName(projectId, projectNameCache);
+        if (!projectName.isPresent()) {
+            logger.error("Project of Session Attempt not found, ignoring: {}", attemptId);
             return;
         }
 
@@ -185,7 +452,7 @@ public class WorkflowExecutionTimeoutEnforcer
         Notification notification = Notification.builder(Instant.now(), message)
                 .attemptId(attempt.getId())
                 .projectId(projectId)
-                .projectName(project.getName())
+                .projectName(projectName.get())
                 .revision(workflow.transform(wf -> wf.getRevisionName()))
                 .sessionId(attempt.getSessionId())
                 .siteId(attempt.getSiteId())
@@ -193,7 +460,7 @@ public class WorkflowExecutionTimeoutEnforcer
                 .build();
 
         try {
-            notifier.sendNotification(notification);
+            notifier.sendNotificationAsync(notification);
         }
         catch (NotificationException e) {
             logger.error("Failed to send execution timeout notification for attempt: {}", attemptId, e);
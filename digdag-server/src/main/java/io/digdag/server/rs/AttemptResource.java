@@ -13,10 +13,16 @@ import javax.ws.rs.QueryParam;
 import javax.ws.rs.PUT;
 import javax.ws.rs.POST;
 import javax.ws.rs.GET;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.Suspended;
+import javax.ws.rs.core.EntityTag;
 import javax.ws.rs.core.Response;
+import org.jboss.resteasy.annotations.GZIP;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.inject.Inject;
 import com.google.common.base.Optional;
+import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableList;
 import io.digdag.client.config.Config;
 import io.digdag.core.session.ArchivedTask;
@@ -44,15 +50,26 @@ public class AttemptResource
     // GET  /api/attempts/{id}                               # show a session
     // GET  /api/attempts/{id}/tasks                         # list tasks of a session
     // GET  /api/attempts/{id}/retries                       # list retried attempts of this session
+    // GET  /api/attempts/status?attempt_id=<id>&attempt_id=<id>       # show attempts of the ids
+    // GET  /api/attempts/status/wait?attempt_id=<id>&timeout=<sec>    # wait until one of attempts of the ids finishes or changes state
     // PUT  /api/attempts                                    # starts a new session
     // POST /api/attempts/{id}/kill                          # kill a session
 
+    private static final int TASK_PAGE_SIZE = 1000;
+
+    private static final int MAX_STATUS_ATTEMPTS = 1000;
+    private static final int DEFAULT_STATUS_WAIT_TIMEOUT_SECONDS = 30;
+    private static final int MAX_STATUS_WAIT_TIMEOUT_SECONDS = 300;
+
     private final ProjectStoreManager rm;
     private final SessionStoreManager sm;
     private final SchedulerManager srm;
     private final AttemptBuilder attemptBuilder;
     private final WorkflowExecutor executor;
     private final ConfigFactory cf;
+    private final ObjectMapper mapper;
+    private final ImmutableResourceCache cache;
+    private final AttemptStatusWaiters statusWaiters;
 
     @Inject
     public AttemptResource(
@@ -61,7 +78,10 @@ public class AttemptResource
             SchedulerManager srm,
             AttemptBuilder attemptBuilder,
             WorkflowExecutor executor,
-            ConfigFactory cf)
+            ConfigFactory cf,
+            ObjectMapper mapper,
+            ImmutableResourceCache cache,
+            AttemptStatusWaiters statusWaiters)
     {
         this.rm = rm;
         this.sm = sm;
@@ -69,6 +89,9 @@ public class AttemptResource
         this.attemptBuilder = attemptBuilder;
         this.executor = executor;
         this.cf = cf;
+        this.mapper = mapper;
+        this.cache = cache;
+        this.statusWaiters = statusWaiters;
     }
 
     @GET
@@ -117,6 +140,47 @@ public class AttemptResource
         return RestModels.attempt(attempt, proj.getName());
     }
 
+    @GET
+    @Path("/api/attempts/status")
+    public RestSessionAttemptCollection getAttemptStatus(@QueryParam("attempt_id") List<Long> attemptIds)
+    {
+        checkStatusAttemptIds(attemptIds);
+
+        List<StoredSessionAttemptWithSession> attempts = sm.getSessionStore(getSiteId())
+            .getAttemptsByIdList(attemptIds);
+        return RestModels.attemptCollection(rm.getProjectStore(getSiteId()), attempts);
+    }
+
+    /**
+     * Waits until one of the attempts is done or changes its state, or the
+     * timeout passes, without holding an HTTP worker thread.
+     *
+     * Only WorkflowExecutor of this server notices changes immediately.
+     * Attempts finished or canceled by other servers are noticed by reading
+     * the database every 5 seconds.
+     */
+    @GET
+    @Path("/api/attempts/status/wait")
+    public void waitAttemptStatus(
+            @QueryParam("attempt_id") List<Long> attemptIds,
+            @QueryParam("timeout") Integer timeoutSeconds,
+            @Suspended AsyncResponse response)
+    {
+        checkStatusAttemptIds(attemptIds);
+
+        long timeout = Math.min(Optional.fromNullable(timeoutSeconds).or(DEFAULT_STATUS_WAIT_TIMEOUT_SECONDS), MAX_STATUS_WAIT_TIMEOUT_SECONDS);
+
+        // returns immediately if an attempt is already done. clients are
+        // expected to remove finished attempts from the next request.
+        statusWaiters.waitStatus(getSiteId(), attemptIds, timeout, response);
+    }
+
+    private static void checkStatusAttemptIds(List<Long> attemptIds)
+    {
+        Preconditions.checkArgument(!attemptIds.isEmpty(), "attempt_id= is required");
+        Preconditions.checkArgument(attemptIds.size() <= MAX_STATUS_ATTEMPTS, "number of attempt_id= must be %s or less", MAX_STATUS_ATTEMPTS);
+    }
+
     @GET
     @Path("/api/attempts/{id}/retries")
     public RestSessionAttemptCollection getAttemptRetries(@PathParam("id") long id)
@@ -130,11 +194,91 @@ public class AttemptResource
 
     @GET
     @Path("/api/attempts/{id}/tasks")
-    public RestTaskCollection getTasks(@PathParam("id") long id)
+    @GZIP
+    public Response getTasks(@PathParam("id") long id)
     {
-        List<ArchivedTask> tasks = sm.getSessionStore(getSiteId())
-            .getTasksOfAttempt(id);
-        return RestModels.taskCollection(tasks);
+        // tasks of a finished attempt don't change. skip reading them if the client has them.
+        // the list of tasks is not cached on memory because it can be large.
+        // the tag is weak because the body is gzip-encoded or not depending on Accept-Encoding.
+        Optional<EntityTag> etag = Optional.absent();
+        if (isAttemptDone(getSiteId(), id)) {
+            etag = Optional.of(ImmutableResourceCache.weakEtag(ImmutableResourceCache.key("tasks", getSiteId(), id)));
+            Optional<Response> notModified = notModified(etag.get());
+            if (notModified.isPresent()) {
+                return Response.fromResponse(notModified.get()).header("Vary", "Accept-Encoding").build();
+            }
+        }
+
+        // writes RestTaskCollection without building the whole list because an attempt may have many tasks
+        SessionStore ss = sm.getSessionStore(getSiteId());
+        Response response = StreamingCollection.<ArchivedTask>response(mapper, "tasks", TASK_PAGE_SIZE,
+                new TaskPageReader(ss, id),
+                task -> RestModels.task(task));
+        if (etag.isPresent()) {
+            return Response.fromResponse(response).tag(etag.get()).header("Vary", "Accept-Encoding").build();
+        }
+        return response;
+    }
+
+    // Reads tasks from the tasks table page by page. Once the table has no
+    // more tasks, tasks of a finished attempt are in the archive. The archive
+    // is a single JSON document, so it's parsed only once per response and
+    // rest of the pages are sliced from it.
+    static class TaskPageReader
+            implements StreamingCollection.PageReader<ArchivedTask>
+    {
+        private final SessionStore ss;
+        private final long attemptId;
+        private List<ArchivedTask> archive = null;
+        private int archiveIndex = 0;
+
+        TaskPageReader(SessionStore ss, long attemptId)
+        {
+            this.ss = ss;
+            this.attemptId = attemptId;
+        }
+
+        @Override
+        public List<ArchivedTask> read(Optional<ArchivedTask> last, int limit)
+        {
+            long lastId = last.transform(task -> task.getId()).or(0L);
+            if (archive == null) {
+                List<ArchivedTask> page = ss.getTasksOfAttempt(attemptId, lastId, limit);
+                if (!page.isEmpty()) {
+                    return page;
+                }
+                // tasks may have been moved to the archive since the previous page
+                archive = ss.getTasksOfAttempt(attemptId);
+                while (archiveIndex < archive.size() && archive.get(archiveIndex).getId() <= lastId) {
+                    archiveIndex++;
+                }
+            }
+            int end = Math.min(archiveIndex + limit, archive.size());
+            List<ArchivedTask> page = archive.subList(archiveIndex, end);
+            archiveIndex = end;
+            return page;
+        }
+    }
+
+    private boolean isAttemptDone(int siteId, long attemptId)
+    {
+        // an attempt never becomes running again once done. only done attempts are cached.
+        String key = ImmutableResourceCache.key("done", siteId, attemptId);
+        if (cache.contains(key)) {
+            return true;
+        }
+        boolean done;
+        try {
+            // reads through the session store of the site so that attempts of other sites are not found
+            done = sm.getSessionStore(siteId).getAttemptById(attemptId).getStateFlags().isDone();
+        }
+        catch (ResourceNotFoundException ex) {
+            return false;
+        }
+        if (done) {
+            cache.put(key, true);
+        }
+        return done;
     }
 
     @PUT
@@ -0,0 +1,197 @@
+package io.digdag.server.rs;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.ws.rs.ServiceUnavailableException;
+import javax.ws.rs.container.AsyncResponse;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.inject.Inject;
+import io.digdag.client.api.RestSessionAttemptCollection;
+import io.digdag.core.repository.ProjectStoreManager;
+import io.digdag.core.session.AttemptStateFlags;
+import io.digdag.core.session.SessionStoreManager;
+import io.digdag.core.session.StoredSessionAttemptWithSession;
+import io.digdag.core.workflow.WorkflowExecutor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Holds requests of GET /api/attempts/status/wait without HTTP worker threads.
+ *
+ * A background thread wakes up when WorkflowExecutor of this process
+ * finishes or cancels an attempt, and at least every
+ * STATUS_CHECK_INTERVAL_SECONDS. It reads state of all waiting attempts
+ * with one query per site and resumes responses of waiters whose attempts
+ * are done or changed. Attempts finished by other servers are noticed only
+ * by this periodic check.
+ */
+public class AttemptStatusWaiters
+{
+    private static final Logger logger = LoggerFactory.getLogger(AttemptStatusWaiters.class);
+
+    // state changes made by other servers are noticed only by reading the database again
+    private static final int STATUS_CHECK_INTERVAL_SECONDS = 5;
+
+    private static final int MAX_IDS_PER_QUERY = 1000;
+
+    private final SessionStoreManager sm;
+    private final ProjectStoreManager rm;
+    private final WorkflowExecutor executor;
+
+    private final Set<Waiter> waiters = ConcurrentHashMap.newKeySet();
+    private final Thread thread;
+    private volatile boolean stop = false;
+
+    @Inject
+    public AttemptStatusWaiters(SessionStoreManager sm, ProjectStoreManager rm, WorkflowExecutor executor)
+    {
+        this.sm = sm;
+        this.rm = rm;
+        this.executor = executor;
+        this.thread = new ThreadFactoryBuilder()
+            .setDaemon(true)
+            .setNameFormat("attempt-status-waiter")
+            .build()
+            .newThread(this::run);
+    }
+
+    @PostConstruct
+    public void start()
+    {
+        thread.start();
+    }
+
+    @PreDestroy
+    public void shutdown()
+        throws InterruptedException
+    {
+        stop = true;
+        thread.interrupt();
+        thread.join();
+        for (Waiter waiter : waiters) {
+            waiter.response.resume(new ServiceUnavailableException("Server is shutting down"));
+        }
+        waiters.clear();
+    }
+
+    /**
+     * Reads the attempts and resumes the response right away if one of them
+     * is done. Otherwise, resumes the response when one of them is done or
+     * changes its state, or the timeout passes.
+     */
+    public void waitStatus(int siteId, List<Long> attemptIds, long timeoutSeconds, AsyncResponse response)
+    {
+        List<StoredSessionAttemptWithSession> attempts = sm.getSessionStore(siteId).getAttemptsByIdList(attemptIds);
+        if (timeoutSeconds <= 0 || attempts.stream().anyMatch(attempt -> attempt.getStateFlags().isDone())) {
+            response.resume(collection(siteId, attempts));
+            return;
+        }
+
+        Waiter waiter = new Waiter(siteId, attemptIds, attempts, response);
+        response.setTimeoutHandler(r -> {
+            if (waiters.remove(waiter)) {
+                r.resume(collection(siteId, sm.getSessionStore(siteId).getAttemptsByIdList(attemptIds)));
+            }
+        });
+        response.setTimeout(timeoutSeconds, TimeUnit.SECONDS);
+        waiters.add(waiter);
+    }
+
+    private void run()
+    {
+        while (!stop) {
+            try {
+                long version = executor.getAttemptStateVersion();
+                if (!waiters.isEmpty()) {
+                    checkWaiters();
+                }
+                executor.waitAttemptStateChange(version, STATUS_CHECK_INTERVAL_SECONDS, TimeUnit.SECONDS);
+            }
+            catch (InterruptedException ex) {
+                // shutdown
+            }
+            catch (Throwable t) {
+                logger.error("Uncaught error during checking state of attempts. Ignoring. Loop will be retried.", t);
+                try {
+                    Thread.sleep(1000);
+                }
+                catch (InterruptedException ex) {
+                    // shutdown
+                }
+            }
+        }
+    }
+
+    private void checkWaiters()
+    {
+        Map<Integer, List<Waiter>> waitersBySite = waiters.stream()
+            .collect(Collectors.groupingBy(waiter -> waiter.siteId));
+        for (Map.Entry<Integer, List<Waiter>> pair : waitersBySite.entrySet()) {
+            int siteId = pair.getKey();
+            List<Long> ids = pair.getValue().stream()
+                .flatMap(waiter -> waiter.attemptIds.stream())
+                .distinct()
+                .collect(Collectors.toList());
+            Map<Long, StoredSessionAttemptWithSession> attempts = new HashMap<>();
+            for (List<Long> chunk : Lists.partition(ids, MAX_IDS_PER_QUERY)) {
+                for (StoredSessionAttemptWithSession attempt : sm.getSessionStore(siteId).getAttemptsByIdList(chunk)) {
+                    attempts.put(attempt.getId(), attempt);
+                }
+            }
+            for (Waiter waiter : pair.getValue()) {
+                List<StoredSessionAttemptWithSession> current = new ArrayList<>();
+                for (long id : waiter.attemptIds) {
+                    StoredSessionAttemptWithSession attempt = attempts.get(id);
+                    if (attempt != null) {
+                        current.add(attempt);
+                    }
+                }
+                if (waiter.isAnyDoneOrChanged(current) && waiters.remove(waiter)) {
+                    waiter.response.resume(collection(siteId, current));
+                }
+            }
+        }
+    }
+
+    private RestSessionAttemptCollection collection(int siteId, List<StoredSessionAttemptWithSession> attempts)
+    {
+        return RestModels.attemptCollection(rm.getProjectStore(siteId), attempts);
+    }
+
+    private static class Waiter
+    {
+        private final int siteId;
+        private final List<Long> attemptIds;
+        private final Map<Long, AttemptStateFlags> initialStates;
+        private final AsyncResponse response;
+
+        Waiter(int siteId, List<Long> attemptIds, List<StoredSessionAttemptWithSession> attempts, AsyncResponse response)
+        {
+            this.siteId = siteId;
+            // ordered as getAttemptsByIdList returns
+            this.attemptIds = attemptIds.stream().distinct().sorted().collect(Collectors.toList());
+            this.initialStates = attempts.stream()
+                .collect(Collectors.toMap(attempt -> attempt.getId(), attempt -> attempt.getStateFlags()));
+            this.response = response;
+        }
+
+        boolean isAnyDoneOrChanged(List<StoredSessionAttemptWithSession> attempts)
+        {
+            for (StoredSessionAttemptWithSession attempt : attempts) {
+                if (attempt.getStateFlags().isDone() || !attempt.getStateFlags().equals(initialStates.get(attempt.getId()))) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
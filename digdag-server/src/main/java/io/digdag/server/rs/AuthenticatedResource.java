@@ -1,10 +1,14 @@
 package io.digdag.server.rs;
 
+import com.google.common.base.Optional;
 import com.google.common.base.Supplier;
 import io.digdag.client.config.Config;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.ws.rs.core.Context;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.Request;
+import javax.ws.rs.core.Response;
 
 import java.util.Map;
 
@@ -13,6 +17,9 @@ public abstract class AuthenticatedResource
     @Context
     protected HttpServletRequest request;
 
+    @Context
+    private Request restRequest;
+
     protected int getSiteId()
     {
         // siteId is set by JwtAuthInterceptor
@@ -33,4 +40,25 @@ public abstract class AuthenticatedResource
     {
         return (Supplier<Map<String, String>>) request.getAttribute("secrets");
     }
+
+    /**
+     * Returns 304 Not Modified if If-None-Match header of the request matches the ETag.
+     */
+    protected Optional<Response> notModified(EntityTag etag)
+    {
+        Response.ResponseBuilder builder = restRequest.evaluatePreconditions(etag);
+        if (builder == null) {
+            return Optional.absent();
+        }
+        return Optional.of(builder.tag(etag).build());
+    }
+
+    /**
+     * Returns 304 Not Modified if If-None-Match header of the request matches the ETag.
+     * Otherwise, returns the entity with the ETag.
+     */
+    protected Response conditionalResponse(EntityTag etag, Object entity)
+    {
+        return notModified(etag).or(() -> Response.ok(entity).tag(etag).build());
+    }
 }
@@ -0,0 +1,86 @@
+package io.digdag.server.rs;
+
+import javax.ws.rs.core.EntityTag;
+import com.google.common.base.Joiner;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.inject.Inject;
+import io.digdag.client.config.Config;
+import io.digdag.core.repository.ResourceNotFoundException;
+
+/**
+ * Cache of REST models of resources that never change once written, such
+ * as a workflow definition of an id.
+ *
+ * Keys are also used as ETag of the resources so that clients can validate
+ * their copy with If-None-Match. A key must include the site id and the ids
+ * that identify the contents.
+ */
+public class ImmutableResourceCache
+{
+    public interface Loader<T>
+    {
+        T load() throws ResourceNotFoundException;
+    }
+
+    // null if disabled
+    private final Cache<String, Object> cache;
+
+    @Inject
+    public ImmutableResourceCache(Config systemConfig)
+    {
+        int maxEntries = systemConfig.get("server.response-cache.max-entries", int.class, 1000);
+        if (maxEntries > 0) {
+            this.cache = CacheBuilder.newBuilder()
+                .maximumSize(maxEntries)
+                .build();
+        }
+        else {
+            this.cache = null;
+        }
+    }
+
+    public static String key(String type, Object... ids)
+    {
+        return type + "-" + Joiner.on('-').join(ids);
+    }
+
+    public static EntityTag etag(String key)
+    {
+        return new EntityTag(key);
+    }
+
+    // for responses whose bytes depend on content encoding
+    public static EntityTag weakEtag(String key)
+    {
+        return new EntityTag(key, true);
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T> T get(String key, Loader<T> loader)
+        throws ResourceNotFoundException
+    {
+        if (cache == null) {
+            return loader.load();
+        }
+        T value = (T) cache.getIfPresent(key);
+        if (value == null) {
+            // concurrent requests may load the same value. it's the same anyway.
+            value = loader.load();
+            cache.put(key, value);
+        }
+        return value;
+    }
+
+    public boolean contains(String key)
+    {
+        return cache != null && cache.getIfPresent(key) != null;
+    }
+
+    public void put(String key, Object value)
+    {
+        if (cache != null) {
+            cache.put(key, value);
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package io.digdag.server.rs;
+
+import java.util.concurrent.Semaphore;
+import com.google.inject.Inject;
+import io.digdag.client.config.Config;
+
+/**
+ * Limits number of clients following live logs at once.
+ *
+ * A follower keeps an HTTP worker thread until its response ends. Requests
+ * beyond the limit get 503 so that HTTP worker threads are left for other
+ * API calls. Clients poll log files instead.
+ */
+public class LiveLogFollowers
+{
+    private final Semaphore slots;
+
+    @Inject
+    public LiveLogFollowers(Config systemConfig)
+    {
+        int maxFollowers = systemConfig.get("server.live-log.max-followers", int.class, 4);
+        this.slots = new Semaphore(Math.max(maxFollowers, 0));
+    }
+
+    public boolean tryAcquire()
+    {
+        return slots.tryAcquire();
+    }
+
+    public void release()
+    {
+        slots.release();
+    }
+}
@@ -1,10 +1,14 @@
 package io.digdag.server.rs;
 
+import java.util.Arrays;
 import java.util.List;
 import java.time.Instant;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
 import java.io.InputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.FileNotFoundException;
 import javax.ws.rs.Consumes;
 import javax.ws.rs.Produces;
@@ -13,19 +17,28 @@ import javax.ws.rs.PathParam;
 import javax.ws.rs.QueryParam;
 import javax.ws.rs.PUT;
 import javax.ws.rs.GET;
+import javax.ws.rs.HeaderParam;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
 import javax.ws.rs.ServerErrorException;
+import javax.ws.rs.ServiceUnavailableException;
 import com.google.inject.Inject;
 import com.google.common.base.Optional;
+import com.google.common.base.Throwables;
 import com.google.common.io.ByteStreams;
 import io.digdag.core.session.SessionStoreManager;
 import io.digdag.core.session.*;
 import io.digdag.core.repository.*;
+import io.digdag.core.log.LiveLogBroker;
 import io.digdag.core.log.LogServerManager;
 import io.digdag.client.api.*;
+import io.digdag.client.config.Config;
 import io.digdag.spi.*;
 
 import static io.digdag.core.log.LogServerManager.logFilePrefixFromSessionAttempt;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static javax.ws.rs.core.Response.Status.PARTIAL_CONTENT;
+import static javax.ws.rs.core.Response.Status.REQUESTED_RANGE_NOT_SATISFIABLE;
 
 @Path("/")
 @Produces("application/json")
@@ -34,19 +47,37 @@ public class LogResource
 {
     // PUT  /api/logs/{attempt_id}/files?task=<name>&file_time=<unixtime sec>&node_id=<node_id>
     // GET  /api/logs/{attempt_id}/files[?task=<name>]
-    // GET  /api/logs/{attempt_id}/files/{file_name}
+    // GET  /api/logs/{attempt_id}/files/{file_name}            # supports Range header
+    // GET  /api/logs/{attempt_id}/files/{file_name}/content[?offset=<bytes>][&tail=<bytes>]
+    // GET  /api/logs/{attempt_id}/live[?task=<name>][&timeout=<seconds>]  # lines of tasks running on this server process
     // GET  /api/logs/{attempt_id}/upload_handle?task=<name>&file_time=<unixtime sec>&node_id=<nodeId>
 
+    // offset of the first byte of a decompressed log content response
+    public static final String LOG_CONTENT_OFFSET_HEADER = "X-Digdag-Log-Offset";
+
+    private static final int DEFAULT_MAX_TAIL_SIZE = 1024 * 1024;
+
+    private static final int DEFAULT_LIVE_TIMEOUT_SECONDS = 60;
+    private static final int MAX_LIVE_TIMEOUT_SECONDS = 600;
+
     private final SessionStoreManager sm;
     private final LogServer logServer;
+    private final LiveLogBroker liveLogBroker;
+    private final LiveLogFollowers followers;
+    private final int maxTailSize;
 
     @Inject
     public LogResource(
             SessionStoreManager sm,
-            LogServerManager lm)
+            LogServerManager lm,
+            LiveLogFollowers followers,
+            Config systemConfig)
     {
         this.sm = sm;
         this.logServer = lm.getLogServer();
+        this.liveLogBroker = lm.getLiveLogBroker();
+        this.followers = followers;
+        this.maxTailSize = Math.max(systemConfig.get("server.log.max-tail-size", int.class, DEFAULT_MAX_TAIL_SIZE), 0);
     }
 
     @PUT
@@ -112,13 +143,357 @@ public class LogResource
     @GET
     @Produces("application/gzip")
     @Path("/api/logs/{attempt_id}/files/{file_name}")
-    public byte[] getFile(
+    public Response getFile(
             @PathParam("attempt_id") long attemptId,
-            @PathParam("file_name") String fileName)
+            @PathParam("file_name") String fileName,
+            @HeaderParam("Range") String range)
         throws StorageFileNotFoundException, ResourceNotFoundException
     {
         LogFilePrefix prefix = getPrefix(attemptId);
-        return logServer.getFile(prefix, fileName);
+        StorageObject obj = logServer.openFile(prefix, fileName);
+        long size = obj.getContentLength();
+
+        Optional<ByteRange> byteRange = ByteRange.parse(range, size);
+        if (range != null && byteRange.isPresent() && !byteRange.get().isSatisfiable()) {
+            closeQuietly(obj.getContentInputStream());
+            return Response.status(REQUESTED_RANGE_NOT_SATISFIABLE)
+                .header("Content-Range", "bytes */" + size)
+                .build();
+        }
+
+        if (!byteRange.isPresent()) {
+            return Response.ok(streamOf(obj.getContentInputStream(), 0, size))
+                .header("Accept-Ranges", "bytes")
+                .header("Content-Length", size)
+                .build();
+        }
+
+        ByteRange r = byteRange.get();
+        return Response.status(PARTIAL_CONTENT)
+            .entity(streamOf(obj.getContentInputStream(), r.getFirst(), r.getLength()))
+            .header("Accept-Ranges", "bytes")
+            .header("Content-Range", "bytes " + r.getFirst() + "-" + r.getLast() + "/" + size)
+            .header("Content-Length", r.getLength())
+            .build();
+    }
+
+    @GET
+    @Produces("text/plain; charset=utf-8")
+    @Path("/api/logs/{attempt_id}/files/{file_name}/content")
+    public Response getFileContent(
+            @PathParam("attempt_id") long attemptId,
+            @PathParam("file_name") String fileName,
+            @QueryParam("offset") long offset,
+            @QueryParam("tail") Long tail)
+        throws StorageFileNotFoundException, ResourceNotFoundException
+    {
+        if (offset < 0 || (tail != null && tail < 0)) {
+            throw new IllegalArgumentException("offset and tail must not be negative");
+        }
+        LogFilePrefix prefix = getPrefix(attemptId);
+        StorageObject obj = logServer.openFile(prefix, fileName);
+
+        if (tail == null) {
+            // decompress from the beginning and skip bytes before offset.
+            // gzip is not seekable but this doesn't keep skipped data on memory.
+            return Response.ok((StreamingOutput) (out) -> {
+                try (InputStream in = new GZIPInputStream(obj.getContentInputStream(), 16 * 1024)) {
+                    skipUpTo(in, offset);
+                    ByteStreams.copy(in, out);
+                }
+            })
+            .header(LOG_CONTENT_OFFSET_HEADER, offset)
+            .build();
+        }
+
+        // keep only the last bytes on a ring buffer. offset is used as the
+        // lower bound so that a client can read the rest after an offset read.
+        // decompressed size is unknown. the buffer grows up to the tail size
+        // so that a short file doesn't allocate the whole window.
+        TailBuffer buffer = new TailBuffer((int) Math.min(tail, maxTailSize));
+        try (InputStream in = new GZIPInputStream(obj.getContentInputStream(), 16 * 1024)) {
+            long total = skipUpTo(in, offset);
+            byte[] chunk = new byte[16 * 1024];
+            while (true) {
+                int n = in.read(chunk);
+                if (n < 0) {
+                    break;
+                }
+                buffer.write(chunk, 0, n);
+                total += n;
+            }
+            byte[] data = buffer.toByteArray();
+            return Response.ok(data)
+                .header(LOG_CONTENT_OFFSET_HEADER, total - data.length)
+                .build();
+        }
+        catch (IOException ex) {
+            throw Throwables.propagate(ex);
+        }
+    }
+
+    @GET
+    @Produces("text/plain; charset=utf-8")
+    @Path("/api/logs/{attempt_id}/live")
+    public Response followLogs(
+            @PathParam("attempt_id") long attemptId,
+            @QueryParam("task") String taskName,
+            @QueryParam("timeout") Integer timeoutSeconds)
+        throws ResourceNotFoundException
+    {
+        // validates site id
+        getPrefix(attemptId);
+
+        long timeout = Math.min(Optional.fromNullable(timeoutSeconds).or(DEFAULT_LIVE_TIMEOUT_SECONDS), MAX_LIVE_TIMEOUT_SECONDS);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(timeout);
+
+        if (!followers.tryAcquire()) {
+            throw new ServiceUnavailableException("Too many clients are following live logs");
+        }
+
+        // Only logs of tasks running on this server process are streamed,
+        // as soon as a line is complete. Logs of tasks running on other
+        // processes never appear here, and lines written before this request
+        // are not included. Clients need to read log files too.
+        //
+        // Each line is prefixed with the task name and the byte offset of
+        // the line in the output of the task, which is the offset in the
+        // concatenated log files of the task:
+        //   +wf+task<TAB>offset<TAB>line
+        //
+        // Response ends when the attempt finishes or timeout expires.
+        // Clients reconnect until the attempt finishes.
+        try {
+            LiveLogBroker.Subscription subscription = liveLogBroker.subscribe(attemptId, Optional.fromNullable(taskName));
+            return Response.ok((StreamingOutput) (out) -> {
+                try (LiveLogBroker.Subscription s = subscription) {
+                    boolean done = false;
+                    while (System.nanoTime() < deadline) {
+                        LiveLogBroker.Lines lines = s.poll(1, TimeUnit.SECONDS);
+                        if (lines != null) {
+                            writeLiveLines(out, lines);
+                            out.flush();
+                        }
+                        else if (done) {
+                            break;
+                        }
+                        else {
+                            // check state only when idle. remaining logs are drained before ending the response
+                            done = isAttemptDone(attemptId);
+                        }
+                    }
+                }
+                catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+                finally {
+                    followers.release();
+                }
+            })
+            .build();
+        }
+        catch (RuntimeException ex) {
+            followers.release();
+            throw ex;
+        }
+    }
+
+    private static void writeLiveLines(OutputStream out, LiveLogBroker.Lines lines)
+        throws IOException
+    {
+        byte[] data = lines.getData();
+        int start = 0;
+        for (int i = 0; i < data.length; i++) {
+            if (data[i] == '\n') {
+                out.write((lines.getTaskName() + "\t" + (lines.getOffset() + start) + "\t").getBytes(UTF_8));
+                out.write(data, start, i - start + 1);
+                start = i + 1;
+            }
+        }
+    }
+
+    private boolean isAttemptDone(long attemptId)
+    {
+        try {
+            return sm.getAttemptStateFlags(attemptId).isDone();
+        }
+        catch (ResourceNotFoundException ex) {
+            return true;
+        }
+    }
+
+    private static StreamingOutput streamOf(InputStream input, long offset, long length)
+    {
+        return (out) -> {
+            try (InputStream in = input) {
+                ByteStreams.skipFully(in, offset);
+                ByteStreams.copy(ByteStreams.limit(in, length), out);
+            }
+        };
+    }
+
+    private static long skipUpTo(InputStream in, long offset)
+        throws IOException
+    {
+        long skipped = 0;
+        byte[] buffer = null;
+        while (skipped < offset) {
+            // GZIPInputStream.skip may return 0 before EOF. read is used to detect EOF
+            long n = in.skip(offset - skipped);
+            if (n <= 0) {
+                if (buffer == null) {
+                    buffer = new byte[16 * 1024];
+                }
+                int r = in.read(buffer, 0, (int) Math.min(buffer.length, offset - skipped));
+                if (r < 0) {
+                    break;
+                }
+                n = r;
+            }
+            skipped += n;
+        }
+        return skipped;
+    }
+
+    private static void closeQuietly(InputStream in)
+    {
+        try {
+            in.close();
+        }
+        catch (IOException ex) {
+            // ignore
+        }
+    }
+
+    static class ByteRange
+    {
+        // parses a single byte range of Range header. Returns absent if the
+        // header is not set or not supported (e.g. multiple ranges) so that
+        // whole contents are returned as RFC 7233 allows.
+        static Optional<ByteRange> parse(String header, long size)
+        {
+            if (header == null || !header.startsWith("bytes=")) {
+                return Optional.absent();
+            }
+            String spec = header.substring("bytes=".length()).trim();
+            if (spec.contains(",")) {
+                return Optional.absent();
+            }
+            int dash = spec.indexOf('-');
+            if (dash < 0) {
+                return Optional.absent();
+            }
+            try {
+                String firstString = spec.substring(0, dash).trim();
+                String lastString = spec.substring(dash + 1).trim();
+                if (firstString.isEmpty()) {
+                    // suffix range: last N bytes
+                    long suffix = Long.parseLong(lastString);
+                    if (suffix == 0) {
+                        return Optional.of(new ByteRange(size, size - 1, size));
+                    }
+                    return Optional.of(new ByteRange(Math.max(0, size - suffix), size - 1, size));
+                }
+                long first = Long.parseLong(firstString);
+                long last = lastString.isEmpty() ? size - 1 : Math.min(Long.parseLong(lastString), size - 1);
+                if (last < first && first < size) {
+                    return Optional.absent();
+                }
+                return Optional.of(new ByteRange(first, last, size));
+            }
+            catch (NumberFormatException ex) {
+                return Optional.absent();
+            }
+        }
+
+        private final long first;
+        private final long last;
+        private final long size;
+
+        ByteRange(long first, long last, long size)
+        {
+            this.first = first;
+            this.last = last;
+            this.size = size;
+        }
+
+        boolean isSatisfiable()
+        {
+            return first < size && first <= last;
+        }
+
+        long getFirst()
+        {
+            return first;
+        }
+
+        long getLast()
+        {
+            return last;
+        }
+
+        long getLength()
+        {
+            return last - first + 1;
+        }
+    }
+
+    static class TailBuffer
+    {
+        private static final int INITIAL_SIZE = 64 * 1024;
+
+        private final int capacity;
+        private byte[] buffer;
+        private int position;
+        private boolean wrapped;
+
+        TailBuffer(int capacity)
+        {
+            this.capacity = capacity;
+            this.buffer = new byte[Math.min(capacity, INITIAL_SIZE)];
+        }
+
+        void write(byte[] data, int off, int len)
+        {
+            if (capacity == 0) {
+                return;
+            }
+            if (position + len > buffer.length && buffer.length < capacity) {
+                // not wrapped yet because the buffer is smaller than capacity.
+                // data is at [0, position).
+                int size = (int) Math.min(capacity, Math.max((long) buffer.length * 2, (long) position + len));
+                buffer = Arrays.copyOf(buffer, size);
+            }
+            if (len >= buffer.length) {
+                System.arraycopy(data, off + len - buffer.length, buffer, 0, buffer.length);
+                position = 0;
+                wrapped = true;
+                return;
+            }
+            int first = Math.min(len, buffer.length - position);
+            System.arraycopy(data, off, buffer, position, first);
+            System.arraycopy(data, off + first, buffer, 0, len - first);
+            if (position + len >= buffer.length) {
+                wrapped = true;
+            }
+            position = (position + len) % buffer.length;
+        }
+
+        byte[] toByteArray()
+        {
+            if (!wrapped) {
+                return Arrays.copyOf(buffer, position);
+            }
+            byte[] data = new byte[buffer.length];
+            System.arraycopy(buffer, position, data, 0, buffer.length - position);
+            System.arraycopy(buffer, 0, data, buffer.length - position, position);
+            return data;
+        }
+
+        int getAllocatedSize()
+        {
+            return buffer.length;
+        }
     }
 
     private LogFilePrefix getPrefix(long attemptId)
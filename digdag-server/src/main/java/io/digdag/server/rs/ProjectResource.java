@@ -25,6 +25,7 @@ import javax.ws.rs.GET;
 import javax.ws.rs.NotFoundException;
 import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.InternalServerErrorException;
+import javax.ws.rs.core.EntityTag;
 import javax.ws.rs.core.StreamingOutput;
 import javax.ws.rs.core.Response;
 
@@ -34,12 +35,16 @@ import com.google.inject.Inject;
 import com.google.common.base.Throwables;
 import com.google.common.collect.*;
 import com.google.common.io.ByteStreams;
+import com.google.common.hash.Hashing;
+import com.google.common.hash.HashingInputStream;
 import com.google.common.base.Optional;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableList;
 import com.google.common.io.ByteStreams;
 import com.google.inject.Inject;
 import io.digdag.client.api.RestProject;
+import io.digdag.client.api.RestProjectBlobList;
+import io.digdag.client.api.RestProjectManifest;
 import io.digdag.client.api.RestProjectCollection;
 import io.digdag.client.api.RestRevision;
 import io.digdag.client.api.RestRevisionCollection;
@@ -58,6 +63,7 @@ import io.digdag.core.TempFileManager;
 import io.digdag.core.TempFileManager.TempDir;
 import io.digdag.core.TempFileManager.TempFile;
 import io.digdag.core.archive.ArchiveMetadata;
+import io.digdag.core.archive.ProjectManifest;
 import io.digdag.core.config.YamlConfigLoader;
 import io.digdag.core.repository.ArchiveType;
 import io.digdag.core.repository.Project;
@@ -78,6 +84,7 @@ import io.digdag.core.session.SessionStore;
 import io.digdag.core.session.SessionStoreManager;
 import io.digdag.core.session.StoredSessionWithLastAttempt;
 import io.digdag.core.storage.ArchiveManager;
+import io.digdag.core.storage.ProjectBlobStore;
 import io.digdag.core.workflow.WorkflowCompiler;
 import io.digdag.server.GenericJsonExceptionHandler;
 import io.digdag.spi.SecretControlStore;
@@ -112,6 +119,7 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.nio.file.Files;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
@@ -138,6 +146,9 @@ public class ProjectResource
     // GET  /api/projects/{id}/archive                   # download archive file of the latest revision of a project
     // GET  /api/projects/{id}/archive?revision=<name>   # download archive file of a former revision of a project
     // PUT  /api/projects?project=<name>&revision=<name> # create a new revision (also create a project if it doesn't exist)
+    // POST /api/projects/blobs/missing                  # list digests of project file blobs that are not uploaded yet
+    // PUT  /api/projects/blobs/<digest>                 # upload a project file blob
+    // PUT  /api/projects/manifest?project=<name>&revision=<name> # create a new revision from a manifest of uploaded blobs
     // GET  /api/projects/{id}/secrets                   # list secrets for a project
     // PUT  /api/projects/{id}/secrets/<key>             # set a secret for a project
     // DEL  /api/projects/{id}/secrets/<key>             # delete a secret for a project
@@ -154,6 +165,7 @@ public class ProjectResource
     private final YamlConfigLoader rawLoader;
     private final WorkflowCompiler compiler;
     private final ArchiveManager archiveManager;
+    private final ProjectBlobStore blobStore;
     private final ProjectStoreManager rm;
     private final ScheduleStoreManager sm;
     private final SchedulerManager srm;
@@ -167,6 +179,7 @@ public class ProjectResource
             YamlConfigLoader rawLoader,
             WorkflowCompiler compiler,
             ArchiveManager archiveManager,
+            ProjectBlobStore blobStore,
             ProjectStoreManager rm,
             ScheduleStoreManager sm,
             SchedulerManager srm,
@@ -179,6 +192,7 @@ public class ProjectResource
         this.srm = srm;
         this.compiler = compiler;
         this.archiveManager = archiveManager;
+        this.blobStore = blobStore;
         this.rm = rm;
         this.sm = sm;
         this.tempFiles = tempFiles;
@@ -261,13 +275,17 @@ public class ProjectResource
 
     @GET
     @Path("/api/projects/{id}/revisions")
-    public RestRevisionCollection getRevisions(@PathParam("id") int projId, @QueryParam("last_id") Integer lastId)
+    public Response getRevisions(@PathParam("id") int projId, @QueryParam("last_id") Integer lastId)
         throws ResourceNotFoundException
     {
         ProjectStore ps = rm.getProjectStore(getSiteId());
         StoredProject proj = ensureNotDeletedProject(ps.getProjectById(projId));
         List<StoredRevision> revs = ps.getRevisions(proj.getId(), 100, Optional.fromNullable(lastId));
-        return RestModels.revisionCollection(proj, revs);
+        // revisions are never updated or deleted, and a new revision gets a larger id.
+        // thus the first id and the number of revisions identify the page.
+        EntityTag etag = ImmutableResourceCache.etag(ImmutableResourceCache.key("revisions",
+                    getSiteId(), proj.getId(), revs.isEmpty() ? "none" : revs.get(0).getId(), revs.size()));
+        return conditionalResponse(etag, RestModels.revisionCollection(proj, revs));
     }
 
     @GET
@@ -399,8 +417,16 @@ public class ProjectResource
         ProjectStore ps = rm.getProjectStore(getSiteId());
         ensureNotDeletedProject(ps.getProjectById(projId));
 
+        // an archive of a revision doesn't change. skip reading it if the client has it.
+        StoredRevision rev = (revName == null) ? ps.getLatestRevision(projId) : ps.getRevisionByName(projId, revName);
+        EntityTag etag = ImmutableResourceCache.etag(ImmutableResourceCache.key("archive", getSiteId(), rev.getId()));
+        Optional<Response> notModified = notModified(etag);
+        if (notModified.isPresent()) {
+            return notModified.get();
+        }
+
         Optional<ArchiveManager.StoredArchive> archiveOrNone =
-            archiveManager.getArchive(ps, projId, revName);
+            archiveManager.getArchive(ps, projId, rev.getName());
         if (!archiveOrNone.isPresent()) {
             throw new ResourceNotFoundException("Archive is not stored");
         }
@@ -420,7 +446,7 @@ public class ProjectResource
 
             Optional<byte[]> bytes = archive.getByteArray();
             if (bytes.isPresent()) {
-                return Response.ok(bytes.get()).build();
+                return Response.ok(bytes.get()).tag(etag).build();
             }
 
             return Response.ok(new StreamingOutput() {
@@ -443,7 +469,7 @@ public class ProjectResource
                         ByteStreams.copy(in, out);
                     }
                 }
-            }).build();
+            }).tag(etag).build();
         }
     }
 
@@ -470,18 +496,7 @@ public class ProjectResource
         Preconditions.checkArgument(!Strings.isNullOrEmpty(name), "project= is required");
         Preconditions.checkArgument(!Strings.isNullOrEmpty(revision), "revision= is required");
 
-        Instant scheduleFrom;
-        if (scheduleFromString == null || scheduleFromString.isEmpty()) {
-            scheduleFrom = Instant.now();
-        }
-        else {
-            try {
-                scheduleFrom = Instant.parse(scheduleFromString);
-            }
-            catch (DateTimeParseException ex) {
-                throw new IllegalArgumentException("Invalid schedule_from= parameter format. Expected yyyy-MM-dd'T'HH:mm:ss'Z' format", ex);
-            }
-        }
+        Instant scheduleFrom = parseScheduleFrom(scheduleFromString);
 
         if (contentLength > ARCHIVE_TOTAL_SIZE_LIMIT) {
             throw new IllegalArgumentException(String.format(ENGLISH,
@@ -573,13 +588,199 @@ public class ProjectResource
         }
     }
 
+    private static Instant parseScheduleFrom(String scheduleFromString)
+    {
+        if (scheduleFromString == null || scheduleFromString.isEmpty()) {
+            return Instant.now();
+        }
+        try {
+            return Instant.parse(scheduleFromString);
+        }
+        catch (DateTimeParseException ex) {
+            throw new IllegalArgumentException("Invalid schedule_from= parameter format. Expected yyyy-MM-dd'T'HH:mm:ss'Z' format", ex);
+        }
+    }
+
+    @POST
+    @Consumes("application/json")
+    @Path("/api/projects/blobs/missing")
+    public RestProjectBlobList getMissingProjectBlobs(RestProjectBlobList request)
+        throws ResourceNotFoundException
+    {
+        ensureBlobStoreAvailable();
+        return RestProjectBlobList.of(blobStore.findMissingBlobs(getSiteId(), request.getDigests()));
+    }
+
+    @PUT
+    @Consumes("application/octet-stream")
+    @Path("/api/projects/blobs/{digest}")
+    public void putProjectBlob(@PathParam("digest") String digest,
+            InputStream body, @HeaderParam("Content-Length") long contentLength)
+        throws IOException, ResourceNotFoundException
+    {
+        ensureBlobStoreAvailable();
+        ProjectBlobStore.validateDigest(digest);
+
+        if (contentLength > ARCHIVE_FILE_SIZE_LIMIT) {
+            throw new IllegalArgumentException(String.format(ENGLISH,
+                        "Size of the uploaded blob exceeds limit (%d bytes)",
+                        ARCHIVE_FILE_SIZE_LIMIT));
+        }
+
+        try (TempFile tempFile = tempFiles.createTempFile("blob-", ".bin")) {
+            HashingInputStream in = new HashingInputStream(Hashing.sha256(), body);
+            long size;
+            try (OutputStream out = Files.newOutputStream(tempFile.get())) {
+                size = ByteStreams.copy(in, out);
+            }
+            if (size != contentLength) {
+                throw new IllegalArgumentException("Content-Length header doesn't match with uploaded data size");
+            }
+            if (!in.hash().toString().equals(digest)) {
+                throw new IllegalArgumentException("SHA-256 digest of the uploaded data doesn't match with " + digest);
+            }
+
+            try {
+                blobStore.putBlob(getSiteId(), digest, size, () -> Files.newInputStream(tempFile.get()));
+            }
+            catch (RuntimeException | IOException ex) {
+                throw new InternalServerErrorException("Failed to upload blob to a remote storage", ex);
+            }
+        }
+    }
+
+    @PUT
+    @Consumes("application/json")
+    @Path("/api/projects/manifest")
+    public RestProject putProjectManifest(@QueryParam("project") String name, @QueryParam("revision") String revision,
+            RestProjectManifest restManifest,
+            @QueryParam("schedule_from") String scheduleFromString)
+        throws IOException, ResourceConflictException, ResourceNotFoundException
+    {
+        Preconditions.checkArgument(!Strings.isNullOrEmpty(name), "project= is required");
+        Preconditions.checkArgument(!Strings.isNullOrEmpty(revision), "revision= is required");
+        Preconditions.checkArgument(restManifest != null, "manifest is required");
+        ensureBlobStoreAvailable();
+
+        Instant scheduleFrom = parseScheduleFrom(scheduleFromString);
+
+        // file names are validated here. names with '..' or absolute paths are rejected.
+        ProjectManifest manifest = RestModels.parseProjectManifest(restManifest);
+        ImmutableList.Builder<String> digests = ImmutableList.builder();
+        Optional<ProjectManifest.Entry> metaEntry = Optional.absent();
+        for (ProjectManifest.Entry entry : manifest.getFiles()) {
+            if (entry.getDigest().isPresent()) {
+                digests.add(entry.getDigest().get());
+                if (entry.getName().equals(ArchiveMetadata.FILE_NAME)) {
+                    metaEntry = Optional.of(entry);
+                }
+            }
+        }
+        if (!metaEntry.isPresent()) {
+            throw new IllegalArgumentException("Manifest doesn't include " + ArchiveMetadata.FILE_NAME);
+        }
+
+        // sizes in the manifest are declared by the client. limits are
+        // checked using sizes of the stored blobs.
+        Map<String, Long> blobSizes = blobStore.getBlobSizes(getSiteId(), digests.build());
+        List<String> missing = new ArrayList<>();
+        long totalSize = 0;
+        for (ProjectManifest.Entry entry : manifest.getFiles()) {
+            if (!entry.getDigest().isPresent()) {
+                continue;
+            }
+            Long size = blobSizes.get(entry.getDigest().get());
+            if (size == null) {
+                missing.add(entry.getDigest().get());
+                continue;
+            }
+            if (size != entry.getSize()) {
+                throw new IllegalArgumentException(String.format(ENGLISH,
+                            "Size of a file in the manifest doesn't match with the uploaded blob (%d != %d bytes): %s",
+                            entry.getSize(), size, entry.getName()));
+            }
+            if (size > ARCHIVE_FILE_SIZE_LIMIT) {
+                throw new IllegalArgumentException(String.format(ENGLISH,
+                            "Size of a file in the manifest exceeds limit (%d > %d bytes): %s",
+                            size, ARCHIVE_FILE_SIZE_LIMIT, entry.getName()));
+            }
+            totalSize += size;
+        }
+        if (!missing.isEmpty()) {
+            throw new IllegalArgumentException("Blobs are not uploaded yet: " + missing);
+        }
+        if (totalSize > ARCHIVE_TOTAL_SIZE_LIMIT) {
+            throw new IllegalArgumentException(String.format(ENGLISH,
+                        "Total size of the manifest exceeds limit (%d > %d bytes)",
+                        totalSize, ARCHIVE_TOTAL_SIZE_LIMIT));
+        }
+
+        ArchiveMetadata meta = readManifestMetadata(metaEntry.get().getDigest().get(), name);
+        byte[] manifestData = blobStore.formatManifest(manifest);
+        byte[] md5 = Hashing.md5().hashBytes(manifestData).asBytes();
+
+        Map<String, String> secrets = getSecrets().get();
+
+        RestProject restProject = rm.getProjectStore(getSiteId()).putAndLockProject(
+                Project.of(name),
+                (store, storedProject) -> {
+                    ProjectControl lockedProj = new ProjectControl(store, storedProject);
+                    // manifest is small enough to store in db. file contents are in the blob store
+                    StoredRevision rev = lockedProj.insertRevision(
+                            Revision.builderFromArchive(revision, meta, getUserInfo())
+                                    .archiveType(ArchiveType.MANIFEST)
+                                    .archivePath(Optional.absent())
+                                    .archiveMd5(Optional.of(md5))
+                                    .build()
+                    );
+                    lockedProj.insertRevisionArchiveData(rev.getId(), manifestData);
+                    lockedProj.insertWorkflowDefinitions(rev,
+                            meta.getWorkflowList().get(),
+                            srm, scheduleFrom);
+                    return RestModels.project(storedProject, rev);
+                });
+
+        SecretControlStore secretControlStore = scsp.getSecretControlStore(getSiteId());
+        secrets.forEach((k, v) -> secretControlStore.setProjectSecret(
+                    RestModels.parseProjectId(restProject.getId()),
+                    SecretScopes.PROJECT_DEFAULT,
+                    k, v));
+        return restProject;
+    }
+
+    private void ensureBlobStoreAvailable()
+        throws ResourceNotFoundException
+    {
+        if (!blobStore.isAvailable()) {
+            // clients fall back to uploading an archive
+            throw new ResourceNotFoundException("Project blobs are not available on this server because archive.type is not a storage");
+        }
+    }
+
+    private ArchiveMetadata readManifestMetadata(String digest, String projectName)
+        throws IOException
+    {
+        Preconditions.checkArgument(!Strings.isNullOrEmpty(projectName), "projectName");
+        try (TempDir dir = tempFiles.createTempDir("push", projectName)) {
+            java.nio.file.Path file = dir.child(ArchiveMetadata.FILE_NAME);
+            try (InputStream in = blobStore.openBlob(getSiteId(), digest).getContentInputStream()) {
+                Files.copy(in, file);
+            }
+            catch (StorageFileNotFoundException ex) {
+                throw new IllegalArgumentException("Blob of " + ArchiveMetadata.FILE_NAME + " is not uploaded", ex);
+            }
+            Config renderedConfig = rawLoader.loadFile(file.toFile()).toConfig(cf);
+            return renderedConfig.convert(ArchiveMetadata.class);
+        }
+    }
+
     private ArchiveMetadata readArchiveMetadata(InputStream in, String projectName)
         throws IOException
     {
         Preconditions.checkArgument(!Strings.isNullOrEmpty(projectName), "projectName");
         try (TempDir dir = tempFiles.createTempDir("push", projectName)) {
             long totalSize = 0;
-            try (TarArchiveInputStream archive = new TarArchiveInputStream(new GzipCompressorInputStream(new BufferedInputStream(in, 32*1024)))) {
+            try (TarArchiveInputStream archive = new TarArchiveInputStream(new GzipCompressorInputStream(new BufferedInputStream(in, 32*1024), true))) {
                 totalSize = extractConfigFiles(dir.get(), archive);
             }
 
@@ -8,6 +8,7 @@ import io.digdag.client.api.RestLogFileHandle;
 import io.digdag.client.api.RestLogFileHandleCollection;
 import io.digdag.client.api.RestProject;
 import io.digdag.client.api.RestProjectCollection;
+import io.digdag.client.api.RestProjectManifest;
 import io.digdag.client.api.RestRevision;
 import io.digdag.client.api.RestRevisionCollection;
 import io.digdag.client.api.RestSchedule;
@@ -23,6 +24,7 @@ import io.digdag.client.api.RestWorkflowDefinition;
 import io.digdag.client.api.RestWorkflowDefinitionCollection;
 import io.digdag.client.api.RestWorkflowSessionTime;
 import io.digdag.client.api.RestDirectDownloadHandle;
+import io.digdag.core.archive.ProjectManifest;
 import io.digdag.core.repository.ProjectMap;
 import io.digdag.core.repository.ProjectStore;
 import io.digdag.core.repository.ResourceNotFoundException;
@@ -39,12 +41,15 @@ import io.digdag.core.session.StoredSession;
 import io.digdag.core.session.StoredSessionAttempt;
 import io.digdag.core.session.StoredSessionAttemptWithSession;
 import io.digdag.core.session.StoredSessionWithLastAttempt;
+import io.digdag.core.storage.ProjectBlobStore;
 import io.digdag.spi.LogFileHandle;
 
 import java.time.Instant;
 import java.time.OffsetDateTime;
 import java.time.ZoneId;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.UUID;
 import java.util.stream.Collectors;
 
@@ -382,6 +387,28 @@ public final class RestModels
             .build();
     }
 
+    static ProjectManifest parseProjectManifest(RestProjectManifest manifest)
+    {
+        Set<String> names = new HashSet<>();
+        ImmutableList.Builder<ProjectManifest.Entry> files = ImmutableList.builder();
+        for (RestProjectManifest.Entry entry : manifest.getFiles()) {
+            if (!names.add(entry.getName())) {
+                throw new IllegalArgumentException("Manifest includes duplicated file: " + entry.getName());
+            }
+            if (entry.getDigest().isPresent()) {
+                ProjectBlobStore.validateDigest(entry.getDigest().get());
+            }
+            files.add(ProjectManifest.Entry.builder()
+                    .name(entry.getName())
+                    .digest(entry.getDigest())
+                    .size(entry.getSize())
+                    .mode(entry.getMode())
+                    .linkName(entry.getLinkName())
+                    .build());
+        }
+        return ProjectManifest.of(files.build());
+    }
+
     static Id id(int id)
     {
         return Id.of(Long.toString(id));
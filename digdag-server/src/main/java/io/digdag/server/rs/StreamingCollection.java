@@ -0,0 +1,66 @@
+package io.digdag.server.rs;
+
+import java.util.List;
+import java.util.function.Function;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.google.common.base.Optional;
+
+/**
+ * Writes a JSON object of a collection, {"NAME": [...]}, reading elements
+ * page by page.
+ *
+ * Resources use this instead of building a whole Rest*Collection when a
+ * collection can be large. Only one page of elements and their REST models
+ * are on memory at once, and no database connection is held while writing
+ * to a client.
+ */
+class StreamingCollection
+{
+    interface PageReader<T>
+    {
+        // returns at most limit elements after the last element of the previous page
+        List<T> read(Optional<T> last, int limit);
+    }
+
+    private StreamingCollection()
+    { }
+
+    static <T> Response response(ObjectMapper mapper, String fieldName, int pageSize,
+            PageReader<T> reader, Function<T, ?> model)
+    {
+        // read the first page here so that an error becomes an error response
+        // rather than a truncated body
+        List<T> firstPage = reader.read(Optional.absent(), pageSize);
+
+        ObjectWriter writer = mapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+
+        StreamingOutput output = (out) -> {
+            try (JsonGenerator gen = mapper.getFactory().createGenerator(out)) {
+                gen.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+                gen.writeStartObject();
+                gen.writeFieldName(fieldName);
+                gen.writeStartArray();
+                List<T> page = firstPage;
+                while (true) {
+                    for (T element : page) {
+                        writer.writeValue(gen, model.apply(element));
+                    }
+                    if (page.size() < pageSize) {
+                        break;
+                    }
+                    page = reader.read(Optional.of(page.get(page.size() - 1)), pageSize);
+                }
+                gen.writeEndArray();
+                gen.writeEndObject();
+            }
+        };
+
+        return Response.ok(output, MediaType.APPLICATION_JSON_TYPE).build();
+    }
+}
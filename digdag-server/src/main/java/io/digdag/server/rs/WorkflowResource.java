@@ -23,6 +23,7 @@ import javax.ws.rs.QueryParam;
 import javax.ws.rs.PUT;
 import javax.ws.rs.POST;
 import javax.ws.rs.GET;
+import javax.ws.rs.core.Response;
 import com.google.inject.Inject;
 import com.google.common.base.Throwables;
 import com.google.common.collect.*;
@@ -59,16 +60,19 @@ public class WorkflowResource
     private final ProjectStoreManager rm;
     private final ScheduleStoreManager sm;
     private final SchedulerManager srm;
+    private final ImmutableResourceCache cache;
 
     @Inject
     public WorkflowResource(
             ProjectStoreManager rm,
             ScheduleStoreManager sm,
-            SchedulerManager srm)
+            SchedulerManager srm,
+            ImmutableResourceCache cache)
     {
         this.rm = rm;
         this.sm = sm;
         this.srm = srm;
+        this.cache = cache;
     }
 
     @GET
@@ -109,13 +113,24 @@ public class WorkflowResource
 
     @GET
     @Path("/api/workflows/{id}")
-    public RestWorkflowDefinition getWorkflowDefinition(@PathParam("id") long id)
+    public Response getWorkflowDefinition(@PathParam("id") long id)
         throws ResourceNotFoundException
     {
-        StoredWorkflowDefinitionWithProject def =
-            rm.getProjectStore(getSiteId())
-            .getWorkflowDefinitionById(id);
-        return RestModels.workflowDefinition(def);
+        // a workflow definition of an id doesn't change but its project
+        // can be deleted. the project is read for each request.
+        int siteId = getSiteId();
+        ProjectStore rs = rm.getProjectStore(siteId);
+        String key = ImmutableResourceCache.key("workflow", siteId, id);
+        RestWorkflowDefinition cached = cache.get(key, () ->
+                RestModels.workflowDefinition(rs.getWorkflowDefinitionById(id)));
+
+        StoredProject proj = rs.getProjectById(RestModels.parseProjectId(cached.getProject().getId()));
+        RestWorkflowDefinition def = RestWorkflowDefinition.builder()
+            .from(cached)
+            .project(IdAndName.of(cached.getProject().getId(), proj.getName()))
+            .build();
+        String etagKey = proj.getDeletedAt().isPresent() ? key + "-deleted" : key;
+        return conditionalResponse(ImmutableResourceCache.etag(etagKey), def);
     }
 
     @GET
@@ -0,0 +1,110 @@
+package io.digdag.server;
+
+import java.util.Date;
+import io.digdag.client.DigdagClient;
+import io.digdag.client.api.RestApiKey;
+import io.digdag.client.config.Config;
+import io.digdag.client.config.ConfigFactory;
+import io.jsonwebtoken.JwtBuilder;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import javax.ws.rs.container.ContainerRequestContext;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class JwtAuthenticatorTest
+{
+    private static final ConfigFactory CONFIG_FACTORY = new ConfigFactory(DigdagClient.objectMapper());
+
+    private static final RestApiKey API_KEY = RestApiKey.randomGenerate();
+
+    @Mock ContainerRequestContext request;
+
+    private JwtAuthenticator authenticator;
+
+    @Before
+    public void setUp()
+    {
+        Config systemConfig = CONFIG_FACTORY.create()
+            .set("server.apikey", API_KEY.toString());
+        authenticator = new JwtAuthenticator(systemConfig);
+    }
+
+    private static JwtBuilder token(RestApiKey key)
+    {
+        return Jwts.builder()
+            .setHeaderParam("knd", "ps1")
+            .setSubject(key.getIdString())
+            .signWith(SignatureAlgorithm.HS256, key.getSecret());
+    }
+
+    private Authenticator.Result authenticate(String token)
+    {
+        when(request.getHeaderString("Authorization")).thenReturn("Bearer " + token);
+        return authenticator.authenticate(request);
+    }
+
+    @Test
+    public void verifiedTokensAreCached()
+    {
+        String token = token(API_KEY).compact();
+
+        assertThat(authenticate(token).isAccepted(), is(true));
+        assertThat(authenticate(token).isAccepted(), is(true));
+        assertThat(authenticate(token).isAdmin(), is(true));
+
+        assertThat(authenticator.getTokenCacheMissCount(), is(1L));
+        assertThat(authenticator.getTokenCacheHitCount(), is(2L));
+        assertThat(authenticator.getAuthenticationCount(), is(3L));
+    }
+
+    @Test
+    public void invalidTokensAreRejected()
+    {
+        RestApiKey anotherKey = RestApiKey.randomGenerate();
+
+        // signed with another secret
+        String forged = Jwts.builder()
+            .setHeaderParam("knd", "ps1")
+            .setSubject(API_KEY.getIdString())
+            .signWith(SignatureAlgorithm.HS256, anotherKey.getSecret())
+            .compact();
+        assertThat(authenticate(forged).isAccepted(), is(false));
+        assertThat(authenticate(forged).isAccepted(), is(false));
+
+        // unknown subject
+        assertThat(authenticate(token(anotherKey).compact()).isAccepted(), is(false));
+
+        // expired
+        String expired = token(API_KEY).setExpiration(new Date(System.currentTimeMillis() - 60_000)).compact();
+        assertThat(authenticate(expired).isAccepted(), is(false));
+
+        assertThat(authenticator.getTokenCacheHitCount(), is(0L));
+    }
+
+    @Test
+    public void cachedTokensExpire()
+        throws Exception
+    {
+        // exp claim is in seconds
+        Date expiration = new Date((System.currentTimeMillis() / 1000 + 2) * 1000);
+        String token = token(API_KEY).setExpiration(expiration).compact();
+
+        assertThat(authenticate(token).isAccepted(), is(true));
+        assertThat(authenticate(token).isAccepted(), is(true));
+
+        Thread.sleep(expiration.getTime() - System.currentTimeMillis() + 100);
+
+        assertThat(authenticate(token).isAccepted(), is(false));
+        assertThat(authenticate(token).isAccepted(), is(false));
+    }
+}
@@ -0,0 +1,112 @@
+package io.digdag.server;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.Collectors;
+import com.google.common.base.Optional;
+import io.digdag.client.DigdagClient;
+import io.digdag.client.config.Config;
+import io.digdag.client.config.ConfigFactory;
+import io.digdag.server.WorkflowExecutionTimeoutEnforcer.TTLPolicy;
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class WorkflowExecutionTimeoutEnforcerTest
+{
+    private static final ConfigFactory CONFIG_FACTORY = new ConfigFactory(DigdagClient.objectMapper());
+
+    private static final Duration DEFAULT_TTL = Duration.ofDays(7);
+
+    private final Config systemConfig = CONFIG_FACTORY.create()
+        .set("executor.attempt_ttl", "2d")
+        .set("executor.attempt_ttl.project.p1", "1h")
+        .set("executor.attempt_ttl.workflow.p1/wf1", "10m")
+        .set("executor.attempt_ttl.workflow.p1/wf2", "30d")
+        .set("executor.attempt_ttl.workflow.p2/wf1", "3d")
+        .set("executor.attempt_ttl.site.1.project.p1", "2h")
+        .set("executor.task_ttl", "1h");
+
+    @Test
+    public void defaultTTL()
+    {
+        TTLPolicy policy = TTLPolicy.load(CONFIG_FACTORY.create(), "executor.attempt_ttl", DEFAULT_TTL);
+
+        assertThat(policy.hasOverrides(), is(false));
+        assertThat(policy.getTTL(0, Optional.of("p1"), "wf1"), is(DEFAULT_TTL));
+        assertThat(policy.getTTL(0, Optional.absent(), "wf1"), is(DEFAULT_TTL));
+    }
+
+    @Test
+    public void parseOverrides()
+    {
+        TTLPolicy policy = TTLPolicy.load(systemConfig, "executor.attempt_ttl", DEFAULT_TTL);
+
+        assertThat(policy.hasOverrides(), is(true));
+        assertThat(policy.getTTL(0, Optional.of("p3"), "wf1"), is(Duration.ofDays(2)));
+        assertThat(policy.getTTL(0, Optional.of("p1"), "wf3"), is(Duration.ofHours(1)));
+        assertThat(policy.getTTL(0, Optional.of("p2"), "wf1"), is(Duration.ofDays(3)));
+    }
+
+    @Test
+    public void overridesOfOtherKeysAreIgnored()
+    {
+        TTLPolicy policy = TTLPolicy.load(systemConfig, "executor.task_ttl", DEFAULT_TTL);
+
+        assertThat(policy.hasOverrides(), is(false));
+        assertThat(policy.getTTL(0, Optional.of("p1"), "wf1"), is(Duration.ofHours(1)));
+    }
+
+    @Test
+    public void workflowOverrideTakesPrecedenceOverProjectOverride()
+    {
+        TTLPolicy policy = TTLPolicy.load(systemConfig, "executor.attempt_ttl", DEFAULT_TTL);
+
+        // shorter and longer than the project override
+        assertThat(policy.getTTL(0, Optional.of("p1"), "wf1"), is(Duration.ofMinutes(10)));
+        assertThat(policy.getTTL(0, Optional.of("p1"), "wf2"), is(Duration.ofDays(30)));
+    }
+
+    @Test
+    public void overridesAreScopedBySite()
+    {
+        TTLPolicy policy = TTLPolicy.load(systemConfig, "executor.attempt_ttl", DEFAULT_TTL);
+
+        // overrides without site id apply only to site 0
+        assertThat(policy.getTTL(1, Optional.of("p1"), "wf1"), is(Duration.ofHours(2)));
+        assertThat(policy.getTTL(1, Optional.of("p2"), "wf1"), is(Duration.ofDays(2)));
+        assertThat(policy.getTTL(0, Optional.of("p1"), "wf3"), is(Duration.ofHours(1)));
+    }
+
+    @Test
+    public void overridesNeedProjectName()
+    {
+        TTLPolicy policy = TTLPolicy.load(systemConfig, "executor.attempt_ttl", DEFAULT_TTL);
+
+        // project of the attempt is not known
+        assertThat(policy.getTTL(0, Optional.absent(), "wf1"), is(Duration.ofDays(2)));
+    }
+
+    @Test
+    public void scopesOfOverridesShorterThanDefault()
+    {
+        TTLPolicy policy = TTLPolicy.load(systemConfig, "executor.attempt_ttl", DEFAULT_TTL);
+
+        // longer overrides are found by the default scope
+        assertThat(scopes(policy), containsInAnyOrder(
+                    "*/*=PT48H",
+                    "0:p1/*=PT1H",
+                    "0:p1/wf1=PT10M",
+                    "1:p1/*=PT2H"));
+        assertThat(policy.getScopes().get(0).getProjectName(), is(Optional.absent()));
+    }
+
+    private static List<String> scopes(TTLPolicy policy)
+    {
+        return policy.getScopes().stream()
+            .map(TTLPolicy.Scope::toString)
+            .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,72 @@
+package io.digdag.server.rs;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import io.digdag.client.DigdagClient;
+import io.digdag.client.config.ConfigFactory;
+import io.digdag.core.repository.ResourceNotFoundException;
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class ImmutableResourceCacheTest
+{
+    private static final ConfigFactory CONFIG_FACTORY = new ConfigFactory(DigdagClient.objectMapper());
+
+    private final AtomicInteger loads = new AtomicInteger();
+
+    private String load(String value)
+    {
+        loads.incrementAndGet();
+        return value;
+    }
+
+    @Test
+    public void cacheLoadedValues()
+            throws Exception
+    {
+        ImmutableResourceCache cache = new ImmutableResourceCache(CONFIG_FACTORY.create());
+        String key = ImmutableResourceCache.key("workflow", 0, 1L);
+        assertThat(key, is("workflow-0-1"));
+
+        assertThat(cache.get(key, () -> load("a")), is("a"));
+        assertThat(cache.get(key, () -> load("b")), is("a"));
+        assertThat(cache.get(ImmutableResourceCache.key("workflow", 1, 1L), () -> load("c")), is("c"));
+        assertThat(loads.get(), is(2));
+        assertThat(ImmutableResourceCache.etag(key).getValue(), is(key));
+    }
+
+    @Test
+    public void notFoundIsNotCached()
+            throws Exception
+    {
+        ImmutableResourceCache cache = new ImmutableResourceCache(CONFIG_FACTORY.create());
+        String key = ImmutableResourceCache.key("workflow", 0, 1L);
+        try {
+            cache.get(key, () -> {
+                throw new ResourceNotFoundException("not found");
+            });
+            fail();
+        }
+        catch (ResourceNotFoundException ex) {
+        }
+        assertThat(cache.contains(key), is(false));
+        assertThat(cache.get(key, () -> load("a")), is("a"));
+        assertThat(cache.contains(key), is(true));
+    }
+
+    @Test
+    public void disabled()
+            throws Exception
+    {
+        ImmutableResourceCache cache = new ImmutableResourceCache(CONFIG_FACTORY.create()
+                .set("server.response-cache.max-entries", 0));
+        String key = ImmutableResourceCache.key("workflow", 0, 1L);
+        cache.put(key, "a");
+        assertThat(cache.contains(key), is(false));
+        assertThat(cache.get(key, () -> load("b")), is("b"));
+        assertThat(cache.get(key, () -> load("c")), is("c"));
+        assertThat(loads.get(), is(2));
+    }
+}
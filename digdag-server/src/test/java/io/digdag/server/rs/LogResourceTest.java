@@ -0,0 +1,156 @@
+package io.digdag.server.rs;
+
+import com.google.common.base.Optional;
+import com.google.common.base.Strings;
+import org.junit.Test;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class LogResourceTest
+{
+    private static final long SIZE = 100;
+
+    @Test
+    public void parseByteRange()
+    {
+        assertRange("bytes=0-9", 0, 9);
+        assertRange("bytes=10-10", 10, 10);
+        assertRange("bytes= 10 - 19 ", 10, 19);
+        // last is limited to the end of the file
+        assertRange("bytes=90-200", 90, 99);
+    }
+
+    @Test
+    public void parseOpenEndedRange()
+    {
+        assertRange("bytes=10-", 10, 99);
+        assertRange("bytes=0-", 0, 99);
+    }
+
+    @Test
+    public void parseSuffixRange()
+    {
+        assertRange("bytes=-10", 90, 99);
+        // suffix longer than the file means the whole file
+        assertRange("bytes=-200", 0, 99);
+    }
+
+    @Test
+    public void ignoreUnsupportedRange()
+    {
+        // whole contents are returned
+        assertThat(LogResource.ByteRange.parse(null, SIZE), is(Optional.absent()));
+        assertThat(LogResource.ByteRange.parse("items=0-9", SIZE), is(Optional.absent()));
+        assertThat(LogResource.ByteRange.parse("bytes=0-9,20-29", SIZE), is(Optional.absent()));
+        assertThat(LogResource.ByteRange.parse("bytes=9-0", SIZE), is(Optional.absent()));
+        assertThat(LogResource.ByteRange.parse("bytes=a-b", SIZE), is(Optional.absent()));
+        assertThat(LogResource.ByteRange.parse("bytes=10", SIZE), is(Optional.absent()));
+    }
+
+    @Test
+    public void parseUnsatisfiableRange()
+    {
+        assertUnsatisfiable("bytes=100-", SIZE);
+        assertUnsatisfiable("bytes=200-300", SIZE);
+        assertUnsatisfiable("bytes=-0", SIZE);
+        assertUnsatisfiable("bytes=0-", 0);
+        assertUnsatisfiable("bytes=-10", 0);
+    }
+
+    @Test
+    public void tailOfFileShorterThanWindow()
+    {
+        LogResource.TailBuffer buffer = new LogResource.TailBuffer(10);
+        write(buffer, "abc");
+        assertThat(toString(buffer), is("abc"));
+    }
+
+    @Test
+    public void tailOfFileAsLongAsWindow()
+    {
+        LogResource.TailBuffer buffer = new LogResource.TailBuffer(4);
+        write(buffer, "ab");
+        write(buffer, "cd");
+        assertThat(toString(buffer), is("abcd"));
+    }
+
+    @Test
+    public void tailWrapsAround()
+    {
+        LogResource.TailBuffer buffer = new LogResource.TailBuffer(4);
+        write(buffer, "ab");
+        write(buffer, "cde");
+        write(buffer, "f");
+        assertThat(toString(buffer), is("cdef"));
+    }
+
+    @Test
+    public void tailOfWriteLongerThanWindow()
+    {
+        LogResource.TailBuffer buffer = new LogResource.TailBuffer(4);
+        write(buffer, "a");
+        write(buffer, "bcdefgh");
+        assertThat(toString(buffer), is("efgh"));
+    }
+
+    @Test
+    public void tailBufferGrowsUpToWindow()
+    {
+        LogResource.TailBuffer buffer = new LogResource.TailBuffer(1024 * 1024);
+        write(buffer, "abc");
+        // a short file doesn't allocate the whole window
+        assertThat(buffer.getAllocatedSize() < 1024 * 1024, is(true));
+
+        String large = Strings.repeat("0123456789", 110 * 1024);
+        write(buffer, large);
+        assertThat(buffer.getAllocatedSize(), is(1024 * 1024));
+        assertThat(toString(buffer), is(("abc" + large).substring(3 + large.length() - 1024 * 1024)));
+    }
+
+    @Test
+    public void tailBufferGrowsBeforeWrappingAround()
+    {
+        LogResource.TailBuffer buffer = new LogResource.TailBuffer(200 * 1024);
+        String chunk = Strings.repeat("x", 50 * 1024);
+        write(buffer, chunk);
+        write(buffer, chunk);
+        write(buffer, "abc");
+        assertThat(toString(buffer), is(chunk + chunk + "abc"));
+    }
+
+    @Test
+    public void emptyTail()
+    {
+        LogResource.TailBuffer buffer = new LogResource.TailBuffer(0);
+        write(buffer, "abc");
+        assertThat(toString(buffer), is(""));
+    }
+
+    private static void assertRange(String header, long first, long last)
+    {
+        LogResource.ByteRange range = LogResource.ByteRange.parse(header, SIZE).get();
+        assertThat(range.isSatisfiable(), is(true));
+        assertThat(range.getFirst(), is(first));
+        assertThat(range.getLast(), is(last));
+        assertThat(range.getLength(), is(last - first + 1));
+    }
+
+    private static void assertUnsatisfiable(String header, long size)
+    {
+        assertThat(LogResource.ByteRange.parse(header, size).get().isSatisfiable(), is(false));
+    }
+
+    private static void write(LogResource.TailBuffer buffer, String data)
+    {
+        // offset is not 0 to check that it's respected
+        byte[] bytes = ("x" + data).getBytes(UTF_8);
+        buffer.write(bytes, 1, bytes.length - 1);
+    }
+
+    private static String toString(LogResource.TailBuffer buffer)
+    {
+        return new String(buffer.toByteArray(), UTF_8);
+    }
+}
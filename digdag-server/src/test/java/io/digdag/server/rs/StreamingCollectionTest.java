@@ -0,0 +1,127 @@
+package io.digdag.server.rs;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableList;
+import io.digdag.client.DigdagClient;
+import io.digdag.core.session.ArchivedTask;
+import io.digdag.core.session.SessionStore;
+import org.junit.Test;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class StreamingCollectionTest
+{
+    private static final ObjectMapper MAPPER = DigdagClient.objectMapper();
+
+    private final List<Optional<Long>> reads = new ArrayList<>();
+
+    private StreamingCollection.PageReader<Long> reader(long count)
+    {
+        return (last, limit) -> {
+            reads.add(last);
+            long from = last.or(0L) + 1;
+            return LongStream.rangeClosed(from, Math.min(count, from + limit - 1))
+                .boxed()
+                .collect(Collectors.toList());
+        };
+    }
+
+    private static <T> String write(StreamingCollection.PageReader<T> reader, Function<T, ?> model)
+            throws Exception
+    {
+        Response response = StreamingCollection.response(MAPPER, "tasks", 2, reader, model);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ((StreamingOutput) response.getEntity()).write(out);
+        return new String(out.toByteArray(), UTF_8);
+    }
+
+    @Test
+    public void emptyCollection()
+            throws Exception
+    {
+        assertThat(write(reader(0), element -> element), is("{\"tasks\":[]}"));
+        assertThat(reads, is(ImmutableList.of(Optional.absent())));
+    }
+
+    @Test
+    public void lastPageIsShorterThanPageSize()
+            throws Exception
+    {
+        assertThat(write(reader(3), element -> element), is("{\"tasks\":[1,2,3]}"));
+        assertThat(reads, is(ImmutableList.of(Optional.absent(), Optional.of(2L))));
+    }
+
+    @Test
+    public void lastPageIsFull()
+            throws Exception
+    {
+        // a page of the same size as pageSize may not be the last page. the next read returns nothing.
+        assertThat(write(reader(4), element -> element), is("{\"tasks\":[1,2,3,4]}"));
+        assertThat(reads, is(ImmutableList.of(Optional.absent(), Optional.of(2L), Optional.of(4L))));
+    }
+
+    @Test
+    public void firstPageIsReadBeforeWriting()
+            throws Exception
+    {
+        StreamingCollection.response(MAPPER, "tasks", 2, reader(4), element -> element);
+        assertThat(reads, is(ImmutableList.of(Optional.absent())));
+    }
+
+    @Test
+    public void readArchivedTasksOnce()
+            throws Exception
+    {
+        List<ArchivedTask> archive = LongStream.rangeClosed(1, 5)
+            .mapToObj(StreamingCollectionTest::task)
+            .collect(Collectors.toList());
+        SessionStore ss = mock(SessionStore.class);
+        when(ss.getTasksOfAttempt(eq(1L), anyLong(), anyInt())).thenReturn(ImmutableList.of());
+        when(ss.getTasksOfAttempt(1L)).thenReturn(archive);
+
+        assertThat(write(new AttemptResource.TaskPageReader(ss, 1L), task -> task.getId()), is("{\"tasks\":[1,2,3,4,5]}"));
+        verify(ss, times(1)).getTasksOfAttempt(1L);
+    }
+
+    @Test
+    public void readArchivedTasksAfterActiveTasks()
+            throws Exception
+    {
+        // tasks are moved to the archive after the first page
+        List<ArchivedTask> archive = LongStream.rangeClosed(1, 5)
+            .mapToObj(StreamingCollectionTest::task)
+            .collect(Collectors.toList());
+        SessionStore ss = mock(SessionStore.class);
+        when(ss.getTasksOfAttempt(1L, 0L, 2)).thenReturn(archive.subList(0, 2));
+        when(ss.getTasksOfAttempt(1L, 2L, 2)).thenReturn(ImmutableList.of());
+        when(ss.getTasksOfAttempt(1L)).thenReturn(archive);
+
+        assertThat(write(new AttemptResource.TaskPageReader(ss, 1L), task -> task.getId()), is("{\"tasks\":[1,2,3,4,5]}"));
+        verify(ss, times(1)).getTasksOfAttempt(1L);
+    }
+
+    private static ArchivedTask task(long id)
+    {
+        ArchivedTask task = mock(ArchivedTask.class);
+        when(task.getId()).thenReturn(id);
+        return task;
+    }
+}
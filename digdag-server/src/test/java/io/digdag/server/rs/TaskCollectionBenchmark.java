@@ -0,0 +1,176 @@
+package io.digdag.server.rs;
+
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import javax.ws.rs.core.StreamingOutput;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableList;
+import io.digdag.client.DigdagClient;
+import io.digdag.client.api.Id;
+import io.digdag.client.api.RestTask;
+import io.digdag.client.api.RestTaskCollection;
+import io.digdag.client.config.Config;
+import io.digdag.client.config.ConfigFactory;
+
+import static java.util.Locale.ENGLISH;
+
+/**
+ * Compares latency, allocated bytes and peak heap usage of writing
+ * GET /api/attempts/{id}/tasks as a whole RestTaskCollection and with
+ * StreamingCollection.
+ *
+ * This is not run as a unit test. Run taskCollectionBenchmark task:
+ *
+ *   ./gradlew :digdag-server:taskCollectionBenchmark [-PtaskCollectionBenchmarkTasks=<number of tasks>]
+ */
+public class TaskCollectionBenchmark
+{
+    private static final int PAGE_SIZE = 1000;
+
+    private static final ObjectMapper MAPPER = DigdagClient.objectMapper();
+    private static final ConfigFactory CF = new ConfigFactory(MAPPER);
+
+    public static void main(String[] args)
+        throws Exception
+    {
+        int tasks = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+        int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+
+        // warm up JIT
+        for (int i = 0; i < 3; i++) {
+            writeCollection(tasks);
+            writeStreaming(tasks);
+        }
+
+        measure("collection", iterations, () -> writeCollection(tasks));
+        measure("streaming", iterations, () -> writeStreaming(tasks));
+    }
+
+    private interface Op
+    {
+        long run() throws Exception;
+    }
+
+    // a task is created when it's read from the store
+    private static RestTask task(long id)
+    {
+        Config config = CF.create().set("sh>", "echo " + id);
+        return RestTask.builder()
+            .id(Id.of(Long.toString(id)))
+            .fullName("+benchmark+task" + id)
+            .parentId(Optional.of(Id.of("1")))
+            .config(config)
+            .upstreams(ImmutableList.of(Id.of(Long.toString(id - 1))))
+            .isGroup(false)
+            .state("success")
+            .exportParams(CF.create())
+            .storeParams(CF.create().set("result", id))
+            .stateParams(CF.create())
+            .updatedAt(Instant.now())
+            .retryAt(Optional.absent())
+            .startedAt(Optional.of(Instant.now()))
+            .build();
+    }
+
+    private static List<RestTask> page(long lastId, int limit, int tasks)
+    {
+        List<RestTask> page = new ArrayList<>();
+        for (long id = lastId + 1; id <= tasks && page.size() < limit; id++) {
+            page.add(task(id));
+        }
+        return page;
+    }
+
+    private static long writeCollection(int tasks)
+        throws Exception
+    {
+        CountingOutputStream out = new CountingOutputStream();
+        RestTaskCollection collection = RestTaskCollection.builder()
+            .tasks(page(0, tasks, tasks))
+            .build();
+        MAPPER.writeValue(out, collection);
+        return out.count;
+    }
+
+    private static long writeStreaming(int tasks)
+        throws Exception
+    {
+        CountingOutputStream out = new CountingOutputStream();
+        ((StreamingOutput) StreamingCollection.<RestTask>response(MAPPER, "tasks", PAGE_SIZE,
+                (last, limit) -> page(Long.parseLong(last.transform(task -> task.getId().get()).or("0")), limit, tasks),
+                task -> task).getEntity()).write(out);
+        return out.count;
+    }
+
+    private static void measure(String name, int iterations, Op op)
+        throws Exception
+    {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+
+        long totalNanos = 0;
+        long totalAllocated = 0;
+        long maxPeakHeap = 0;
+        long bytes = 0;
+        for (int i = 0; i < iterations; i++) {
+            System.gc();
+            resetPeakHeap();
+            long allocatedBefore = threads.getThreadAllocatedBytes(threadId);
+            long start = System.nanoTime();
+            bytes = op.run();
+            totalNanos += System.nanoTime() - start;
+            totalAllocated += threads.getThreadAllocatedBytes(threadId) - allocatedBefore;
+            maxPeakHeap = Math.max(maxPeakHeap, peakHeap());
+        }
+
+        System.out.println(String.format(ENGLISH, "%-11s body=%dKB mean=%.1fms allocated=%.1fMB peak-heap=%.1fMB",
+                    name + ":", bytes / 1024,
+                    totalNanos / (double) iterations / 1e6,
+                    totalAllocated / (double) iterations / 1024 / 1024,
+                    maxPeakHeap / 1024.0 / 1024));
+    }
+
+    private static void resetPeakHeap()
+    {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+            }
+        }
+    }
+
+    private static long peakHeap()
+    {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        return peak;
+    }
+
+    private static class CountingOutputStream
+            extends OutputStream
+    {
+        private long count = 0;
+
+        @Override
+        public void write(int b)
+        {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len)
+        {
+            count += len;
+        }
+    }
+}
@@ -2,9 +2,22 @@ package io.digdag.spi;
 
 import java.io.IOException;
 import java.nio.file.Path;
+import java.util.Map;
 
 public interface CommandExecutor
 {
     Process start(Path projectPath, TaskRequest request, ProcessBuilder pb)
         throws IOException;
+
+    /**
+     * Starts a command with environment variables set by the operator.
+     * Executors merge them with the environment that commands inherit,
+     * and the variables set by the operator take precedence.
+     */
+    default Process start(Path projectPath, TaskRequest request, ProcessBuilder pb, Map<String, String> environment)
+        throws IOException
+    {
+        pb.environment().putAll(environment);
+        return start(projectPath, request, pb);
+    }
 }
@@ -1,5 +1,6 @@
 package io.digdag.spi;
 
+import java.io.ByteArrayInputStream;
 import java.util.List;
 import java.time.Instant;
 import java.time.ZoneId;
@@ -15,4 +16,13 @@ public interface LogServer
 
     byte[] getFile(LogFilePrefix prefix, String fileName)
         throws StorageFileNotFoundException;
+
+    // returns a stream of gzip-compressed log file. Implementations should
+    // override this method so that whole contents are not loaded on memory.
+    default StorageObject openFile(LogFilePrefix prefix, String fileName)
+        throws StorageFileNotFoundException
+    {
+        byte[] data = getFile(prefix, fileName);
+        return new StorageObject(new ByteArrayInputStream(data), data.length);
+    }
 }
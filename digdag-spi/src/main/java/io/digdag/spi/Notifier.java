@@ -3,4 +3,16 @@ package io.digdag.spi;
 public interface Notifier
 {
     void sendNotification(Notification notification) throws NotificationException;
+
+    /**
+     * Sends a notification without waiting for its delivery if the
+     * implementation supports it. Failures after this method returns are
+     * only logged. This is for notifications sent by the system, such as
+     * timeouts. Operators use sendNotification so that a task fails if the
+     * notification can't be sent.
+     */
+    default void sendNotificationAsync(Notification notification) throws NotificationException
+    {
+        sendNotification(notification);
+    }
 }
@@ -1,8 +1,28 @@
 package io.digdag.spi;
 
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
 import com.google.common.base.Optional;
 
 public interface SecretStore
 {
     Optional<String> getSecret(int projectId, String scope, String key);
+
+    /**
+     * Get secrets of keys at once.
+     *
+     * @return A map of keys and secrets. Keys without a secret are not included.
+     */
+    default Map<String, String> getSecrets(int projectId, String scope, Collection<String> keys)
+    {
+        Map<String, String> secrets = new HashMap<>();
+        for (String key : keys) {
+            Optional<String> secret = getSecret(projectId, scope, key);
+            if (secret.isPresent()) {
+                secrets.put(key, secret.get());
+            }
+        }
+        return secrets;
+    }
 }
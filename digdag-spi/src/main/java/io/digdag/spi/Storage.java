@@ -2,6 +2,7 @@ package io.digdag.spi;
 
 import java.io.InputStream;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
 import com.google.common.base.Optional;
 
@@ -26,6 +27,24 @@ public interface Storage
 
     void list(String keyPrefix, FileListing callback);
 
+    /**
+     * Returns the size of an object, or absent if it doesn't exist.
+     * Implementations should override this to look up metadata of the key
+     * without listing.
+     */
+    default Optional<Long> getContentLength(String key)
+    {
+        List<Long> found = new ArrayList<>();
+        list(key, (chunk) -> {
+            for (StorageObjectSummary summary : chunk) {
+                if (summary.getKey().equals(key)) {
+                    found.add(summary.getContentLength());
+                }
+            }
+        });
+        return found.isEmpty() ? Optional.absent() : Optional.of(found.get(0));
+    }
+
     default Optional<DirectDownloadHandle> getDirectDownloadHandle(String key)
     {
         return Optional.absent();
@@ -0,0 +1,32 @@
+package io.digdag.standards.command;
+
+import java.util.Map;
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableMap;
+
+/**
+ * Environment variables that commands started by operators inherit.
+ *
+ * Commands inherit the environment variables of this process by default.
+ * digdag daemon sets the environment variables of its client here while it
+ * runs a workflow so that commands run as if they're started by the client.
+ */
+public class CommandEnvironment
+{
+    private volatile Optional<Map<String, String>> environment = Optional.absent();
+
+    public Optional<Map<String, String>> get()
+    {
+        return environment;
+    }
+
+    public void set(Map<String, String> environment)
+    {
+        this.environment = Optional.of(ImmutableMap.copyOf(environment));
+    }
+
+    public void clear()
+    {
+        this.environment = Optional.absent();
+    }
+}
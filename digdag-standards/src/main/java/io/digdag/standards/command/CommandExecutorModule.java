@@ -16,5 +16,6 @@ public class CommandExecutorModule
         //binder.bind(CommandExecutor.class).to(SimpleCommandExecutor.class).in(Scopes.SINGLETON);
         binder.bind(CommandExecutor.class).to(DockerCommandExecutor.class).in(Scopes.SINGLETON);
         binder.bind(SimpleCommandExecutor.class).in(Scopes.SINGLETON);
+        binder.bind(CommandEnvironment.class).in(Scopes.SINGLETON);
     }
 }
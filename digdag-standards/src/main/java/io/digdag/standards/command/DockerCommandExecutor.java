@@ -57,6 +57,20 @@ public class DockerCommandExecutor
         }
     }
 
+    @Override
+    public Process start(Path projectPath, TaskRequest request, ProcessBuilder pb, Map<String, String> environment)
+        throws IOException
+    {
+        Config config = request.getConfig();
+        if (config.has("docker")) {
+            simple.setEnvironment(pb, environment);
+            return startWithDocker(projectPath, request, pb);
+        }
+        else {
+            return simple.start(projectPath.toAbsolutePath(), request, pb, environment);
+        }
+    }
+
     private Process startWithDocker(Path projectPath, TaskRequest request, ProcessBuilder pb)
     {
         Config dockerConfig = request.getConfig().getNestedOrGetEmpty("docker");
@@ -1,8 +1,8 @@
 package io.digdag.standards.command;
 
-import java.io.File;
 import java.io.IOException;
 import java.nio.file.Path;
+import java.util.Map;
 import com.google.inject.Inject;
 import com.google.common.base.Optional;
 import io.digdag.spi.CommandExecutor;
@@ -11,9 +11,13 @@ import io.digdag.spi.TaskRequest;
 public class SimpleCommandExecutor
     implements CommandExecutor
 {
+    private final CommandEnvironment commandEnvironment;
+
     @Inject
-    public SimpleCommandExecutor()
-    { }
+    public SimpleCommandExecutor(CommandEnvironment commandEnvironment)
+    {
+        this.commandEnvironment = commandEnvironment;
+    }
 
     public Process start(Path projectPath, TaskRequest request, ProcessBuilder pb)
         throws IOException
@@ -21,4 +25,27 @@ public class SimpleCommandExecutor
         // TODO set TZ environment variable
         return pb.start();
     }
+
+    @Override
+    public Process start(Path projectPath, TaskRequest request, ProcessBuilder pb, Map<String, String> environment)
+        throws IOException
+    {
+        // TODO set TZ environment variable
+        setEnvironment(pb, environment);
+        return pb.start();
+    }
+
+    // ProcessBuilder inherits environment variables of this process. Replaces
+    // them with CommandEnvironment if it's set, then adds the variables set
+    // by the operator.
+    void setEnvironment(ProcessBuilder pb, Map<String, String> environment)
+    {
+        Map<String, String> env = pb.environment();
+        Optional<Map<String, String>> inherited = commandEnvironment.get();
+        if (inherited.isPresent()) {
+            env.clear();
+            env.putAll(inherited.get());
+        }
+        env.putAll(environment);
+    }
 }
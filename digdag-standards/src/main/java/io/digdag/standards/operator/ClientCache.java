@@ -0,0 +1,195 @@
+package io.digdag.standards.operator;
+
+import java.time.Duration;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import com.google.common.base.Preconditions;
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalListener;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Cache of API clients shared by tasks running on an agent.
+ *
+ * Wait operators poll by running a task repeatedly, so building a client
+ * for each run repeats connection and credential setup. Clients are keyed
+ * by a fingerprint of credentials and endpoint settings. A rotated
+ * credential gets a new client, and the old one is closed after it's idle
+ * for the idle timeout. A client is also rebuilt after max lifetime so that
+ * credentials cached in a client don't live forever. An evicted client is
+ * closed after all tasks using it release it.
+ */
+public class ClientCache<C>
+{
+    private static final Logger logger = LoggerFactory.getLogger(ClientCache.class);
+
+    public static final Duration DEFAULT_IDLE_TIMEOUT = Duration.ofMinutes(5);
+    public static final Duration DEFAULT_MAX_LIFETIME = Duration.ofHours(1);
+    public static final int DEFAULT_MAX_SIZE = 100;
+
+    private final Cache<String, Entry<C>> cache;
+    private final Consumer<C> closer;
+
+    public ClientCache(Consumer<C> closer)
+    {
+        this(DEFAULT_IDLE_TIMEOUT, DEFAULT_MAX_LIFETIME, DEFAULT_MAX_SIZE, closer);
+    }
+
+    public ClientCache(Duration idleTimeout, Duration maxLifetime, int maxSize, Consumer<C> closer)
+    {
+        // an entry must live until it's retained by acquire()
+        Preconditions.checkArgument(!idleTimeout.isNegative() && !idleTimeout.isZero(), "idleTimeout must be positive");
+        Preconditions.checkArgument(!maxLifetime.isNegative() && !maxLifetime.isZero(), "maxLifetime must be positive");
+        Preconditions.checkArgument(maxSize > 0, "maxSize must be positive");
+        this.closer = closer;
+        this.cache = CacheBuilder.newBuilder()
+            .expireAfterAccess(idleTimeout.toMillis(), TimeUnit.MILLISECONDS)
+            .expireAfterWrite(maxLifetime.toMillis(), TimeUnit.MILLISECONDS)
+            .maximumSize(maxSize)
+            .removalListener((RemovalListener<String, Entry<C>>) (notification) -> notification.getValue().evict())
+            .build();
+    }
+
+    /**
+     * Returns a fingerprint to be used as a key. Secrets are hashed so
+     * that they're not kept in memory as keys.
+     */
+    public static String fingerprint(Object... parts)
+    {
+        Hasher hasher = Hashing.sha256().newHasher();
+        for (Object part : parts) {
+            hasher.putString(String.valueOf(part), UTF_8);
+            hasher.putByte((byte) 0);
+        }
+        return hasher.hash().toString();
+    }
+
+    public Lease<C> acquire(String key, Supplier<C> factory)
+    {
+        while (true) {
+            Entry<C> entry;
+            try {
+                entry = cache.get(key, () -> new Entry<>(factory.get(), closer));
+            }
+            catch (ExecutionException | UncheckedExecutionException ex) {
+                throw Throwables.propagate(ex.getCause());
+            }
+            if (entry.retain()) {
+                return new Lease<>(entry);
+            }
+            // evicted concurrently. try again
+        }
+    }
+
+    public void invalidate(String key)
+    {
+        cache.invalidate(key);
+    }
+
+    public void invalidateAll()
+    {
+        cache.invalidateAll();
+    }
+
+    /**
+     * Closes clients expired by idle timeout or max lifetime. The cache
+     * expires entries only when it's accessed, so this needs to be called
+     * periodically to close clients after the last task using them.
+     */
+    public void cleanUp()
+    {
+        cache.cleanUp();
+    }
+
+    public static class Lease<C>
+        implements AutoCloseable
+    {
+        private final Entry<C> entry;
+        private boolean closed = false;
+
+        private Lease(Entry<C> entry)
+        {
+            this.entry = entry;
+        }
+
+        public C get()
+        {
+            return entry.client;
+        }
+
+        @Override
+        public void close()
+        {
+            if (!closed) {
+                closed = true;
+                entry.release();
+            }
+        }
+    }
+
+    private static class Entry<C>
+    {
+        private final C client;
+        private final Consumer<C> closer;
+        private int references = 0;
+        private boolean evicted = false;
+
+        Entry(C client, Consumer<C> closer)
+        {
+            this.client = client;
+            this.closer = closer;
+        }
+
+        synchronized boolean retain()
+        {
+            if (evicted) {
+                return false;
+            }
+            references++;
+            return true;
+        }
+
+        void release()
+        {
+            boolean close;
+            synchronized (this) {
+                references--;
+                close = evicted && references == 0;
+            }
+            if (close) {
+                closeClient();
+            }
+        }
+
+        void evict()
+        {
+            boolean close;
+            synchronized (this) {
+                evicted = true;
+                close = references == 0;
+            }
+            if (close) {
+                closeClient();
+            }
+        }
+
+        private void closeClient()
+        {
+            try {
+                closer.accept(client);
+            }
+            catch (RuntimeException ex) {
+                logger.warn("Failed to close a cached client", ex);
+            }
+        }
+    }
+}
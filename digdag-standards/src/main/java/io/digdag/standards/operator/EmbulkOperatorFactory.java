@@ -7,6 +7,7 @@ import java.nio.file.Path;
 import java.nio.file.Files;
 import com.google.common.io.ByteStreams;
 import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableMap;
 import com.google.inject.Inject;
 import com.fasterxml.jackson.core.JsonEncoding;
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -97,7 +98,7 @@ public class EmbulkOperatorFactory
             int ecode;
             String message;
             try (ByteArrayOutputStream buffer = new ByteArrayOutputStream()) {
-                Process p = exec.start(workspace.getPath(), request, pb);
+                Process p = exec.start(workspace.getPath(), request, pb, ImmutableMap.of());
                 p.getOutputStream().close();
                 try (InputStream stdout = p.getInputStream()) {
                     ByteStreams.copy(stdout, buffer);
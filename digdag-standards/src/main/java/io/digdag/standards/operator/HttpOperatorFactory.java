@@ -41,24 +41,32 @@ import org.eclipse.jetty.client.api.Request;
 import org.eclipse.jetty.client.api.Response;
 import org.eclipse.jetty.client.util.BasicAuthentication;
 import org.eclipse.jetty.client.util.FormContentProvider;
+import org.eclipse.jetty.client.util.FutureResponseListener;
 import org.eclipse.jetty.client.util.StringContentProvider;
 import org.eclipse.jetty.http.HttpField;
 import org.eclipse.jetty.http.HttpStatus;
 import org.eclipse.jetty.util.Fields;
+import org.eclipse.jetty.util.HttpCookieStore;
 import org.eclipse.jetty.util.ssl.SslContextFactory;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.annotation.PreDestroy;
+
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
 import java.nio.file.Path;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeoutException;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static java.util.concurrent.TimeUnit.SECONDS;
 import static org.eclipse.jetty.http.HttpHeader.AUTHORIZATION;
 import static org.eclipse.jetty.http.HttpHeader.USER_AGENT;
@@ -74,6 +82,13 @@ public class HttpOperatorFactory
     private final int maxRedirects;
     private final String userAgent;
     private final int maxStoredResponseContentSize;
+    private final int maxConnectionsPerDestination;
+    private final long connectionIdleTimeoutMillis;
+    private final int maxPooledClients;
+
+    // clients shared by tasks. key is HttpOperator.clientKey()
+    private final Map<String, HttpClient> pooledClients = new ConcurrentHashMap<>();
+    private QueuedThreadPool pooledClientExecutor;
 
     @Inject
     public HttpOperatorFactory(Config systemConfig, @Environment Map<String, String> env)
@@ -82,10 +97,30 @@ public class HttpOperatorFactory
         this.systemProxy = systemProxy(systemConfig);
         this.maxRedirects = systemConfig.get("config.http.max_redirects", int.class, 8);
         this.maxStoredResponseContentSize = systemConfig.get("config.http.max_stored_response_content_size", int.class, 64 * 1024);
+        this.maxConnectionsPerDestination = systemConfig.get("config.http.max_connections_per_destination", int.class, 64);
+        this.connectionIdleTimeoutMillis = systemConfig.get("config.http.connection_idle_timeout", long.class, 60L) * 1000;
+        this.maxPooledClients = systemConfig.get("config.http.max_pooled_clients", int.class, 16);
         this.env = env;
         this.userAgent = systemConfig.get("config.http.user_agent", String.class, "Digdag/" + Version.buildVersion());
     }
 
+    @PreDestroy
+    public synchronized void shutdown()
+    {
+        for (HttpClient client : pooledClients.values()) {
+            stop(client);
+        }
+        pooledClients.clear();
+        if (pooledClientExecutor != null) {
+            try {
+                pooledClientExecutor.stop();
+            }
+            catch (Exception e) {
+                logger.warn("Failed to stop http client thread pool", e);
+            }
+        }
+    }
+
     private static Optional<ProxyConfiguration.Proxy> systemProxy(Config systemConfig)
     {
         boolean enabled = systemConfig.get("config.http.proxy.enabled", boolean.class, false);
@@ -142,7 +177,14 @@ public class HttpOperatorFactory
         @Override
         public TaskResult runTask()
         {
-            HttpClient client = client();
+            // a client is shared by tasks with the same settings so that
+            // connections are kept alive. if there are too many variations
+            // of settings, this task uses a new client as before.
+            Optional<HttpClient> pooled = pooledClient();
+            if (pooled.isPresent()) {
+                return run(pooled.get());
+            }
+            HttpClient client = client(false);
             try {
                 return run(client);
             }
@@ -173,7 +215,8 @@ public class HttpOperatorFactory
             }
             else if (user.isPresent()) {
                 Optional<String> password = httpSecrets.getSecretOptional("password");
-                httpClient.getAuthenticationStore().addAuthenticationResult(new BasicAuthentication.BasicResult(uri, user.get(), password.or("")));
+                // set to the request rather than the authentication store of the client, which may be shared by other tasks
+                new BasicAuthentication.BasicResult(uri, user.get(), password.or("")).apply(request);
             }
 
             Optional<JsonNode> content = params.getOptional("content", JsonNode.class);
@@ -195,7 +238,7 @@ public class HttpOperatorFactory
 
             ContentResponse response = PollingRetryExecutor.pollingRetryExecutor(state, "request")
                     .withErrorMessage("HTTP request failed")
-                    .run(s -> execute(request, uriIsSecret));
+                    .run(s -> execute(request, uriIsSecret, storeContent));
 
             return result(response, storeContent);
         }
@@ -241,14 +284,14 @@ public class HttpOperatorFactory
             return headers;
         }
 
-        private ContentResponse execute(Request req, boolean uriIsSecret)
+        private ContentResponse execute(Request req, boolean uriIsSecret, boolean storeContent)
         {
             String safeUri = safeUri(req, uriIsSecret);
 
             logger.info("Sending HTTP request: {} {}", req.getMethod(), safeUri);
             ContentResponse res;
             try {
-                res = send(req);
+                res = send(req, storeContent);
             }
             catch (HttpResponseException e) {
                 throw error(req, uriIsSecret, e.getResponse());
@@ -305,22 +348,29 @@ public class HttpOperatorFactory
             }
         }
 
-        private ContentResponse send(Request req)
+        private ContentResponse send(Request req, boolean storeContent)
         {
             ContentResponse res;
+            LimitedResponseListener listener = new LimitedResponseListener(req, storeContent);
+            req.send(listener);
             try {
-                res = req.send();
+                res = listener.get(req.getTimeout(), MILLISECONDS);
             }
             catch (InterruptedException e) {
                 logger.debug("HTTP request interrupted: {}", req, e);
+                req.abort(e);
                 throw Throwables.propagate(e);
             }
             catch (TimeoutException e) {
                 logger.debug("HTTP request timeout: {}", req, e);
+                req.abort(e);
                 throw Throwables.propagate(e);
             }
             catch (ExecutionException e) {
                 logger.debug("HTTP request error: {}", req, e);
+                if (listener.isContentTooLarge()) {
+                    throw contentTooLarge();
+                }
                 if (e.getCause() != null) {
                     throw Throwables.propagate(e.getCause());
                 }
@@ -377,7 +427,47 @@ public class HttpOperatorFactory
                     .build();
         }
 
-        private HttpClient client()
+        private TaskExecutionException contentTooLarge()
+        {
+            return new TaskExecutionException("Response content too large: > " + maxStoredResponseContentSize, ConfigElement.empty());
+        }
+
+        private Optional<HttpClient> pooledClient()
+        {
+            String key = clientKey();
+            HttpClient client = pooledClients.get(key);
+            if (client != null) {
+                return Optional.of(client);
+            }
+            synchronized (HttpOperatorFactory.this) {
+                client = pooledClients.get(key);
+                if (client == null) {
+                    if (pooledClients.size() >= maxPooledClients) {
+                        return Optional.absent();
+                    }
+                    client = client(true);
+                    pooledClients.put(key, client);
+                }
+                return Optional.of(client);
+            }
+        }
+
+        // settings used by client(). other settings are set to each request
+        private String clientKey()
+        {
+            boolean insecure = params.get("insecure", boolean.class, false);
+            boolean followRedirects = params.get("follow_redirects", boolean.class, true);
+            String proxy = "default";
+            Config userProxyConfig = params.getNestedOrGetEmpty("proxy");
+            if (allowUserProxy && userProxyConfig.get("enabled", boolean.class, false)) {
+                proxy = userProxyConfig.get("host", String.class) + ":" +
+                    userProxyConfig.get("port", int.class) + ":" +
+                    userProxyConfig.get("tls", boolean.class, false);
+            }
+            return "insecure=" + insecure + ",follow_redirects=" + followRedirects + ",proxy=" + proxy;
+        }
+
+        private HttpClient client(boolean pooled)
         {
             boolean insecure = params.get("insecure", boolean.class, false);
 
@@ -390,6 +480,14 @@ public class HttpOperatorFactory
             httpClient.setFollowRedirects(followRedirects);
             httpClient.setMaxRedirects(maxRedirects);
 
+            if (pooled) {
+                // cookies must not be shared by tasks
+                httpClient.setCookieStore(new HttpCookieStore.Empty());
+                httpClient.setMaxConnectionsPerDestination(maxConnectionsPerDestination);
+                httpClient.setIdleTimeout(connectionIdleTimeoutMillis);
+                httpClient.setExecutor(pooledClientExecutor());
+            }
+
             httpClient.setUserAgentField(new HttpField(
                     USER_AGENT, userAgent + ' ' + httpClient.getUserAgentField().getValue()));
 
@@ -424,14 +522,74 @@ public class HttpOperatorFactory
             }
         }
 
-        private void stop(HttpClient httpClient)
-        {
+    }
+
+    // called with the lock of this factory
+    private QueuedThreadPool pooledClientExecutor()
+    {
+        if (pooledClientExecutor == null) {
+            QueuedThreadPool executor = new QueuedThreadPool();
+            executor.setName("http-operator-client");
+            executor.setDaemon(true);
             try {
-                httpClient.stop();
+                // started here so that stopping a client doesn't stop the executor
+                executor.start();
             }
             catch (Exception e) {
-                logger.warn("Failed to stop http client", e);
+                throw new TaskExecutionException(e, TaskExecutionException.buildExceptionErrorConfig(e));
             }
+            pooledClientExecutor = executor;
+        }
+        return pooledClientExecutor;
+    }
+
+    private static void stop(HttpClient httpClient)
+    {
+        try {
+            httpClient.stop();
+        }
+        catch (Exception e) {
+            logger.warn("Failed to stop http client", e);
+        }
+    }
+
+    // buffers response content only if it's stored. content is limited
+    // while it's received instead of after all of it is buffered.
+    private class LimitedResponseListener
+            extends FutureResponseListener
+    {
+        private final boolean storeContent;
+        private final long maxContentBytes;
+        private long contentBytes = 0;
+        private volatile boolean contentTooLarge = false;
+
+        LimitedResponseListener(Request request, boolean storeContent)
+        {
+            // maxStoredResponseContentSize is the number of characters. a character is at most 3 bytes in UTF-8
+            super(request, (int) Math.min(Integer.MAX_VALUE, (long) maxStoredResponseContentSize * 3 + 1));
+            this.storeContent = storeContent;
+            this.maxContentBytes = (long) maxStoredResponseContentSize * 3;
+        }
+
+        @Override
+        public void onContent(Response response, ByteBuffer content)
+        {
+            if (!storeContent) {
+                // discard
+                return;
+            }
+            contentBytes += content.remaining();
+            if (contentBytes > maxContentBytes) {
+                contentTooLarge = true;
+                response.abort(new IllegalArgumentException("Response content too large"));
+                return;
+            }
+            super.onContent(response, content);
+        }
+
+        boolean isContentTooLarge()
+        {
+            return contentTooLarge;
         }
     }
 
@@ -5,7 +5,10 @@ import com.google.inject.Module;
 import com.google.inject.Scopes;
 import com.google.inject.multibindings.Multibinder;
 import io.digdag.spi.OperatorFactory;
+import io.digdag.standards.operator.jdbc.JdbcConnectionPool;
 import io.digdag.standards.operator.pg.PgOperatorFactory;
+import io.digdag.standards.operator.state.WatchRegistry;
+import io.digdag.standards.operator.td.TDClientFactory;
 import io.digdag.standards.operator.td.TdDdlOperatorFactory;
 import io.digdag.standards.operator.td.TdForEachOperatorFactory;
 import io.digdag.standards.operator.td.TdLoadOperatorFactory;
@@ -22,6 +25,10 @@ public class OperatorModule
     @Override
     public void configure(Binder binder)
     {
+        binder.bind(PyWorkerPool.class).in(Scopes.SINGLETON);
+        binder.bind(WatchRegistry.class).in(Scopes.SINGLETON);
+        binder.bind(JdbcConnectionPool.class).in(Scopes.SINGLETON);
+        binder.bind(TDClientFactory.class).in(Scopes.SINGLETON);
         addStandardOperatorFactory(binder, PyOperatorFactory.class);
         addStandardOperatorFactory(binder, RbOperatorFactory.class);
         addStandardOperatorFactory(binder, ShOperatorFactory.class);
@@ -9,8 +9,13 @@ import java.io.IOException;
 import java.io.InputStreamReader;
 import java.nio.file.Path;
 import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
 import java.util.Map;
+import java.util.TreeMap;
+import com.google.common.base.Optional;
 import com.google.common.base.Throwables;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.io.CharStreams;
@@ -27,6 +32,7 @@ import io.digdag.spi.Operator;
 import io.digdag.spi.OperatorFactory;
 import io.digdag.client.config.Config;
 import io.digdag.util.BaseOperator;
+import io.digdag.standards.command.CommandEnvironment;
 import static io.digdag.standards.operator.ShOperatorFactory.collectEnvironmentVariables;
 
 public class PyOperatorFactory
@@ -47,17 +53,35 @@ public class PyOperatorFactory
         }
     }
 
+    private final String workerScript;
+
+    {
+        try (InputStreamReader reader = new InputStreamReader(
+                    PyOperatorFactory.class.getResourceAsStream("/digdag/standards/py/worker.py"),
+                    StandardCharsets.UTF_8)) {
+            workerScript = CharStreams.toString(reader);
+        }
+        catch (IOException ex) {
+            throw Throwables.propagate(ex);
+        }
+    }
+
     private final CommandExecutor exec;
     private final CommandLogger clog;
     private final ObjectMapper mapper;
+    private final PyWorkerPool workerPool;
+    private final CommandEnvironment commandEnvironment;
 
     @Inject
     public PyOperatorFactory(CommandExecutor exec, CommandLogger clog,
-            ObjectMapper mapper)
+            ObjectMapper mapper, PyWorkerPool workerPool,
+            CommandEnvironment commandEnvironment)
     {
         this.exec = exec;
         this.clog = clog;
         this.mapper = mapper;
+        this.workerPool = workerPool;
+        this.commandEnvironment = commandEnvironment;
     }
 
     public String getType()
@@ -124,6 +148,11 @@ public class PyOperatorFactory
                 mapper.writeValue(fo, ImmutableMap.of("params", params));
             }
 
+            if (args.size() == 3 && usePool(params)) {
+                runPooled(args);
+                return mapper.readValue(workspace.getFile(outFile), Config.class);
+            }
+
             List<String> cmdline = ImmutableList.<String>builder()
                 .add("python").add("-")  // script is fed from stdin
                 .addAll(args)
@@ -134,10 +163,10 @@ public class PyOperatorFactory
             pb.redirectErrorStream(true);
 
             // Set up process environment according to env config. This can also refer to secrets.
-            Map<String, String> env = pb.environment();
+            Map<String, String> env = new HashMap<>();
             collectEnvironmentVariables(env, context.getPrivilegedVariables());
 
-            Process p = exec.start(workspace.getPath(), request, pb);
+            Process p = exec.start(workspace.getPath(), request, pb, env);
 
             // feed script to stdin
             try (Writer writer = new BufferedWriter(new OutputStreamWriter(p.getOutputStream()))) {
@@ -155,5 +184,89 @@ public class PyOperatorFactory
 
             return mapper.readValue(workspace.getFile(outFile), Config.class);
         }
+
+        private boolean usePool(Config params)
+        {
+            // docker runs a new container for each task
+            return workerPool.isEnabled() && params.get("py_worker_pool", boolean.class, true) && !params.has("docker");
+        }
+
+        private void runPooled(List<String> args)
+                throws IOException, InterruptedException
+        {
+            Map<String, String> env = new TreeMap<>();
+            collectEnvironmentVariables(env, context.getPrivilegedVariables());
+            String fingerprint = fingerprint(env);
+
+            Optional<PyWorkerPool.Worker> idle = workerPool.acquire(fingerprint);
+            PyWorkerPool.Worker worker;
+            if (idle.isPresent()) {
+                worker = idle.get();
+            }
+            else {
+                worker = startWorker(fingerprint, env);
+            }
+
+            boolean reusable = false;
+            try {
+                byte[] request = mapper.writeValueAsBytes(ImmutableMap.of(
+                            "cwd", workspace.getPath().toAbsolutePath().toString(),
+                            "args", args));
+                Optional<byte[]> response = worker.call(request, clog, System.out);
+                if (!response.isPresent()) {
+                    throw new RuntimeException("Python command failed with code " + worker.waitForExit());
+                }
+                Config result = mapper.readValue(response.get(), Config.class);
+                int ecode = result.get("code", int.class, 0);
+                if (!result.get("status", String.class).equals("ok")) {
+                    throw new RuntimeException("Python command failed with code " + ecode);
+                }
+                reusable = true;
+            }
+            finally {
+                // a worker that failed may have broken global state
+                workerPool.release(worker, reusable);
+            }
+        }
+
+        private PyWorkerPool.Worker startWorker(String fingerprint, Map<String, String> env)
+                throws IOException
+        {
+            List<String> cmdline = ImmutableList.of("python", "-c", workerScript);
+
+            ProcessBuilder pb = new ProcessBuilder(cmdline);
+            pb.directory(workspace.getPath().toFile());
+            // stdout is used to send responses. output of tasks is written to stderr
+            pb.redirectErrorStream(false);
+
+            Process p = exec.start(workspace.getPath(), request, pb, env);
+
+            String marker = PyWorkerPool.newMarker();
+            byte[] init = mapper.writeValueAsBytes(ImmutableMap.of("runner", runnerScript, "marker", marker));
+            return workerPool.start(fingerprint, p, marker, init);
+        }
+
+        private String fingerprint(Map<String, String> env)
+        {
+            Hasher hasher = Hashing.sha256().newHasher();
+            putEnvironment(hasher, env);
+            // a worker started for a client of digdag daemon has the client's environment
+            Optional<Map<String, String>> inherited = commandEnvironment.get();
+            if (inherited.isPresent()) {
+                hasher.putByte((byte) 1);
+                putEnvironment(hasher, new TreeMap<>(inherited.get()));
+            }
+            return hasher.hash().toString();
+        }
+
+        private void putEnvironment(Hasher hasher, Map<String, String> env)
+        {
+            for (Map.Entry<String, String> pair : env.entrySet()) {
+                hasher.putString(pair.getKey(), StandardCharsets.UTF_8);
+                hasher.putByte((byte) 0);
+                hasher.putString(pair.getValue(), StandardCharsets.UTF_8);
+                hasher.putByte((byte) 0);
+            }
+        }
     }
 }
@@ -0,0 +1,325 @@
+package io.digdag.standards.operator;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.UUID;
+import javax.annotation.PreDestroy;
+import com.google.common.base.Optional;
+import com.google.inject.Inject;
+import io.digdag.client.config.Config;
+import io.digdag.spi.CommandLogger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Pool of long-lived python processes used by py> operator if
+ * config.py.pool.enabled is true.
+ *
+ * Workers are keyed by a fingerprint of the command line and environment
+ * variables so that a worker is never shared by tasks with different
+ * secrets. A worker runs one task at a time. worker.py restores
+ * environment variables, working directory, sys.path and sys.argv, and
+ * unloads modules of the workspace after each task. It's discarded after
+ * max_calls_per_worker calls, after a task fails, or after it's idle for
+ * idle_timeout seconds.
+ */
+public class PyWorkerPool
+{
+    private static Logger logger = LoggerFactory.getLogger(PyWorkerPool.class);
+
+    private final boolean enabled;
+    private final int maxCallsPerWorker;
+    private final long idleTimeoutMillis;
+    private final int maxIdleWorkers;
+
+    // idle workers. the most recently used one is at the head
+    private final Map<String, Deque<Worker>> idleWorkers = new HashMap<>();
+    private int idleCount = 0;
+
+    @Inject
+    public PyWorkerPool(Config systemConfig)
+    {
+        this.enabled = systemConfig.get("config.py.pool.enabled", boolean.class, false);
+        this.maxCallsPerWorker = systemConfig.get("config.py.pool.max_calls_per_worker", int.class, 100);
+        this.idleTimeoutMillis = systemConfig.get("config.py.pool.idle_timeout", long.class, 300L) * 1000;
+        this.maxIdleWorkers = systemConfig.get("config.py.pool.max_idle_workers", int.class, 8);
+    }
+
+    public boolean isEnabled()
+    {
+        return enabled;
+    }
+
+    public synchronized Optional<Worker> acquire(String fingerprint)
+    {
+        closeExpiredWorkers();
+        Deque<Worker> deque = idleWorkers.get(fingerprint);
+        while (deque != null && !deque.isEmpty()) {
+            Worker worker = deque.removeFirst();
+            idleCount--;
+            if (worker.isAlive()) {
+                return Optional.of(worker);
+            }
+            worker.close();
+        }
+        return Optional.absent();
+    }
+
+    public Worker start(String fingerprint, Process process, String marker, byte[] initFrame)
+        throws IOException
+    {
+        Worker worker = new Worker(fingerprint, process, marker);
+        try {
+            worker.send(initFrame);
+        }
+        catch (IOException ex) {
+            worker.close();
+            throw ex;
+        }
+        return worker;
+    }
+
+    public void release(Worker worker, boolean reusable)
+    {
+        if (!reusable || worker.calls >= maxCallsPerWorker || !worker.isAlive()) {
+            worker.close();
+            return;
+        }
+        Worker evicted = null;
+        synchronized (this) {
+            worker.lastUsedAt = System.currentTimeMillis();
+            idleWorkers.computeIfAbsent(worker.fingerprint, (key) -> new ArrayDeque<>()).addFirst(worker);
+            idleCount++;
+            if (idleCount > maxIdleWorkers) {
+                evicted = removeLeastRecentlyUsed();
+            }
+        }
+        if (evicted != null) {
+            evicted.close();
+        }
+    }
+
+    @PreDestroy
+    public synchronized void shutdown()
+    {
+        for (Deque<Worker> deque : idleWorkers.values()) {
+            for (Worker worker : deque) {
+                worker.close();
+            }
+        }
+        idleWorkers.clear();
+        idleCount = 0;
+    }
+
+    private void closeExpiredWorkers()
+    {
+        long expireBefore = System.currentTimeMillis() - idleTimeoutMillis;
+        Iterator<Deque<Worker>> dequeIt = idleWorkers.values().iterator();
+        while (dequeIt.hasNext()) {
+            Deque<Worker> deque = dequeIt.next();
+            while (!deque.isEmpty() && deque.peekLast().lastUsedAt < expireBefore) {
+                deque.removeLast().close();
+                idleCount--;
+            }
+            if (deque.isEmpty()) {
+                dequeIt.remove();
+            }
+        }
+    }
+
+    private Worker removeLeastRecentlyUsed()
+    {
+        Deque<Worker> oldest = null;
+        for (Deque<Worker> deque : idleWorkers.values()) {
+            if (!deque.isEmpty() && (oldest == null || deque.peekLast().lastUsedAt < oldest.peekLast().lastUsedAt)) {
+                oldest = deque;
+            }
+        }
+        if (oldest == null) {
+            return null;
+        }
+        idleCount--;
+        return oldest.removeLast();
+    }
+
+    public static String newMarker()
+    {
+        // starts with NUL so that a part of the marker never matches with the beginning of it
+        return "\u0000digdag-py-worker-end-" + UUID.randomUUID();
+    }
+
+    public static class Worker
+    {
+        private final String fingerprint;
+        private final Process process;
+        private final DataOutputStream toWorker;
+        private final DataInputStream fromWorker;
+        private final InputStream log;
+        private final String marker;
+        private int calls = 0;
+        private long lastUsedAt;
+
+        private Worker(String fingerprint, Process process, String marker)
+        {
+            this.marker = marker;
+            this.fingerprint = fingerprint;
+            this.process = process;
+            this.toWorker = new DataOutputStream(process.getOutputStream());
+            this.fromWorker = new DataInputStream(process.getInputStream());
+            this.log = process.getErrorStream();
+        }
+
+        private boolean isAlive()
+        {
+            return process.isAlive();
+        }
+
+        private void send(byte[] frame)
+            throws IOException
+        {
+            toWorker.writeInt(frame.length);
+            toWorker.write(frame);
+            toWorker.flush();
+        }
+
+        /**
+         * Sends a request and copies output of the task to clog until the
+         * marker. Returns the response frame, or absent if the worker exited.
+         */
+        public Optional<byte[]> call(byte[] request, CommandLogger clog, OutputStream copy)
+            throws IOException
+        {
+            calls++;
+            send(request);
+            clog.copy(new MarkerInputStream(log, marker), copy);
+            try {
+                int length = fromWorker.readInt();
+                byte[] response = new byte[length];
+                fromWorker.readFully(response);
+                return Optional.of(response);
+            }
+            catch (EOFException ex) {
+                return Optional.absent();
+            }
+        }
+
+        public int waitForExit()
+            throws InterruptedException
+        {
+            return process.waitFor();
+        }
+
+        public void close()
+        {
+            try {
+                // python process exits when stdin is closed
+                toWorker.close();
+            }
+            catch (IOException ex) {
+                logger.debug("Failed to close stdin of a python worker", ex);
+            }
+            process.destroy();
+        }
+    }
+
+    // reads until the marker line written by worker.py at the end of a call
+    static class MarkerInputStream
+        extends InputStream
+    {
+        private final InputStream in;
+        private final byte[] marker;
+        private final byte[] held;
+        private int heldLength = 0;
+        private int heldPosition = 0;
+        private int matched = 0;
+        private boolean done = false;
+
+        MarkerInputStream(InputStream in, String marker)
+        {
+            this.in = in;
+            this.marker = (marker + "\n").getBytes(UTF_8);
+            this.held = new byte[this.marker.length];
+        }
+
+        @Override
+        public int read()
+            throws IOException
+        {
+            while (true) {
+                if (heldPosition < heldLength) {
+                    return held[heldPosition++] & 0xff;
+                }
+                heldPosition = heldLength = 0;
+                if (done) {
+                    return -1;
+                }
+                int b = in.read();
+                if (b < 0) {
+                    // worker exited. flush partially matched bytes
+                    done = true;
+                    heldLength = matched;
+                    System.arraycopy(marker, 0, held, 0, matched);
+                    matched = 0;
+                    continue;
+                }
+                if (b == (marker[matched] & 0xff)) {
+                    matched++;
+                    if (matched == marker.length) {
+                        done = true;
+                        matched = 0;
+                    }
+                    continue;
+                }
+                if (matched > 0) {
+                    // marker[0] doesn't appear in the rest of marker. restart matching with this byte
+                    System.arraycopy(marker, 0, held, 0, matched);
+                    heldLength = matched;
+                    matched = 0;
+                    if (b == (marker[0] & 0xff)) {
+                        matched = 1;
+                    }
+                    else {
+                        held[heldLength++] = (byte) b;
+                    }
+                    continue;
+                }
+                return b;
+            }
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len)
+            throws IOException
+        {
+            if (len == 0) {
+                return 0;
+            }
+            int c = read();
+            if (c < 0) {
+                return -1;
+            }
+            b[off] = (byte) c;
+            int n = 1;
+            // don't block once at least a byte is read so that logs are copied promptly
+            while (n < len && (heldPosition < heldLength || (!done && in.available() > 0))) {
+                c = read();
+                if (c < 0) {
+                    break;
+                }
+                b[off + n] = (byte) c;
+                n++;
+            }
+            return n;
+        }
+    }
+}
@@ -0,0 +1,296 @@
+package io.digdag.standards.operator;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.FilterOutputStream;
+import java.io.FilterWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.GZIPOutputStream;
+import com.google.common.base.Optional;
+import io.digdag.client.config.Config;
+import io.digdag.client.config.ConfigException;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * Output of download_file of td> and pg> operators.
+ *
+ * Rows are written in chunks. At the end of a chunk, the file is synced and
+ * the number of rows and bytes written so far are recorded in the given
+ * checkpoint config. The caller keeps the config in task state so that it's
+ * stored when the operator retries the download. When a download is
+ * retried with the checkpoint, the file is truncated at the last completed
+ * chunk and the caller skips rows written already. The caller still reads
+ * the skipped rows from its source.
+ *
+ * If gzip is enabled, each chunk is written as a separate gzip member so
+ * that the file truncated at a chunk boundary is still a valid gzip file.
+ * Concatenated members are read as one stream by gzip and GZIPInputStream.
+ */
+public class ResultFileOutput
+        implements Closeable
+{
+    private static final String ROWS = "rows";
+    private static final String BYTES = "bytes";
+    private static final String GZIP = "gzip";
+
+    // in characters
+    private static final long DEFAULT_CHUNK_SIZE = 64L * 1024 * 1024;
+    private static final int FILE_BUFFER_SIZE = 256 * 1024;
+    private static final int WRITER_BUFFER_SIZE = 64 * 1024;
+
+    public static boolean isGzipCompression(Config params)
+    {
+        String compression = params.get("download_compression", String.class, "none");
+        switch (compression) {
+            case "none":
+                return false;
+            case "gzip":
+                return true;
+            default:
+                throw new ConfigException("Unknown 'download_compression:' option (available options are: none and gzip): " + compression);
+        }
+    }
+
+    public static ResultFileOutput open(Path path, boolean gzip, Optional<Config> checkpoint)
+        throws IOException
+    {
+        return open(path, gzip, checkpoint, DEFAULT_CHUNK_SIZE);
+    }
+
+    static ResultFileOutput open(Path path, boolean gzip, Optional<Config> checkpoint, long chunkSize)
+        throws IOException
+    {
+        long rows = 0;
+        long bytes = 0;
+        if (checkpoint.isPresent() && checkpoint.get().get(GZIP, boolean.class, gzip) == gzip) {
+            rows = checkpoint.get().get(ROWS, long.class, 0L);
+            bytes = checkpoint.get().get(BYTES, long.class, 0L);
+        }
+
+        FileChannel channel;
+        if (rows > 0 && Files.isRegularFile(path) && Files.size(path) >= bytes) {
+            // resume after the last completed chunk
+            channel = FileChannel.open(path, WRITE);
+            channel.truncate(bytes);
+            channel.position(bytes);
+        }
+        else {
+            if (path.getParent() != null) {
+                Files.createDirectories(path.getParent());
+            }
+            channel = FileChannel.open(path, CREATE, TRUNCATE_EXISTING, WRITE);
+            rows = 0;
+            if (checkpoint.isPresent()) {
+                // offsets of the previous file are not valid for the new file
+                checkpoint.get().remove(ROWS).remove(BYTES);
+            }
+        }
+
+        return new ResultFileOutput(channel, gzip, checkpoint, chunkSize, rows);
+    }
+
+    private final FileChannel channel;
+    private final OutputStream file;
+    private final boolean gzip;
+    private final Optional<Config> checkpoint;
+    private final long chunkSize;
+    private final long resumedRows;
+    private final ChunkOutputStream chunk;
+    private final CountingWriter writer;
+
+    private long rows;
+    private long chunkStartChars = 0;
+
+    private ResultFileOutput(FileChannel channel, boolean gzip, Optional<Config> checkpoint, long chunkSize, long resumedRows)
+    {
+        this.channel = channel;
+        this.file = new BufferedOutputStream(Channels.newOutputStream(channel), FILE_BUFFER_SIZE);
+        this.gzip = gzip;
+        this.checkpoint = checkpoint;
+        this.chunkSize = chunkSize;
+        this.resumedRows = resumedRows;
+        this.rows = resumedRows;
+        this.chunk = new ChunkOutputStream();
+        this.writer = new CountingWriter(new BufferedWriter(new OutputStreamWriter(chunk, UTF_8), WRITER_BUFFER_SIZE));
+    }
+
+    /**
+     * Number of rows written by previous attempts. The caller skips this
+     * number of rows. If this is 0, the file is empty.
+     */
+    public long getResumedRows()
+    {
+        return resumedRows;
+    }
+
+    public Writer getWriter()
+    {
+        return writer;
+    }
+
+    /**
+     * Called after a row is written to the writer.
+     */
+    public void endRow()
+        throws IOException
+    {
+        rows++;
+        if (writer.chars - chunkStartChars >= chunkSize) {
+            completeChunk();
+        }
+    }
+
+    /**
+     * Completes the file. The checkpoint is kept so that a retry after this
+     * call doesn't need to download again.
+     */
+    public void finish()
+        throws IOException
+    {
+        if (gzip && channel.position() == 0 && chunk.member == null) {
+            // an empty gzip member so that the file is a valid gzip file
+            chunk.openMember();
+        }
+        completeChunk();
+    }
+
+    private void completeChunk()
+        throws IOException
+    {
+        writer.flush();
+        chunk.closeMember();
+        file.flush();
+        channel.force(false);
+        chunkStartChars = writer.chars;
+        if (checkpoint.isPresent()) {
+            checkpoint.get()
+                .set(ROWS, rows)
+                .set(BYTES, channel.position())
+                .set(GZIP, gzip);
+        }
+    }
+
+    @Override
+    public void close()
+        throws IOException
+    {
+        // not completed rows are discarded by truncation when the download resumes
+        channel.close();
+    }
+
+    // counts characters written by the caller because the buffers hold bytes before they reach the file
+    private static class CountingWriter
+            extends FilterWriter
+    {
+        private long chars = 0;
+
+        CountingWriter(Writer out)
+        {
+            super(out);
+        }
+
+        @Override
+        public void write(int c)
+            throws IOException
+        {
+            out.write(c);
+            chars++;
+        }
+
+        @Override
+        public void write(char[] cbuf, int off, int len)
+            throws IOException
+        {
+            out.write(cbuf, off, len);
+            chars += len;
+        }
+
+        @Override
+        public void write(String str, int off, int len)
+            throws IOException
+        {
+            out.write(str, off, len);
+            chars += len;
+        }
+    }
+
+    private class ChunkOutputStream
+            extends OutputStream
+    {
+        private OutputStream member;
+
+        private void openMember()
+            throws IOException
+        {
+            if (gzip) {
+                member = new GZIPOutputStream(new FilterOutputStream(file)
+                {
+                    @Override
+                    public void write(byte[] b, int off, int len)
+                        throws IOException
+                    {
+                        out.write(b, off, len);
+                    }
+
+                    @Override
+                    public void close()
+                    {
+                        // keep the file open for the next member
+                    }
+                }, WRITER_BUFFER_SIZE);
+            }
+            else {
+                member = file;
+            }
+        }
+
+        private void closeMember()
+            throws IOException
+        {
+            if (member != null && gzip) {
+                ((GZIPOutputStream) member).finish();
+            }
+            member = null;
+        }
+
+        @Override
+        public void write(int b)
+            throws IOException
+        {
+            if (member == null) {
+                openMember();
+            }
+            member.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len)
+            throws IOException
+        {
+            if (member == null) {
+                openMember();
+            }
+            member.write(b, off, len);
+        }
+
+        @Override
+        public void flush()
+            throws IOException
+        {
+            if (member != null) {
+                member.flush();
+            }
+        }
+    }
+}
@@ -10,6 +10,8 @@ import com.amazonaws.services.s3.AmazonS3Client;
 import com.amazonaws.services.s3.S3ClientOptions;
 import com.amazonaws.services.s3.model.AmazonS3Exception;
 import com.amazonaws.services.s3.model.GetObjectMetadataRequest;
+import com.amazonaws.services.s3.model.ListObjectsRequest;
+import com.amazonaws.services.s3.model.ObjectListing;
 import com.amazonaws.services.s3.model.ObjectMetadata;
 import com.amazonaws.services.s3.model.SSECustomerKey;
 import com.google.common.annotations.VisibleForTesting;
@@ -17,6 +19,7 @@ import com.google.common.base.Optional;
 import com.google.common.base.Splitter;
 import com.google.common.base.Supplier;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
 import com.google.inject.Inject;
 import com.treasuredata.client.ProxyConfig;
 import io.digdag.client.config.Config;
@@ -33,6 +36,7 @@ import io.digdag.spi.TaskRequest;
 import io.digdag.spi.TaskResult;
 import io.digdag.standards.Proxies;
 import io.digdag.standards.operator.state.TaskState;
+import io.digdag.standards.operator.state.WatchRegistry;
 import io.digdag.util.ConfigSelector;
 import org.eclipse.jetty.http.HttpStatus;
 import org.slf4j.Logger;
@@ -42,6 +46,7 @@ import java.nio.file.Path;
 import java.time.Duration;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import static io.digdag.standards.operator.state.PollingRetryExecutor.pollingRetryExecutor;
 import static io.digdag.standards.operator.state.PollingWaiter.pollingWaiter;
@@ -52,23 +57,44 @@ public class S3WaitOperatorFactory
     private static Logger logger = LoggerFactory.getLogger(S3WaitOperatorFactory.class);
 
     private static final DurationInterval POLL_INTERVAL = DurationInterval.of(Duration.ofSeconds(5), Duration.ofMinutes(5));
+    private static final int LISTING_MAX_KEYS = 1000;
 
     private final AmazonS3ClientFactory s3ClientFactory;
     private final Map<String, String> environment;
+    private final ClientCache<AmazonS3Client> clientCache = new ClientCache<>(AmazonS3Client::shutdown);
+    private final WatchRegistry watchRegistry;
+    private final Duration observationMaxAge;
+    private final boolean sharedListing;
 
     @Inject
-    public S3WaitOperatorFactory(@Environment Map<String, String> environment)
+    public S3WaitOperatorFactory(Config systemConfig, @Environment Map<String, String> environment, WatchRegistry watchRegistry)
     {
-        this(AmazonS3Client::new, environment);
+        this(AmazonS3Client::new, environment, watchRegistry,
+                Duration.ofSeconds(systemConfig.get("config.s3_wait.observation_max_age", long.class, POLL_INTERVAL.min().getSeconds())),
+                systemConfig.get("config.s3_wait.shared_listing", boolean.class, false));
     }
 
     @VisibleForTesting
     S3WaitOperatorFactory(
             AmazonS3ClientFactory s3ClientFactory,
             Map<String, String> environment)
+    {
+        this(s3ClientFactory, environment, new WatchRegistry(), POLL_INTERVAL.min(), false);
+    }
+
+    @VisibleForTesting
+    S3WaitOperatorFactory(
+            AmazonS3ClientFactory s3ClientFactory,
+            Map<String, String> environment,
+            WatchRegistry watchRegistry,
+            Duration observationMaxAge,
+            boolean sharedListing)
     {
         this.s3ClientFactory = s3ClientFactory;
         this.environment = environment;
+        this.watchRegistry = watchRegistry;
+        this.observationMaxAge = observationMaxAge;
+        this.sharedListing = sharedListing;
     }
 
     public String getType()
@@ -153,6 +179,18 @@ public class S3WaitOperatorFactory
             String secretKey = s3Secrets.getSecretOptional("secret_access_key")
                     .or(() -> awsSecrets.getSecret("secret_access_key"));
 
+            // Clients are reused by polls of this and other tasks with the same settings.
+            // A cached client is never modified after it's created.
+            String clientKey = ClientCache.fingerprint(accessKey, secretKey, endpoint.orNull(), regionName.orNull(), pathStyleAccess.orNull());
+            try (ClientCache.Lease<AmazonS3Client> lease = clientCache.acquire(clientKey,
+                        () -> createClient(accessKey, secretKey, endpoint, regionName, pathStyleAccess))) {
+                return run(lease.get(), clientKey, bucket.get(), key.get(), versionId, s3Secrets);
+            }
+        }
+
+        private AmazonS3Client createClient(String accessKey, String secretKey,
+                Optional<String> endpoint, Optional<String> regionName, Optional<Boolean> pathStyleAccess)
+        {
             // Create S3 Client
             ClientConfiguration configuration = new ClientConfiguration();
             configureProxy(endpoint, configuration);
@@ -179,8 +217,12 @@ public class S3WaitOperatorFactory
                 }
                 s3Client.setRegion(Region.getRegion(region));
             }
+            return s3Client;
+        }
 
-            GetObjectMetadataRequest req = new GetObjectMetadataRequest(bucket.get(), key.get());
+        private TaskResult run(AmazonS3Client s3Client, String clientKey, String bucket, String key, Optional<String> versionId, SecretProvider s3Secrets)
+        {
+            GetObjectMetadataRequest req = new GetObjectMetadataRequest(bucket, key);
 
             if (versionId.isPresent()) {
                 req.setVersionId(versionId.get());
@@ -202,19 +244,19 @@ public class S3WaitOperatorFactory
 
             ObjectMetadata objectMetadata = pollingWaiter(state, "EXISTS")
                     .withPollInterval(POLL_INTERVAL)
-                    .withWaitMessage("Object '%s/%s' does not yet exist", bucket.get(), key.get())
+                    .withWaitMessage("Object '%s/%s' does not yet exist", bucket, key)
                     .await(pollState -> pollingRetryExecutor(pollState, "POLL")
                             .retryUnless(AmazonServiceException.class, S3WaitOperatorFactory::isDeterministicException)
                             .run(s -> {
-                                try {
-                                    return Optional.of(s3Client.getObjectMetadata(req));
+                                if (sseCustomerKey.isPresent()) {
+                                    // the result depends on the customer key, which is not part of the client key
+                                    return getObjectMetadata(s3Client, req);
                                 }
-                                catch (AmazonS3Exception e) {
-                                    if (e.getStatusCode() == 404) {
-                                        return Optional.absent();
-                                    }
-                                    throw e;
+                                if (sharedListing && !versionId.isPresent() && !listedObjectExists(s3Client, clientKey, bucket, key).or(true)) {
+                                    return Optional.absent();
                                 }
+                                String conditionKey = ClientCache.fingerprint("s3_wait", clientKey, bucket, key, versionId.orNull());
+                                return watchRegistry.check(conditionKey, observationMaxAge, () -> getObjectMetadata(s3Client, req));
                             }));
 
             return TaskResult.defaultBuilder(request)
@@ -223,6 +265,57 @@ public class S3WaitOperatorFactory
                     .build();
         }
 
+        private Optional<ObjectMetadata> getObjectMetadata(AmazonS3Client s3Client, GetObjectMetadataRequest req)
+        {
+            try {
+                return Optional.of(s3Client.getObjectMetadata(req));
+            }
+            catch (AmazonS3Exception e) {
+                if (e.getStatusCode() == 404) {
+                    return Optional.absent();
+                }
+                throw e;
+            }
+        }
+
+        // Checks existence of the object using a listing of its directory shared by
+        // tasks waiting for objects in the same directory. Returns absent if the
+        // listing doesn't tell, e.g. the directory has too many objects or
+        // ListBucket is not permitted.
+        private Optional<Boolean> listedObjectExists(AmazonS3Client s3Client, String clientKey, String bucket, String key)
+                throws Exception
+        {
+            String prefix = key.substring(0, key.lastIndexOf('/') + 1);
+            String listingKey = ClientCache.fingerprint("s3_wait.listing", clientKey, bucket, prefix);
+            Optional<Set<String>> keys = watchRegistry.check(listingKey, observationMaxAge, () -> listKeys(s3Client, bucket, prefix));
+            if (!keys.isPresent()) {
+                return Optional.absent();
+            }
+            return Optional.of(keys.get().contains(key));
+        }
+
+        private Optional<Set<String>> listKeys(AmazonS3Client s3Client, String bucket, String prefix)
+        {
+            ObjectListing listing;
+            try {
+                listing = s3Client.listObjects(new ListObjectsRequest()
+                        .withBucketName(bucket)
+                        .withPrefix(prefix)
+                        .withDelimiter("/")
+                        .withMaxKeys(LISTING_MAX_KEYS));
+            }
+            catch (AmazonServiceException e) {
+                logger.debug("Failed to list objects in '{}/{}'. Falling back to a HEAD request", bucket, prefix, e);
+                return Optional.absent();
+            }
+            if (listing == null || listing.isTruncated()) {
+                return Optional.absent();
+            }
+            ImmutableSet.Builder<String> keys = ImmutableSet.builder();
+            listing.getObjectSummaries().forEach(summary -> keys.add(summary.getKey()));
+            return Optional.of(keys.build());
+        }
+
         private Config storeParams(ObjectMetadata objectMetadata)
         {
             Config params = request.getConfig().getFactory().create();
@@ -28,6 +28,7 @@ import java.io.OutputStreamWriter;
 import java.io.Writer;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
@@ -86,7 +87,7 @@ public class ShOperatorFactory
             ProcessBuilder pb = new ProcessBuilder(shell);
             pb.directory(workspace.getPath().toFile());
 
-            final Map<String, String> env = pb.environment();
+            final Map<String, String> env = new HashMap<>();
             params.getKeys()
                 .forEach(key -> {
                     if (isValidEnvKey(key)) {
@@ -121,7 +122,7 @@ public class ShOperatorFactory
 
             int ecode;
             try {
-                Process p = exec.start(workspace.getPath(), request, pb);
+                Process p = exec.start(workspace.getPath(), request, pb, env);
 
                 // feed command to stdin
                 try (Writer writer = new BufferedWriter(new OutputStreamWriter(p.getOutputStream()))) {
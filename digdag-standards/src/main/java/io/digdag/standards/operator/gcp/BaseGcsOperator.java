@@ -3,6 +3,7 @@ package io.digdag.standards.operator.gcp;
 import io.digdag.client.config.Config;
 import io.digdag.spi.OperatorContext;
 import io.digdag.spi.TaskResult;
+import io.digdag.standards.operator.ClientCache;
 
 import java.nio.file.Path;
 
@@ -24,8 +25,9 @@ abstract class BaseGcsOperator
     @Override
     protected TaskResult run(GcpCredential credential, String projectId)
     {
-        try (GcsClient bq = clientFactory.create(credential.credential())) {
-            return run(bq, projectId);
+        String credentialJson = context.getSecrets().getSecret("gcp.credential");
+        try (ClientCache.Lease<GcsClient> gcs = clientFactory.acquire(credentialJson, credential.credential())) {
+            return run(gcs.get(), projectId);
         }
     }
 
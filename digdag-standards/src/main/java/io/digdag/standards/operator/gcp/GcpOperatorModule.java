@@ -13,7 +13,7 @@ public class GcpOperatorModule
     public void configure(Binder binder)
     {
         binder.bind(BqClient.Factory.class);
-        binder.bind(GcsClient.Factory.class);
+        binder.bind(GcsClient.Factory.class).in(Scopes.SINGLETON);
         binder.bind(GcpCredentialProvider.class);
         addStandardOperatorFactory(binder, BqOperatorFactory.class);
         addStandardOperatorFactory(binder, BqLoadOperatorFactory.class);
@@ -12,6 +12,7 @@ import com.google.common.base.Optional;
 import com.google.inject.Inject;
 import com.treasuredata.client.ProxyConfig;
 import io.digdag.core.Environment;
+import io.digdag.standards.operator.ClientCache;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -59,6 +60,10 @@ class GcsClient
     static class Factory
             extends BaseGcpClient.Factory
     {
+        // gcs_wait polls by running a task repeatedly. reusing clients avoids
+        // creating a transport and fetching an access token for each poll.
+        private final ClientCache<GcsClient> clientCache = new ClientCache<>(GcsClient::close);
+
         @Inject
         public Factory(@Environment Map<String, String> environment)
         {
@@ -69,5 +74,14 @@ class GcsClient
         {
             return new GcsClient(credential, proxyConfig);
         }
+
+        /**
+         * Returns a client shared with other tasks that use the same
+         * credential. credentialJson is used only as the key.
+         */
+        ClientCache.Lease<GcsClient> acquire(String credentialJson, GoogleCredential credential)
+        {
+            return clientCache.acquire(ClientCache.fingerprint(credentialJson), () -> create(credential));
+        }
     }
 }
@@ -23,15 +23,31 @@ public abstract class AbstractJdbcConnection
 
     protected final Connection connection;
 
+    private final JdbcConnectionPool.PooledConnection pooledConnection;
+
     private String quoteString;
 
     public AbstractJdbcConnection(Connection connection)
+    {
+        this(connection, null);
+    }
+
+    public AbstractJdbcConnection(JdbcConnectionPool.PooledConnection pooledConnection)
+    {
+        this(pooledConnection.get(), pooledConnection);
+    }
+
+    private AbstractJdbcConnection(Connection connection, JdbcConnectionPool.PooledConnection pooledConnection)
     {
         this.connection = connection;
+        this.pooledConnection = pooledConnection;
         try {
             connection.setAutoCommit(true);
         }
         catch (SQLException ex) {
+            if (pooledConnection != null) {
+                pooledConnection.release(false);
+            }
             throw new DatabaseException("Failed to set auto-commit mode to the connection", ex);
         }
     }
@@ -135,9 +151,32 @@ public abstract class AbstractJdbcConnection
         return quoteString + ident.replaceAll(Pattern.quote(quoteString), quoteString + quoteString) + quoteString;
     }
 
+    /**
+     * Resets state of the session changed by a task so that the connection
+     * can be reused by another task. Returns false if the session can't be
+     * reset, which is the default, and the connection is closed.
+     */
+    protected boolean resetSession()
+        throws SQLException
+    {
+        return false;
+    }
+
     @Override
     public void close()
     {
+        if (pooledConnection != null && pooledConnection.isPooled()) {
+            boolean reusable;
+            try {
+                reusable = resetSession();
+            }
+            catch (SQLException ex) {
+                logger.debug("Failed to reset a database session. Closing the connection.", ex);
+                reusable = false;
+            }
+            pooledConnection.release(reusable);
+            return;
+        }
         try {
             connection.close();
         }
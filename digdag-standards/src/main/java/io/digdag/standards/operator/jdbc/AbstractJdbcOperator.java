@@ -1,17 +1,21 @@
 package io.digdag.standards.operator.jdbc;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.BooleanNode;
 import com.google.common.base.Optional;
 import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableList;
 import io.digdag.client.config.Config;
 import io.digdag.client.config.ConfigElement;
 import io.digdag.client.config.ConfigException;
+import io.digdag.client.config.ConfigKey;
 import io.digdag.spi.SecretProvider;
 import io.digdag.spi.OperatorContext;
 import io.digdag.spi.TaskExecutionException;
 import io.digdag.spi.TaskRequest;
 import io.digdag.spi.TaskResult;
 import io.digdag.spi.TemplateEngine;
+import io.digdag.standards.operator.ResultFileOutput;
 import io.digdag.util.BaseOperator;
 import io.digdag.util.DurationParam;
 import org.slf4j.Logger;
@@ -19,6 +23,7 @@ import org.slf4j.LoggerFactory;
 import java.io.IOException;
 import java.nio.file.Path;
 import java.time.Duration;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
 import java.util.stream.Collectors;
@@ -26,6 +31,7 @@ import java.util.stream.Collectors;
 import static io.digdag.spi.TaskExecutionException.buildExceptionErrorConfig;
 import static com.google.common.base.Preconditions.checkNotNull;
 import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Locale.ENGLISH;
 
 public abstract class AbstractJdbcOperator <C>
     extends BaseOperator
@@ -39,10 +45,52 @@ public abstract class AbstractJdbcOperator <C>
 
     private static final String QUERY_ID = "queryId";
 
+    private static final int DEFAULT_MAX_STORE_LAST_RESULTS_ROWS = 8192;
+    private static final long DEFAULT_MAX_STORE_LAST_RESULTS_BYTES = 1024 * 1024;
+
+    private final int maxStoreLastResultsRows;
+    private final long maxStoreLastResultsBytes;
+
     public AbstractJdbcOperator(OperatorContext context, TemplateEngine templateEngine)
     {
         super(context);
         this.templateEngine = checkNotNull(templateEngine, "templateEngine");
+        this.maxStoreLastResultsRows = DEFAULT_MAX_STORE_LAST_RESULTS_ROWS;
+        this.maxStoreLastResultsBytes = DEFAULT_MAX_STORE_LAST_RESULTS_BYTES;
+    }
+
+    public AbstractJdbcOperator(OperatorContext context, TemplateEngine templateEngine, Config systemConfig)
+    {
+        super(context);
+        this.templateEngine = checkNotNull(templateEngine, "templateEngine");
+        this.maxStoreLastResultsRows = systemConfig.get("config.jdbc.max_store_last_results_rows", int.class, DEFAULT_MAX_STORE_LAST_RESULTS_ROWS);
+        this.maxStoreLastResultsBytes = systemConfig.get("config.jdbc.max_store_last_results_bytes", long.class, DEFAULT_MAX_STORE_LAST_RESULTS_BYTES);
+    }
+
+    private enum StoreLastResults
+    {
+        NONE,
+        FIRST,
+        ALL;
+
+        static StoreLastResults of(Config params)
+        {
+            JsonNode value = params.getOptional("store_last_results", JsonNode.class).or(BooleanNode.FALSE);
+            if (value.isBoolean()) {
+                return value.booleanValue() ? FIRST : NONE;
+            }
+            switch (value.asText()) {
+                case "false":
+                    return NONE;
+                case "true":
+                case "first":
+                    return FIRST;
+                case "all":
+                    return ALL;
+                default:
+                    throw new ConfigException("Unknown 'store_last_results:' option (available options are: false, first and all): " + value.asText());
+            }
+        }
     }
 
     protected abstract C configure(SecretProvider secrets, Config params);
@@ -75,10 +123,17 @@ public abstract class AbstractJdbcOperator <C>
         if (downloadFile.isPresent() && queryModifier > 0) {
             throw new ConfigException("Can't use download_file with insert_into or create_table");
         }
+        boolean downloadGzip = ResultFileOutput.isGzipCompression(params);
 
-        // TODO support store_last_results
+        StoreLastResults storeLastResults = StoreLastResults.of(params);
+        if (storeLastResults != StoreLastResults.NONE && queryModifier > 0) {
+            throw new ConfigException("Can't use store_last_results with insert_into or create_table");
+        }
+        if (storeLastResults != StoreLastResults.NONE && downloadFile.isPresent()) {
+            throw new ConfigException("Can't use both download_file and store_last_results");
+        }
 
-        boolean readOnlyMode = downloadFile.isPresent();  // or store_last_results == true
+        boolean readOnlyMode = downloadFile.isPresent() || storeLastResults != StoreLastResults.NONE;
 
         boolean strictTransaction = params.get("strict_transaction", Boolean.class, true);
 
@@ -119,12 +174,19 @@ public abstract class AbstractJdbcOperator <C>
 
             if (readOnlyMode) {
                 if (downloadFile.isPresent()) {
-                    connection.executeReadOnlyQuery(query, (results) -> downloadResultsToFile(results, downloadFile.get()));
+                    connection.executeReadOnlyQuery(query, (results) -> downloadResultsToFile(results, downloadFile.get(), downloadGzip));
+                    return TaskResult.defaultBuilder(request).build();
                 }
                 else {
-                    connection.executeReadOnlyQuery(query, (results) -> skipResults(results));
+                    Config storeParams = request.getConfig().getFactory().create();
+                    // one more row than the limit to know that the result exceeds it
+                    int maxRows = (storeLastResults == StoreLastResults.FIRST) ? 1 : maxStoreLastResultsRows + 1;
+                    connection.executeReadOnlyQuery(query, maxRows, (results) -> storeResults(results, storeLastResults, storeParams));
+                    return TaskResult.defaultBuilder(request)
+                        .resetStoreParams(ImmutableList.of(ConfigKey.of(type(), "last_results")))
+                        .storeParams(storeParams)
+                        .build();
                 }
-                return TaskResult.defaultBuilder(request).build();
             }
             else {
                 String statement;
@@ -199,9 +261,12 @@ public abstract class AbstractJdbcOperator <C>
         }
     }
 
-    private void downloadResultsToFile(JdbcResultSet results, String fileName)
+    private void downloadResultsToFile(JdbcResultSet results, String fileName, boolean gzip)
     {
-        try (CsvWriter csvWriter = new CsvWriter(workspace.newBufferedWriter(fileName, UTF_8))) {
+        // a query is executed again by a retry, and rows may come in a different order.
+        // so the download is not resumed from a checkpoint.
+        try (ResultFileOutput output = ResultFileOutput.open(workspace.getPath(fileName), gzip, Optional.absent())) {
+            CsvWriter csvWriter = new CsvWriter(output.getWriter());
             List<String> columnNames = results.getColumnNames();
             csvWriter.addCsvHeader(columnNames);
             while (true) {
@@ -209,29 +274,85 @@ public abstract class AbstractJdbcOperator <C>
                 if (values == null) {
                     break;
                 }
-                List<String> row = values.stream().map(value -> {
-                    if (value == null) {
-                        return (String) value;
-                    }
-                    else if (value instanceof String) {
-                        return (String) value;
-                    }
-                    else {
-                        return value.toString();  // TODO use jackson to serialize?
-                    }
-                })
+                List<String> row = values.stream().map(value -> csvValue(value))
                 .collect(Collectors.toList());
                 csvWriter.addCsvRow(row);
+                output.endRow();
             }
+            output.finish();
         }
         catch (IOException ex) {
             throw Throwables.propagate(ex);
         }
     }
 
-    private void skipResults(JdbcResultSet results)
+    private static String csvValue(Object value)
     {
-        while (results.next() != null)
-            ;
+        if (value == null) {
+            return (String) value;
+        }
+        else if (value instanceof String) {
+            return (String) value;
+        }
+        else {
+            return value.toString();  // TODO use jackson to serialize?
+        }
+    }
+
+    // numbers and booleans are stored as they are. other values are stored
+    // as the same text as download_file because driver-specific objects such
+    // as PgArray and PGobject are not serializable using Jackson.
+    private static Object storedValue(Object value)
+    {
+        if (value instanceof Number || value instanceof Boolean) {
+            return value;
+        }
+        return csvValue(value);
+    }
+
+    // rows are converted one by one so that a result larger than the limits is not loaded on memory
+    private void storeResults(JdbcResultSet results, StoreLastResults option, Config storeParams)
+    {
+        List<String> columnNames = results.getColumnNames();
+        List<Config> rows = new ArrayList<>();
+        long bytes = 0;
+        while (true) {
+            List<Object> values = results.next();
+            if (values == null) {
+                break;
+            }
+
+            if (rows.size() >= maxStoreLastResultsRows) {
+                throw new TaskExecutionException(String.format(ENGLISH,
+                            "The number of result rows exceeded the limit of store_last_results (%d rows). Use download_file instead",
+                            maxStoreLastResultsRows), ConfigElement.empty());
+            }
+
+            Config row = storeParams.getFactory().create();
+            for (int i = 0; i < Math.min(columnNames.size(), values.size()); i++) {
+                row.set(columnNames.get(i), storedValue(values.get(i)));
+            }
+            bytes += row.toString().length();
+            if (bytes > maxStoreLastResultsBytes) {
+                throw new TaskExecutionException(String.format(ENGLISH,
+                            "The size of results exceeded the limit of store_last_results (%d bytes). Use download_file instead",
+                            maxStoreLastResultsBytes), ConfigElement.empty());
+            }
+            rows.add(row);
+
+            if (option == StoreLastResults.FIRST) {
+                // the rest of rows are not fetched
+                break;
+            }
+        }
+
+        if (option == StoreLastResults.FIRST) {
+            storeParams.getNestedOrSetEmpty(type())
+                .set("last_results", rows.isEmpty() ? storeParams.getFactory().create() : rows.get(0));
+        }
+        else {
+            storeParams.getNestedOrSetEmpty(type())
+                .set("last_results", rows);
+        }
     }
 }
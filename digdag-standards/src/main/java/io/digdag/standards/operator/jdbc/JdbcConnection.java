@@ -19,6 +19,16 @@ public interface JdbcConnection
     void executeReadOnlyQuery(String sql, Consumer<JdbcResultSet> resultHandler)
         throws NotReadOnlyException;
 
+    /**
+     * Runs a read-only query that fetches at most maxRows rows. Connections
+     * that can't limit rows at the driver fetch all rows.
+     */
+    default void executeReadOnlyQuery(String sql, int maxRows, Consumer<JdbcResultSet> resultHandler)
+        throws NotReadOnlyException
+    {
+        executeReadOnlyQuery(sql, resultHandler);
+    }
+
     TransactionHelper getStrictTransactionHelper(String statusTableName, Duration cleanupDuration);
 
     default String escapeTableReference(TableReference ref)
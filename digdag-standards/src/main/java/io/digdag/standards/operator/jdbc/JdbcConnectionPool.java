@@ -0,0 +1,295 @@
+package io.digdag.standards.operator.jdbc;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.inject.Inject;
+import io.digdag.client.config.Config;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Pool of database connections shared by pg> and other JDBC operators
+ * running on an agent if config.jdbc.pool.enabled is true.
+ *
+ * Connections are keyed by the connection config including credentials so
+ * that a connection is never shared by tasks with different settings. A
+ * connection is used by one task at a time. A connection is validated
+ * before it's reused, and closed after max_lifetime, after it's idle for
+ * idle_timeout, or if the session can't be reset after a task. At most
+ * max_connections_per_database connections are pooled for a config. A task
+ * beyond the limit uses a connection that is closed after the task.
+ *
+ * Expired idle connections are closed when a connection is acquired and
+ * also periodically so that they are closed even if no tasks run any more.
+ * Connections are closed outside of the lock because closing a connection
+ * may block on network.
+ */
+public class JdbcConnectionPool
+{
+    private static final Logger logger = LoggerFactory.getLogger(JdbcConnectionPool.class);
+
+    private static final int VALIDATION_TIMEOUT_SECONDS = 5;
+
+    private static final long REAP_INTERVAL_SECONDS = 60;
+
+    private final boolean enabled;
+    private final int maxConnectionsPerDatabase;
+    private final long maxLifetimeMillis;
+    private final long idleTimeoutMillis;
+
+    private final Map<AbstractJdbcConnectionConfig, Deque<PooledConnection>> idleConnections = new HashMap<>();
+    private final Map<AbstractJdbcConnectionConfig, Integer> pooledCounts = new HashMap<>();
+
+    private ScheduledExecutorService reaper;
+
+    @Inject
+    public JdbcConnectionPool(Config systemConfig)
+    {
+        this(systemConfig.get("config.jdbc.pool.enabled", boolean.class, false),
+                systemConfig.get("config.jdbc.pool.max_connections_per_database", int.class, 8),
+                systemConfig.get("config.jdbc.pool.max_lifetime", long.class, 1800L) * 1000,
+                systemConfig.get("config.jdbc.pool.idle_timeout", long.class, 300L) * 1000);
+    }
+
+    @VisibleForTesting
+    public JdbcConnectionPool(boolean enabled, int maxConnectionsPerDatabase, long maxLifetimeMillis, long idleTimeoutMillis)
+    {
+        this.enabled = enabled;
+        this.maxConnectionsPerDatabase = maxConnectionsPerDatabase;
+        this.maxLifetimeMillis = maxLifetimeMillis;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+    }
+
+    @PostConstruct
+    public synchronized void start()
+    {
+        if (enabled && reaper == null) {
+            reaper = Executors.newSingleThreadScheduledExecutor(
+                    new ThreadFactoryBuilder()
+                    .setDaemon(true)
+                    .setNameFormat("jdbc-connection-pool-reaper-%d")
+                    .build()
+                    );
+            reaper.scheduleWithFixedDelay(() -> reap(),
+                    REAP_INTERVAL_SECONDS, REAP_INTERVAL_SECONDS, TimeUnit.SECONDS);
+        }
+    }
+
+    private void reap()
+    {
+        try {
+            reapExpiredConnections();
+        }
+        catch (RuntimeException ex) {
+            // keep the schedule
+            logger.warn("Failed to close expired database connections", ex);
+        }
+    }
+
+    /**
+     * Returns a connection that is not pooled. Used if a pool is not
+     * given to a connection.
+     */
+    public static PooledConnection unpooled(AbstractJdbcConnectionConfig config)
+    {
+        return new PooledConnection(null, config, config.openConnection());
+    }
+
+    public PooledConnection acquire(AbstractJdbcConnectionConfig config)
+    {
+        if (!enabled) {
+            return unpooled(config);
+        }
+
+        reapExpiredConnections();
+
+        while (true) {
+            PooledConnection idle;
+            boolean pooled;
+            synchronized (this) {
+                Deque<PooledConnection> deque = idleConnections.get(config);
+                idle = (deque == null) ? null : deque.pollFirst();
+                if (idle == null) {
+                    pooled = pooledCounts.getOrDefault(config, 0) < maxConnectionsPerDatabase;
+                    if (pooled) {
+                        // reserve a slot before opening a connection outside of the lock
+                        pooledCounts.merge(config, 1, Integer::sum);
+                    }
+                }
+                else {
+                    pooled = true;
+                }
+            }
+
+            if (idle == null) {
+                if (!pooled) {
+                    return unpooled(config);
+                }
+                try {
+                    return new PooledConnection(this, config, config.openConnection());
+                }
+                catch (RuntimeException ex) {
+                    discarded(config);
+                    throw ex;
+                }
+            }
+
+            if (idle.isValid()) {
+                return idle;
+            }
+            logger.debug("Discarding a pooled connection that failed validation: {}", config);
+            idle.closeConnection();
+            discarded(config);
+        }
+    }
+
+    private void release(PooledConnection conn, boolean reusable)
+    {
+        long now = System.currentTimeMillis();
+        if (reusable && now - conn.createdAt < maxLifetimeMillis) {
+            synchronized (this) {
+                conn.lastUsedAt = now;
+                idleConnections.computeIfAbsent(conn.config, (key) -> new ArrayDeque<>()).addFirst(conn);
+            }
+        }
+        else {
+            conn.closeConnection();
+            discarded(conn.config);
+        }
+    }
+
+    private synchronized void discarded(AbstractJdbcConnectionConfig config)
+    {
+        int count = pooledCounts.getOrDefault(config, 0) - 1;
+        if (count > 0) {
+            pooledCounts.put(config, count);
+        }
+        else {
+            pooledCounts.remove(config);
+        }
+    }
+
+    @VisibleForTesting
+    void reapExpiredConnections()
+    {
+        List<PooledConnection> expired = new ArrayList<>();
+        synchronized (this) {
+            long now = System.currentTimeMillis();
+            Iterator<Deque<PooledConnection>> dequeIt = idleConnections.values().iterator();
+            while (dequeIt.hasNext()) {
+                Deque<PooledConnection> deque = dequeIt.next();
+                Iterator<PooledConnection> it = deque.iterator();
+                while (it.hasNext()) {
+                    PooledConnection conn = it.next();
+                    if (now - conn.lastUsedAt > idleTimeoutMillis || now - conn.createdAt > maxLifetimeMillis) {
+                        it.remove();
+                        discarded(conn.config);
+                        expired.add(conn);
+                    }
+                }
+                if (deque.isEmpty()) {
+                    dequeIt.remove();
+                }
+            }
+        }
+        for (PooledConnection conn : expired) {
+            conn.closeConnection();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown()
+    {
+        List<PooledConnection> idle = new ArrayList<>();
+        synchronized (this) {
+            if (reaper != null) {
+                reaper.shutdownNow();
+                reaper = null;
+            }
+            for (Deque<PooledConnection> deque : idleConnections.values()) {
+                idle.addAll(deque);
+            }
+            idleConnections.clear();
+            pooledCounts.clear();
+        }
+        for (PooledConnection conn : idle) {
+            conn.closeConnection();
+        }
+    }
+
+    public static class PooledConnection
+    {
+        private final JdbcConnectionPool pool;
+        private final AbstractJdbcConnectionConfig config;
+        private final Connection connection;
+        private final long createdAt;
+        private long lastUsedAt;
+
+        private PooledConnection(JdbcConnectionPool pool, AbstractJdbcConnectionConfig config, Connection connection)
+        {
+            this.pool = pool;
+            this.config = config;
+            this.connection = connection;
+            this.createdAt = System.currentTimeMillis();
+            this.lastUsedAt = createdAt;
+        }
+
+        public Connection get()
+        {
+            return connection;
+        }
+
+        public boolean isPooled()
+        {
+            return pool != null;
+        }
+
+        private boolean isValid()
+        {
+            try {
+                return connection.isValid(VALIDATION_TIMEOUT_SECONDS);
+            }
+            catch (SQLException ex) {
+                return false;
+            }
+        }
+
+        /**
+         * Returns the connection to the pool if reusable is true. Otherwise,
+         * or if the connection is not pooled, closes it.
+         */
+        public void release(boolean reusable)
+        {
+            if (pool == null) {
+                closeConnection();
+            }
+            else {
+                pool.release(this, reusable);
+            }
+        }
+
+        private void closeConnection()
+        {
+            try {
+                connection.close();
+            }
+            catch (SQLException ex) {
+                logger.warn("Failed to close a database connection. Ignoring.", ex);
+            }
+        }
+    }
+}
@@ -17,6 +17,7 @@ import io.digdag.util.DurationParam;
 import io.digdag.standards.operator.jdbc.AbstractJdbcConnection;
 import io.digdag.standards.operator.jdbc.AbstractPersistentTransactionHelper;
 import io.digdag.standards.operator.jdbc.DatabaseException;
+import io.digdag.standards.operator.jdbc.JdbcConnectionPool;
 import io.digdag.standards.operator.jdbc.JdbcResultSet;
 import io.digdag.standards.operator.jdbc.TransactionHelper;
 import io.digdag.standards.operator.jdbc.NotReadOnlyException;
@@ -32,18 +33,50 @@ public class PgConnection
         return new PgConnection(config.openConnection());
     }
 
+    public static PgConnection open(PgConnectionConfig config, JdbcConnectionPool pool)
+    {
+        return new PgConnection(pool.acquire(config));
+    }
+
     protected PgConnection(Connection connection)
     {
         super(connection);
     }
 
+    protected PgConnection(JdbcConnectionPool.PooledConnection pooledConnection)
+    {
+        super(pooledConnection);
+    }
+
+    @Override
+    protected boolean resetSession()
+        throws SQLException
+    {
+        // a script may leave a transaction open. closing a connection rolls it back.
+        // DISCARD ALL resets session settings, prepared statements, temporary tables and locks.
+        execute("ROLLBACK");
+        execute("DISCARD ALL");
+        return true;
+    }
+
     @Override
     public void executeReadOnlyQuery(String sql, Consumer<JdbcResultSet> resultHandler)
         throws NotReadOnlyException
+    {
+        executeReadOnlyQuery(sql, 0, resultHandler);
+    }
+
+    @Override
+    public void executeReadOnlyQuery(String sql, int maxRows, Consumer<JdbcResultSet> resultHandler)
+        throws NotReadOnlyException
     {
         try {
             execute("SET TRANSACTION READ ONLY");
             try (Statement stmt = connection.createStatement()) {
+                if (maxRows > 0) {
+                    // the driver stops fetching rows at the limit
+                    stmt.setMaxRows(maxRows);
+                }
                 ResultSet rs = stmt.executeQuery(sql);  // executeQuery throws exception if given query includes multiple statements
                 resultHandler.accept(new PgResultSet(rs));
             }
@@ -10,18 +10,23 @@ import io.digdag.spi.SecretProvider;
 import io.digdag.spi.TaskRequest;
 import io.digdag.spi.TemplateEngine;
 import io.digdag.standards.operator.jdbc.AbstractJdbcOperator;
+import io.digdag.standards.operator.jdbc.JdbcConnectionPool;
 import java.nio.file.Path;
 
 public class PgOperatorFactory
         implements OperatorFactory
 {
     private static final String OPERATOR_TYPE = "pg";
+    private final Config systemConfig;
     private final TemplateEngine templateEngine;
+    private final JdbcConnectionPool connectionPool;
 
     @Inject
-    public PgOperatorFactory(TemplateEngine templateEngine)
+    public PgOperatorFactory(Config systemConfig, TemplateEngine templateEngine, JdbcConnectionPool connectionPool)
     {
+        this.systemConfig = systemConfig;
         this.templateEngine = templateEngine;
+        this.connectionPool = connectionPool;
     }
 
     public String getType()
@@ -38,15 +43,18 @@ public class PgOperatorFactory
     @Override
     public PgOperator newOperator(OperatorContext context)
     {
-        return new PgOperator(context, templateEngine);
+        return new PgOperator(context, templateEngine, systemConfig, connectionPool);
     }
 
     public static class PgOperator
         extends AbstractJdbcOperator<PgConnectionConfig>
     {
-        public PgOperator(OperatorContext context, TemplateEngine templateEngine)
+        private final JdbcConnectionPool connectionPool;
+
+        public PgOperator(OperatorContext context, TemplateEngine templateEngine, Config systemConfig, JdbcConnectionPool connectionPool)
         {
-            super(context, templateEngine);
+            super(context, templateEngine, systemConfig);
+            this.connectionPool = connectionPool;
         }
 
         @Override
@@ -58,7 +66,7 @@ public class PgOperatorFactory
         @Override
         protected PgConnection connect(PgConnectionConfig connectionConfig)
         {
-            return PgConnection.open(connectionConfig);
+            return PgConnection.open(connectionConfig, connectionPool);
         }
 
         @Override
@@ -0,0 +1,132 @@
+package io.digdag.standards.operator.state;
+
+import com.google.common.base.Optional;
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.inject.Inject;
+import io.digdag.client.config.Config;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Agent-wide registry of conditions polled by wait operators.
+ *
+ * Tasks waiting for the same condition (e.g. the same S3 object or the same
+ * table) share observations. If a condition was observed recently enough,
+ * a task uses the observation instead of calling the remote API. If another
+ * task is checking the condition at the moment, a task waits for its result
+ * instead of making the same call concurrently. Failures are not shared.
+ *
+ * Keys must include everything that affects the result including a
+ * fingerprint of credentials so that a task never observes a condition
+ * using credentials of another task.
+ */
+public class WatchRegistry
+{
+    public static final int DEFAULT_MAX_OBSERVATIONS = 10000;
+    public static final Duration DEFAULT_RETENTION = Duration.ofMinutes(10);
+
+    private final ConcurrentMap<String, CompletableFuture<Object>> inProgress = new ConcurrentHashMap<>();
+    private final Cache<String, Observation> observations;
+
+    @Inject
+    public WatchRegistry(Config systemConfig)
+    {
+        this(systemConfig.get("config.wait.max_observations", int.class, DEFAULT_MAX_OBSERVATIONS),
+                Duration.ofSeconds(systemConfig.get("config.wait.observation_retention", long.class, DEFAULT_RETENTION.getSeconds())));
+    }
+
+    public WatchRegistry()
+    {
+        this(DEFAULT_MAX_OBSERVATIONS, DEFAULT_RETENTION);
+    }
+
+    public WatchRegistry(int maxObservations, Duration retention)
+    {
+        this.observations = CacheBuilder.newBuilder()
+            .maximumSize(maxObservations)
+            .expireAfterWrite(retention.toMillis(), TimeUnit.MILLISECONDS)
+            .build();
+    }
+
+    private static class Observation
+    {
+        private final Object result;
+        private final Instant observedAt;
+
+        Observation(Object result, Instant observedAt)
+        {
+            this.result = result;
+            this.observedAt = observedAt;
+        }
+    }
+
+    /**
+     * Returns a result observed within maxAge, or absent.
+     */
+    public <T> Optional<T> getRecent(String key, Duration maxAge, Class<T> type)
+    {
+        Observation observation = observations.getIfPresent(key);
+        if (observation == null || observation.observedAt.isBefore(Instant.now().minus(maxAge))) {
+            return Optional.absent();
+        }
+        return Optional.of(type.cast(observation.result));
+    }
+
+    /**
+     * Records a result observed by a task so that other tasks can use it.
+     */
+    public void publish(String key, Object result)
+    {
+        observations.put(key, new Observation(result, Instant.now()));
+    }
+
+    /**
+     * Returns a result observed within maxAge, or runs check. If another
+     * thread is running check of the same key, waits for it and returns
+     * its result.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T check(String key, Duration maxAge, Callable<T> check)
+        throws Exception
+    {
+        Observation observation = observations.getIfPresent(key);
+        if (observation != null && !observation.observedAt.isBefore(Instant.now().minus(maxAge))) {
+            return (T) observation.result;
+        }
+
+        CompletableFuture<Object> future = new CompletableFuture<>();
+        CompletableFuture<Object> running = inProgress.putIfAbsent(key, future);
+        if (running != null) {
+            try {
+                return (T) running.get();
+            }
+            catch (ExecutionException ex) {
+                Throwables.propagateIfInstanceOf(ex.getCause(), Exception.class);
+                throw Throwables.propagate(ex.getCause());
+            }
+        }
+
+        try {
+            T result = check.call();
+            publish(key, result);
+            future.complete(result);
+            return result;
+        }
+        catch (Throwable ex) {
+            future.completeExceptionally(ex);
+            throw ex;
+        }
+        finally {
+            inProgress.remove(key, future);
+        }
+    }
+}
@@ -23,11 +23,12 @@ abstract class BaseTdJobOperator
     protected final TaskState state;
     protected final Config params;
     private final Map<String, String> env;
+    private final TDClientFactory clientFactory;
 
     protected final DurationInterval pollInterval;
     protected final DurationInterval retryInterval;
 
-    BaseTdJobOperator(OperatorContext context, Map<String, String> env, Config systemConfig)
+    BaseTdJobOperator(OperatorContext context, Map<String, String> env, Config systemConfig, TDClientFactory clientFactory)
     {
         super(context);
 
@@ -36,6 +37,7 @@ abstract class BaseTdJobOperator
 
         this.state = TaskState.of(request);
         this.env = env;
+        this.clientFactory = clientFactory;
 
         this.pollInterval = TDOperator.pollInterval(systemConfig);
         this.retryInterval = TDOperator.retryInterval(systemConfig);
@@ -52,7 +54,7 @@ abstract class BaseTdJobOperator
     @Override
     public final TaskResult runTask()
     {
-        try (TDOperator op = TDOperator.fromConfig(env, params, context.getSecrets().getSecrets("td"))) {
+        try (TDOperator op = TDOperator.fromConfig(clientFactory, env, params, context.getSecrets().getSecrets("td"))) {
 
             Optional<String> doneJobId = state.params().getOptional(DONE_JOB_ID, String.class);
             TDJobOperator job;
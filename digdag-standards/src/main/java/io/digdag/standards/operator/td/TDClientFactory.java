@@ -2,6 +2,8 @@ package io.digdag.standards.operator.td;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Optional;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.inject.Inject;
 import com.treasuredata.client.ProxyConfig;
 import com.treasuredata.client.TDClient;
 import com.treasuredata.client.TDClientBuilder;
@@ -9,15 +11,79 @@ import io.digdag.client.config.Config;
 import io.digdag.client.config.ConfigException;
 import io.digdag.spi.SecretProvider;
 import io.digdag.standards.Proxies;
+import io.digdag.standards.operator.ClientCache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 import static org.jboss.resteasy.util.Encode.decode;
 
-class TDClientFactory
+public class TDClientFactory
 {
+    private static final Logger logger = LoggerFactory.getLogger(TDClientFactory.class);
+
+    private static final long CLEANUP_INTERVAL_SECONDS = 60;
+
+    // shared by all td operators so that polls of td_wait and job status
+    // reuse connections. key includes apikey, so a rotated apikey gets a new client.
+    private final ClientCache<TDClient> clientCache = new ClientCache<>(TDClient::close);
+
+    private final ScheduledExecutorService cleanupExecutor;
+
+    @Inject
+    public TDClientFactory()
+    {
+        this.cleanupExecutor = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder()
+                .setDaemon(true)
+                .setNameFormat("td-client-cache-cleanup-%d")
+                .build()
+                );
+    }
+
+    @PostConstruct
+    public void start()
+    {
+        // closes idle clients even if no td tasks run any more
+        cleanupExecutor.scheduleWithFixedDelay(() -> cleanUp(),
+                CLEANUP_INTERVAL_SECONDS, CLEANUP_INTERVAL_SECONDS, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown()
+    {
+        cleanupExecutor.shutdownNow();
+        // clients leased by running tasks are closed when they're released
+        clientCache.invalidateAll();
+    }
+
+    private void cleanUp()
+    {
+        try {
+            clientCache.cleanUp();
+        }
+        catch (RuntimeException ex) {
+            logger.warn("Failed to clean up cached TD clients", ex);
+        }
+    }
+
     @VisibleForTesting
     static TDClientBuilder clientBuilderFromConfig(Map<String, String> env, Config params, SecretProvider secrets)
+    {
+        return clientBuilderFromConfig(env, params, secrets, new ArrayList<>());
+    }
+
+    // settings given to the builder are added to keyParts
+    private static TDClientBuilder clientBuilderFromConfig(Map<String, String> env, Config params, SecretProvider secrets, List<Object> keyParts)
     {
         TDClientBuilder builder = TDClient.newBuilder(false);
 
@@ -27,14 +93,21 @@ class TDClientFactory
         SecretProvider proxySecrets = secrets.getSecrets("proxy");
         Config proxyConfig = params.getNestedOrGetEmpty("proxy");
         boolean proxyEnabled = proxySecrets.getSecretOptional("enabled").transform(Boolean::parseBoolean).or(() -> proxyConfig.get("enabled", Boolean.class, false));
+        Optional<ProxyConfig> proxy;
         if (proxyEnabled) {
-            builder.setProxy(proxyConfig(proxyConfig, proxySecrets));
+            proxy = Optional.of(proxyConfig(proxyConfig, proxySecrets));
         }
         else {
-            Optional<ProxyConfig> config = Proxies.proxyConfigFromEnv(scheme, env);
-            if (config.isPresent()) {
-                builder.setProxy(config.get());
-            }
+            proxy = Proxies.proxyConfigFromEnv(scheme, env);
+        }
+        if (proxy.isPresent()) {
+            ProxyConfig c = proxy.get();
+            builder.setProxy(c);
+            keyParts.add(c.getHost());
+            keyParts.add(c.getPort());
+            keyParts.add(c.getUser().orNull());
+            keyParts.add(c.getPassword().orNull());
+            keyParts.add(c.useSSL());
         }
 
         Optional<String> apikey = secrets.getSecretOptional("apikey").transform(String::trim);
@@ -44,9 +117,14 @@ class TDClientFactory
         if (apikey.get().isEmpty()) {
             throw new ConfigException("The 'td.apikey' secret is empty");
         }
-        
+
+        String endpoint = secrets.getSecretOptional("endpoint").or(() -> params.get("endpoint", String.class, "api.treasuredata.com"));
+        keyParts.add(endpoint);
+        keyParts.add(useSSL);
+        keyParts.add(apikey.get());
+
         return builder
-                .setEndpoint(secrets.getSecretOptional("endpoint").or(() -> params.get("endpoint", String.class, "api.treasuredata.com")))
+                .setEndpoint(endpoint)
                 .setUseSSL(useSSL)
                 .setApiKey(apikey.get())
                 .setRetryLimit(0)  // disable td-client's retry mechanism
@@ -58,6 +136,28 @@ class TDClientFactory
         return clientBuilderFromConfig(env, params, secrets).build();
     }
 
+    /**
+     * Returns a fingerprint of the endpoint and credentials to be used
+     * to share results of API calls with other tasks.
+     */
+    static String clientKey(Map<String, String> env, Config params, SecretProvider secrets)
+    {
+        List<Object> keyParts = new ArrayList<>();
+        clientBuilderFromConfig(env, params, secrets, keyParts);
+        return ClientCache.fingerprint(keyParts.toArray());
+    }
+
+    /**
+     * Returns a client shared with other tasks with the same settings. The
+     * lease must be closed instead of the client.
+     */
+    ClientCache.Lease<TDClient> acquireClient(Map<String, String> env, Config params, SecretProvider secrets)
+    {
+        List<Object> keyParts = new ArrayList<>();
+        TDClientBuilder builder = clientBuilderFromConfig(env, params, secrets, keyParts);
+        return clientCache.acquire(ClientCache.fingerprint(keyParts.toArray()), builder::build);
+    }
+
     private static ProxyConfig proxyConfig(Config config, SecretProvider secrets)
     {
         ProxyConfig.ProxyConfigBuilder builder = new ProxyConfig.ProxyConfigBuilder();
@@ -97,13 +97,23 @@ class TDJobOperator
                 .or(ImmutableList.of());
     }
 
-    <R> R getResult(Function<Iterator<ArrayValue>, R> resultStreamHandler)
+    interface ResultIterator
+            extends Iterator<ArrayValue>
+    {
+        /**
+         * Skips rows without decoding them. Returns the number of skipped
+         * rows, which is smaller than the given number at the end of result.
+         */
+        long skip(long rows);
+    }
+
+    <R> R getResult(Function<ResultIterator, R> resultStreamHandler)
     {
         try {
             return defaultRetryExecutor.run(() ->
                     client.jobResult(jobId, TDResultFormat.MESSAGE_PACK_GZ, (in) -> {
                         try (MessageUnpacker unpacker = MessagePack.newDefaultUnpacker(new GZIPInputStream(in, 32 * 1024))) {
-                            return resultStreamHandler.apply(new Iterator<ArrayValue>()
+                            return resultStreamHandler.apply(new ResultIterator()
                             {
                                 public boolean hasNext()
                                 {
@@ -124,6 +134,21 @@ class TDJobOperator
                                         throw new UncheckedIOException(ex);
                                     }
                                 }
+
+                                public long skip(long rows)
+                                {
+                                    try {
+                                        long skipped = 0;
+                                        while (skipped < rows && unpacker.hasNext()) {
+                                            unpacker.skipValue();
+                                            skipped++;
+                                        }
+                                        return skipped;
+                                    }
+                                    catch (IOException ex) {
+                                        throw new UncheckedIOException(ex);
+                                    }
+                                }
                             });
                         }
                         catch (IOException ex) {
@@ -17,6 +17,7 @@ import io.digdag.client.config.ConfigElement;
 import io.digdag.client.config.ConfigException;
 import io.digdag.spi.SecretProvider;
 import io.digdag.spi.TaskExecutionException;
+import io.digdag.standards.operator.ClientCache;
 import io.digdag.standards.operator.DurationInterval;
 import io.digdag.standards.operator.state.TaskState;
 import io.digdag.util.DurationParam;
@@ -46,16 +47,16 @@ public class TDOperator
     private static final int MAX_RETRY_WAIT = 2000;
     private static final int MAX_RETRY_LIMIT = 3;
 
-    public static TDOperator fromConfig(Map<String, String> env, Config config, SecretProvider secrets)
+    public static TDOperator fromConfig(TDClientFactory clientFactory, Map<String, String> env, Config config, SecretProvider secrets)
     {
         String database = secrets.getSecretOptional("database").or(config.get("database", String.class)).trim();
         if (database.isEmpty()) {
             throw new ConfigException("Parameter 'database' is empty");
         }
 
-        TDClient client = TDClientFactory.clientFromConfig(env, config, secrets);
+        ClientCache.Lease<TDClient> client = clientFactory.acquireClient(env, config, secrets);
 
-        return new TDOperator(client, database);
+        return new TDOperator(client.get(), database, client::close);
     }
 
     static final RetryExecutor defaultRetryExecutor = retryExecutor()
@@ -98,16 +99,23 @@ public class TDOperator
 
     private final TDClient client;
     private final String database;
+    private final Runnable closer;
 
     TDOperator(TDClient client, String database)
+    {
+        this(client, database, client::close);
+    }
+
+    private TDOperator(TDClient client, String database, Runnable closer)
     {
         this.client = client;
         this.database = database;
+        this.closer = closer;
     }
 
     public TDOperator withDatabase(String anotherDatabase)
     {
-        return new TDOperator(client, anotherDatabase);
+        return new TDOperator(client, anotherDatabase, closer);
     }
 
     public String getDatabase()
@@ -401,7 +409,7 @@ public class TDOperator
     @Override
     public void close()
     {
-        client.close();
+        closer.run();
     }
 
     public interface Submitter
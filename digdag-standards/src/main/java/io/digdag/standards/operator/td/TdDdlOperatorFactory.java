@@ -37,12 +37,14 @@ public class TdDdlOperatorFactory
 {
     private static Logger logger = LoggerFactory.getLogger(TdDdlOperatorFactory.class);
     private final Map<String, String> env;
+    private final TDClientFactory clientFactory;
     private final DurationInterval retryInterval;
 
     @Inject
-    public TdDdlOperatorFactory(@Environment Map<String, String> env, Config systemConfig)
+    public TdDdlOperatorFactory(@Environment Map<String, String> env, Config systemConfig, TDClientFactory clientFactory)
     {
         this.env = env;
+        this.clientFactory = clientFactory;
         this.retryInterval = TDOperator.retryInterval(systemConfig);
     }
 
@@ -130,7 +132,7 @@ public class TdDdlOperatorFactory
                 });
             }
 
-            try (TDOperator op = TDOperator.fromConfig(env, params, context.getSecrets().getSecrets("td"))) {
+            try (TDOperator op = TDOperator.fromConfig(clientFactory, env, params, context.getSecrets().getSecrets("td"))) {
                 // make sure that all "from" tables exist so that ignoring 404 Not Found in
                 // op.ensureExistentTableRenamed is valid.
                 if (!renameTableList.isEmpty()) {
@@ -42,14 +42,16 @@ public class TdForEachOperatorFactory
     private final TemplateEngine templateEngine;
     private final ConfigFactory configFactory;
     private final Map<String, String> env;
+    private final TDClientFactory clientFactory;
     private final Config systemConfig;
 
     @Inject
-    public TdForEachOperatorFactory(TemplateEngine templateEngine, ConfigFactory configFactory, @Environment Map<String, String> env, Config systemConfig)
+    public TdForEachOperatorFactory(TemplateEngine templateEngine, ConfigFactory configFactory, @Environment Map<String, String> env, Config systemConfig, TDClientFactory clientFactory)
     {
         this.templateEngine = templateEngine;
         this.configFactory = configFactory;
         this.env = env;
+        this.clientFactory = clientFactory;
         this.systemConfig = systemConfig;
     }
 
@@ -84,7 +86,7 @@ public class TdForEachOperatorFactory
 
         private TdForEachOperator(OperatorContext context)
         {
-            super(context, env, systemConfig);
+            super(context, env, systemConfig, clientFactory);
 
             this.params = request.getConfig().mergeDefault(
                     request.getConfig().getNestedOrGetEmpty("td"));
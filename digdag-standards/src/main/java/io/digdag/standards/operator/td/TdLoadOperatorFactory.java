@@ -36,13 +36,15 @@ public class TdLoadOperatorFactory
 
     private final TemplateEngine templateEngine;
     private final Map<String, String> env;
+    private final TDClientFactory clientFactory;
     private final Config systemConfig;
 
     @Inject
-    public TdLoadOperatorFactory(TemplateEngine templateEngine, @Environment Map<String, String> env, Config systemConfig)
+    public TdLoadOperatorFactory(TemplateEngine templateEngine, @Environment Map<String, String> env, Config systemConfig, TDClientFactory clientFactory)
     {
         this.templateEngine = templateEngine;
         this.env = env;
+        this.clientFactory = clientFactory;
         this.systemConfig = systemConfig;
     }
 
@@ -77,7 +79,7 @@ public class TdLoadOperatorFactory
 
         protected TdLoadOperator(OperatorContext context)
         {
-            super(context, env, systemConfig);
+            super(context, env, systemConfig, clientFactory);
 
             params = request.getConfig().mergeDefault(
                     request.getConfig().getNestedOrGetEmpty("td"));
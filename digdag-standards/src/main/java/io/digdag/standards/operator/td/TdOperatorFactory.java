@@ -22,6 +22,7 @@ import io.digdag.spi.TaskRequest;
 import io.digdag.spi.TaskResult;
 import io.digdag.spi.TemplateEngine;
 import io.digdag.standards.operator.DurationInterval;
+import io.digdag.standards.operator.ResultFileOutput;
 import io.digdag.standards.operator.state.TaskState;
 import io.digdag.util.Workspace;
 import org.msgpack.value.ArrayValue;
@@ -32,7 +33,6 @@ import org.msgpack.value.ValueFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.BufferedWriter;
 import java.io.IOException;
 import java.io.StringWriter;
 import java.io.UncheckedIOException;
@@ -64,14 +64,16 @@ public class TdOperatorFactory
 
     private final TemplateEngine templateEngine;
     private final Map<String, String> env;
+    private final TDClientFactory clientFactory;
 
     private final Config systemConfig;
 
     @Inject
-    public TdOperatorFactory(TemplateEngine templateEngine, @Environment Map<String, String> env, Config systemConfig)
+    public TdOperatorFactory(TemplateEngine templateEngine, @Environment Map<String, String> env, Config systemConfig, TDClientFactory clientFactory)
     {
         this.templateEngine = templateEngine;
         this.env = env;
+        this.clientFactory = clientFactory;
         this.systemConfig = systemConfig;
     }
 
@@ -105,12 +107,13 @@ public class TdOperatorFactory
         private final int jobRetry;
         private final String engine;
         private final Optional<String> downloadFile;
+        private final boolean downloadGzip;
         private final boolean storeLastResults;
         private final boolean preview;
 
         private TdOperator(OperatorContext context)
         {
-            super(context, env, systemConfig);
+            super(context, env, systemConfig, clientFactory);
 
             this.params = request.getConfig().mergeDefault(
                     request.getConfig().getNestedOrGetEmpty("td"));
@@ -135,6 +138,7 @@ public class TdOperatorFactory
                 // query results become empty if INSERT INTO or CREATE TABLE query runs
                 throw new ConfigException("download_file is invalid if insert_into or create_table is set");
             }
+            this.downloadGzip = ResultFileOutput.isGzipCompression(params);
 
             this.storeLastResults = params.get("store_last_results", boolean.class, false);
 
@@ -144,7 +148,7 @@ public class TdOperatorFactory
         @Override
         protected TaskResult processJobResult(TDOperator op, TDJobOperator j)
         {
-            downloadJobResult(j, workspace, downloadFile, state, retryInterval);
+            downloadJobResult(j, workspace, downloadFile, downloadGzip, state, retryInterval);
 
             if (preview) {
                 if (insertInto.isPresent() || createTable.isPresent()) {
@@ -317,7 +321,7 @@ public class TdOperatorFactory
         }
     }
 
-    static void downloadJobResult(TDJobOperator j, Workspace workspace, Optional<String> downloadFile, TaskState state, DurationInterval retryInterval)
+    static void downloadJobResult(TDJobOperator j, Workspace workspace, Optional<String> downloadFile, boolean gzip, TaskState state, DurationInterval retryInterval)
     {
         if (!downloadFile.isPresent()) {
             return;
@@ -328,11 +332,27 @@ public class TdOperatorFactory
                 .withRetryInterval(retryInterval)
                 .withErrorMessage("Failed to download result of job '%s'", j.getJobId())
                 .runOnce(s -> j.getResult(ite -> {
-                    try (BufferedWriter out = workspace.newBufferedWriter(downloadFile.get(), UTF_8)) {
-                        addCsvHeader(out, j.getResultColumnNames());
+                    // The operation state keeps the checkpoint. It's stored in the
+                    // state params of the task when the download is retried by
+                    // polling. If the task fails or the server stops during a
+                    // download, the download starts over.
+                    try (ResultFileOutput out = ResultFileOutput.open(workspace.getPath(downloadFile.get()), gzip, Optional.of(s.params()))) {
+                        Writer writer = out.getWriter();
+                        long skip = out.getResumedRows();
+                        if (skip == 0) {
+                            addCsvHeader(writer, j.getResultColumnNames());
+                        }
+                        else {
+                            // the result API doesn't support ranged reads. rows written
+                            // already are downloaded again but not decoded.
+                            logger.info("Resuming download of job {} after {} rows", j.getJobId(), skip);
+                            ite.skip(skip);
+                        }
                         while (ite.hasNext()) {
-                            addCsvRow(out, ite.next().asArrayValue());
+                            addCsvRow(writer, ite.next().asArrayValue());
+                            out.endRow();
                         }
+                        out.finish();
                         return true;
                     }
                     catch (IOException ex) {
@@ -341,7 +361,6 @@ public class TdOperatorFactory
                 }));
     }
 
-
     private static void addCsvHeader(Writer out, List<String> columnNames)
         throws IOException
     {
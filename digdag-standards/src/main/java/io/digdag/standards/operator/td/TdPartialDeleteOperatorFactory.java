@@ -24,12 +24,14 @@ public class TdPartialDeleteOperatorFactory
 {
     private static Logger logger = LoggerFactory.getLogger(TdPartialDeleteOperatorFactory.class);
     private final Map<String, String> env;
+    private final TDClientFactory clientFactory;
     private final Config systemConfig;
 
     @Inject
-    public TdPartialDeleteOperatorFactory(@Environment Map<String, String> env, Config systemConfig)
+    public TdPartialDeleteOperatorFactory(@Environment Map<String, String> env, Config systemConfig, TDClientFactory clientFactory)
     {
         this.env = env;
+        this.clientFactory = clientFactory;
         this.systemConfig = systemConfig;
     }
 
@@ -61,7 +63,7 @@ public class TdPartialDeleteOperatorFactory
 
         private TdPartialDeleteOperator(OperatorContext context)
         {
-            super(context, env, systemConfig);
+            super(context, env, systemConfig, clientFactory);
 
             this.params = request.getConfig().mergeDefault(
                     request.getConfig().getNestedOrGetEmpty("td"));
@@ -11,6 +11,7 @@ import io.digdag.spi.OperatorContext;
 import io.digdag.spi.SecretAccessList;
 import io.digdag.spi.TaskRequest;
 import io.digdag.spi.TaskResult;
+import io.digdag.standards.operator.ResultFileOutput;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -29,12 +30,14 @@ public class TdRunOperatorFactory
 {
     private static Logger logger = LoggerFactory.getLogger(TdRunOperatorFactory.class);
     private final Map<String, String> env;
+    private final TDClientFactory clientFactory;
     private final Config systemConfig;
 
     @Inject
-    public TdRunOperatorFactory(@Environment Map<String, String> env, Config systemConfig)
+    public TdRunOperatorFactory(@Environment Map<String, String> env, Config systemConfig, TDClientFactory clientFactory)
     {
         this.env = env;
+        this.clientFactory = clientFactory;
         this.systemConfig = systemConfig;
     }
 
@@ -63,12 +66,13 @@ public class TdRunOperatorFactory
         private final String name;
         private final Instant sessionTime;
         private final Optional<String> downloadFile;
+        private final boolean downloadGzip;
         private final boolean storeLastResults;
         private final boolean preview;
 
         private TdRunOperator(OperatorContext context)
         {
-            super(context, env, systemConfig);
+            super(context, env, systemConfig, clientFactory);
 
             this.params = request.getConfig().mergeDefault(
                     request.getConfig().getNestedOrGetEmpty("td"));
@@ -76,6 +80,7 @@ public class TdRunOperatorFactory
             this.name = params.get("_command", String.class);
             this.sessionTime = params.get("session_time", Instant.class);
             this.downloadFile = params.getOptional("download_file", String.class);
+            this.downloadGzip = ResultFileOutput.isGzipCompression(params);
             this.storeLastResults = params.get("store_last_results", boolean.class, false);
             this.preview = params.get("preview", boolean.class, false);
         }
@@ -97,7 +102,7 @@ public class TdRunOperatorFactory
         @Override
         protected TaskResult processJobResult(TDOperator op, TDJobOperator job)
         {
-            downloadJobResult(job, workspace, downloadFile, state, retryInterval);
+            downloadJobResult(job, workspace, downloadFile, downloadGzip, state, retryInterval);
 
             if (preview) {
                 TdOperatorFactory.downloadPreviewRows(job, "job id " + job.getJobId(), state, retryInterval);
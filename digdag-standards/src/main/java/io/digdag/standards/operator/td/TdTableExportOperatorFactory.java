@@ -33,12 +33,14 @@ public class TdTableExportOperatorFactory
 {
     private static Logger logger = LoggerFactory.getLogger(TdTableExportOperatorFactory.class);
     private final Map<String, String> env;
+    private final TDClientFactory clientFactory;
     private final Config systemConfig;
 
     @Inject
-    public TdTableExportOperatorFactory(@Environment Map<String, String> env, Config systemConfig)
+    public TdTableExportOperatorFactory(@Environment Map<String, String> env, Config systemConfig, TDClientFactory clientFactory)
     {
         this.env = env;
+        this.clientFactory = clientFactory;
         this.systemConfig = systemConfig;
     }
 
@@ -74,7 +76,7 @@ public class TdTableExportOperatorFactory
 
         private TdTableExportOperator(OperatorContext context)
         {
-            super(context, env, systemConfig);
+            super(context, env, systemConfig, clientFactory);
 
             Config params = request.getConfig().mergeDefault(
                     request.getConfig().getNestedOrGetEmpty("td"));
@@ -45,15 +45,17 @@ public class TdWaitOperatorFactory
 
     private final TemplateEngine templateEngine;
     private final Map<String, String> env;
+    private final TDClientFactory clientFactory;
     private final DurationInterval pollInterval;
     private final DurationInterval retryInterval;
 
     @Inject
-    public TdWaitOperatorFactory(TemplateEngine templateEngine, Config systemConfig, @Environment Map<String, String> env)
+    public TdWaitOperatorFactory(TemplateEngine templateEngine, Config systemConfig, @Environment Map<String, String> env, TDClientFactory clientFactory)
     {
         super(systemConfig);
         this.templateEngine = templateEngine;
         this.env = env;
+        this.clientFactory = clientFactory;
         this.pollInterval = TDOperator.pollInterval(systemConfig);
         this.retryInterval = TDOperator.retryInterval(systemConfig);
     }
@@ -107,7 +109,7 @@ public class TdWaitOperatorFactory
         @Override
         public TaskResult runTask()
         {
-            try (TDOperator op = TDOperator.fromConfig(env, params, context.getSecrets().getSecrets("td"))) {
+            try (TDOperator op = TDOperator.fromConfig(clientFactory, env, params, context.getSecrets().getSecrets("td"))) {
 
                 TDJobOperator job = op.runJob(state, POLL_JOB, pollInterval, retryInterval, this::startJob);
 
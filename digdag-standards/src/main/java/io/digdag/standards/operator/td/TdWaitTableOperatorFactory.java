@@ -13,11 +13,14 @@ import io.digdag.spi.Operator;
 import io.digdag.spi.OperatorFactory;
 import io.digdag.spi.OperatorContext;
 import io.digdag.spi.SecretAccessList;
+import io.digdag.spi.SecretProvider;
 import io.digdag.spi.TaskExecutionException;
 import io.digdag.spi.TaskRequest;
 import io.digdag.spi.TaskResult;
+import io.digdag.standards.operator.ClientCache;
 import io.digdag.standards.operator.DurationInterval;
 import io.digdag.standards.operator.state.TaskState;
+import io.digdag.standards.operator.state.WatchRegistry;
 import io.digdag.util.BaseOperator;
 import org.msgpack.core.MessageTypeCastException;
 import org.msgpack.value.ArrayValue;
@@ -28,6 +31,7 @@ import org.slf4j.LoggerFactory;
 
 import java.math.BigInteger;
 import java.nio.file.Path;
+import java.time.Duration;
 import java.util.List;
 import java.util.Map;
 
@@ -48,16 +52,20 @@ public class TdWaitTableOperatorFactory
     private static final String POLL_JOB = "pollJob";
 
     private final Map<String, String> env;
+    private final TDClientFactory clientFactory;
     private final DurationInterval pollInterval;
     private final DurationInterval retryInterval;
+    private final WatchRegistry watchRegistry;
 
     @Inject
-    public TdWaitTableOperatorFactory(Config systemConfig, @Environment Map<String, String> env)
+    public TdWaitTableOperatorFactory(Config systemConfig, @Environment Map<String, String> env, WatchRegistry watchRegistry, TDClientFactory clientFactory)
     {
         super(systemConfig);
         this.pollInterval = TDOperator.pollInterval(systemConfig);
         this.retryInterval = TDOperator.retryInterval(systemConfig);
         this.env = env;
+        this.clientFactory = clientFactory;
+        this.watchRegistry = watchRegistry;
     }
 
     public String getType()
@@ -113,12 +121,15 @@ public class TdWaitTableOperatorFactory
         @Override
         public TaskResult runTask()
         {
-            try (TDOperator op = TDOperator.fromConfig(env, params, context.getSecrets().getSecrets("td"))) {
+            SecretProvider secrets = context.getSecrets().getSecrets("td");
+            try (TDOperator op = TDOperator.fromConfig(clientFactory, env, params, secrets)) {
+                // Tasks waiting for the same table with the same credentials share results of the checks
+                String clientKey = TDClientFactory.clientKey(env, params, secrets);
 
                 // Check if table exists using rest api
                 if (!state.params().get(TABLE_EXISTS, Boolean.class, false)) {
 
-                    if (!tableExists(op)) {
+                    if (!tableExists(op, clientKey)) {
                         throw state.pollingTaskExecutionException(tableExistencePollInterval);
                     }
 
@@ -131,17 +142,30 @@ public class TdWaitTableOperatorFactory
                     state.params().set(TABLE_EXISTS, true);
                 }
 
-                TDJobOperator job = op.runJob(state, POLL_JOB, pollInterval, retryInterval, this::startJob);
+                String query = createQuery();
+                String countKey = ClientCache.fingerprint("td_wait_table.count", clientKey, op.getDatabase(), engine, query);
 
-                // Fetch the job output to see if the row count condition was fulfilled
-                logger.debug("fetching poll job result: {}", job.getJobId());
-                boolean done = fetchJobResult(rows, job);
+                BigInteger actualRows;
+                Optional<BigInteger> recentCount = watchRegistry.getRecent(countKey, Duration.ofSeconds(tablePollInterval), BigInteger.class);
+                if (!state.params().has(POLL_JOB) && recentCount.isPresent()) {
+                    // Another task counted the rows recently. Use it instead of running the same query.
+                    logger.debug("using a row count observed by another task: {}", recentCount.get());
+                    actualRows = recentCount.get();
+                }
+                else {
+                    TDJobOperator job = op.runJob(state, POLL_JOB, pollInterval, retryInterval, (jobOp, domainKey) -> startJob(jobOp, domainKey, query));
+
+                    // Fetch the job output to see if the row count condition was fulfilled
+                    logger.debug("fetching poll job result: {}", job.getJobId());
+                    actualRows = fetchJobResult(job);
+                    watchRegistry.publish(countKey, actualRows);
 
-                // Remove the poll job state _after_ fetching the result so that the result fetch can be retried without resubmitting the job.
-                state.params().remove(POLL_JOB);
+                    // Remove the poll job state _after_ fetching the result so that the result fetch can be retried without resubmitting the job.
+                    state.params().remove(POLL_JOB);
+                }
 
                 // Go back to sleep if the row count condition was not fulfilled
-                if (!done) {
+                if (BigInteger.valueOf(rows).compareTo(actualRows) > 0) {
                     throw state.pollingTaskExecutionException(tablePollInterval);
                 }
 
@@ -150,17 +174,18 @@ public class TdWaitTableOperatorFactory
             }
         }
 
-        private boolean tableExists(TDOperator op)
+        private boolean tableExists(TDOperator op, String clientKey)
         {
-
+            String existsKey = ClientCache.fingerprint("td_wait_table.exists", clientKey, op.getDatabase(), table.getTable());
             return pollingRetryExecutor(state, EXISTS)
                     .retryUnless(TDOperator::isDeterministicClientException)
                     .withErrorMessage("Failed to check existence of table '%s.%s'", op.getDatabase(), table.getTable())
                     .withRetryInterval(retryInterval)
-                    .run(s -> op.tableExists(table.getTable()));
+                    .run(s -> watchRegistry.check(existsKey, Duration.ofSeconds(tableExistencePollInterval),
+                                () -> op.tableExists(table.getTable())));
         }
 
-        private boolean fetchJobResult(int rows, TDJobOperator job)
+        private BigInteger fetchJobResult(TDJobOperator job)
         {
             Optional<ArrayValue> firstRow = pollingRetryExecutor(state, RESULT)
                     .retryUnless(TDOperator::isDeterministicClientException)
@@ -187,13 +212,11 @@ public class TdWaitTableOperatorFactory
                 throw new TaskExecutionException("Got unexpected value type count job: " + count.getValueType(), ConfigElement.empty());
             }
 
-            return BigInteger.valueOf(rows).compareTo(actualRows.asBigInteger()) <= 0;
+            return actualRows.asBigInteger();
         }
 
-        private String startJob(TDOperator op, String domainKey)
+        private String startJob(TDOperator op, String domainKey, String query)
         {
-            String query = createQuery();
-
             TDJobRequest req = new TDJobRequestBuilder()
                     .setType(engine)
                     .setDatabase(op.getDatabase())
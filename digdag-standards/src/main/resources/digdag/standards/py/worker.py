@@ -0,0 +1,115 @@
+import sys
+import os
+import json
+import struct
+import traceback
+
+# Long-lived process that runs runner.py repeatedly for the pooled mode of
+# py> operator. Requests and responses are framed by a 4-byte big-endian
+# length followed by a UTF-8 JSON body. The original stdout is reserved for
+# responses. Output of tasks goes to stderr, which is followed by the marker
+# line at the end of each call so that the agent can split logs by task.
+
+proto_in = os.fdopen(os.dup(0), 'rb')
+proto_out = os.fdopen(os.dup(1), 'wb')
+devnull = os.open(os.devnull, os.O_RDONLY)
+os.dup2(devnull, 0)
+os.close(devnull)
+os.dup2(2, 1)
+
+def read_frame():
+    header = proto_in.read(4)
+    if len(header) < 4:
+        return None
+    length = struct.unpack('>I', header)[0]
+    body = proto_in.read(length)
+    if len(body) < length:
+        return None
+    return json.loads(body.decode('utf-8'))
+
+def write_frame(data):
+    body = json.dumps(data).encode('utf-8')
+    proto_out.write(struct.pack('>I', len(body)))
+    proto_out.write(body)
+    proto_out.flush()
+
+def module_dir(mod):
+    path = getattr(mod, '__file__', None)
+    if path is None:
+        return None
+    return os.path.dirname(os.path.abspath(path))
+
+def unload_modules(base_dir):
+    # project modules must be loaded again from the workspace of the next
+    # task. modules outside of the workspace such as installed libraries
+    # are kept loaded, which is the point of reusing the process.
+    prefix = base_dir + os.sep
+    for name in list(sys.modules.keys()):
+        if name in ('digdag', 'digdag_env'):
+            del sys.modules[name]
+            continue
+        mod = sys.modules[name]
+        if mod is None:
+            continue
+        d = module_dir(mod)
+        if d is not None and (d == base_dir or d.startswith(prefix)):
+            del sys.modules[name]
+
+init = read_frame()
+if init is None:
+    sys.exit(0)
+runner = compile(init['runner'], 'runner.py', 'exec')
+marker = init['marker']
+
+# state of the process that a task may change. it's restored after each
+# call so that the next task starts as if it runs in a new process.
+initial_environ = dict(os.environ)
+initial_path = list(sys.path)
+initial_stdout = sys.stdout
+initial_stderr = sys.stderr
+# workspace of a task is deleted after the task. the worker waits for the
+# next call in a directory that always exists.
+idle_dir = os.path.abspath(os.sep)
+os.chdir(idle_dir)
+
+def reset_state():
+    os.environ.clear()
+    os.environ.update(initial_environ)
+    sys.path[:] = initial_path
+    sys.argv = ['-']
+    sys.stdout = initial_stdout
+    sys.stderr = initial_stderr
+    os.chdir(idle_dir)
+
+while True:
+    request = read_frame()
+    if request is None:
+        break
+
+    cwd = os.path.abspath(request['cwd'])
+    status = 'ok'
+    code = 0
+    try:
+        os.chdir(cwd)
+        sys.argv = ['-'] + request['args']
+        exec(runner, {'__name__': '__main__'})
+    except SystemExit as e:
+        if e.code is None or e.code == 0:
+            status = 'ok'
+        else:
+            status = 'exit'
+            code = e.code if isinstance(e.code, int) else 1
+            if not isinstance(e.code, int):
+                sys.stderr.write(str(e.code) + '\n')
+    except BaseException:
+        traceback.print_exc()
+        status = 'error'
+        code = 1
+    finally:
+        reset_state()
+        unload_modules(cwd)
+
+    sys.stdout.flush()
+    sys.stderr.write(marker + '\n')
+    sys.stderr.flush()
+    write_frame({'status': status, 'code': code})
@@ -0,0 +1,73 @@
+package io.digdag.standards.command;
+
+import java.util.HashMap;
+import java.util.Map;
+import com.google.common.collect.ImmutableMap;
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class SimpleCommandExecutorTest
+{
+    @Test
+    public void inheritEnvironmentByDefault()
+    {
+        ProcessBuilder pb = new ProcessBuilder("true");
+
+        new SimpleCommandExecutor(new CommandEnvironment())
+            .setEnvironment(pb, ImmutableMap.of("OPERATOR_VAR", "1"));
+
+        Map<String, String> expected = new HashMap<>(System.getenv());
+        expected.put("OPERATOR_VAR", "1");
+        assertThat(pb.environment(), is(expected));
+    }
+
+    @Test
+    public void replaceInheritedEnvironment()
+    {
+        CommandEnvironment commandEnvironment = new CommandEnvironment();
+        commandEnvironment.set(ImmutableMap.of("CLIENT_VAR", "a", "OPERATOR_VAR", "b"));
+
+        ProcessBuilder pb = new ProcessBuilder("true");
+
+        new SimpleCommandExecutor(commandEnvironment)
+            .setEnvironment(pb, ImmutableMap.of("OPERATOR_VAR", "1"));
+
+        // variables set by operators take precedence
+        assertThat(pb.environment(), is(ImmutableMap.of("CLIENT_VAR", "a", "OPERATOR_VAR", "1")));
+    }
+
+    @Test
+    public void keepOperatorVariablesEqualToInheritedOnes()
+    {
+        Map<String, String> inherited = System.getenv();
+        String key = inherited.keySet().iterator().next();
+
+        CommandEnvironment commandEnvironment = new CommandEnvironment();
+        commandEnvironment.set(ImmutableMap.of(key, "client"));
+
+        ProcessBuilder pb = new ProcessBuilder("true");
+
+        // the operator sets the same value as the one of this process
+        new SimpleCommandExecutor(commandEnvironment)
+            .setEnvironment(pb, ImmutableMap.of(key, inherited.get(key)));
+
+        assertThat(pb.environment(), is(ImmutableMap.of(key, inherited.get(key))));
+    }
+
+    @Test
+    public void commandEnvironmentCanBeCleared()
+    {
+        CommandEnvironment commandEnvironment = new CommandEnvironment();
+        commandEnvironment.set(ImmutableMap.of("CLIENT_VAR", "a"));
+        commandEnvironment.clear();
+
+        ProcessBuilder pb = new ProcessBuilder("true");
+
+        new SimpleCommandExecutor(commandEnvironment)
+            .setEnvironment(pb, ImmutableMap.of());
+
+        assertThat(pb.environment(), is(System.getenv()));
+    }
+}
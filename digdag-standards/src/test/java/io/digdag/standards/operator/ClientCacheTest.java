@@ -0,0 +1,65 @@
+package io.digdag.standards.operator;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.junit.Assert.assertThat;
+
+public class ClientCacheTest
+{
+    private final List<String> closed = new ArrayList<>();
+    private final AtomicInteger created = new AtomicInteger();
+    private final ClientCache<String> cache = new ClientCache<>(closed::add);
+
+    private String newClient()
+    {
+        return "client-" + created.incrementAndGet();
+    }
+
+    @Test
+    public void reuseClientOfSameKey()
+    {
+        String key = ClientCache.fingerprint("apikey", "endpoint");
+        String client1;
+        try (ClientCache.Lease<String> lease = cache.acquire(key, this::newClient)) {
+            client1 = lease.get();
+        }
+        try (ClientCache.Lease<String> lease = cache.acquire(key, this::newClient)) {
+            assertThat(lease.get(), is(client1));
+        }
+        assertThat(created.get(), is(1));
+        assertThat(closed.isEmpty(), is(true));
+    }
+
+    @Test
+    public void rotatedCredentialGetsNewClient()
+    {
+        try (ClientCache.Lease<String> lease1 = cache.acquire(ClientCache.fingerprint("old-apikey", "endpoint"), this::newClient);
+                ClientCache.Lease<String> lease2 = cache.acquire(ClientCache.fingerprint("new-apikey", "endpoint"), this::newClient)) {
+            assertThat(lease2.get(), is(not(lease1.get())));
+        }
+    }
+
+    @Test
+    public void closeEvictedClientAfterRelease()
+    {
+        String key = ClientCache.fingerprint("apikey");
+        ClientCache.Lease<String> lease = cache.acquire(key, this::newClient);
+        cache.invalidate(key);
+        assertThat(closed.isEmpty(), is(true));
+
+        // an evicted client is not returned again
+        try (ClientCache.Lease<String> another = cache.acquire(key, this::newClient)) {
+            assertThat(another.get(), is("client-2"));
+        }
+
+        lease.close();
+        lease.close();
+        assertThat(closed, contains("client-1"));
+    }
+}
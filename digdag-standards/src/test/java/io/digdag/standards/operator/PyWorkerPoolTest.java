@@ -0,0 +1,256 @@
+package io.digdag.standards.operator;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import com.google.common.base.Optional;
+import com.google.common.io.ByteStreams;
+import io.digdag.client.config.Config;
+import io.digdag.spi.CommandLogger;
+import org.junit.Test;
+
+import static io.digdag.client.config.ConfigUtils.newConfig;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class PyWorkerPoolTest
+{
+    private static final String MARKER = PyWorkerPool.newMarker();
+
+    private final CommandLogger clog = (in, out) -> ByteStreams.copy(in, out);
+
+    private final PyWorkerPool pool = new PyWorkerPool(poolConfig());
+
+    private static Config poolConfig()
+    {
+        return newConfig()
+            .set("config.py.pool.enabled", true)
+            .set("config.py.pool.max_calls_per_worker", 2);
+    }
+
+    @Test
+    public void reuseWorkerOfSameFingerprint()
+            throws Exception
+    {
+        FakeProcess process = new FakeProcess(
+                "task1\n" + MARKER + "\n" + "task2\n" + MARKER + "\n",
+                "{\"status\":\"ok\"}", "{\"status\":\"ok\"}");
+        PyWorkerPool.Worker worker = pool.start("fp", process, MARKER, "{}".getBytes(UTF_8));
+
+        assertThat(call(worker), is("task1\n"));
+        pool.release(worker, true);
+
+        assertThat(pool.acquire("other").isPresent(), is(false));
+        Optional<PyWorkerPool.Worker> reused = pool.acquire("fp");
+        assertThat(reused.get(), is(worker));
+        assertThat(call(reused.get()), is("task2\n"));
+
+        // max_calls_per_worker is 2
+        pool.release(reused.get(), true);
+        assertThat(process.isAlive(), is(false));
+        assertThat(pool.acquire("fp").isPresent(), is(false));
+    }
+
+    @Test
+    public void discardFailedWorker()
+            throws Exception
+    {
+        FakeProcess process = new FakeProcess(
+                "Traceback\n" + MARKER + "\n",
+                "{\"status\":\"error\",\"code\":1}");
+        PyWorkerPool.Worker worker = pool.start("fp", process, MARKER, "{}".getBytes(UTF_8));
+
+        assertThat(call(worker), is("Traceback\n"));
+        pool.release(worker, false);
+
+        assertThat(process.isAlive(), is(false));
+        assertThat(pool.acquire("fp").isPresent(), is(false));
+    }
+
+    @Test
+    public void recoverFromCrashedWorker()
+            throws Exception
+    {
+        // the process exited in the middle of a call without writing the marker and response
+        FakeProcess crashed = new FakeProcess("Segmentation fault\n");
+        PyWorkerPool.Worker worker = pool.start("fp", crashed, MARKER, "{}".getBytes(UTF_8));
+
+        ByteArrayOutputStream log = new ByteArrayOutputStream();
+        assertThat(worker.call("{}".getBytes(UTF_8), clog, log).isPresent(), is(false));
+        assertThat(new String(log.toByteArray(), UTF_8), is("Segmentation fault\n"));
+        pool.release(worker, false);
+        assertThat(pool.acquire("fp").isPresent(), is(false));
+
+        // a new worker runs the next task
+        FakeProcess next = new FakeProcess("ok\n" + MARKER + "\n", "{\"status\":\"ok\"}");
+        PyWorkerPool.Worker nextWorker = pool.start("fp", next, MARKER, "{}".getBytes(UTF_8));
+        assertThat(call(nextWorker), is("ok\n"));
+    }
+
+    @Test
+    public void skipIdleWorkerThatExited()
+            throws Exception
+    {
+        FakeProcess process = new FakeProcess(
+                "task1\n" + MARKER + "\n",
+                "{\"status\":\"ok\"}");
+        PyWorkerPool.Worker worker = pool.start("fp", process, MARKER, "{}".getBytes(UTF_8));
+        call(worker);
+        pool.release(worker, true);
+
+        process.destroy();
+        assertThat(pool.acquire("fp").isPresent(), is(false));
+    }
+
+    @Test
+    public void markerSplitAcrossReads()
+            throws Exception
+    {
+        String log = "line1\n" + MARKER.substring(0, 5) + "partial\n";
+        byte[] bytes = (log + MARKER + "\n" + "next task").getBytes(UTF_8);
+        InputStream in = new OneByteInputStream(bytes);
+
+        assertThat(readAll(new PyWorkerPool.MarkerInputStream(in, MARKER)), is(log));
+        // bytes after the marker are left for the next call
+        assertThat(readAll(in), is("next task"));
+    }
+
+    @Test
+    public void markerAfterPartialMatch()
+            throws Exception
+    {
+        // a NUL byte followed by the complete marker
+        String log = "a\u0000";
+        byte[] bytes = (log + MARKER + "\n").getBytes(UTF_8);
+
+        assertThat(readAll(new PyWorkerPool.MarkerInputStream(new OneByteInputStream(bytes), MARKER)), is(log));
+    }
+
+    @Test
+    public void flushPartialMarkerAtEndOfStream()
+            throws Exception
+    {
+        String log = "exited\n" + MARKER.substring(0, 10);
+        byte[] bytes = log.getBytes(UTF_8);
+
+        assertThat(readAll(new PyWorkerPool.MarkerInputStream(new OneByteInputStream(bytes), MARKER)), is(log));
+    }
+
+    private String call(PyWorkerPool.Worker worker)
+            throws IOException
+    {
+        ByteArrayOutputStream log = new ByteArrayOutputStream();
+        assertThat(worker.call("{}".getBytes(UTF_8), clog, log).isPresent(), is(true));
+        return new String(log.toByteArray(), UTF_8);
+    }
+
+    private static String readAll(InputStream in)
+            throws IOException
+    {
+        return new String(ByteStreams.toByteArray(in), UTF_8);
+    }
+
+    // returns one byte per read call as a pipe may do
+    private static class OneByteInputStream
+        extends InputStream
+    {
+        private final InputStream in;
+
+        OneByteInputStream(byte[] bytes)
+        {
+            this.in = new ByteArrayInputStream(bytes);
+        }
+
+        @Override
+        public int read()
+            throws IOException
+        {
+            return in.read();
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len)
+            throws IOException
+        {
+            if (len == 0) {
+                return 0;
+            }
+            return in.read(b, off, 1);
+        }
+
+        @Override
+        public int available()
+        {
+            return 0;
+        }
+    }
+
+    private static class FakeProcess
+        extends Process
+    {
+        private final ByteArrayOutputStream stdin = new ByteArrayOutputStream();
+        private final InputStream stdout;
+        private final InputStream stderr;
+        private boolean alive = true;
+
+        FakeProcess(String stderr, String... responses)
+                throws IOException
+        {
+            ByteArrayOutputStream frames = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(frames);
+            for (String response : responses) {
+                byte[] body = response.getBytes(UTF_8);
+                out.writeInt(body.length);
+                out.write(body);
+            }
+            this.stdout = new ByteArrayInputStream(frames.toByteArray());
+            this.stderr = new OneByteInputStream(stderr.getBytes(UTF_8));
+        }
+
+        @Override
+        public OutputStream getOutputStream()
+        {
+            return stdin;
+        }
+
+        @Override
+        public InputStream getInputStream()
+        {
+            return stdout;
+        }
+
+        @Override
+        public InputStream getErrorStream()
+        {
+            return stderr;
+        }
+
+        @Override
+        public int waitFor()
+        {
+            return 1;
+        }
+
+        @Override
+        public int exitValue()
+        {
+            return 1;
+        }
+
+        @Override
+        public boolean isAlive()
+        {
+            return alive;
+        }
+
+        @Override
+        public void destroy()
+        {
+            alive = false;
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package io.digdag.standards.operator;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.GZIPInputStream;
+import com.google.common.base.Optional;
+import com.google.common.io.ByteStreams;
+import io.digdag.client.config.Config;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static io.digdag.client.config.ConfigUtils.newConfig;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class ResultFileOutputTest
+{
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static final int ROWS = 1000;
+    private static final long CHUNK_SIZE = 1000;
+
+    private static String expected()
+    {
+        StringBuilder sb = new StringBuilder("id\r\n");
+        for (int i = 0; i < ROWS; i++) {
+            sb.append(i).append("\r\n");
+        }
+        return sb.toString();
+    }
+
+    // writes rows and fails after failAt rows if failAt >= 0
+    private static void download(Path path, boolean gzip, Config checkpoint, int failAt)
+        throws IOException
+    {
+        try (ResultFileOutput out = ResultFileOutput.open(path, gzip, Optional.of(checkpoint), CHUNK_SIZE)) {
+            long skip = out.getResumedRows();
+            if (skip == 0) {
+                out.getWriter().write("id\r\n");
+            }
+            for (long i = skip; i < ROWS; i++) {
+                if (i == failAt) {
+                    throw new IOException("failed");
+                }
+                out.getWriter().write(i + "\r\n");
+                out.endRow();
+            }
+            out.finish();
+        }
+    }
+
+    private static String read(Path path, boolean gzip)
+        throws IOException
+    {
+        try (InputStream in = gzip ? new GZIPInputStream(Files.newInputStream(path)) : Files.newInputStream(path)) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            ByteStreams.copy(in, out);
+            return new String(out.toByteArray(), UTF_8);
+        }
+    }
+
+    @Test
+    public void writeAtOnce()
+        throws Exception
+    {
+        for (boolean gzip : new boolean[] {false, true}) {
+            Path path = folder.getRoot().toPath().resolve("result-" + gzip + ".csv");
+            download(path, gzip, newConfig(), -1);
+            assertThat(read(path, gzip), is(expected()));
+        }
+    }
+
+    @Test
+    public void resumeFromCheckpoint()
+        throws Exception
+    {
+        for (boolean gzip : new boolean[] {false, true}) {
+            Path path = folder.getRoot().toPath().resolve("result-" + gzip + ".csv");
+            Config checkpoint = newConfig();
+            try {
+                download(path, gzip, checkpoint, 700);
+            }
+            catch (IOException ex) {
+            }
+            long resumed = checkpoint.get("rows", long.class);
+            assertThat(resumed > 0 && resumed < 700, is(true));
+
+            download(path, gzip, checkpoint, -1);
+            assertThat(read(path, gzip), is(expected()));
+        }
+    }
+
+    @Test
+    public void startOverIfFileIsMissing()
+        throws Exception
+    {
+        Path path = folder.getRoot().toPath().resolve("result.csv");
+        Config checkpoint = newConfig();
+        try {
+            download(path, true, checkpoint, 700);
+        }
+        catch (IOException ex) {
+        }
+        Files.delete(path);
+
+        download(path, true, checkpoint, -1);
+        assertThat(read(path, true), is(expected()));
+    }
+}
@@ -1,6 +1,7 @@
 package io.digdag.standards.operator.jdbc;
 
 import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import io.digdag.client.config.Config;
 import io.digdag.spi.SecretProvider;
@@ -17,11 +18,16 @@ import org.junit.runner.RunWith;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.runners.MockitoJUnitRunner;
+import org.postgresql.util.PGobject;
 
 import java.io.IOException;
 import java.nio.file.Path;
 import java.sql.Connection;
+import java.sql.Date;
 import java.time.Duration;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 import java.util.function.Consumer;
@@ -33,6 +39,7 @@ import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyObject;
 import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -67,6 +74,12 @@ public class AbstractJdbcOperatorTest
         {
         }
 
+        @Override
+        public void executeReadOnlyQuery(String sql, int maxRows, Consumer<JdbcResultSet> resultHandler)
+                throws NotReadOnlyException
+        {
+        }
+
         @Override
         public TransactionHelper getStrictTransactionHelper(String statusTableName, Duration cleanupDuration)
         {
@@ -436,4 +449,114 @@ public class AbstractJdbcOperatorTest
             }
         }
     }
+
+    private TaskResult runTaskStoringResults(Map<String, Object> configInput, String sql, int maxRows, List<List<Object>> rows)
+            throws IOException, NotReadOnlyException
+    {
+        return runTaskStoringResults(configInput, sql, maxRows, ImmutableList.of("id", "name"), rows);
+    }
+
+    private TaskResult runTaskStoringResults(Map<String, Object> configInput, String sql, int maxRows, List<String> columnNames, List<List<Object>> rows)
+            throws IOException, NotReadOnlyException
+    {
+        TestOperator operator = getJdbcOperator(configInput, Optional.absent());
+
+        TestConnection connection = Mockito.mock(TestConnection.class);
+        when(operator.connect(any(TestConnectionConfig.class))).thenReturn(connection);
+        doAnswer(invocation -> {
+            Iterator<List<Object>> it = rows.iterator();
+            Consumer<JdbcResultSet> handler = invocation.getArgumentAt(2, Consumer.class);
+            handler.accept(new JdbcResultSet()
+            {
+                @Override
+                public List<String> getColumnNames()
+                {
+                    return columnNames;
+                }
+
+                @Override
+                public List<Object> next()
+                {
+                    return it.hasNext() ? it.next() : null;
+                }
+            });
+            return null;
+        }).when(connection).executeReadOnlyQuery(eq(sql), eq(maxRows), anyObject());
+
+        return operator.runTask();
+    }
+
+    @Test
+    public void storeFirstResult()
+            throws IOException, NotReadOnlyException
+    {
+        String sql = "SELECT id, name FROM users";
+        Map<String, Object> configInput = ImmutableMap.of(
+                "host", "foobar.com",
+                "user", "testuser",
+                "database", "testdb",
+                "store_last_results", true,
+                "query", sql
+        );
+
+        TaskResult result = runTaskStoringResults(configInput, sql, 1,
+                ImmutableList.of(ImmutableList.of(1, "a"), ImmutableList.of(2, "b")));
+
+        Config lastResults = result.getStoreParams().getNested("testop").getNested("last_results");
+        assertThat(lastResults.get("id", int.class), is(1));
+        assertThat(lastResults.get("name", String.class), is("a"));
+    }
+
+    @Test
+    public void storeAllResults()
+            throws IOException, NotReadOnlyException
+    {
+        String sql = "SELECT id, name FROM users";
+        Map<String, Object> configInput = ImmutableMap.of(
+                "host", "foobar.com",
+                "user", "testuser",
+                "database", "testdb",
+                "store_last_results", "all",
+                "query", sql
+        );
+
+        TaskResult result = runTaskStoringResults(configInput, sql, 8193,
+                ImmutableList.of(ImmutableList.of(1, "a"), ImmutableList.of(2, "b")));
+
+        List<Config> lastResults = result.getStoreParams().getNested("testop").getList("last_results", Config.class);
+        assertThat(lastResults.size(), is(2));
+        assertThat(lastResults.get(1).get("id", int.class), is(2));
+        assertThat(lastResults.get(1).get("name", String.class), is("b"));
+    }
+
+    @Test
+    public void storeResultsAsDownloadedValues()
+            throws Exception
+    {
+        String sql = "SELECT * FROM users";
+        Map<String, Object> configInput = ImmutableMap.of(
+                "host", "foobar.com",
+                "user", "testuser",
+                "database", "testdb",
+                "store_last_results", "first",
+                "query", sql
+        );
+
+        PGobject json = new PGobject();
+        json.setType("json");
+        json.setValue("{\"a\":1}");
+        List<Object> row = Arrays.asList(1L, true, "a", null, json, Date.valueOf("2016-01-02"));
+        List<String> columnNames = ImmutableList.of("id", "flag", "name", "nothing", "json", "date");
+
+        TaskResult result = runTaskStoringResults(configInput, sql, 1, columnNames, ImmutableList.of(row));
+
+        Config lastResults = result.getStoreParams().getNested("testop").getNested("last_results");
+        assertThat(lastResults.get("id", long.class), is(1L));
+        assertThat(lastResults.get("flag", boolean.class), is(true));
+        assertThat(lastResults.get("name", String.class), is("a"));
+        assertThat(lastResults.has("nothing"), is(false));
+        // PGobject is stored as its text as download_file writes it
+        assertThat(lastResults.get("json", String.class), is("{\"a\":1}"));
+        assertThat(lastResults.get("date", String.class), is("2016-01-02"));
+    }
 }
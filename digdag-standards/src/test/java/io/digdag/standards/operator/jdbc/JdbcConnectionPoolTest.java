@@ -0,0 +1,157 @@
+package io.digdag.standards.operator.jdbc;
+
+import java.sql.Connection;
+import org.junit.After;
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class JdbcConnectionPoolTest
+{
+    private final JdbcConnectionPool pool = new JdbcConnectionPool(true, 2, 60000, 60000);
+
+    @After
+    public void shutdown()
+    {
+        pool.shutdown();
+    }
+
+    private static AbstractJdbcConnectionConfig newConfig()
+        throws Exception
+    {
+        AbstractJdbcConnectionConfig config = mock(AbstractJdbcConnectionConfig.class);
+        when(config.openConnection()).then(invocation -> {
+            Connection connection = mock(Connection.class);
+            when(connection.isValid(anyInt())).thenReturn(true);
+            return connection;
+        });
+        return config;
+    }
+
+    @Test
+    public void reuseReleasedConnection()
+        throws Exception
+    {
+        AbstractJdbcConnectionConfig config = newConfig();
+
+        JdbcConnectionPool.PooledConnection first = pool.acquire(config);
+        Connection connection = first.get();
+        first.release(true);
+
+        JdbcConnectionPool.PooledConnection second = pool.acquire(config);
+        assertThat(second.get(), is(sameInstance(connection)));
+        verify(connection, never()).close();
+    }
+
+    @Test
+    public void configsDontShareConnections()
+        throws Exception
+    {
+        JdbcConnectionPool.PooledConnection first = pool.acquire(newConfig());
+        first.release(true);
+
+        JdbcConnectionPool.PooledConnection second = pool.acquire(newConfig());
+        assertThat(second.get(), is(not(sameInstance(first.get()))));
+    }
+
+    @Test
+    public void closeNotReusableConnection()
+        throws Exception
+    {
+        AbstractJdbcConnectionConfig config = newConfig();
+
+        JdbcConnectionPool.PooledConnection first = pool.acquire(config);
+        first.release(false);
+        verify(first.get()).close();
+
+        JdbcConnectionPool.PooledConnection second = pool.acquire(config);
+        assertThat(second.get(), is(not(sameInstance(first.get()))));
+    }
+
+    @Test
+    public void discardInvalidConnection()
+        throws Exception
+    {
+        AbstractJdbcConnectionConfig config = newConfig();
+
+        JdbcConnectionPool.PooledConnection first = pool.acquire(config);
+        when(first.get().isValid(anyInt())).thenReturn(false);
+        first.release(true);
+
+        JdbcConnectionPool.PooledConnection second = pool.acquire(config);
+        assertThat(second.get(), is(not(sameInstance(first.get()))));
+        verify(first.get()).close();
+    }
+
+    @Test
+    public void connectionsBeyondLimitAreNotPooled()
+        throws Exception
+    {
+        AbstractJdbcConnectionConfig config = newConfig();
+
+        JdbcConnectionPool.PooledConnection first = pool.acquire(config);
+        JdbcConnectionPool.PooledConnection second = pool.acquire(config);
+        JdbcConnectionPool.PooledConnection third = pool.acquire(config);
+        assertThat(first.isPooled(), is(true));
+        assertThat(second.isPooled(), is(true));
+        assertThat(third.isPooled(), is(false));
+
+        third.release(true);
+        verify(third.get()).close();
+
+        // a slot is available after a pooled connection is closed
+        first.release(false);
+        assertThat(pool.acquire(config).isPooled(), is(true));
+    }
+
+    @Test
+    public void disabledPoolDoesntPool()
+        throws Exception
+    {
+        JdbcConnectionPool disabled = new JdbcConnectionPool(false, 2, 60000, 60000);
+        JdbcConnectionPool.PooledConnection conn = disabled.acquire(newConfig());
+        assertThat(conn.isPooled(), is(false));
+        conn.release(true);
+        verify(conn.get()).close();
+    }
+
+    @Test
+    public void reapExpiredConnections()
+        throws Exception
+    {
+        JdbcConnectionPool expiring = new JdbcConnectionPool(true, 2, 60000, 1);
+        AbstractJdbcConnectionConfig config = newConfig();
+
+        JdbcConnectionPool.PooledConnection first = expiring.acquire(config);
+        first.release(true);
+        Thread.sleep(10);
+
+        // closed without acquiring a connection
+        expiring.reapExpiredConnections();
+        verify(first.get()).close();
+
+        JdbcConnectionPool.PooledConnection second = expiring.acquire(config);
+        assertThat(second.get(), is(not(sameInstance(first.get()))));
+        assertThat(second.isPooled(), is(true));
+        expiring.shutdown();
+        verify(second.get(), never()).close();
+    }
+
+    @Test
+    public void shutdownClosesIdleConnections()
+        throws Exception
+    {
+        JdbcConnectionPool.PooledConnection conn = pool.acquire(newConfig());
+        conn.release(true);
+        pool.shutdown();
+        verify(conn.get()).close();
+    }
+}
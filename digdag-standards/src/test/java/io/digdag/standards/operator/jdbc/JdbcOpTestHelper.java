@@ -29,14 +29,22 @@ public class JdbcOpTestHelper
 {
     private final ObjectMapper mapper = new ObjectMapper().registerModule(new GuavaModule());
     private final ConfigFactory configFactory = new ConfigFactory(mapper);
-    private final Injector injector = Guice.createInjector(new MyModule());
+    private final Injector injector = Guice.createInjector(new MyModule(configFactory));
 
     static class MyModule implements Module
     {
+        private final ConfigFactory configFactory;
+
+        MyModule(ConfigFactory configFactory)
+        {
+            this.configFactory = configFactory;
+        }
+
         @Override
         public void configure(Binder binder)
         {
             binder.bind(TemplateEngine.class).to(ConfigEvalEngine.class).in(Scopes.SINGLETON);
+            binder.bind(Config.class).toInstance(configFactory.create());
         }
     }
 
@@ -0,0 +1,112 @@
+package io.digdag.standards.operator.pg;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Properties;
+import java.util.UUID;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableMap;
+import io.digdag.client.config.ConfigFactory;
+import io.digdag.spi.SecretProvider;
+import io.digdag.standards.operator.jdbc.JdbcConnection;
+import io.digdag.standards.operator.jdbc.JdbcConnectionPool;
+import io.digdag.standards.operator.jdbc.TransactionHelper;
+
+import static java.util.Locale.ENGLISH;
+
+/**
+ * Compares latency of short pg> steps with and without the connection pool.
+ *
+ * Each step does what a pg> task does: connects, validates the statement,
+ * runs it in a strict transaction using the status table, and closes the
+ * connection.
+ *
+ * This is not run as a unit test. It uses the same database settings as
+ * the acceptance tests. Run the main method manually:
+ *
+ *   export DIGDAG_TEST_POSTGRESQL="$(cat config/test_postgresql.properties)"
+ *   ./gradlew :digdag-standards:testClasses
+ *   java -cp ... io.digdag.standards.operator.pg.PgConnectionPoolBenchmark [steps]
+ */
+public class PgConnectionPoolBenchmark
+{
+    private static final String STATUS_TABLE = "__digdag_status_benchmark";
+
+    public static void main(String[] args)
+        throws Exception
+    {
+        int steps = args.length > 0 ? Integer.parseInt(args[0]) : 500;
+
+        String settings = System.getenv("DIGDAG_TEST_POSTGRESQL");
+        if (settings == null || settings.isEmpty()) {
+            System.err.println("DIGDAG_TEST_POSTGRESQL is not set");
+            System.exit(1);
+        }
+        Properties props = new Properties();
+        try (StringReader reader = new StringReader(settings)) {
+            props.load(reader);
+        }
+        catch (IOException ex) {
+            throw new RuntimeException(ex);
+        }
+
+        SecretProvider secrets = key -> Optional.fromNullable(ImmutableMap.of(
+                "host", (String) props.get("host"),
+                "user", (String) props.get("user"),
+                "database", (String) props.get("database")
+        ).get(key));
+        PgConnectionConfig config = PgConnectionConfig.configure(secrets, new ConfigFactory(new ObjectMapper()).create());
+
+        JdbcConnectionPool unpooled = new JdbcConnectionPool(false, 8, 1800_000, 300_000);
+        JdbcConnectionPool pooled = new JdbcConnectionPool(true, 8, 1800_000, 300_000);
+        try {
+            // warm up JIT and the server
+            run(config, unpooled, steps / 10);
+            run(config, pooled, steps / 10);
+
+            report("without pool", run(config, unpooled, steps));
+            report("with pool", run(config, pooled, steps));
+        }
+        finally {
+            pooled.shutdown();
+        }
+    }
+
+    private static long[] run(PgConnectionConfig config, JdbcConnectionPool pool, int steps)
+    {
+        long[] latencies = new long[steps];
+        for (int i = 0; i < steps; i++) {
+            long start = System.nanoTime();
+            try (JdbcConnection connection = PgConnection.open(config, pool)) {
+                String sql = "SELECT 1";
+                connection.validateStatement(sql);
+                TransactionHelper txHelper = connection.getStrictTransactionHelper(STATUS_TABLE, Duration.ofHours(1));
+                txHelper.prepare();
+                txHelper.lockedTransaction(UUID.randomUUID(), () -> connection.executeScript(sql));
+            }
+            catch (Exception ex) {
+                throw new RuntimeException(ex);
+            }
+            latencies[i] = System.nanoTime() - start;
+        }
+        return latencies;
+    }
+
+    private static void report(String name, long[] latencies)
+    {
+        long[] sorted = latencies.clone();
+        Arrays.sort(sorted);
+        long total = 0;
+        for (long latency : sorted) {
+            total += latency;
+        }
+        System.out.println(String.format(ENGLISH, "%-14s steps=%d mean=%.2fms p50=%.2fms p99=%.2fms",
+                    name + ":", sorted.length,
+                    total / (double) sorted.length / 1e6,
+                    sorted[sorted.length / 2] / 1e6,
+                    sorted[Math.min(sorted.length - 1, (int) (sorted.length * 0.99))] / 1e6));
+    }
+}
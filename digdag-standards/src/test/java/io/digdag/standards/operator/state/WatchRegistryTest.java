@@ -0,0 +1,87 @@
+package io.digdag.standards.operator.state;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import com.google.common.base.Optional;
+import org.junit.After;
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class WatchRegistryTest
+{
+    private final WatchRegistry registry = new WatchRegistry();
+    private final AtomicInteger checks = new AtomicInteger();
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    @After
+    public void shutdown()
+    {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void reuseRecentObservation()
+        throws Exception
+    {
+        assertThat(registry.check("key", Duration.ofMinutes(1), () -> checks.incrementAndGet() > 1), is(false));
+        assertThat(registry.check("key", Duration.ofMinutes(1), () -> checks.incrementAndGet() > 1), is(false));
+        assertThat(checks.get(), is(1));
+
+        // an observation older than max age is not used
+        assertThat(registry.check("key", Duration.ZERO, () -> checks.incrementAndGet() > 1), is(true));
+        assertThat(checks.get(), is(2));
+    }
+
+    @Test
+    public void keysAreIndependent()
+        throws Exception
+    {
+        registry.check("key1", Duration.ofMinutes(1), checks::incrementAndGet);
+        registry.check("key2", Duration.ofMinutes(1), checks::incrementAndGet);
+        assertThat(checks.get(), is(2));
+        assertThat(registry.getRecent("key1", Duration.ofMinutes(1), Integer.class), is(Optional.of(1)));
+        assertThat(registry.getRecent("key3", Duration.ofMinutes(1), Integer.class), is(Optional.absent()));
+    }
+
+    @Test
+    public void failureIsNotReused()
+        throws Exception
+    {
+        try {
+            registry.check("key", Duration.ofMinutes(1), () -> {
+                throw new IllegalStateException("failed");
+            });
+            fail();
+        }
+        catch (IllegalStateException ex) {
+        }
+        assertThat(registry.check("key", Duration.ofMinutes(1), () -> true), is(true));
+    }
+
+    @Test
+    public void concurrentChecksAreCoalesced()
+        throws Exception
+    {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch finish = new CountDownLatch(1);
+        Future<Integer> first = executor.submit(() -> registry.check("key", Duration.ofMinutes(1), () -> {
+            started.countDown();
+            finish.await();
+            return checks.incrementAndGet();
+        }));
+        started.await();
+        Future<Integer> second = executor.submit(() -> registry.check("key", Duration.ofMinutes(1), checks::incrementAndGet));
+        finish.countDown();
+
+        assertThat(first.get(), is(1));
+        assertThat(second.get(), is(1));
+        assertThat(checks.get(), is(1));
+    }
+}
@@ -78,7 +78,7 @@ public class TDOperatorTest
                 ImmutableMap.of("apikey", "foobar").get(key));
 
         exception.expect(ConfigException.class);
-        TDOperator.fromConfig(EMPTY_ENV, config, secrets);
+        TDOperator.fromConfig(new TDClientFactory(), EMPTY_ENV, config, secrets);
     }
 
     @Test
@@ -92,7 +92,7 @@ public class TDOperatorTest
                 ImmutableMap.of("apikey", "foobar").get(key));
 
         exception.expect(ConfigException.class);
-        TDOperator.fromConfig(EMPTY_ENV, config, secrets);
+        TDOperator.fromConfig(new TDClientFactory(), EMPTY_ENV, config, secrets);
     }
 
     @Test
@@ -106,7 +106,7 @@ public class TDOperatorTest
                 ImmutableMap.of("apikey", "").get(key));
 
         exception.expect(ConfigException.class);
-        TDOperator.fromConfig(EMPTY_ENV, config, secrets);
+        TDOperator.fromConfig(new TDClientFactory(), EMPTY_ENV, config, secrets);
     }
 
     @Test
@@ -120,7 +120,7 @@ public class TDOperatorTest
                 ImmutableMap.of("apikey", " \n\t").get(key));
 
         exception.expect(ConfigException.class);
-        TDOperator.fromConfig(EMPTY_ENV, config, secrets);
+        TDOperator.fromConfig(new TDClientFactory(), EMPTY_ENV, config, secrets);
     }
 
     @Test
@@ -131,7 +131,7 @@ public class TDOperatorTest
                 .set("database", "foobar");
         SecretProvider secrets = key -> Optional.fromNullable(
                 ImmutableMap.of("apikey", "quux").get(key));
-        TDOperator.fromConfig(EMPTY_ENV, config, secrets);
+        TDOperator.fromConfig(new TDClientFactory(), EMPTY_ENV, config, secrets);
     }
 
     @Test
@@ -194,6 +194,23 @@ public class S3Storage
         while (listing.isTruncated());
     }
 
+    @Override
+    public Optional<Long> getContentLength(String key)
+    {
+        checkArgument(key != null, "key is null");
+
+        String errorMessage = "getting metadata of file " + key + " on bucket " + bucket;
+
+        ObjectMetadata metadata;
+        try {
+            metadata = getWithRetry(errorMessage, () -> client.getObjectMetadata(bucket, key));
+        }
+        catch (StorageFileNotFoundException ex) {
+            return Optional.absent();
+        }
+        return Optional.of(metadata.getContentLength());
+    }
+
     @Override
     public Optional<DirectDownloadHandle> getDirectDownloadHandle(String key)
     {
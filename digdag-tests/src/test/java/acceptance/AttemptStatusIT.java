@@ -0,0 +1,190 @@
+package acceptance;
+
+import com.google.common.collect.ImmutableList;
+import io.digdag.client.DigdagClient;
+import io.digdag.client.api.Id;
+import io.digdag.client.api.RestSessionAttempt;
+import io.digdag.client.api.RestSessionAttemptCollection;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import utils.CommandStatus;
+import utils.TemporaryDigdagServer;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.Assert.assertThat;
+import static utils.TestUtils.addWorkflow;
+import static utils.TestUtils.attemptSuccess;
+import static utils.TestUtils.expect;
+import static utils.TestUtils.getAttemptId;
+import static utils.TestUtils.main;
+import static utils.TestUtils.pushAndStart;
+
+public class AttemptStatusIT
+{
+    private static final Id UNKNOWN_ID = Id.of("99999");
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Rule
+    public TemporaryDigdagServer server = TemporaryDigdagServer.of();
+
+    private Path projectDir;
+    private DigdagClient client;
+
+    @Before
+    public void setUp()
+            throws Exception
+    {
+        projectDir = folder.getRoot().toPath().resolve("attempt_status");
+        Files.createDirectory(projectDir);
+        addWorkflow(projectDir, "acceptance/attempt_status/attempt_status.dig");
+
+        client = DigdagClient.builder()
+                .host(server.host())
+                .port(server.port())
+                .build();
+    }
+
+    @Test
+    public void getStatusOfAttempts()
+            throws Exception
+    {
+        Id first = pushAndStart(server.endpoint(), projectDir, "attempt_status");
+        CommandStatus startStatus = main("start",
+                "-c", "/dev/null",
+                "-e", server.endpoint(),
+                "attempt_status", "attempt_status",
+                "--session", "2016-01-02 00:00:00");
+        assertThat(startStatus.errUtf8(), startStatus.code(), is(0));
+        Id second = getAttemptId(startStatus);
+
+        // unknown ids are ignored
+        RestSessionAttemptCollection status = client.getSessionAttemptStatus(ImmutableList.of(second, UNKNOWN_ID, first));
+        assertThat(ids(status), is(ImmutableList.of(first, second)));
+
+        expect(Duration.ofMinutes(1), attemptSuccess(server.endpoint(), first));
+        expect(Duration.ofMinutes(1), attemptSuccess(server.endpoint(), second));
+
+        status = client.getSessionAttemptStatus(ImmutableList.of(first, second));
+        assertThat(status.getAttempts().stream().allMatch(RestSessionAttempt::getDone), is(true));
+    }
+
+    @Test
+    public void waitReturnsImmediatelyIfDone()
+            throws Exception
+    {
+        Id attemptId = pushAndStart(server.endpoint(), projectDir, "attempt_status");
+        expect(Duration.ofMinutes(1), attemptSuccess(server.endpoint(), attemptId));
+
+        long start = System.nanoTime();
+        RestSessionAttemptCollection status = client.waitSessionAttemptStatus(ImmutableList.of(attemptId), 60);
+        assertThat(Duration.ofNanos(System.nanoTime() - start), lessThan(Duration.ofSeconds(10)));
+        assertThat(ids(status), is(ImmutableList.of(attemptId)));
+        assertThat(status.getAttempts().get(0).getDone(), is(true));
+    }
+
+    @Test
+    public void waitUntilAttemptFinishes()
+            throws Exception
+    {
+        Id attemptId = pushAndStart(server.endpoint(), projectDir, "attempt_status");
+
+        // the attempt sleeps 5 seconds. the wait returns before the timeout.
+        long start = System.nanoTime();
+        RestSessionAttemptCollection status = null;
+        for (int i = 0; i < 10; i++) {
+            status = client.waitSessionAttemptStatus(ImmutableList.of(attemptId), 60);
+            if (status.getAttempts().get(0).getDone()) {
+                break;
+            }
+        }
+        assertThat(Duration.ofNanos(System.nanoTime() - start), lessThan(Duration.ofSeconds(60)));
+        assertThat(status.getAttempts().get(0).getDone(), is(true));
+        assertThat(status.getAttempts().get(0).getSuccess(), is(true));
+    }
+
+    @Test
+    public void waitUntilTimeout()
+            throws Exception
+    {
+        // nothing changes for unknown ids
+        long start = System.nanoTime();
+        RestSessionAttemptCollection status = client.waitSessionAttemptStatus(ImmutableList.of(UNKNOWN_ID), 2);
+        Duration elapsed = Duration.ofNanos(System.nanoTime() - start);
+        assertThat(elapsed, greaterThanOrEqualTo(Duration.ofSeconds(2)));
+        assertThat(elapsed, lessThan(Duration.ofSeconds(10)));
+        assertThat(status.getAttempts().isEmpty(), is(true));
+    }
+
+    @Test
+    public void waitDoesNotHoldWorkerThreads()
+            throws Exception
+    {
+        // more waiters than HTTP worker threads of the server
+        int waiters = 100;
+        OkHttpClient http = new OkHttpClient.Builder()
+            .readTimeout(30, TimeUnit.SECONDS)
+            .build();
+        List<Future<Integer>> results = new ArrayList<>();
+        ExecutorService threads = Executors.newFixedThreadPool(waiters);
+        try {
+            for (int i = 0; i < waiters; i++) {
+                results.add(threads.submit(() -> {
+                    try (Response response = http.newCall(new Request.Builder()
+                                .url(server.endpoint() + "/api/attempts/status/wait?attempt_id=" + UNKNOWN_ID + "&timeout=5")
+                                .build()).execute()) {
+                        return response.code();
+                    }
+                }));
+            }
+
+            // other requests are still served
+            Thread.sleep(1000);
+            assertThat(client.getSessionAttemptStatus(ImmutableList.of(UNKNOWN_ID)).getAttempts().isEmpty(), is(true));
+
+            for (Future<Integer> result : results) {
+                assertThat(result.get(), is(200));
+            }
+        }
+        finally {
+            threads.shutdownNow();
+        }
+    }
+
+    @Test
+    public void rejectRequestsWithoutIds()
+            throws Exception
+    {
+        try (Response response = new OkHttpClient().newCall(new Request.Builder()
+                    .url(server.endpoint() + "/api/attempts/status/wait")
+                    .build()).execute()) {
+            assertThat(response.code(), is(400));
+        }
+    }
+
+    private static List<Id> ids(RestSessionAttemptCollection status)
+    {
+        return status.getAttempts().stream()
+            .map(RestSessionAttempt::getId)
+            .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,120 @@
+package acceptance;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import io.digdag.client.DigdagClient;
+import io.digdag.client.api.Id;
+import io.digdag.client.api.RestTask;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import utils.TemporaryDigdagServer;
+
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static utils.TestUtils.addWorkflow;
+import static utils.TestUtils.attemptSuccess;
+import static utils.TestUtils.expect;
+import static utils.TestUtils.objectMapper;
+import static utils.TestUtils.pushAndStart;
+
+public class AttemptTasksIT
+{
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Rule
+    public TemporaryDigdagServer server = TemporaryDigdagServer.of();
+
+    private Path projectDir;
+    private DigdagClient client;
+
+    @Before
+    public void setUp()
+            throws Exception
+    {
+        projectDir = folder.getRoot().toPath().resolve("attempt_tasks");
+        Files.createDirectory(projectDir);
+        addWorkflow(projectDir, "acceptance/attempt_tasks/attempt_tasks.dig");
+
+        client = DigdagClient.builder()
+                .host(server.host())
+                .port(server.port())
+                .build();
+    }
+
+    @Test
+    public void getTasksOfRunningAndFinishedAttempt()
+            throws Exception
+    {
+        Id attemptId = pushAndStart(server.endpoint(), projectDir, "attempt_tasks");
+
+        // tasks are read from the tasks table while the attempt is running
+        List<String> running = taskNames(getTasks(attemptId, false));
+        assertThat(running.get(0), is("+attempt_tasks"));
+
+        expect(Duration.ofMinutes(1), attemptSuccess(server.endpoint(), attemptId));
+
+        // tasks are read from the task archive after the attempt finished
+        List<String> expected = client.getTasks(attemptId).getTasks().stream()
+            .map(RestTask::getFullName)
+            .collect(Collectors.toList());
+        assertThat(expected, contains(
+                    "+attempt_tasks",
+                    "+attempt_tasks+first",
+                    "+attempt_tasks+wait",
+                    "+attempt_tasks+last"));
+        assertThat(taskNames(getTasks(attemptId, false)), is(expected));
+        assertThat(taskNames(getTasks(attemptId, true)), is(expected));
+    }
+
+    @Test
+    public void getTasksOfUnknownAttempt()
+            throws Exception
+    {
+        assertThat(taskNames(getTasks(Id.of("9999"), false)), is(new ArrayList<>()));
+    }
+
+    private JsonNode getTasks(Id attemptId, boolean gzip)
+            throws Exception
+    {
+        Request.Builder request = new Request.Builder()
+                .url(server.endpoint() + "/api/attempts/" + attemptId + "/tasks");
+        if (gzip) {
+            // OkHttp doesn't decode the body if Accept-Encoding is set explicitly
+            request.header("Accept-Encoding", "gzip");
+        }
+        try (Response response = new OkHttpClient().newCall(request.build()).execute()) {
+            assertThat(response.code(), is(200));
+            if (gzip) {
+                assertThat(response.header("Content-Encoding"), is("gzip"));
+                try (InputStream in = new GZIPInputStream(response.body().byteStream())) {
+                    return objectMapper().readTree(in);
+                }
+            }
+            return objectMapper().readTree(response.body().byteStream());
+        }
+    }
+
+    private static List<String> taskNames(JsonNode collection)
+    {
+        List<String> names = new ArrayList<>();
+        for (JsonNode task : collection.get("tasks")) {
+            names.add(task.get("fullName").asText());
+        }
+        return names;
+    }
+}
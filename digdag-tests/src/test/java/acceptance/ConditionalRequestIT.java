@@ -0,0 +1,143 @@
+package acceptance;
+
+import io.digdag.client.DigdagClient;
+import io.digdag.client.api.Id;
+import io.digdag.client.api.RestSessionAttempt;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import utils.TemporaryDigdagServer;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.Assert.assertThat;
+import static utils.TestUtils.addWorkflow;
+import static utils.TestUtils.attemptSuccess;
+import static utils.TestUtils.expect;
+import static utils.TestUtils.pushAndStart;
+
+public class ConditionalRequestIT
+{
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Rule
+    public TemporaryDigdagServer server = TemporaryDigdagServer.of();
+
+    private final OkHttpClient http = new OkHttpClient();
+
+    private Path projectDir;
+    private DigdagClient client;
+
+    @Before
+    public void setUp()
+            throws Exception
+    {
+        projectDir = folder.getRoot().toPath().resolve("attempt_tasks");
+        Files.createDirectory(projectDir);
+        addWorkflow(projectDir, "acceptance/attempt_tasks/attempt_tasks.dig");
+
+        client = DigdagClient.builder()
+                .host(server.host())
+                .port(server.port())
+                .build();
+    }
+
+    @Test
+    public void notModifiedWorkflowRevisionsAndArchive()
+            throws Exception
+    {
+        Id attemptId = pushAndStart(server.endpoint(), projectDir, "attempt_tasks");
+        RestSessionAttempt attempt = client.getSessionAttempt(attemptId);
+        Id projectId = attempt.getProject().getId();
+        Id workflowId = attempt.getWorkflow().getId().get();
+
+        assertNotModified("/api/workflows/" + workflowId);
+        assertNotModified("/api/projects/" + projectId + "/revisions");
+        assertNotModified("/api/projects/" + projectId + "/archive");
+    }
+
+    @Test
+    public void notModifiedTasksOfDoneAttempt()
+            throws Exception
+    {
+        Id attemptId = pushAndStart(server.endpoint(), projectDir, "attempt_tasks");
+
+        // tasks of a running attempt may change
+        try (Response response = get("/api/attempts/" + attemptId + "/tasks", null, false)) {
+            assertThat(response.code(), is(200));
+            assertThat(response.header("ETag"), is(nullValue()));
+        }
+
+        expect(Duration.ofMinutes(1), attemptSuccess(server.endpoint(), attemptId));
+
+        String etag = assertNotModified("/api/attempts/" + attemptId + "/tasks");
+        // the body depends on Accept-Encoding
+        assertThat(etag, startsWith("W/"));
+
+        // the tag of the gzip-encoded response matches the identity-encoded one
+        try (Response response = get("/api/attempts/" + attemptId + "/tasks", null, true)) {
+            assertThat(response.code(), is(200));
+            assertThat(response.header("Content-Encoding"), is("gzip"));
+            assertThat(response.header("ETag"), is(etag));
+            assertThat(response.header("Vary"), is(notNullValue()));
+        }
+        try (Response response = get("/api/attempts/" + attemptId + "/tasks", etag, true)) {
+            assertThat(response.code(), is(304));
+        }
+    }
+
+    @Test
+    public void modifiedIfTagDoesNotMatch()
+            throws Exception
+    {
+        Id attemptId = pushAndStart(server.endpoint(), projectDir, "attempt_tasks");
+        Id workflowId = client.getSessionAttempt(attemptId).getWorkflow().getId().get();
+
+        try (Response response = get("/api/workflows/" + workflowId, "\"other\"", false)) {
+            assertThat(response.code(), is(200));
+            assertThat(response.header("ETag"), is(not("\"other\"")));
+        }
+    }
+
+    private String assertNotModified(String path)
+            throws Exception
+    {
+        String etag;
+        try (Response response = get(path, null, false)) {
+            assertThat(response.code(), is(200));
+            etag = response.header("ETag");
+            assertThat(etag, is(notNullValue()));
+        }
+        try (Response response = get(path, etag, false)) {
+            assertThat(response.code(), is(304));
+            assertThat(response.header("ETag"), is(etag));
+            assertThat(response.body().bytes().length, is(0));
+        }
+        return etag;
+    }
+
+    private Response get(String path, String ifNoneMatch, boolean gzip)
+            throws Exception
+    {
+        Request.Builder request = new Request.Builder()
+                .url(server.endpoint() + path);
+        if (ifNoneMatch != null) {
+            request.header("If-None-Match", ifNoneMatch);
+        }
+        // OkHttp requests gzip transparently unless Accept-Encoding is set explicitly
+        request.header("Accept-Encoding", gzip ? "gzip" : "identity");
+        return http.newCall(request.build()).execute();
+    }
+}
@@ -3,6 +3,7 @@ package acceptance;
 import com.amazonaws.util.Base64;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.base.Strings;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.io.Resources;
@@ -453,4 +454,95 @@ public class HttpIT
         runWorkflow(folder, "acceptance/http/http_for_each.dig", ImmutableMap.of("test_uri", uri));
         assertThat(httpMockWebServer.getRequestCount(), is(1));
     }
+
+    @Test
+    public void testPooledClientIsReusedByTasks()
+            throws Exception
+    {
+        String uri = "http://localhost:" + httpMockWebServer.getPort() + "/test";
+        httpMockWebServer.setDispatcher(new QueueDispatcher());
+        httpMockWebServer.enqueue(new MockResponse().addHeader("Set-Cookie", "session=first"));
+        httpMockWebServer.enqueue(new MockResponse());
+        runWorkflow(folder, "acceptance/http/http_pooled.dig", ImmutableMap.of("test_uri", uri));
+        assertThat(httpMockWebServer.getRequestCount(), is(2));
+        RecordedRequest first = httpMockWebServer.takeRequest();
+        RecordedRequest second = httpMockWebServer.takeRequest();
+
+        // the second task sends the request on the connection kept alive by the first task
+        assertThat(first.getSequenceNumber(), is(0));
+        assertThat(second.getSequenceNumber(), is(1));
+
+        // cookies are not shared by tasks
+        assertThat(second.getHeader("Cookie"), is(nullValue()));
+    }
+
+    @Test
+    public void testStoredContentTooLarge()
+            throws Exception
+    {
+        String uri = "http://localhost:" + httpMockWebServer.getPort() + "/test";
+        httpMockWebServer.setDispatcher(new QueueDispatcher());
+
+        // receiving content is aborted when it exceeds 3 bytes per character of the limit
+        httpMockWebServer.enqueue(new MockResponse().setBody(Strings.repeat("x", 100 * 1024)));
+        runStoreContent(uri, 1);
+
+        // within the limit in bytes but not in characters
+        httpMockWebServer.enqueue(new MockResponse().setBody(Strings.repeat("x", 11)));
+        runStoreContent(uri, 1);
+
+        assertThat(httpMockWebServer.getRequestCount(), is(2));
+    }
+
+    @Test
+    public void testStoredContentIsLimitedByCharacters()
+            throws Exception
+    {
+        String uri = "http://localhost:" + httpMockWebServer.getPort() + "/test";
+        httpMockWebServer.setDispatcher(new QueueDispatcher());
+
+        // 10 characters of 3 bytes in UTF-8
+        httpMockWebServer.enqueue(new MockResponse()
+                .setHeader(CONTENT_TYPE.asString(), "text/plain; charset=utf-8")
+                .setBody(Strings.repeat("\u3042", 10)));
+        runStoreContent(uri, 0);
+
+        httpMockWebServer.enqueue(new MockResponse()
+                .setHeader(CONTENT_TYPE.asString(), "text/plain; charset=utf-8")
+                .setBody(Strings.repeat("\u3042", 11)));
+        runStoreContent(uri, 1);
+
+        assertThat(httpMockWebServer.getRequestCount(), is(2));
+    }
+
+    @Test
+    public void testContentIsDiscardedIfNotStored()
+            throws Exception
+    {
+        String uri = "http://localhost:" + httpMockWebServer.getPort() + "/test";
+        httpMockWebServer.setDispatcher(new QueueDispatcher());
+        httpMockWebServer.enqueue(new MockResponse().setBody(Strings.repeat("x", 100 * 1024)));
+        runWorkflow(folder, "acceptance/http/http.dig",
+                ImmutableMap.of(
+                        "test_uri", uri
+                ),
+                ImmutableMap.of(
+                        "config.http.max_stored_response_content_size", "10"
+                ));
+        assertThat(httpMockWebServer.getRequestCount(), is(1));
+    }
+
+    private void runStoreContent(String uri, int expectedStatus)
+            throws IOException
+    {
+        runWorkflow(folder, "acceptance/http/http.dig",
+                ImmutableMap.of(
+                        "test_uri", uri,
+                        "http.store_content", "true"
+                ),
+                ImmutableMap.of(
+                        "config.http.max_stored_response_content_size", "10"
+                ),
+                expectedStatus);
+    }
 }
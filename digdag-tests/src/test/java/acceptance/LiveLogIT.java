@@ -0,0 +1,153 @@
+package acceptance;
+
+import io.digdag.client.api.Id;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import utils.CommandStatus;
+import utils.TemporaryDigdagServer;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static utils.TestUtils.addWorkflow;
+import static utils.TestUtils.attemptSuccess;
+import static utils.TestUtils.expect;
+import static utils.TestUtils.main;
+import static utils.TestUtils.pushAndStart;
+
+public class LiveLogIT
+{
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path projectDir;
+
+    @Before
+    public void setUp()
+            throws Exception
+    {
+        projectDir = folder.getRoot().toPath().resolve("live_log");
+        Files.createDirectory(projectDir);
+        addWorkflow(projectDir, "acceptance/live_log/live_log.dig");
+    }
+
+    @Test
+    public void followRunningAttempt()
+            throws Exception
+    {
+        try (TemporaryDigdagServer server = TemporaryDigdagServer.of()) {
+            server.start();
+
+            Id attemptId = pushAndStart(server.endpoint(), projectDir, "live_log");
+
+            // follows until the attempt finishes. Lines shown by live logs
+            // are not shown again when they're read from log files.
+            String logs = followLogs(server, attemptId);
+            assertThat(logs, count(logs, "first-2"), is(1));
+            assertThat(logs, count(logs, "first-4"), is(1));
+            assertThat(logs, count(logs, "second-2"), is(1));
+        }
+    }
+
+    @Test
+    public void followFinishedAttempt()
+            throws Exception
+    {
+        try (TemporaryDigdagServer server = TemporaryDigdagServer.of()) {
+            server.start();
+
+            Id attemptId = pushAndStart(server.endpoint(), projectDir, "live_log");
+            expect(Duration.ofMinutes(1), attemptSuccess(server.endpoint(), attemptId));
+
+            // no tasks produce live logs any more. the response ends without lines.
+            Response response = getLiveLogs(server, attemptId, 10);
+            assertThat(response.code(), is(200));
+            assertThat(response.body().string(), is(""));
+
+            // lines are read from log files
+            String logs = followLogs(server, attemptId);
+            assertThat(logs, count(logs, "first-2"), is(1));
+            assertThat(logs, count(logs, "second-2"), is(1));
+        }
+    }
+
+    @Test
+    public void followWithoutLocalAgent()
+            throws Exception
+    {
+        try (TemporaryDigdagServer server = TemporaryDigdagServer.builder()
+                .addArgs("--disable-local-agent")
+                .build()) {
+            server.start();
+
+            Id attemptId = pushAndStart(server.endpoint(), projectDir, "live_log");
+
+            // tasks don't run on this server. the response ends at timeout without lines.
+            Response response = getLiveLogs(server, attemptId, 1);
+            assertThat(response.code(), is(200));
+            assertThat(response.body().string(), is(""));
+        }
+    }
+
+    @Test
+    public void rejectTooManyFollowers()
+            throws Exception
+    {
+        try (TemporaryDigdagServer server = TemporaryDigdagServer.builder()
+                .configuration("server.live-log.max-followers = 0")
+                .build()) {
+            server.start();
+
+            Id attemptId = pushAndStart(server.endpoint(), projectDir, "live_log");
+
+            Response response = getLiveLogs(server, attemptId, 1);
+            assertThat(response.code(), is(503));
+            response.close();
+
+            // the client reads log files instead
+            String logs = followLogs(server, attemptId);
+            assertThat(logs, count(logs, "first-2"), is(1));
+            assertThat(logs, count(logs, "first-4"), is(1));
+            assertThat(logs, count(logs, "second-2"), is(1));
+        }
+    }
+
+    private static String followLogs(TemporaryDigdagServer server, Id attemptId)
+    {
+        CommandStatus logStatus = main("log",
+                "-c", "/dev/null",
+                "-e", server.endpoint(),
+                "--follow",
+                String.valueOf(attemptId));
+        assertThat(logStatus.errUtf8(), logStatus.code(), is(0));
+        return logStatus.outUtf8();
+    }
+
+    private static Response getLiveLogs(TemporaryDigdagServer server, Id attemptId, int timeoutSeconds)
+            throws Exception
+    {
+        return new OkHttpClient().newCall(new Request.Builder()
+                .url(server.endpoint() + "/api/logs/" + attemptId + "/live?timeout=" + timeoutSeconds)
+                .build())
+                .execute();
+    }
+
+    private static int count(String text, String word)
+    {
+        int count = 0;
+        int index = text.indexOf(word);
+        while (index >= 0) {
+            count++;
+            index = text.indexOf(word, index + word.length());
+        }
+        return count;
+    }
+}
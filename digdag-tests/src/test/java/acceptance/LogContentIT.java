@@ -0,0 +1,191 @@
+package acceptance;
+
+import com.google.common.io.ByteStreams;
+import io.digdag.client.DigdagClient;
+import io.digdag.client.api.Id;
+import io.digdag.client.api.RestLogFileHandle;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import utils.TemporaryDigdagServer;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static utils.TestUtils.addWorkflow;
+import static utils.TestUtils.attemptSuccess;
+import static utils.TestUtils.expect;
+import static utils.TestUtils.pushAndStart;
+
+public class LogContentIT
+{
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Rule
+    public TemporaryDigdagServer server = TemporaryDigdagServer.of();
+
+    private final OkHttpClient http = new OkHttpClient();
+
+    private DigdagClient client;
+    private Id attemptId;
+    private String fileName;
+    private byte[] file;
+    private String content;
+
+    @Before
+    public void setUp()
+            throws Exception
+    {
+        Path projectDir = folder.getRoot().toPath().resolve("log_content");
+        Files.createDirectory(projectDir);
+        addWorkflow(projectDir, "acceptance/log_content/log_content.dig");
+
+        client = DigdagClient.builder()
+                .host(server.host())
+                .port(server.port())
+                .build();
+
+        attemptId = pushAndStart(server.endpoint(), projectDir, "log_content");
+        expect(Duration.ofMinutes(1), attemptSuccess(server.endpoint(), attemptId));
+
+        List<RestLogFileHandle> handles = client.getLogFileHandlesOfTask(attemptId, "+log_content+echo").getFiles();
+        assertThat(handles.size(), is(1));
+        fileName = handles.get(0).getFileName();
+
+        try (Response response = get("", null)) {
+            assertThat(response.code(), is(200));
+            assertThat(response.header("Accept-Ranges"), is("bytes"));
+            file = response.body().bytes();
+            assertThat(response.header("Content-Length"), is(Integer.toString(file.length)));
+        }
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(file))) {
+            content = new String(ByteStreams.toByteArray(in), UTF_8);
+        }
+        assertThat(content, containsString("log-content-line-2"));
+        assertThat(content.length(), greaterThan(20));
+    }
+
+    @Test
+    public void getRange()
+            throws Exception
+    {
+        assertPartialContent("bytes=0-9", 0, 9);
+        // last beyond the end of the file
+        assertPartialContent("bytes=10-" + (file.length + 100), 10, file.length - 1);
+    }
+
+    @Test
+    public void getOpenEndedRange()
+            throws Exception
+    {
+        assertPartialContent("bytes=10-", 10, file.length - 1);
+    }
+
+    @Test
+    public void getSuffixRange()
+            throws Exception
+    {
+        assertPartialContent("bytes=-10", file.length - 10, file.length - 1);
+        assertPartialContent("bytes=-" + (file.length + 100), 0, file.length - 1);
+    }
+
+    @Test
+    public void getWholeFileForMultipleRanges()
+            throws Exception
+    {
+        try (Response response = get("", "bytes=0-1,5-6")) {
+            assertThat(response.code(), is(200));
+            assertThat(response.header("Content-Range"), is((String) null));
+            assertThat(Arrays.equals(response.body().bytes(), file), is(true));
+        }
+    }
+
+    @Test
+    public void rejectUnsatisfiableRange()
+            throws Exception
+    {
+        try (Response response = get("", "bytes=" + file.length + "-")) {
+            assertThat(response.code(), is(416));
+            assertThat(response.header("Content-Range"), is("bytes */" + file.length));
+        }
+    }
+
+    @Test
+    public void getContent()
+            throws Exception
+    {
+        assertContent("/content", 0, content);
+        assertContent("/content?offset=5", 5, content.substring(5));
+    }
+
+    @Test
+    public void getTail()
+            throws Exception
+    {
+        int length = content.getBytes(UTF_8).length;
+        assertContent("/content?tail=10", length - 10, content.substring(content.length() - 10));
+        // tail longer than the file returns the whole content
+        assertContent("/content?tail=1000000", 0, content);
+
+        try (InputStream in = client.getLogFileTail(attemptId, fileName, 10)) {
+            assertThat(new String(ByteStreams.toByteArray(in), UTF_8), is(content.substring(content.length() - 10)));
+        }
+    }
+
+    @Test
+    public void rejectNegativeOffset()
+            throws Exception
+    {
+        try (Response response = get("/content?offset=-1", null)) {
+            assertThat(response.code(), is(400));
+        }
+    }
+
+    private void assertPartialContent(String range, int first, int last)
+            throws Exception
+    {
+        try (Response response = get("", range)) {
+            assertThat(response.code(), is(206));
+            assertThat(response.header("Content-Range"), is("bytes " + first + "-" + last + "/" + file.length));
+            assertThat(response.header("Content-Length"), is(Integer.toString(last - first + 1)));
+            assertThat(Arrays.equals(response.body().bytes(), Arrays.copyOfRange(file, first, last + 1)), is(true));
+        }
+    }
+
+    private void assertContent(String path, long offset, String expected)
+            throws Exception
+    {
+        try (Response response = get(path, null)) {
+            assertThat(response.code(), is(200));
+            assertThat(response.header("X-Digdag-Log-Offset"), is(Long.toString(offset)));
+            assertThat(response.body().string(), is(expected));
+        }
+    }
+
+    private Response get(String path, String range)
+            throws Exception
+    {
+        Request.Builder request = new Request.Builder()
+                .url(server.endpoint() + "/api/logs/" + attemptId + "/files/" + fileName + path);
+        if (range != null) {
+            request.header("Range", range);
+        }
+        return http.newCall(request.build()).execute();
+    }
+}
@@ -0,0 +1,195 @@
+package acceptance;
+
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableList;
+import com.google.common.hash.Hashing;
+import io.digdag.client.DigdagClient;
+import io.digdag.client.api.Id;
+import io.digdag.client.api.RestProject;
+import io.digdag.client.api.RestProjectManifest;
+import io.digdag.core.archive.ProjectArchives;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import utils.CommandStatus;
+import utils.TemporaryDigdagServer;
+
+import javax.ws.rs.BadRequestException;
+
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.UUID;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.isEmptyOrNullString;
+import static org.hamcrest.Matchers.not;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import static org.junit.Assume.assumeThat;
+import static utils.TestUtils.attemptSuccess;
+import static utils.TestUtils.copyResource;
+import static utils.TestUtils.expect;
+import static utils.TestUtils.main;
+import static utils.TestUtils.startWorkflow;
+
+public class ProjectManifestIT
+{
+    private static final String FAKE_S3_ENDPOINT = System.getenv("FAKE_S3_ENDPOINT");
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    // project blobs need archive.type to be a storage
+    @Rule
+    public TemporaryDigdagServer server = TemporaryDigdagServer.builder()
+            .configuration(
+                    "archive.type = s3",
+                    "archive.s3.endpoint = " + FAKE_S3_ENDPOINT,
+                    "archive.s3.bucket = archive-storage-" + UUID.randomUUID(),
+                    "archive.s3.credentials.access-key-id = fake-key-id",
+                    "archive.s3.credentials.secret-access-key = fake-access-key",
+                    ""
+            )
+            .build();
+
+    private Path projectDir;
+    private DigdagClient client;
+
+    @Before
+    public void setUp()
+            throws Exception
+    {
+        assumeThat(FAKE_S3_ENDPOINT, not(isEmptyOrNullString()));
+
+        projectDir = folder.getRoot().toPath().resolve("manifest");
+        Files.createDirectories(projectDir);
+        copyResource("acceptance/basic.dig", projectDir.resolve("basic.dig"));
+
+        client = DigdagClient.builder()
+                .host(server.host())
+                .port(server.port())
+                .build();
+    }
+
+    @Test
+    public void pushUploadsOnlyMissingFiles()
+            throws Exception
+    {
+        // the first push uploads basic.dig and .digdag.dig
+        assertThat(push().outUtf8(), containsString("Uploading 2 of 2 files"));
+
+        // nothing changed. only the manifest is sent
+        assertThat(push().outUtf8(), containsString("Uploading 0 of 2 files"));
+
+        Id attemptId = startWorkflow(server.endpoint(), "manifest", "basic");
+        expect(Duration.ofMinutes(1), attemptSuccess(server.endpoint(), attemptId));
+
+        // archive is built from blobs
+        RestProject proj = client.getProjects().getProjects().get(0);
+        Path extracted = folder.newFolder("extracted").toPath();
+        try (InputStream in = client.getProjectArchive(proj.getId(), proj.getRevision())) {
+            ProjectArchives.extractTarArchive(extracted, in);
+        }
+        assertThat(new String(Files.readAllBytes(extracted.resolve("basic.dig")), UTF_8),
+                is(new String(Files.readAllBytes(projectDir.resolve("basic.dig")), UTF_8)));
+    }
+
+    @Test
+    public void rejectManifestWithMissingBlobs()
+            throws Exception
+    {
+        String digest = Hashing.sha256().hashString("not uploaded", UTF_8).toString();
+        assertThat(client.getMissingProjectBlobs(ImmutableList.of(digest)), is(ImmutableList.of(digest)));
+
+        assertBadRequest(manifest(file(".digdag.dig", digest, 12)), "Blobs are not uploaded yet");
+    }
+
+    @Test
+    public void rejectManifestWithWrongSize()
+            throws Exception
+    {
+        String digest = uploadBlob("workflows: []\n");
+        assertThat(client.getMissingProjectBlobs(ImmutableList.of(digest)), is(ImmutableList.of()));
+
+        assertBadRequest(manifest(file(".digdag.dig", digest, 1)), "doesn't match with the uploaded blob");
+    }
+
+    @Test
+    public void rejectPathTraversal()
+            throws Exception
+    {
+        String digest = uploadBlob("workflows: []\n");
+
+        assertBadRequest(manifest(
+                    file(".digdag.dig", digest, 14),
+                    file("../escaped.dig", digest, 14)),
+                "relative path");
+        assertBadRequest(manifest(
+                    file(".digdag.dig", digest, 14),
+                    file("/tmp/escaped.dig", digest, 14)),
+                "relative path");
+        assertBadRequest(manifest(
+                    file(".digdag.dig", digest, 14),
+                    RestProjectManifest.Entry.builder()
+                        .name("dir/link")
+                        .size(0)
+                        .mode(0644)
+                        .linkName("../../escaped.dig")
+                        .build()),
+                "Symbolic link");
+    }
+
+    private CommandStatus push()
+    {
+        CommandStatus pushStatus = main("push",
+                "--project", projectDir.toString(),
+                "manifest",
+                "-c", "/dev/null",
+                "-e", server.endpoint());
+        assertThat(pushStatus.errUtf8(), pushStatus.code(), is(0));
+        return pushStatus;
+    }
+
+    private String uploadBlob(String contents)
+            throws Exception
+    {
+        Path file = folder.newFile().toPath();
+        Files.write(file, contents.getBytes(UTF_8));
+        String digest = Hashing.sha256().hashString(contents, UTF_8).toString();
+        client.putProjectBlob(digest, file.toFile());
+        return digest;
+    }
+
+    private static RestProjectManifest.Entry file(String name, String digest, long size)
+    {
+        return RestProjectManifest.Entry.builder()
+            .name(name)
+            .digest(digest)
+            .size(size)
+            .mode(0644)
+            .build();
+    }
+
+    private static RestProjectManifest manifest(RestProjectManifest.Entry... files)
+    {
+        return RestProjectManifest.builder()
+            .files(ImmutableList.copyOf(files))
+            .build();
+    }
+
+    private void assertBadRequest(RestProjectManifest manifest, String message)
+    {
+        try {
+            client.putProjectManifest("manifest", UUID.randomUUID().toString(), manifest, Optional.absent());
+            fail();
+        }
+        catch (BadRequestException ex) {
+            assertThat(ex.getResponse().readEntity(String.class), containsString(message));
+        }
+    }
+}